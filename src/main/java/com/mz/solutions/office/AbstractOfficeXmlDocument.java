@@ -42,18 +42,27 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
-import static java.util.Collections.disjoint;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
+import javax.annotation.Nullable;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
@@ -64,10 +73,12 @@ import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.w3c.dom.UserDataHandler;
 import org.xml.sax.SAXException;
 
 abstract class AbstractOfficeXmlDocument extends OfficeDocument {
@@ -77,6 +88,22 @@ abstract class AbstractOfficeXmlDocument extends OfficeDocument {
      */
     protected final OfficeDocumentFactory myOfficeFactory;
     
+    /**
+     * Übernimmt per {@link Node#setUserData} hinterlegte Daten beim Kopieren des Elementes (auch
+     * in andere Dokumente), z.B. bei der Kopie der Vorlage je Seite oder je Tabellenzeile.
+     */
+    protected static final UserDataHandler COPY_ON_CLONE = new UserDataHandler() {
+        @Override
+        public void handle(short operation, String key, Object data, Node src, Node dst) {
+            final boolean isCopy = operation == UserDataHandler.NODE_CLONED
+                    || operation == UserDataHandler.NODE_IMPORTED;
+            
+            if (isCopy && null != dst) {
+                dst.setUserData(key, data, this);
+            }
+        }
+    };
+    
     // Originale Daten - Sollten NICHT verändert werden!!
     private final ZIPDocumentFile sourceDocumentFile;
     
@@ -112,6 +139,11 @@ abstract class AbstractOfficeXmlDocument extends OfficeDocument {
     private volatile BaseDocumentInterceptorContext documentInterceptorContext;
     private volatile BaseHeaderFooterContext headerFooterContext;
 
+    private volatile RenderSettings renderSettings;
+    private volatile ValueInterceptorUtil.Memo interceptorMemo;
+    
+    /** Eigene Interceptor-Ergebnisse einer parallel befüllten Seite im jeweiligen Thread. */
+    private final ThreadLocal<ValueInterceptorUtil.Memo> parallelPageMemo = new ThreadLocal<>();
     private volatile ZIPDocumentFile newDocumentFile;
     private volatile Map<String, Document> documentParts;
     
@@ -126,6 +158,18 @@ abstract class AbstractOfficeXmlDocument extends OfficeDocument {
         }
     }
 
+    /**
+     * Verwendet ein bereits gelesenes Dokument als Vorlage; dieses wird nicht verändert und kann
+     * von mehreren Instanzen gleichzeitig verwendet werden (siehe {@link TemplateRegistry}).
+     * 
+     * @param myFactory     Factory-Implementierung
+     * @param document      Gelesene Vorlage
+     */
+    public AbstractOfficeXmlDocument(OfficeDocumentFactory myFactory, ZIPDocumentFile document) {
+        this.myOfficeFactory = myFactory;
+        this.sourceDocumentFile = document;
+    }
+
     @Override
     public OfficeDocumentFactory getRelatedFactory() {
         return myOfficeFactory;
@@ -169,7 +213,24 @@ abstract class AbstractOfficeXmlDocument extends OfficeDocument {
         
         return partDocument;
     }
-    
+
+    /**
+     * Legt einen neuen Teil im zu erzeugenden Dokument an, der wie alle anderen über
+     * {@link #getDocumentPart(String)} geladenen Teile am Ende geschrieben wird.
+     *
+     * @param partName      Pfad im Container, darf noch nicht existieren
+     * @param xmlContent    Initialer Inhalt (XML)
+     * @return              Neuer Teil
+     */
+    protected final Document createDocumentPart(String partName, byte[] xmlContent) {
+        final Document partDocument = bytesToXml(xmlContent);
+
+        newDocumentFile.createNewFileInZip(partName);
+        documentParts.put(partName, partDocument);
+
+        return partDocument;
+    }
+
     private void writeChangedDocumentParts() {
         for (String partName : documentParts.keySet()) {
             final Document partDocument = documentParts.get(partName);
@@ -253,6 +314,8 @@ abstract class AbstractOfficeXmlDocument extends OfficeDocument {
     {
         final ByteArrayOutputStream byteOut = new ByteArrayOutputStream(128 * 1024);
 
+        this.renderSettings = myOfficeFactory.createRenderSettings();
+        this.interceptorMemo = new ValueInterceptorUtil.Memo();
         this.newDocumentFile = sourceDocumentFile.cloneDocument();
         
         this.documentInterceptorContext = new BaseDocumentInterceptorContext(this);
@@ -280,6 +343,8 @@ abstract class AbstractOfficeXmlDocument extends OfficeDocument {
             this.headerFooterContext = null;
             this.documentParts = null;
             this.newDocumentFile = null;
+            this.renderSettings = null;
+            this.interceptorMemo = null;
         }
         
         return byteOut.toByteArray();
@@ -320,42 +385,28 @@ abstract class AbstractOfficeXmlDocument extends OfficeDocument {
      * Nimmt den übergebenen MIME-Type an und versucht zu diesem einen passenden zu finden aus der
      * eigenen Liste der MIME-Typen.
      * 
-     * <p>Ist der MIME-Type direkt in der Liste {@code mimeTypeList}, wird dieser zurück gegeben.
+     * <p>Ist der MIME-Type direkt in der Liste {@code implTypes}, wird dieser zurück gegeben.
      * Ansonsten wird zuerst anhand des MIME-Types (String) vergleichen und gesucht und danach nach
      * einer passenden Datennamens-Erweiterung. Wurde kein passender MIME-Type aus
-     * {@code mimeTypeList} gefunden, wird der ursprünglich übergebene zurück gegeben.</p>
+     * {@code implTypes} gefunden, wird der ursprünglich übergebene zurück gegeben.</p>
      * 
+     * <p>Die Suche erfolgt über je Implementierung vorberechnete Tabellen
+     * ({@link ImageResourceTypeLookup}); das Ergebnis je Typ wird gemerkt.</p>
+     * 
+     * @param <T>           Aufzählung der Bild-Formate der Implementierung
      * @param mimeType      Im Daten-Modell übergebener MIME-Type.
-     * @param mimeTypeList  Liste der von der Office-Implementierung unterstützten MIME-Types.
+     * @param implTypes     Aufzählung der von der Office-Implementierung unterstützten MIME-Types.
      * @return              Soweit wie möglich passender MIME-Type zur Implementierung, ansonsten
      *                      der ursprünglich in {@code mimeType} übergebene.
      */
-    protected final ImageResourceType convert(
-            final ImageResourceType mimeType, final ImageResourceType[] mimeTypeList)
+    protected final <T extends Enum<T> & ImageResourceType> ImageResourceType convert(
+            final ImageResourceType mimeType, final Class<T> implTypes)
     {
-        final String inMimeType = mimeType.getMimeType();
-        
-        // Schauen ob wir den selben haben anhand des MIME-Types direkt
-        for (ImageResourceType singleType : mimeTypeList) {
-            if (inMimeType.equalsIgnoreCase(singleType.getMimeType())) {
-                return singleType;
-            }
-        }
-        
-        // Wohl ein Schuss im Ofen, also suchen wir nach einer Dateinamens-Erweiterung die passen
-        // könnte.
-        final String[] inExtensions = mimeType.getFileNameExtensions();
-        final List<String> inExtList = Arrays.asList(inExtensions);
-
-        for (ImageResourceType singleType : mimeTypeList) {
-            final List<String> otherExtList = Arrays.asList(singleType.getFileNameExtensions());
-            
-            if (disjoint(inExtList, otherExtList) == false) {
-                return singleType;
-            }
+        if (implTypes.isInstance(mimeType)) {
+            return mimeType;
         }
         
-        return mimeType;
+        return ImageResourceTypeLookup.of(implTypes).convert(mimeType);
     }
     
     protected final boolean hasHeaderFooterInstructions() {
@@ -392,16 +443,29 @@ abstract class AbstractOfficeXmlDocument extends OfficeDocument {
     // Methoden zum Abfragen der Standard-Einstellungen
     ////////////////////////////////////////////////////////////////////////////
     
+    /**
+     * Einstellungen der laufenden Dokumenten-Erstellung; außerhalb von {@code generate(...)} der
+     * aktuelle Stand der Factory.
+     * 
+     * @return      Einstellungen, nie {@code null}
+     */
+    final RenderSettings getRenderSettings() {
+        final RenderSettings currentSettings = renderSettings;
+        
+        if (null == currentSettings) {
+            return myOfficeFactory.createRenderSettings();
+        }
+        
+        return currentSettings;
+    }
+    
     /**
      * Überprüfung ob fehlende Werte/Platzhalter ignoriert werden.
      * 
      * @return      sollen ignoriert werden wenn {@code true}
      */
     protected boolean ignoreMissingValues() {
-        final Boolean errOnValueMissing = myOfficeFactory
-                .getProperty(OfficeProperty.ERR_ON_MISSING_VAL);
-        
-        return Boolean.FALSE.equals(errOnValueMissing);
+        return getRenderSettings().ignoreMissingValues;
     }
     
     /**
@@ -410,10 +474,7 @@ abstract class AbstractOfficeXmlDocument extends OfficeDocument {
      * @return      soll ignoriert werden wenn {@code true}
      */
     protected boolean ignoreVersionMismatch() {
-        final Boolean errOnVersionMismatch = myOfficeFactory
-                .getProperty(OfficeProperty.ERR_ON_VER_MISMATCH);
-        
-        return Boolean.FALSE.equals(errOnVersionMismatch);
+        return getRenderSettings().ignoreVersionMismatch;
     }
     
     /**
@@ -424,10 +485,7 @@ abstract class AbstractOfficeXmlDocument extends OfficeDocument {
      *              anlegen
      */
     protected boolean ignoreMissingDataPages() {
-        final Boolean errOnNoData = myOfficeFactory
-                .getProperty(OfficeProperty.ERR_ON_NO_DATA);
-        
-        return Boolean.FALSE.equals(errOnNoData);
+        return getRenderSettings().ignoreMissingDataPages;
     }
     
     /**
@@ -438,10 +496,26 @@ abstract class AbstractOfficeXmlDocument extends OfficeDocument {
      *              schreiben (einbetten) ohne die externe Quelle weiterzureichen.
      */
     protected boolean loadAndEmbedExternalImages() {
-        final Boolean imgLoadAndEmbed = myOfficeFactory.getProperty(
-                OfficeProperty.IMG_LOAD_AND_EMBED_EXTERNAL);
-        
-        return Boolean.TRUE.equals(imgLoadAndEmbed);
+        return getRenderSettings().loadAndEmbedExternalImages;
+    }
+    
+    /**
+     * Ziel-Auflösung für einzubettende Bilder; {@code 0} wenn Bilder unverändert eingebettet
+     * werden sollen.
+     * 
+     * @return      DPI für {@link ImageResampler}, nie negativ
+     */
+    protected int imageResampleDpi() {
+        return getRenderSettings().imageResampleDpi;
+    }
+    
+    /**
+     * Anzahl der gleichzeitig zu befüllenden Seiten.
+     * 
+     * @return      Anzahl Threads; {@code 0} oder {@code 1} für die Erstellung nacheinander
+     */
+    protected int renderParallelism() {
+        return getRenderSettings().renderParallelism;
     }
     
     ////////////////////////////////////////////////////////////////////////////
@@ -449,7 +523,330 @@ abstract class AbstractOfficeXmlDocument extends OfficeDocument {
     ////////////////////////////////////////////////////////////////////////////
     
     protected DataValue handleInterception(DataValue value, InterceptionContext context) {
-        return ValueInterceptorUtil.callInterceptors(value, context);
+        return ValueInterceptorUtil.callInterceptors(value, context, currentInterceptorMemo());
+    }
+    
+    private ValueInterceptorUtil.Memo currentInterceptorMemo() {
+        final ValueInterceptorUtil.Memo pageMemo = parallelPageMemo.get();
+        return null != pageMemo ? pageMemo : interceptorMemo;
+    }
+    
+    /**
+     * Beginnt einen neuen Gültigkeitsbereich für Interceptor-Ergebnisse mit
+     * {@code CacheScope.PAGE} und löst alle {@code BulkValueInterceptor}'s der übergebenen Werte
+     * gesammelt auf; aufzurufen vor jeder {@code DataPage} und jeder Kopf-/Fußzeile.
+     * 
+     * @param values    Werte der folgenden Seite bzw. Kopf-/Fußzeile
+     */
+    protected void startInterceptorPage(DataMap<?> values) {
+        final ValueInterceptorUtil.Memo currentMemo = currentInterceptorMemo();
+        
+        if (null != currentMemo) {
+            currentMemo.startPage();
+            currentMemo.prefetch(values, this);
+        }
+    }
+    
+    ////////////////////////////////////////////////////////////////////////////
+    // PARALLELE ERSTELLUNG VON SEITEN
+    ////////////////////////////////////////////////////////////////////////////
+    
+    /**
+     * Befüllt die Seiten auf einem eigenen {@link ForkJoinPool} und übernimmt die Ergebnisse im
+     * aufrufenden Thread in ursprünglicher Reihenfolge.
+     * 
+     * <p>{@code fillPage} wird parallel aufgerufen und darf nur auf eigene (nicht mit anderen
+     * Seiten geteilte) DOM-Strukturen zugreifen; {@code appendPage} wird ausschließlich im
+     * aufrufenden Thread aufgerufen. Es sind höchstens doppelt so viele befüllte, aber noch nicht
+     * übernommene Seiten gleichzeitig im Speicher wie Threads verwendet werden. Jede Seite erhält
+     * eigene Interceptor-Ergebnisse mit {@code CacheScope.PAGE}.</p>
+     * 
+     * @param <T>           Ergebnis einer befüllten Seite
+     * @param dataPages     Daten aller Seiten
+     * @param parallelism   Anzahl Threads, mindestens {@code 2}
+     * @param fillPage      Befüllt eine Seite
+     * @param appendPage    Übernimmt eine befüllte Seite ins Dokument
+     * 
+     * @return              {@code true}, wenn mindestens eine Seite befüllt wurde
+     */
+    protected final <T> boolean fillPagesInParallel(
+            Iterator<DataPage> dataPages,
+            int parallelism,
+            Function<DataPage, T> fillPage,
+            Consumer<T> appendPage)
+    {
+        final ValueInterceptorUtil.Memo documentMemo = interceptorMemo;
+        final Deque<CompletableFuture<T>> pendingPages = new ArrayDeque<>();
+        final int maxPendingPages = 2 * parallelism;
+        final ForkJoinPool pagePool = new ForkJoinPool(parallelism);
+        
+        boolean anyDataPage = false;
+        
+        try {
+            while (dataPages.hasNext()) {
+                final DataPage dataPage = dataPages.next();
+                final ValueInterceptorUtil.Memo pageMemo = null == documentMemo
+                        ? null
+                        : documentMemo.forkPage();
+                
+                pendingPages.addLast(CompletableFuture.supplyAsync(() -> {
+                    parallelPageMemo.set(pageMemo);
+                    try {
+                        return fillPage.apply(dataPage);
+                    } finally {
+                        parallelPageMemo.remove();
+                    }
+                }, pagePool));
+                
+                anyDataPage = true;
+                
+                if (pendingPages.size() >= maxPendingPages) {
+                    appendPage.accept(awaitPage(pendingPages.removeFirst()));
+                }
+            }
+            
+            while (pendingPages.isEmpty() == false) {
+                appendPage.accept(awaitPage(pendingPages.removeFirst()));
+            }
+            
+        } finally {
+            // Nur im Fehlerfall: noch nicht begonnene Seiten verwerfen und auf bereits laufende
+            // warten, damit nach der Erstellung keine Seite mehr auf das Dokument zugreift
+            for (CompletableFuture<T> pendingPage : pendingPages) {
+                pendingPage.cancel(false);
+            }
+            
+            pagePool.shutdown();
+            awaitTermination(pagePool);
+        }
+        
+        return anyDataPage;
+    }
+    
+    private static void awaitTermination(ForkJoinPool pagePool) {
+        boolean interrupted = false;
+        
+        while (pagePool.isTerminated() == false) {
+            try {
+                pagePool.awaitTermination(1L, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static <T> T awaitPage(CompletableFuture<T> pendingPage) {
+        try {
+            return pendingPage.join();
+            
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            
+            throw ex;
+        }
+    }
+
+    /**
+     * Erzeugt je Thread eine eigene Kopie des Elementes als Vorlage für
+     * {@link #copyPageTemplate(BlockingQueue)}.
+     * 
+     * @param rootElement   Element das je Seite befüllt wird, samt Kind-Nodes
+     * @param parallelism   Anzahl Threads
+     * 
+     * @return              Vorlagen; je Vorlage ein eigenes XML-Dokument
+     */
+    protected final BlockingQueue<Document> newPageTemplates(Element rootElement, int parallelism) {
+        final BlockingQueue<Document> pageTemplates = new ArrayBlockingQueue<>(parallelism);
+        
+        for (int i = 0; i < parallelism; i++) {
+            pageTemplates.add(copyToNewDocument(rootElement));
+        }
+        
+        return pageTemplates;
+    }
+    
+    /**
+     * Kopiert eine der Vorlagen in ein neues XML-Dokument; das Kopieren greift nur lesend, aber
+     * exklusiv auf die Vorlage zu, da auch lesende Zugriffe auf ein DOM nicht thread-safe sind.
+     * 
+     * @param pageTemplates     Vorlagen aus {@link #newPageTemplates(Element, int)}
+     * 
+     * @return                  Neues XML-Dokument, Wurzel-Element ist die Kopie der Vorlage
+     */
+    protected final Document copyPageTemplate(BlockingQueue<Document> pageTemplates) {
+        final Document pageTemplate;
+        
+        try {
+            pageTemplate = pageTemplates.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex.getMessage(), ex);
+        }
+        
+        try {
+            return copyToNewDocument(pageTemplate.getDocumentElement());
+        } finally {
+            pageTemplates.add(pageTemplate);
+        }
+    }
+    
+    protected final Document copyToNewDocument(Element rootElement) {
+        final Document newDocument = rootElement.getOwnerDocument()
+                .getImplementation().createDocument(null, null, null);
+        
+        newDocument.appendChild(newDocument.importNode(rootElement, true));
+        
+        return newDocument;
+    }
+    
+    /**
+     * Verschiebt alle Kind-Nodes in ein neues {@link DocumentFragment}; ohne Index-Zugriff auf die
+     * (live) {@link NodeList}, die sich mit jedem entfernten Node verändert.
+     */
+    protected final DocumentFragment moveChildNodesToFragment(Node parentNode) {
+        final DocumentFragment fragment = parentNode.getOwnerDocument().createDocumentFragment();
+        
+        while (parentNode.hasChildNodes()) {
+            fragment.appendChild(parentNode.getFirstChild());
+        }
+        
+        return fragment;
+    }
+
+    /**
+     * Befüllt voneinander unabhängige Teile des Dokumentes (z.B. Kopf- und Fußzeilen) auf einem
+     * eigenen {@link ForkJoinPool}, während der aufrufende Thread weiter arbeitet; mit
+     * {@link #renderParallelism()} von {@code 0} oder {@code 1} wird jeder Teil sofort im
+     * aufrufenden Thread befüllt.
+     *
+     * <p>Ein Teil darf nur auf eigene (nicht mit anderen Teilen geteilte) DOM-Strukturen zugreifen
+     * und erhält eigene Interceptor-Ergebnisse mit {@code CacheScope.PAGE}. Über
+     * {@link #close()} wird in jedem Fall gewartet, bis kein Teil mehr auf das Dokument
+     * zugreift.</p>
+     */
+    protected final class PartTasks implements AutoCloseable {
+
+        private final ValueInterceptorUtil.Memo documentMemo = interceptorMemo;
+        private final List<CompletableFuture<Void>> pendingParts = new ArrayList<>();
+
+        @Nullable
+        private final ForkJoinPool partPool;
+
+        protected PartTasks() {
+            final int parallelism = renderParallelism();
+
+            // Der aufrufende Thread arbeitet selbst weiter, daher ein Thread weniger
+            this.partPool = parallelism > 1 ? new ForkJoinPool(parallelism - 1) : null;
+        }
+
+        /**
+         * Gibt an ob die Teile gleichzeitig zum aufrufenden Thread befüllt werden.
+         *
+         * @return  {@code true}, wenn {@link #submit(Runnable)} nicht sofort befüllt
+         */
+        public boolean isParallel() {
+            return null != partPool;
+        }
+
+        /**
+         * Befüllt den Teil, je nach Einstellung sofort oder auf einem anderen Thread.
+         *
+         * @param fillPart  Befüllt einen Teil des Dokumentes
+         */
+        public void submit(Runnable fillPart) {
+            if (null == partPool) {
+                fillPart.run();
+                return;
+            }
+
+            final ValueInterceptorUtil.Memo partMemo = null == documentMemo
+                    ? null
+                    : documentMemo.forkPage();
+
+            pendingParts.add(CompletableFuture.runAsync(() -> {
+                parallelPageMemo.set(partMemo);
+                try {
+                    fillPart.run();
+                } finally {
+                    parallelPageMemo.remove();
+                }
+            }, partPool));
+        }
+
+        /**
+         * Wartet bis alle bisher übergebenen Teile befüllt sind und reicht den ersten
+         * aufgetretenen Fehler weiter.
+         */
+        public void awaitAll() {
+            while (pendingParts.isEmpty() == false) {
+                awaitPage(pendingParts.remove(0));
+            }
+        }
+
+        @Override
+        public void close() {
+            if (null == partPool) {
+                return;
+            }
+
+            // Nur im Fehlerfall: noch nicht begonnene Teile verwerfen
+            for (CompletableFuture<Void> pendingPart : pendingParts) {
+                pendingPart.cancel(false);
+            }
+
+            partPool.shutdown();
+            awaitTermination(partPool);
+        }
+
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // TEXT MIT ZEILENUMBRÜCHEN UND TABULATOREN
+    ////////////////////////////////////////////////////////////////////////////
+    
+    /**
+     * Entfernt alle {@code '\r'} aus dem Text; enthält der Text keines, wird dieser selbst
+     * zurückgegeben.
+     * 
+     * @param text  Text eines Wertes
+     * @return      Text ohne {@code '\r'}
+     */
+    protected static String removeCarriageReturns(String text) {
+        if (text.indexOf('\r') == -1) {
+            return text;
+        }
+        
+        return text.replace("\r", "");
+    }
+    
+    /**
+     * Sucht ab {@code fromIndex} das nächste Zeichen, das im Dokument als eigenes Element
+     * abgebildet wird ({@code '\n'} bzw. {@code '\t'}).
+     * 
+     * @param text          Text eines Wertes
+     * @param fromIndex     Index ab dem gesucht wird
+     * @return              Index des Zeichens oder {@code -1}, wenn es keines mehr gibt
+     */
+    protected static int indexOfFormattingChar(String text, int fromIndex) {
+        for (int charIndex = fromIndex; charIndex < text.length(); charIndex++) {
+            final char ch = text.charAt(charIndex);
+            
+            if (ch == '\n' || ch == '\t') {
+                return charIndex;
+            }
+        }
+        
+        return -1;
     }
     
     ////////////////////////////////////////////////////////////////////////////
@@ -0,0 +1,96 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Intern - Standard-{@link Executor} für {@code OfficeDocument.generateAsync(..)}.
+ *
+ * <p>Ab Java 21 werden virtuelle Threads verwendet (ein Thread je Aufgabe), damit langsames Laden
+ * von Bildern oder blockierende Ausgaben keine Plattform-Threads belegen. Da die API weiterhin
+ * Java 8 unterstützt, wird der Executor per Reflection angelegt; auf älteren Laufzeitumgebungen
+ * wird ein Pool mit Daemon-Threads verwendet.</p>
+ *
+ * @author  Riebe, Moritz   (moritz.riebe@mz-entwickler.de)
+ */
+@ThreadSafe
+final class AsyncExecutors {
+
+    private AsyncExecutors() { }
+
+    /**
+     * Gemeinsamer Executor für alle asynchronen Erstellungen ohne eigenen Executor.
+     *
+     * @return  Executor, nie {@code null}
+     */
+    static Executor defaultExecutor() {
+        return DefaultExecutorHolder.EXECUTOR;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final class DefaultExecutorHolder {
+
+        private static final boolean VIRTUAL_THREADS;
+        private static final ExecutorService EXECUTOR;
+
+        static {
+            final ExecutorService virtualExecutor = createVirtualThreadExecutor();
+
+            VIRTUAL_THREADS = null != virtualExecutor;
+            EXECUTOR = VIRTUAL_THREADS ? virtualExecutor : createPlatformThreadExecutor();
+        }
+
+        private static ExecutorService createVirtualThreadExecutor() {
+            try {
+                final Method newVirtualThreadExecutor = Executors.class.getMethod(
+                        "newVirtualThreadPerTaskExecutor");
+
+                return (ExecutorService) newVirtualThreadExecutor.invoke(null);
+
+            } catch (ReflectiveOperationException | RuntimeException notSupported) {
+                // Java < 21 oder virtuelle Threads nicht verfügbar
+                return null;
+            }
+        }
+
+        private static ExecutorService createPlatformThreadExecutor() {
+            final AtomicInteger threadNumber = new AtomicInteger();
+
+            return Executors.newCachedThreadPool(task -> {
+                final Thread thread = new Thread(task,
+                        "office-async-" + threadNumber.incrementAndGet());
+
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+    }
+
+}
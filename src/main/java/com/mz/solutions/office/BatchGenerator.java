@@ -0,0 +1,699 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office;
+
+import com.mz.solutions.office.model.DataPage;
+import com.mz.solutions.office.result.ResultFactory;
+import com.mz.solutions.office.util.UniqueFileNameGenerator;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import static com.mz.solutions.office.resources.BatchGeneratorKeys.DUPLICATE_FILE_NAME;
+import static com.mz.solutions.office.resources.BatchGeneratorKeys.INVALID_FILE_NAME;
+import static com.mz.solutions.office.resources.MessageResources.formatMessage;
+
+/**
+ * Erzeugt aus einer Vorlage je {@link DataPage} ein eigenes Dokument (Serienbrief), parallel auf
+ * mehreren Threads.
+ *
+ * <p>Die Vorlage wird über eine {@link TemplateRegistry} nur einmal gelesen; jeder Thread
+ * verwendet eigene {@link OfficeDocument}-Instanzen. Die Dokumente werden entweder einzeln in ein
+ * Verzeichnis ({@link #writeToDirectory(Stream, Path)}) oder gesammelt in ein ZIP-Archiv
+ * ({@link #writeToZip(Stream, OutputStream)}) geschrieben.</p>
+ *
+ * <ul>
+ *  <li>Der Stream wird im aufrufenden Thread gelesen. Es werden höchstens
+ *      {@link #setMaxPendingDocuments(int)} Dokumente gleichzeitig angenommen; ist diese Grenze
+ *      erreicht, wartet das Lesen des Streams bis wieder ein Dokument fertig ist.</li>
+ *  <li>Die Namens-Funktion wird ebenfalls nur im aufrufenden Thread und in der Reihenfolge des
+ *      Streams aufgerufen. Ein {@link UniqueFileNameGenerator} kann daher direkt verwendet werden.
+ *      Doppelte Dateinamen werden nicht überschrieben, sondern als Fehler gemeldet.</li>
+ *  <li>Fehler bei einzelnen Dokumenten brechen den Vorgang nicht ab; diese werden dem
+ *      {@link Listener} gemeldet und in der {@link Summary} gezählt. Nur Fehler beim Schreiben des
+ *      ZIP-Archivs beenden den Vorgang.</li>
+ * </ul>
+ *
+ * <pre>
+ *  final UniqueFileNameGenerator fileNames = new UniqueFileNameGenerator("Brief_${KUNDE}.docx");
+ *
+ *  final BatchGenerator.Summary summary = BatchGenerator
+ *          .newBatch(factory, letterTemplate,
+ *                  page -&gt; fileNames.nextFileName(toFileNameMap(page)))
+ *          .setParallelism(8)
+ *          .writeToDirectory(customers.stream().map(this::toDataPage), outputDir);
+ * </pre>
+ *
+ * <p>Eine Instanz kann nacheinander für mehrere Vorgänge verwendet werden, jedoch nicht von
+ * mehreren Threads gleichzeitig.</p>
+ *
+ * @author  Riebe, Moritz   (moritz.riebe@mz-entwickler.de)
+ */
+@NotThreadSafe
+public final class BatchGenerator {
+
+    /**
+     * Erzeugt einen neuen Serien-Vorgang für die übergebene Vorlage.
+     *
+     * @param factory       Factory mit der die Vorlage geöffnet wird; muss Dokumente aus dem
+     *                      Speicher öffnen können
+     *
+     * @param template      Pfad zur Vorlage
+     *
+     * @param fileNaming    Liefert den Dateinamen (relativ zum Ziel) je {@link DataPage}
+     *
+     * @return              Neuer Vorgang mit Standard-Einstellungen
+     *
+     * @throws  IllegalArgumentException
+     *          Wenn die Factory Dokumente nur aus Dateien öffnen kann; siehe
+     *          {@link OfficeDocumentFactory#isInMemoryDocumentSupported()}.
+     */
+    public static BatchGenerator newBatch(
+            OfficeDocumentFactory factory,
+            Path template,
+            Function<? super DataPage, String> fileNaming)
+    {
+        Objects.requireNonNull(factory, "factory");
+
+        return newBatch(TemplateRegistry.newRegistry(factory, Long.MAX_VALUE), template, fileNaming);
+    }
+
+    /**
+     * Erzeugt einen neuen Serien-Vorgang für eine Vorlage aus einer bereits bestehenden
+     * {@link TemplateRegistry}.
+     *
+     * @param templates     Registry über welche die Vorlage geöffnet wird
+     *
+     * @param template      Pfad zur Vorlage
+     *
+     * @param fileNaming    Liefert den Dateinamen (relativ zum Ziel) je {@link DataPage}
+     *
+     * @return              Neuer Vorgang mit Standard-Einstellungen
+     */
+    public static BatchGenerator newBatch(
+            TemplateRegistry templates,
+            Path template,
+            Function<? super DataPage, String> fileNaming)
+    {
+        Objects.requireNonNull(templates, "templates");
+        Objects.requireNonNull(template, "template");
+        Objects.requireNonNull(fileNaming, "fileNaming");
+
+        return new BatchGenerator(templates, template, fileNaming);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private final TemplateRegistry templates;
+    private final Path template;
+    private final Function<? super DataPage, String> fileNaming;
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int maxPendingDocuments = 0;
+
+    @Nullable
+    private Executor executor = null;
+
+    private Listener listener = new Listener() { };
+
+    private BatchGenerator(
+            TemplateRegistry templates,
+            Path template,
+            Function<? super DataPage, String> fileNaming)
+    {
+        this.templates = templates;
+        this.template = template;
+        this.fileNaming = fileNaming;
+    }
+
+    /**
+     * Anzahl der Threads die (ohne eigenen {@link Executor}) Dokumente erzeugen; Voreinstellung
+     * ist die Anzahl der verfügbaren Prozessoren.
+     *
+     * @param parallelism   mindestens {@code 1}
+     *
+     * @return              diese Instanz
+     */
+    public BatchGenerator setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism < 1");
+        }
+
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Höchstanzahl angenommener, aber noch nicht geschriebener Dokumente. Begrenzt den
+     * Speicherverbrauch wenn der Stream schneller liefert als Dokumente erzeugt werden;
+     * Voreinstellung ist das Doppelte von {@link #setParallelism(int)}.
+     *
+     * @param maxPendingDocuments   mindestens {@code 1}
+     *
+     * @return                      diese Instanz
+     */
+    public BatchGenerator setMaxPendingDocuments(int maxPendingDocuments) {
+        if (maxPendingDocuments < 1) {
+            throw new IllegalArgumentException("maxPendingDocuments < 1");
+        }
+
+        this.maxPendingDocuments = maxPendingDocuments;
+        return this;
+    }
+
+    /**
+     * Verwendet einen eigenen {@link Executor} anstatt eines für den Vorgang angelegten
+     * Thread-Pools. Der Executor wird nicht beendet; {@link #setMaxPendingDocuments(int)} gilt
+     * weiterhin.
+     *
+     * @param executor      Executor oder {@code null} für einen eigenen Thread-Pool
+     *
+     * @return              diese Instanz
+     */
+    public BatchGenerator setExecutor(@Nullable Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Setzt den Empfänger für Fortschritt und Fehler.
+     *
+     * @param listener      Empfänger, darf nicht {@code null} sein
+     *
+     * @return              diese Instanz
+     */
+    public BatchGenerator setListener(Listener listener) {
+        this.listener = Objects.requireNonNull(listener, "listener");
+        return this;
+    }
+
+    /**
+     * Erzeugt alle Dokumente und legt diese einzeln im Verzeichnis ab. Fehlende Verzeichnisse
+     * werden angelegt, bestehende Dateien überschrieben.
+     *
+     * @param dataPages     Daten je Dokument
+     *
+     * @param directory     Ziel-Verzeichnis
+     *
+     * @return              Zusammenfassung des Vorgangs
+     *
+     * @throws  UncheckedIOException
+     *          Wenn das Ziel-Verzeichnis nicht angelegt werden kann.
+     */
+    public Summary writeToDirectory(Stream<? extends DataPage> dataPages, Path directory) {
+        Objects.requireNonNull(dataPages, "dataPages");
+        Objects.requireNonNull(directory, "directory");
+
+        final Path targetDirectory = directory.toAbsolutePath().normalize();
+
+        try {
+            Files.createDirectories(targetDirectory);
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+
+        return runBatch(dataPages, (fileName, document, dataPage) -> {
+            final Path outputFile = targetDirectory.resolve(fileName).normalize();
+
+            if (outputFile.startsWith(targetDirectory) == false
+                    || outputFile.equals(targetDirectory))
+            {
+                throw new IllegalArgumentException(formatMessage(INVALID_FILE_NAME,
+                        /* {0} */ fileName));
+            }
+
+            Files.createDirectories(outputFile.getParent());
+            document.generate(dataPage, ResultFactory.toFile(outputFile));
+        });
+    }
+
+    /**
+     * Erzeugt alle Dokumente und schreibt diese als Einträge in ein ZIP-Archiv. Die Reihenfolge
+     * der Einträge entspricht der Fertigstellung, nicht der des Streams.
+     *
+     * <p>Der Stream {@code zipOutput} wird abgeschlossen ({@link ZipOutputStream#finish()}),
+     * aber nicht geschlossen.</p>
+     *
+     * @param dataPages     Daten je Dokument
+     *
+     * @param zipOutput     Ziel des ZIP-Archives
+     *
+     * @return              Zusammenfassung des Vorgangs
+     *
+     * @throws  UncheckedIOException
+     *          Wenn das ZIP-Archiv nicht geschrieben werden kann; der Vorgang wird dann abgebrochen.
+     */
+    public Summary writeToZip(Stream<? extends DataPage> dataPages, OutputStream zipOutput) {
+        Objects.requireNonNull(dataPages, "dataPages");
+        Objects.requireNonNull(zipOutput, "zipOutput");
+
+        final ZipOutputStream zipStream = new ZipOutputStream(new NonClosingOutputStream(zipOutput));
+
+        // Dokumente sind bereits komprimiert; erneutes Komprimieren kostet nur Zeit
+        zipStream.setLevel(Deflater.NO_COMPRESSION);
+
+        final Summary summary = runBatch(dataPages, (fileName, document, dataPage) -> {
+            final String entryName = fileName.replace('\\', '/');
+
+            if (entryName.isEmpty() || entryName.startsWith("/") || entryName.endsWith("/")
+                    || ("/" + entryName + "/").contains("/../"))
+            {
+                throw new IllegalArgumentException(formatMessage(INVALID_FILE_NAME,
+                        /* {0} */ fileName));
+            }
+
+            final ByteArrayOutputStream documentData = new ByteArrayOutputStream(64 * 1024);
+            document.generate(dataPage, ResultFactory.toStream(documentData));
+
+            synchronized (zipStream) {
+                try {
+                    zipStream.putNextEntry(new ZipEntry(entryName));
+                    documentData.writeTo(zipStream);
+                    zipStream.closeEntry();
+
+                } catch (IOException ioException) {
+                    throw new ArchiveWriteException(ioException);
+                }
+            }
+        });
+
+        try {
+            zipStream.finish();
+            zipStream.flush();
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+
+        return summary;
+    }
+
+    /**
+     * Erzeugt alle Dokumente und schreibt diese als Einträge in ein ZIP-Archiv; die Datei wird
+     * angelegt oder überschrieben.
+     *
+     * @param dataPages     Daten je Dokument
+     *
+     * @param zipFile       Ziel-Datei des ZIP-Archives
+     *
+     * @return              Zusammenfassung des Vorgangs
+     *
+     * @see #writeToZip(Stream, OutputStream)
+     */
+    public Summary writeToZip(Stream<? extends DataPage> dataPages, Path zipFile) {
+        Objects.requireNonNull(zipFile, "zipFile");
+
+        try (OutputStream zipOutput = Files.newOutputStream(zipFile)) {
+            return writeToZip(dataPages, zipOutput);
+
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private Summary runBatch(Stream<? extends DataPage> dataPages, DocumentWriter documentWriter) {
+        final int maxPending = maxPendingDocuments > 0
+                ? maxPendingDocuments
+                : Math.max(2, parallelism * 2);
+
+        final ExecutorService ownExecutor = null == executor
+                ? Executors.newFixedThreadPool(parallelism, new BatchThreadFactory())
+                : null;
+
+        final Executor usedExecutor = null == ownExecutor ? executor : ownExecutor;
+        final BatchRun batchRun = new BatchRun(maxPending, documentWriter);
+
+        try {
+            final Set<String> usedFileNames = new HashSet<>();
+            final Iterator<? extends DataPage> pageIterator = dataPages.iterator();
+
+            while (batchRun.isAborted() == false && pageIterator.hasNext()) {
+                final DataPage dataPage = pageIterator.next();
+
+                final String fileName;
+                try {
+                    fileName = nextFileName(dataPage);
+
+                } catch (RuntimeException namingFailed) {
+                    batchRun.documentFailed(dataPage, null, namingFailed);
+                    continue;
+                }
+
+                // Wie bei UniqueFileNameGenerator ohne Beachtung der Groß-/Kleinschreibung
+                if (usedFileNames.add(fileName.toUpperCase(Locale.ROOT)) == false) {
+                    batchRun.documentFailed(dataPage, fileName, new IllegalArgumentException(
+                            formatMessage(DUPLICATE_FILE_NAME, /* {0} */ fileName)));
+                    continue;
+                }
+
+                try {
+                    batchRun.pendingDocuments.acquire();
+
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+
+                try {
+                    usedExecutor.execute(() -> batchRun.writeDocument(dataPage, fileName));
+
+                } catch (RejectedExecutionException rejected) {
+                    batchRun.pendingDocuments.release();
+                    batchRun.documentFailed(dataPage, fileName, rejected);
+                }
+            }
+
+            // Warten bis alle angenommenen Dokumente geschrieben wurden
+            batchRun.pendingDocuments.acquireUninterruptibly(maxPending);
+            batchRun.pendingDocuments.release(maxPending);
+
+        } finally {
+            if (null != ownExecutor) {
+                ownExecutor.shutdown();
+            }
+        }
+
+        final Summary summary = batchRun.toSummary();
+
+        final IOException abortCause = batchRun.abortCause.get();
+        if (null != abortCause) {
+            throw new UncheckedIOException(abortCause);
+        }
+
+        listener.batchFinished(summary);
+        return summary;
+    }
+
+    private String nextFileName(DataPage dataPage) {
+        final String fileName = fileNaming.apply(dataPage);
+
+        if (null == fileName || fileName.trim().isEmpty()) {
+            throw new IllegalArgumentException(formatMessage(INVALID_FILE_NAME,
+                    /* {0} */ String.valueOf(fileName)));
+        }
+
+        return fileName;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Zustand eines einzelnen Vorgangs ({@code writeTo...} Aufruf).
+     */
+    private final class BatchRun {
+
+        private final Semaphore pendingDocuments;
+        private final DocumentWriter documentWriter;
+
+        /** Bereits geöffnete, derzeit ungenutzte Dokumente; je Thread wird eines verwendet. */
+        private final Queue<OfficeDocument> idleDocuments = new ConcurrentLinkedQueue<>();
+
+        private final AtomicLong documentsWritten = new AtomicLong();
+        private final AtomicLong documentsFailed = new AtomicLong();
+        private final AtomicReference<IOException> abortCause = new AtomicReference<>();
+
+        private final long startNanos = System.nanoTime();
+
+        private BatchRun(int maxPending, DocumentWriter documentWriter) {
+            this.pendingDocuments = new Semaphore(maxPending);
+            this.documentWriter = documentWriter;
+        }
+
+        private boolean isAborted() {
+            return null != abortCause.get();
+        }
+
+        private void writeDocument(DataPage dataPage, String fileName) {
+            try {
+                if (isAborted()) {
+                    return;
+                }
+
+                OfficeDocument document = idleDocuments.poll();
+                if (null == document) {
+                    document = templates.openDocument(template);
+                }
+
+                documentWriter.write(fileName, document, dataPage);
+                idleDocuments.add(document);
+
+                final long written = documentsWritten.incrementAndGet();
+                listener.documentWritten(fileName, written, documentsPerSecond(written));
+
+            } catch (ArchiveWriteException archiveFailed) {
+                abortCause.compareAndSet(null, archiveFailed.getCause());
+                documentFailed(dataPage, fileName, archiveFailed.getCause());
+
+            } catch (RuntimeException | IOException failed) {
+                documentFailed(dataPage, fileName, failed);
+
+            } finally {
+                pendingDocuments.release();
+            }
+        }
+
+        private void documentFailed(DataPage dataPage, @Nullable String fileName, Throwable error) {
+            documentsFailed.incrementAndGet();
+            listener.documentFailed(dataPage, fileName, error);
+        }
+
+        private double documentsPerSecond(long documents) {
+            final long elapsedNanos = Math.max(1L, System.nanoTime() - startNanos);
+            return documents * 1_000_000_000D / elapsedNanos;
+        }
+
+        private Summary toSummary() {
+            return new Summary(
+                    documentsWritten.get(),
+                    documentsFailed.get(),
+                    Duration.ofNanos(System.nanoTime() - startNanos));
+        }
+
+    }
+
+    @FunctionalInterface
+    private interface DocumentWriter {
+
+        public void write(String fileName, OfficeDocument document, DataPage dataPage)
+                throws IOException;
+
+    }
+
+    /** Fehler beim Schreiben in das gemeinsame ZIP-Archiv; beendet den gesamten Vorgang. */
+    private static final class ArchiveWriteException extends RuntimeException {
+
+        private ArchiveWriteException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+
+    }
+
+    private static final class BatchThreadFactory implements ThreadFactory {
+
+        private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+        private final int poolNumber = POOL_NUMBER.incrementAndGet();
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            final Thread thread = new Thread(task,
+                    "office-batch-" + poolNumber + "-" + threadNumber.incrementAndGet());
+
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+    private static final class NonClosingOutputStream extends OutputStream {
+
+        private final OutputStream out;
+
+        private NonClosingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Empfänger für Fortschritt und Fehler eines Serien-Vorgangs.
+     *
+     * <p>Die Methoden werden von den erzeugenden Threads aufgerufen (auch gleichzeitig) und
+     * müssen daher Thread-sicher implementiert sein. Alle Methoden sind leer vorbelegt.</p>
+     */
+    public static interface Listener {
+
+        /**
+         * Ein Dokument wurde erzeugt und geschrieben.
+         *
+         * @param fileName              Dateiname des Dokumentes
+         *
+         * @param documentsWritten      Anzahl bisher geschriebener Dokumente
+         *
+         * @param documentsPerSecond    Durchsatz seit Beginn des Vorgangs
+         */
+        public default void documentWritten(
+                String fileName, long documentsWritten, double documentsPerSecond) { }
+
+        /**
+         * Ein Dokument konnte nicht erzeugt oder geschrieben werden; der Vorgang wird fortgesetzt.
+         *
+         * @param dataPage      Daten des Dokumentes
+         *
+         * @param fileName      Dateiname oder {@code null} wenn bereits die Namens-Funktion
+         *                      fehlgeschlagen ist
+         *
+         * @param error         Ursache
+         */
+        public default void documentFailed(
+                DataPage dataPage, @CheckForNull String fileName, Throwable error) { }
+
+        /**
+         * Alle Dokumente des Vorgangs wurden verarbeitet.
+         *
+         * @param summary       Zusammenfassung des Vorgangs
+         */
+        public default void batchFinished(Summary summary) { }
+
+    }
+
+    /**
+     * Zusammenfassung eines abgeschlossenen Serien-Vorgangs.
+     */
+    @Immutable
+    public static final class Summary {
+
+        private final long documentsWritten;
+        private final long documentsFailed;
+        private final Duration elapsed;
+
+        private Summary(long documentsWritten, long documentsFailed, Duration elapsed) {
+            this.documentsWritten = documentsWritten;
+            this.documentsFailed = documentsFailed;
+            this.elapsed = elapsed;
+        }
+
+        /**
+         * Anzahl erfolgreich geschriebener Dokumente.
+         *
+         * @return  Anzahl
+         */
+        public long getDocumentsWritten() {
+            return documentsWritten;
+        }
+
+        /**
+         * Anzahl der Dokumente die nicht erzeugt oder geschrieben werden konnten.
+         *
+         * @return  Anzahl
+         */
+        public long getDocumentsFailed() {
+            return documentsFailed;
+        }
+
+        /**
+         * Dauer des gesamten Vorgangs.
+         *
+         * @return  Dauer
+         */
+        public Duration getElapsed() {
+            return elapsed;
+        }
+
+        /**
+         * Durchsatz geschriebener Dokumente je Sekunde.
+         *
+         * @return  Dokumente je Sekunde
+         */
+        public double getDocumentsPerSecond() {
+            final long elapsedNanos = Math.max(1L, elapsed.toNanos());
+            return documentsWritten * 1_000_000_000D / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Summary{" + "documentsWritten=" + documentsWritten
+                    + ", documentsFailed=" + documentsFailed
+                    + ", elapsed=" + elapsed + '}';
+        }
+
+    }
+
+}
@@ -0,0 +1,568 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office;
+
+import com.mz.solutions.office.model.images.ImageResource;
+import com.mz.solutions.office.model.images.ImageResourceType;
+import com.mz.solutions.office.model.images.ImageValue;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.CheckForNull;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Intern - Verkleinert und komprimiert JPEG/PNG Bild-Resourcen vor dem Einbetten ins Dokument.
+ *
+ * <p>Anhand der Anzeige-Größe eines {@link ImageValue} (in Millimeter) und der eingestellten
+ * Ziel-Auflösung ({@link OfficeProperty#IMG_RESAMPLE_DPI}) wird die maximal sinnvolle
+ * Pixel-Größe bestimmt. Ist das Bild größer, wird es (Seitenverhältnis beibehaltend) herunter
+ * skaliert und im selben Format neu kodiert. Das Ergebnis wird nur verwendet, wenn es kleiner
+ * ist als die Original-Daten. Bilder die nicht größer sind, werden nicht neu kodiert.</p>
+ *
+ * <p>Beim Neu-Kodieren gehen Metadaten verloren; Bilder mit eingebettetem Farbprofil (ICC) oder
+ * mit einer Drehung laut EXIF-Orientierung bleiben daher unverändert.</p>
+ *
+ * <p>Ergebnisse werden prozessweit anhand von (Inhalts-Hash, Ziel-Größe) zwischengespeichert,
+ * damit wiederkehrende Bilder (z.B. Logos in Serienbriefen) nur einmal verarbeitet werden; der
+ * Zwischenspeicher ist über die Summe der Bytes begrenzt. Bleiben die Original-Daten
+ * unverändert, wird nur dies vermerkt, nicht die Daten selbst.
+ * Kann ein Bild nicht gelesen oder geschrieben werden, bleiben die Original-Daten
+ * unverändert.</p>
+ *
+ * @author  Riebe, Moritz   (moritz.riebe@mz-entwickler.de)
+ */
+@ThreadSafe
+final class ImageResampler {
+
+    private static final Logger LOG = Logger.getLogger(ImageResampler.class.getName());
+
+    private static final double MILLIMETERS_PER_INCH = 25.4D;
+
+    private static final float JPEG_QUALITY = 0.85F;
+
+    /** Obergrenze für die Summe der zwischengespeicherten (verkleinerten) Bild-Daten. */
+    private static final long MAX_CACHE_BYTES = 32L * 1024L * 1024L;
+
+    private static final String MIME_JPEG = "image/jpeg";
+    private static final String MIME_PNG = "image/png";
+
+    /** Eintrag im Zwischenspeicher für "Original-Daten unverändert verwenden". */
+    private static final byte[] KEEP_ORIGINAL = new byte[0];
+
+    /** Für die Begrenzung angerechnete Größe von {@link #KEEP_ORIGINAL} samt Schlüssel. */
+    private static final int KEEP_ORIGINAL_BYTES = 64;
+
+    private static final int EXIF_TAG_ORIENTATION = 0x0112;
+
+    private static final byte[] JPEG_APP1_EXIF = "Exif\0\0".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] JPEG_APP2_ICC = "ICC_PROFILE\0".getBytes(StandardCharsets.US_ASCII);
+
+    /** Prozessweiter Zwischenspeicher (LRU); Zugriff nur synchronisiert über sich selbst. */
+    private static final Map<CacheKey, byte[]> CACHE = new LinkedHashMap<>(16, 0.75F, true);
+
+    /** Summe der Bytes aller Einträge; Zugriff nur synchronisiert über {@link #CACHE}. */
+    private static long cachedBytes = 0L;
+
+    private ImageResampler() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Bestimmt die Ziel-Größe in Pixel für das übergebene Bild.
+     *
+     * @param imageValue            Bild mit Anzeige-Größe
+     *
+     * @param targetDpi             Ziel-Auflösung; {@code 0} deaktiviert die Verarbeitung
+     *
+     * @param useValueDimension     {@code true}, wenn die Anzeige-Größe aus dem
+     *                              {@code imageValue} im Dokument tatsächlich angewendet wird;
+     *                              andernfalls ist die Anzeige-Größe unbekannt und es wird
+     *                              nichts verarbeitet
+     *
+     * @return                      Ziel-Größe oder {@code null}, wenn das Bild unverändert
+     *                              eingebettet werden soll
+     */
+    @CheckForNull
+    public static Target targetFor(ImageValue imageValue, int targetDpi, boolean useValueDimension) {
+        if (targetDpi <= 0 || useValueDimension == false) {
+            return null;
+        }
+
+        final int widthPx = toPixels(imageValue.getWidth(), targetDpi);
+        final int heightPx = toPixels(imageValue.getHeight(), targetDpi);
+
+        return new Target(imageValue.getImageResource(), widthPx, heightPx);
+    }
+
+    private static int toPixels(double millimeters, int dpi) {
+        return Math.max(1, (int) Math.ceil(millimeters / MILLIMETERS_PER_INCH * dpi));
+    }
+
+    /**
+     * Verkleinert/ Komprimiert die Bild-Daten passend zur Ziel-Größe.
+     *
+     * @param imageData     Original-Daten der Bild-Resource
+     *
+     * @param imageType     Bild-Format der Daten; nur JPEG und PNG werden verarbeitet
+     *
+     * @param target        Ziel-Größe, wenn {@code null} werden die Daten unverändert
+     *                      zurück gegeben
+     *
+     * @return              Verarbeitete Daten oder {@code imageData} selbst, wenn diese nicht
+     *                      verkleinert werden müssen oder können
+     */
+    public static byte[] process(byte[] imageData, ImageResourceType imageType,
+            @CheckForNull Target target)
+    {
+        if (null == target || null == imageData || imageData.length == 0) {
+            return imageData;
+        }
+
+        final String formatName = formatNameOf(imageType);
+        if (null == formatName) {
+            return imageData;
+        }
+
+        final CacheKey cacheKey = new CacheKey(digest(imageData), target.widthPx, target.heightPx);
+        synchronized (CACHE) {
+            final byte[] cachedData = CACHE.get(cacheKey);
+            if (KEEP_ORIGINAL == cachedData) {
+                return imageData;
+            }
+            if (null != cachedData) {
+                return cachedData;
+            }
+        }
+
+        byte[] resultData;
+        try {
+            resultData = resample(imageData, formatName, target.widthPx, target.heightPx);
+        } catch (IOException | RuntimeException ex) {
+            LOG.log(Level.FINE, "Image resampling failed, embedding original data", ex);
+            resultData = null;
+        }
+
+        if (null == resultData || resultData.length >= imageData.length) {
+            // Die Daten des Aufrufers werden nicht im prozessweiten Zwischenspeicher gehalten
+            putIntoCache(cacheKey, KEEP_ORIGINAL);
+            return imageData;
+        }
+
+        putIntoCache(cacheKey, resultData);
+
+        return resultData;
+    }
+
+    /**
+     * Gibt an ob für die Bild-Daten und Ziel-Größe bereits ein Ergebnis zwischengespeichert ist;
+     * nur für Tests.
+     */
+    static boolean isCached(byte[] imageData, Target target) {
+        final CacheKey cacheKey = new CacheKey(digest(imageData), target.widthPx, target.heightPx);
+
+        synchronized (CACHE) {
+            return CACHE.containsKey(cacheKey);
+        }
+    }
+
+    private static void putIntoCache(CacheKey cacheKey, byte[] resultData) {
+        if (resultData.length > MAX_CACHE_BYTES) {
+            return;
+        }
+
+        synchronized (CACHE) {
+            final byte[] replacedData = CACHE.put(cacheKey, resultData);
+            if (null != replacedData) {
+                cachedBytes -= weightOf(replacedData);
+            }
+
+            cachedBytes += weightOf(resultData);
+
+            final Iterator<byte[]> eldestData = CACHE.values().iterator();
+            while (cachedBytes > MAX_CACHE_BYTES) {
+                cachedBytes -= weightOf(eldestData.next());
+                eldestData.remove();
+            }
+        }
+    }
+
+    private static long weightOf(byte[] cachedData) {
+        return KEEP_ORIGINAL == cachedData ? KEEP_ORIGINAL_BYTES : cachedData.length;
+    }
+
+    @CheckForNull
+    private static String formatNameOf(ImageResourceType imageType) {
+        if (null == imageType || null == imageType.getMimeType()) {
+            return null;
+        }
+
+        final String mimeType = imageType.getMimeType().trim().toLowerCase(Locale.ENGLISH);
+        switch (mimeType) {
+            case MIME_JPEG: return "jpeg";
+            case MIME_PNG:  return "png";
+            default:        return null;
+        }
+    }
+
+    /**
+     * Verkleinert die Bild-Daten; {@code null}, wenn das Original zu verwenden ist.
+     */
+    @CheckForNull
+    private static byte[] resample(byte[] imageData, String formatName, int maxWidth, int maxHeight)
+            throws IOException
+    {
+        final boolean isJpeg = "jpeg".equals(formatName);
+
+        if (isJpeg ? hasJpegProfileOrRotation(imageData) : hasPngProfile(imageData)) {
+            return null;
+        }
+
+        final BufferedImage sourceImage;
+        final double scale;
+
+        try (ImageInputStream imageIn = ImageIO.createImageInputStream(
+                new ByteArrayInputStream(imageData)))
+        {
+            final Iterator<ImageReader> readers = ImageIO.getImageReaders(imageIn);
+            if (readers.hasNext() == false) {
+                return null; // kein passender ImageReader
+            }
+
+            final ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageIn, true, true);
+
+                // Die Größe steht im Header; dekodiert wird nur, wenn verkleinert werden muss
+                final int srcWidth = reader.getWidth(0);
+                final int srcHeight = reader.getHeight(0);
+
+                scale = Math.min((double) maxWidth / srcWidth, (double) maxHeight / srcHeight);
+                if (scale >= 1.0D) {
+                    return null;
+                }
+
+                sourceImage = reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        final int srcWidth = sourceImage.getWidth();
+        final int srcHeight = sourceImage.getHeight();
+        final int imageType = isJpeg ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+
+        final int dstWidth = Math.max(1, (int) Math.round(srcWidth * scale));
+        final int dstHeight = Math.max(1, (int) Math.round(srcHeight * scale));
+
+        final BufferedImage targetImage = scaleDown(sourceImage, dstWidth, dstHeight, imageType);
+
+        final ByteArrayOutputStream byteOut = new ByteArrayOutputStream(imageData.length / 2);
+        if (isJpeg) {
+            writeJpeg(targetImage, byteOut);
+        } else if (ImageIO.write(targetImage, formatName, byteOut) == false) {
+            return null;
+        }
+
+        return byteOut.toByteArray();
+    }
+
+    /**
+     * Skaliert schrittweise (je Schritt max. auf die Hälfte) herunter, da ein einzelner
+     * bilinearer Schritt bei starker Verkleinerung sichtbare Treppeneffekte erzeugt.
+     */
+    private static BufferedImage scaleDown(
+            BufferedImage sourceImage, int dstWidth, int dstHeight, int imageType)
+    {
+        BufferedImage current = sourceImage;
+        int width = sourceImage.getWidth();
+        int height = sourceImage.getHeight();
+
+        do {
+            width = Math.max(dstWidth, width / 2);
+            height = Math.max(dstHeight, height / 2);
+
+            final BufferedImage step = new BufferedImage(width, height, imageType);
+            final Graphics2D graphics = step.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                        RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING,
+                        RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+
+            current = step;
+        } while (width != dstWidth || height != dstHeight);
+
+        return current;
+    }
+
+    private static void writeJpeg(BufferedImage image, ByteArrayOutputStream byteOut)
+            throws IOException
+    {
+        final Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (writers.hasNext() == false) {
+            throw new IOException("No JPEG ImageWriter available");
+        }
+
+        final ImageWriter writer = writers.next();
+        try (ImageOutputStream imageOut = ImageIO.createImageOutputStream(byteOut)) {
+            final ImageWriteParam writeParam = writer.getDefaultWriteParam();
+            writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            writeParam.setCompressionQuality(JPEG_QUALITY);
+
+            writer.setOutput(imageOut);
+            writer.write(null, new IIOImage(image, null, null), writeParam);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Sucht vor den Bild-Daten (SOS) nach einem ICC-Profil (APP2) oder einer EXIF-Orientierung
+     * (APP1) ungleich "normal"; beschädigte Segmente gelten ebenfalls als Treffer.
+     */
+    private static boolean hasJpegProfileOrRotation(byte[] data) {
+        int offset = 2; // nach SOI
+
+        while (offset + 4 <= data.length && (data[offset] & 0xFF) == 0xFF) {
+            final int marker = data[offset + 1] & 0xFF;
+            if (marker == 0xDA || marker == 0xD9) {
+                return false; // SOS bzw. EOI
+            }
+
+            final int segmentLength = readUnsignedShort(data, offset + 2, true);
+            final int segmentStart = offset + 4;
+            final int segmentEnd = offset + 2 + segmentLength;
+
+            if (segmentLength < 2 || segmentEnd > data.length) {
+                return true;
+            }
+
+            if (marker == 0xE2 && startsWith(data, segmentStart, JPEG_APP2_ICC)) {
+                return true;
+            }
+
+            if (marker == 0xE1 && startsWith(data, segmentStart, JPEG_APP1_EXIF)
+                    && exifOrientation(data, segmentStart + JPEG_APP1_EXIF.length, segmentEnd) > 1)
+            {
+                return true;
+            }
+
+            offset = segmentEnd;
+        }
+
+        return false;
+    }
+
+    /**
+     * Liest die Orientierung aus dem ersten IFD des TIFF-Headers; {@code 0}, wenn nicht vorhanden.
+     */
+    private static int exifOrientation(byte[] data, int tiffStart, int tiffEnd) {
+        if (tiffStart + 8 > tiffEnd) {
+            return 0;
+        }
+
+        final boolean bigEndian = data[tiffStart] == 'M';
+        final long ifdOffset = readUnsignedInt(data, tiffStart + 4, bigEndian);
+
+        if (ifdOffset < 8 || ifdOffset + 2 > tiffEnd - tiffStart) {
+            return 0;
+        }
+
+        final int ifdStart = tiffStart + (int) ifdOffset;
+        final int entryCount = readUnsignedShort(data, ifdStart, bigEndian);
+
+        for (int entryIndex = 0; entryIndex < entryCount; entryIndex++) {
+            final int entryStart = ifdStart + 2 + 12 * entryIndex;
+            if (entryStart + 12 > tiffEnd) {
+                break;
+            }
+
+            if (readUnsignedShort(data, entryStart, bigEndian) == EXIF_TAG_ORIENTATION) {
+                return readUnsignedShort(data, entryStart + 8, bigEndian);
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Sucht vor den Bild-Daten (IDAT) nach einem ICC-Profil ({@code iCCP}) oder EXIF-Daten
+     * ({@code eXIf}).
+     */
+    private static boolean hasPngProfile(byte[] data) {
+        long offset = 8; // nach der Signatur
+
+        while (offset + 8 <= data.length) {
+            final long chunkLength = readUnsignedInt(data, (int) offset, true);
+            final String chunkType = new String(
+                    data, (int) offset + 4, 4, StandardCharsets.US_ASCII);
+
+            if ("iCCP".equals(chunkType) || "eXIf".equals(chunkType)) {
+                return true;
+            }
+
+            if ("IDAT".equals(chunkType)) {
+                return false;
+            }
+
+            offset += 12 + chunkLength; // Länge, Typ, Daten, CRC
+        }
+
+        return false;
+    }
+
+    private static boolean startsWith(byte[] data, int offset, byte[] prefix) {
+        if (offset + prefix.length > data.length) {
+            return false;
+        }
+
+        for (int index = 0; index < prefix.length; index++) {
+            if (data[offset + index] != prefix[index]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static int readUnsignedShort(byte[] data, int offset, boolean bigEndian) {
+        final int first = data[offset] & 0xFF;
+        final int second = data[offset + 1] & 0xFF;
+
+        return bigEndian ? (first << 8) | second : (second << 8) | first;
+    }
+
+    private static long readUnsignedInt(byte[] data, int offset, boolean bigEndian) {
+        final long high = readUnsignedShort(data, offset + (bigEndian ? 0 : 2), bigEndian);
+        final long low = readUnsignedShort(data, offset + (bigEndian ? 2 : 0), bigEndian);
+
+        return (high << 16) | low;
+    }
+
+    private static byte[] digest(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex); // SHA-256 ist von jeder JRE zu unterstützen
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Ziel-Größe eines Bildes in Pixel, gebunden an die Bild-Resource.
+     *
+     * <p>Dient gleichzeitig als Schlüssel für die dokumenten-lokalen Resource-Caches: die selbe
+     * Resource (Identität) in unterschiedlichen Anzeige-Größen wird getrennt eingebettet.</p>
+     */
+    static final class Target {
+
+        private final ImageResource imageResource;
+        private final int widthPx, heightPx;
+
+        private Target(ImageResource imageResource, int widthPx, int heightPx) {
+            this.imageResource = imageResource;
+            this.widthPx = widthPx;
+            this.heightPx = heightPx;
+        }
+
+        int getWidthPx() {
+            return widthPx;
+        }
+
+        int getHeightPx() {
+            return heightPx;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(imageResource) * 31 * 31 + widthPx * 31 + heightPx;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof Target == false) {
+                return false;
+            }
+
+            final Target other = (Target) obj;
+            return imageResource == other.imageResource
+                    && widthPx == other.widthPx && heightPx == other.heightPx;
+        }
+
+    }
+
+    private static final class CacheKey {
+
+        private final byte[] contentHash;
+        private final int widthPx, heightPx;
+
+        public CacheKey(byte[] contentHash, int widthPx, int heightPx) {
+            this.contentHash = contentHash;
+            this.widthPx = widthPx;
+            this.heightPx = heightPx;
+        }
+
+        @Override
+        public int hashCode() {
+            return (Arrays.hashCode(contentHash) * 31 + widthPx) * 31 + heightPx;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof CacheKey == false) {
+                return false;
+            }
+
+            final CacheKey other = (CacheKey) obj;
+            return widthPx == other.widthPx && heightPx == other.heightPx
+                    && Arrays.equals(contentHash, other.contentHash);
+        }
+
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office;
+
+import com.mz.solutions.office.model.images.ImageResourceType;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Intern - Vorberechnete Zuordnung fremder {@link ImageResourceType}'s auf die Bild-Formate einer
+ * Office-Implementierung (z.B. {@link MicrosoftImageResourceType}).
+ *
+ * <p>Je Implementierung existiert genau eine Instanz mit den klein geschriebenen MIME-Types und
+ * Dateinamens-Erweiterungen als Schlüssel. Bei mehreren Treffern gewinnt, wie zuvor bei der
+ * linearen Suche, das in der Aufzählung zuerst deklarierte Format. Bereits aufgelöste fremde
+ * Typen werden zusätzlich (schwach referenziert) gemerkt.</p>
+ *
+ * @author  Riebe, Moritz   (moritz.riebe@mz-entwickler.de)
+ */
+@ThreadSafe
+final class ImageResourceTypeLookup {
+
+    private static final Map<Class<?>, ImageResourceTypeLookup> LOOKUPS = new ConcurrentHashMap<>();
+
+    /**
+     * Liefert die (einmalig berechnete) Zuordnungstabelle für die Bild-Formate der übergebenen
+     * Implementierung.
+     *
+     * @param <T>           Aufzählung der Bild-Formate einer Office-Implementierung
+     * @param implTypes     Klasse der Aufzählung
+     * @return              Zuordnungstabelle, nie {@code null}
+     */
+    public static <T extends Enum<T> & ImageResourceType> ImageResourceTypeLookup of(
+            Class<T> implTypes)
+    {
+        return LOOKUPS.computeIfAbsent(implTypes,
+                key -> new ImageResourceTypeLookup(implTypes.getEnumConstants()));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private final Map<String, ImageResourceType> byMimeType = new HashMap<>();
+    private final Map<String, Integer> byExtension = new HashMap<>();
+    private final ImageResourceType[] implTypes;
+
+    /** Bereits aufgelöste fremde Typen; leeres Optional wenn es kein passendes Format gibt. */
+    private final Map<ImageResourceType, Optional<ImageResourceType>> memo =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private ImageResourceTypeLookup(ImageResourceType[] implTypes) {
+        this.implTypes = implTypes;
+
+        for (int index = 0; index < implTypes.length; index++) {
+            final ImageResourceType implType = implTypes[index];
+
+            byMimeType.putIfAbsent(normalize(implType.getMimeType()), implType);
+
+            for (String extension : implType.getFileNameExtensions()) {
+                byExtension.putIfAbsent(normalize(extension), index);
+            }
+        }
+    }
+
+    private static String normalize(String value) {
+        return (null == value) ? "" : value.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Sucht zum übergebenen Bild-Format das passende Format der Implementierung; zuerst anhand
+     * des MIME-Types, danach anhand der Dateinamens-Erweiterungen.
+     *
+     * @param mimeType      Im Daten-Modell übergebener MIME-Type.
+     * @return              Passendes Format der Implementierung, ansonsten {@code mimeType}.
+     */
+    public ImageResourceType convert(ImageResourceType mimeType) {
+        Optional<ImageResourceType> result = memo.get(mimeType);
+
+        if (null == result) {
+            result = Optional.ofNullable(lookup(mimeType));
+            memo.put(mimeType, result);
+        }
+
+        return result.orElse(mimeType);
+    }
+
+    private ImageResourceType lookup(ImageResourceType mimeType) {
+        final ImageResourceType byMime = byMimeType.get(normalize(mimeType.getMimeType()));
+        if (null != byMime) {
+            return byMime;
+        }
+
+        // Bei mehreren passenden Erweiterungen gewinnt das zuerst deklarierte Format
+        int firstIndex = Integer.MAX_VALUE;
+        for (String extension : mimeType.getFileNameExtensions()) {
+            final Integer index = byExtension.get(normalize(extension));
+            if (null != index && index < firstIndex) {
+                firstIndex = index;
+            }
+        }
+
+        return (firstIndex == Integer.MAX_VALUE) ? null : implTypes[firstIndex];
+    }
+
+}
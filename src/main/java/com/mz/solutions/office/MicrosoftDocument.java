@@ -56,16 +56,22 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.StringTokenizer;
 import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import javax.annotation.Nullable;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
@@ -86,6 +92,20 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
                     "w:body", "w:comment", "w:docPartBody", "w:endnote",
                     "w:footnote", "w:ftr", "w:hdr", "w:tc"));
     
+    /** Relationship-Typ für eingebettete und externe Bilder. */
+    private static final String REL_TYPE_IMAGE =
+            "http://schemas.openxmlformats.org/officeDocument/2006/relationships/image";
+    
+    /** Relationship-Typ der Nummerierungen; nur für zusammengeführte Dokumente benötigt. */
+    private static final String REL_TYPE_NUMBERING =
+            "http://schemas.openxmlformats.org/officeDocument/2006/relationships/numbering";
+    
+    private static final String PART_NEW_NUMBERING = "word/numbering.xml";
+    
+    private static final String EMPTY_NUMBERING_XML =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+            + "<w:numbering xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/main\"/>";
+    
     ////////////////////////////////////////////////////////////////////////////////////////////////
     
     /**
@@ -100,17 +120,39 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
     
     /** Speichert nur für den Ersetzungsvorgang den Zuordnung zu den Dateien. */
     private MicrosoftDocumentContentTypes contentTypes;
+    
+    /** Index der Relationships vom Hauptdokument; nur während des Ersetzungsvorganges. */
+    private MicrosoftDocumentRelationships relationships;
 
-    /** Interceptor-Context für Lazy-Callbacks, wird bei jedem Platzhaler neu initialisiert. */
-    private MyInterceptionContext interceptionContext = new MyInterceptionContext();
+    /**
+     * Interceptor-Context für Lazy-Callbacks, wird bei jedem Platzhaler neu initialisiert; je
+     * Thread, da Kopf-/Fußzeilen gleichzeitig befüllt werden können.
+     */
+    private final ThreadLocal<MyInterceptionContext> interceptionContext =
+            ThreadLocal.withInitial(MyInterceptionContext::new);
     
     /** Zählt die Anzahl der eingefügten Bilder; muss vor Ersetzungsvorgang zurückgesetzt werden. */
-    private volatile int imageCounter = 0;
-    private volatile Map<ImageResource, Object[]> cacheImageResources = new IdentityHashMap<>();
+    private final AtomicInteger imageCounter = new AtomicInteger(0);
+    
+    /**
+     * Sperre für die von allen Teilen gemeinsam verwendeten Content-Types, Relationships,
+     * eingebetteten Bilder und Dateien im Container.
+     */
+    private final Object registryLock = new Object();
+    
+    /**
+     * Bereits eingebettete Bild-Resourcen; Schlüssel ist die {@link ImageResource} selbst oder,
+     * wenn Bilder verkleinert werden, das {@link ImageResampler.Target} (Resource + Ziel-Größe).
+     */
+    private final Map<Object, Object[]> cacheImageResources = new HashMap<>();
     
     public MicrosoftDocument(OfficeDocumentFactory factory, Path document) {
         super(factory, document);
     }
+    
+    public MicrosoftDocument(OfficeDocumentFactory factory, ZIPDocumentFile document) {
+        super(factory, document);
+    }
 
     @Override
     protected String getImplementedOfficeName() {
@@ -146,10 +188,7 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
      * @return      bei {@code true} einfügen
      */
     private boolean needToInsertPageBreak() {
-        Boolean doInsertPageBreaks = myOfficeFactory
-                .getProperty(MicrosoftProperty.INS_HARD_PAGE_BREAKS);
-        
-        return Boolean.TRUE.equals(doInsertPageBreaks);
+        return getRenderSettings().insertHardPageBreaks;
     }
     
     /**
@@ -159,20 +198,21 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
      * @return  {@code true}, dann nutz {@code w:drawing} soweit wie möglich.
      */
     private boolean useDrawingElementOverVShape() {
-        final Boolean drawingOverVShape = myOfficeFactory.getProperty(
-                MicrosoftProperty.USE_DRAWING_OVER_VML);
-        
-        return Boolean.TRUE.equals(drawingOverVShape);
+        return getRenderSettings().useDrawingOverVml;
     }
 
     @Override
     protected void createAndFillDocument(Iterator<DataPage> dataPages) {
         fillDocuments(dataPages);
+        
+        // Im Speicher gesammelte Content-Types und Relationships einmalig ins DOM übernehmen
+        contentTypes.writeChanges();
+        relationships.writeChanges();
     }
     
     private void fillDocuments(Iterator<DataPage> dataPages) {
         
-        this.imageCounter = 16_000;
+        this.imageCounter.set(16_000);
         this.cacheImageResources.clear();
         
         final Document newContentTypes = (Document) getDocumentPart(ZIP_CONTENT_TYPES);
@@ -187,26 +227,91 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
         final Document newStyles = (Document) getDocumentPart(partDocumentStyles);
         
         final Document newRelationships = (Document) getDocumentPart(partRelationships);
+        relationships = new MicrosoftDocumentRelationships(newRelationships);
         
         extAltChunk.setCurrentZipFile(getNewDocumentFile())
                 .setRelationshipDocument(newRelationships)
                 .setWordDocument(newContent)
+                .setStylesDocument(newStyles)
                 .setContentTypesDocument(newContentTypes);
         
         normalizeInstrTextFields(newContent);
         
         final Node wordBody = findDocumentBody(newContent);
+        prepareFieldCodes(wordBody);
+        
         final Node newWordBody = wordBody.cloneNode(true);
         
         while (newWordBody.hasChildNodes()) {
             newWordBody.removeChild(newWordBody.getFirstChild());
         }
         
-        DataPage firstDataPage = null;  // wird später gesetzt mit der ersten Seite
+        try (PartTasks partTasks = new PartTasks()) {
+            final boolean filled = fillDocumentBody(
+                    dataPages, newContent, wordBody, newWordBody, partTasks);
+            
+            if (filled == false) {
+                return; // Leise beenden
+            }
+        }
+        
+        extAltChunk.applyMergedNamespaces();
+        
+        final Node wordBodyParent = wordBody.getParentNode();
+        wordBodyParent.insertBefore(newWordBody, wordBody);
+        wordBodyParent.removeChild(wordBody);
+
+        this.cacheImageResources.clear();
         
-        boolean firstPage = true;
+        removeAllBookmarkTags(newContent);
+        
+        //// EXTENSIONS DURCHLAUFEN LASSEN
+        
+        if (null != extCustomXml) {
+            assert extCustomXml instanceof ZippedCustomXmlExtension;
+            ((ZippedCustomXmlExtension)extCustomXml)
+                    .applyCustomXmlData(getNewDocumentFile());
+        }
+    }
+    
+    /**
+     * Befüllt den Inhalt aller Seiten sowie Kopf-/Fußzeilen, Fuß- und Endnoten.
+     * 
+     * <p>Werden Teile parallel befüllt, beginnen Kopf- und Fußzeilen vor dem Hauptdokument und
+     * Fuß- und Endnoten sobald die erste Seite bekannt ist; jeder Teil ist ein eigenes
+     * XML-Dokument und wird gleichzeitig zum Hauptdokument befüllt. Die Seiten selbst werden
+     * ebenfalls parallel befüllt, siehe {@link #fillPagesInParallel(Iterator, Node, Node)}.
+     * Gemeinsam verwendet werden nur Content-Types, Relationships und eingebettete Bilder.</p>
+     * 
+     * @return  {@code false}, wenn keine Seite übergeben wurde und dies ignoriert werden soll
+     */
+    private boolean fillDocumentBody(
+            Iterator<DataPage> dataPages, Document newContent, Node wordBody, Node newWordBody,
+            PartTasks partTasks)
+    {
+        DataPage firstDataPage = null;  // wird später gesetzt mit der ersten Seite
         boolean missingData = true;
         
+        if (partTasks.isParallel()) {
+            // Alle Teile bereits vor dem ersten Task laden; danach greifen nur noch die Tasks
+            // (und diese ausschließlich unter registryLock) auf die geladenen Teile zu
+            final Map<Element, String> notesParts = loadFootnotesAndEndnotesParts();
+            
+            processHeaderFooterInstructions(partTasks);
+            
+            if (dataPages.hasNext()) {
+                firstDataPage = dataPages.next();
+                processFootnotesAndEndnotes(notesParts, firstDataPage, partTasks);
+                
+                fillPagesInParallel(
+                        Stream.concat(Stream.of(firstDataPage), remainingPages(dataPages))
+                                .iterator(),
+                        wordBody, newWordBody);
+                
+                missingData = false;
+            }
+        }
+        
         while (dataPages.hasNext()) {
             final DataPage pageData = dataPages.next();
             final Node newPageBody = wordBody.cloneNode(true);
@@ -218,21 +323,14 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
             
             // Zeilenumbruch nur Einfügen, wenn es sich NICHT um die
             // Seite handelt
-            if (firstPage == false && needToInsertPageBreak()) {
-                final Node wordBreak = newContent.createElement("w:br");
-                final NamedNodeMap attributes = wordBreak.getAttributes();
-                
-                final Attr wordType = newContent.createAttribute("w:type");
-                wordType.setValue("page");
-                
-                attributes.setNamedItem(wordType);
-                
-                newWordBody.appendChild(wordBreak);
+            if (missingData == false && needToInsertPageBreak()) {
+                newWordBody.appendChild(createPageBreak(newContent));
             }
             
             // Ersetzen und alle Nodes in dem fortlaufenden neuen Word-Inhalt
             // übernehmen. #removeChild(..) gibt den entfernten Node zurück.
             
+            startInterceptorPage(pageData);
             replaceAllFields(newPageBody, pageData);
             
             while (newPageBody.hasChildNodes()) {
@@ -242,17 +340,20 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
             }
             
             missingData = false;
-            firstPage = false;
         }
         
         // Muss ausgeführt werden bevor Bild-Resourcen gelöscht werden und bevor das Dokument
         // abgebrochen wird wegen fehlender DataPage's, da ggf. keine DataPage übermittelt wird für
         // das Hauptdokument, aber eventuell für Kopf- und/oder Fußzeilen.
-        processHeaderFooterInstructions();
+        if (partTasks.isParallel() == false) {
+            processHeaderFooterInstructions(partTasks);
+        }
+        
+        partTasks.awaitAll();
         
         if (missingData) {
             if (ignoreMissingDataPages()) {
-                return; // Leise beenden
+                return false;
             }
             
             throw new NoDataForDocumentGenerationException(
@@ -261,77 +362,132 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
         
         // Footnotes und Endnotes nur ausfüllen, wenn wir mindestens eine DataPage bekommen haben,
         // da für diese zwei Bereiche keine extra DataPage übermittelt wird.
-        processFootnotesAndEndnotes(firstDataPage);
+        if (partTasks.isParallel() == false) {
+            processFootnotesAndEndnotes(
+                    loadFootnotesAndEndnotesParts(), firstDataPage, partTasks);
+        }
         
-        final Node wordBodyParent = wordBody.getParentNode();
-        wordBodyParent.insertBefore(newWordBody, wordBody);
-        wordBodyParent.removeChild(wordBody);
-
-        this.cacheImageResources.clear();
+        return true;
+    }
+    
+    /**
+     * Befüllt alle Seiten parallel. Jede Seite wird in einem eigenen XML-Dokument (Kopie von
+     * {@code w:body}) befüllt, sodass sich die Threads keine DOM-Strukturen teilen; danach wird
+     * der Inhalt der Seite in Reihenfolge übernommen. Bilder, Relationships und eingefügte
+     * Dokumente werden wie bei Kopf- und Fußzeilen unter {@code registryLock} registriert.
+     */
+    private void fillPagesInParallel(
+            Iterator<DataPage> dataPages, Node wordBody, Node newWordBody)
+    {
+        final int parallelism = renderParallelism();
+        final Document newContent = newWordBody.getOwnerDocument();
         
-        removeAllBookmarkTags(newContent);
+        final BlockingQueue<Document> pageTemplates = newPageTemplates(
+                (Element) wordBody, parallelism);
         
-        //// EXTENSIONS DURCHLAUFEN LASSEN
+        fillPagesInParallel(dataPages, parallelism, dataPage -> {
+            final Document pageDocument = copyPageTemplate(pageTemplates);
+            
+            startInterceptorPage(dataPage);
+            replaceAllFields(pageDocument.getDocumentElement(), dataPage);
+            
+            return pageDocument;
+            
+        }, pageDocument -> {
+            if (newWordBody.hasChildNodes() && needToInsertPageBreak()) {
+                newWordBody.appendChild(createPageBreak(newContent));
+            }
+            
+            newWordBody.appendChild(newContent.adoptNode(
+                    moveChildNodesToFragment(pageDocument.getDocumentElement())));
+        });
+    }
+    
+    private static Stream<DataPage> remainingPages(Iterator<DataPage> dataPages) {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(dataPages, Spliterator.ORDERED), false);
+    }
+    
+    private Node createPageBreak(Document document) {
+        final Node wordBreak = document.createElement("w:br");
+        final NamedNodeMap attributes = wordBreak.getAttributes();
         
-        if (null != extCustomXml) {
-            assert extCustomXml instanceof ZippedCustomXmlExtension;
-            ((ZippedCustomXmlExtension)extCustomXml)
-                    .applyCustomXmlData(getNewDocumentFile());
-        }
+        final Attr wordType = document.createAttribute("w:type");
+        wordType.setValue("page");
+        
+        attributes.setNamedItem(wordType);
+        
+        return wordBreak;
     }
     
-    private void processHeaderFooterInstructions() {
+    private void processHeaderFooterInstructions(PartTasks partTasks) {
         if (hasHeaderFooterInstructions() == false) return;
         
+        // Erst alle Anweisungen abfragen und alle betroffenen Teile laden, danach erst befüllen
+        final Map<Element, DataMap<?>> headerFooterParts = new LinkedHashMap<>();
+        
         final String[] headerPartNames = contentTypes.getPathsForHeaders();
         for (String headerPartName : headerPartNames) {
-            processHeaderFooterPart(headerPartName);
+            loadHeaderFooterPart(headerPartName, true, headerFooterParts);
         }
         
         final String[] footerPartNames = contentTypes.getPathsForFooters();
         for (String footerPartName : footerPartNames) {
-            processHeaderFooterPart(footerPartName);
+            loadHeaderFooterPart(footerPartName, false, headerFooterParts);
+        }
+        
+        for (Map.Entry<Element, DataMap<?>> headerFooterPart : headerFooterParts.entrySet()) {
+            final Element elHdrFtr = headerFooterPart.getKey();
+            final DataMap<?> values = headerFooterPart.getValue();
+            
+            partTasks.submit(() -> replaceHeaderFooterElement(elHdrFtr, values));
         }
     }
     
-    private void processHeaderFooterPart(String headerFooterPartName) {
-        final Document docHeaderFooter = getDocumentPart(headerFooterPartName);
-        
-        final int wHdrElementCount = docHeaderFooter.getElementsByTagName("w:hdr").getLength();
-        final boolean isHeader = wHdrElementCount > 0;
-        
+    private void loadHeaderFooterPart(
+            String headerFooterPartName, boolean isHeader,
+            Map<Element, DataMap<?>> headerFooterParts)
+    {
+        // Kopf- oder Fußzeile ergibt sich bereits aus dem Content-Type des Teils
         // headerFooterPartName kann z.B. bei Kopzeile sein: 'word/header1.xml'
         // headerFooterPartName kann z.B. bei Fußzeile sein: 'word/footer1.xml'
         final String name = headerFooterPartName.substring(
                 headerFooterPartName.indexOf('/') + 1,  // nach dem Slash
                 headerFooterPartName.indexOf(".xml"));  // bis zu '.xml'
         
-        final Element elHdrFtr;
-        if (isHeader) {
-            elHdrFtr = (Element) docHeaderFooter.getElementsByTagName("w:hdr").item(0);
-        } else {
-            elHdrFtr = (Element) docHeaderFooter.getElementsByTagName("w:ftr").item(0);
-        }
-        
-        replaceHeaderFooterElement(elHdrFtr, isHeader, name);
-    }
-    
-    private void replaceHeaderFooterElement(Element wHdrOrWFtr, boolean isHeader, String name) {
+        // Die Anweisungen werden immer im aufrufenden Thread abgefragt, nur das Ersetzen der
+        // Platzhalter erfolgt ggf. parallel
         final Optional<DataMap<?>> optionalData = callHeaderFooterInstruction(name, isHeader);
         final DataMap<?> values;
         
         if (null != optionalData && optionalData.isPresent()) {
             values = optionalData.get();
         } else {
-            // Ohne Werte, gibt es auch nichts zu ersetzen.
+            // Ohne Werte, gibt es auch nichts zu ersetzen; der Teil wird dann weder gelesen noch
+            // neu geschrieben und bleibt unverändert im Container.
             return;
         }
         
+        final Document docHeaderFooter = getDocumentPart(headerFooterPartName);
+        final Element elHdrFtr = docHeaderFooter.getDocumentElement();   // w:hdr bzw. w:ftr
+        
+        headerFooterParts.put(elHdrFtr, values);
+    }
+    
+    private void replaceHeaderFooterElement(Element wHdrOrWFtr, DataMap<?> values) {
+        startInterceptorPage(values);
         replaceAllFields(wHdrOrWFtr, values);
         removeAllBookmarkTags(wHdrOrWFtr);
     }
     
-    private void processFootnotesAndEndnotes(DataPage dataPage) {
+    /**
+     * Lädt alle Teile mit Fuß- und Endnoten.
+     * 
+     * @return  Wurzel-Element je Teil &rarr; Element-Name der einzelnen Fuß- bzw. Endnoten
+     */
+    private Map<Element, String> loadFootnotesAndEndnotesParts() {
+        final Map<Element, String> notesParts = new LinkedHashMap<>();
+        
         //// FOOTNOTES ////
         //  <w:footnotes mc:Ignorable="w14 w15 w16se w16cid wp14">      // [wFootnotes]
         //      <w:footnote w:type="separator" w:id="-1">               // JE W:FOOTNOTE EINE ERSETZUNG STARTEN [wFootnoteList]
@@ -354,15 +510,7 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
         final String[] footnotesPartName = contentTypes.getPathsForFootnotes();
         for (String singleFootnotesPartName : footnotesPartName) {
             final Document docFootnotes = getDocumentPart(singleFootnotesPartName);
-            final Element wFootnotes = docFootnotes.getDocumentElement();
-            
-            final List<Node> wFootnoteList = nodesByTagName("w:footnote", wFootnotes);
-            
-            for (Node wFootnote : wFootnoteList) {
-                replaceAllFields(wFootnote, dataPage);
-            }
-            
-            removeAllBookmarkTags(docFootnotes);
+            notesParts.put(docFootnotes.getDocumentElement(), "w:footnote");
         }
         
         //// ENDNOTES ////
@@ -390,16 +538,34 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
         final String[] endnotesPartName = contentTypes.getPathsForEndnotes();
         for (String singleEndnotesPartName : endnotesPartName) {
             final Document docEndnotes = getDocumentPart(singleEndnotesPartName);
-            final Element wEndnotes = docEndnotes.getDocumentElement();
-            
-            final List<Node> wEndnoteList = nodesByTagName("w:endnote", wEndnotes);
-            
-            for (Node wEndnote : wEndnoteList) {
-                replaceAllFields(wEndnote, dataPage);
-            }
+            notesParts.put(docEndnotes.getDocumentElement(), "w:endnote");
+        }
+        
+        return notesParts;
+    }
+    
+    private void processFootnotesAndEndnotes(
+            Map<Element, String> notesParts, DataPage dataPage, PartTasks partTasks)
+    {
+        for (Map.Entry<Element, String> notesPart : notesParts.entrySet()) {
+            final Element wNotes = notesPart.getKey();
+            final String noteTagName = notesPart.getValue();
             
-            removeAllBookmarkTags(wEndnotes);
+            partTasks.submit(() -> replaceNotesElement(wNotes, noteTagName, dataPage));
+        }
+    }
+    
+    private void replaceNotesElement(Element wNotes, String noteTagName, DataPage dataPage) {
+        startInterceptorPage(dataPage);
+        
+        // JE W:FOOTNOTE BZW. W:ENDNOTE EINE ERSETZUNG STARTEN
+        final List<Node> wNoteList = nodesByTagName(noteTagName, wNotes);
+        
+        for (Node wNote : wNoteList) {
+            replaceAllFields(wNote, dataPage);
         }
+        
+        removeAllBookmarkTags(wNotes);
     }
     
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -548,6 +714,35 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
         }
     }
     
+    /**
+     * Feldbefehl des {@code w:instrText}; wird beim ersten Zugriff ermittelt und am Element
+     * hinterlegt. Kopien des Elementes (je Seite bzw. je Tabellenzeile) übernehmen den Feldbefehl
+     * über {@link #COPY_ON_CLONE}, sodass dieser je Platzhalter der Vorlage nur einmal
+     * ermittelt wird.
+     */
+    private FieldCode fieldCodeOf(Node instrTextNode) {
+        final Object knownFieldCode = instrTextNode.getUserData(FieldCode.USER_DATA_KEY);
+        if (knownFieldCode instanceof FieldCode) {
+            return (FieldCode) knownFieldCode;
+        }
+        
+        final FieldCode fieldCode = FieldCode.parse(instrTextNode);
+        instrTextNode.setUserData(FieldCode.USER_DATA_KEY, fieldCode, COPY_ON_CLONE);
+        
+        return fieldCode;
+    }
+    
+    /**
+     * Ermittelt vorab die Feldbefehle aller Platzhalter der Vorlage, damit jede Kopie davon den
+     * bereits ermittelten Feldbefehl übernimmt; erst nach {@link #normalizeInstrTextFields(Node)}
+     * aufzurufen.
+     */
+    private void prepareFieldCodes(Node templateNode) {
+        for (Node instrTextNode : nodesByTagName("w:instrText", templateNode)) {
+            fieldCodeOf(instrTextNode);
+        }
+    }
+    
     private void replaceAllFields(Node rootNode, DataMap values) {
         replaceFields(rootNode, values);
         
@@ -623,39 +818,19 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
     }
     
     private void replaceField(Node instrTextNode, DataValueMap values) {
-        // Nach Platzhalterbezeichner suchen
-        final NodeList childs = instrTextNode.getChildNodes();
-        String keyName = null;
-        
-        for (int i = 0; i < childs.getLength(); i++) {
-            final Node keyNode = childs.item(i);
-            if (keyNode.getNodeType() == Node.TEXT_NODE) {
-                keyName = keyNode.getNodeValue().trim().toUpperCase();
-            }
-        }
+        // Platzhalterbezeichner wurde bereits beim Vorbereiten der Vorlage ermittelt
+        final FieldCode fieldCode = fieldCodeOf(instrTextNode);
         
-        if (null == keyName) {
+        if (null == fieldCode.kind) {
             throw new IllegalStateException("keyName == null ?!?!?!");
         }
         
-        // Field Code mit Platzhalter?
-        if (keyName.contains("DOCVARIABLE")) {
-            keyName = keyName.replace("DOCVARIABLE", "")
-                    .replace('\"', ' ').trim();
+        if (null == fieldCode.keyName) {
+            throw new DocumentPlaceholderMissingException(formatMessage(
+                    MicrosoftDocumentKeys.INVALID_MERGE_FIELD));
         }
         
-        if (keyName.contains("MERGEFIELD")) {
-            keyName = keyName.replace("MERGEFIELD", "")
-                    .replace('\"', ' ').trim();
-            
-            final StringTokenizer t = new StringTokenizer(keyName, " \\*");
-            if (t.hasMoreTokens() == false) {
-                throw new DocumentPlaceholderMissingException(formatMessage(
-                        MicrosoftDocumentKeys.INVALID_MERGE_FIELD));
-            }
-            
-            keyName = t.nextToken();
-        }
+        final String keyName = fieldCode.keyName;
         
         // Wert zum Platzhalter suchen
         final Optional<DataValue> value = values.getValueByKey(keyName);
@@ -667,23 +842,11 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
             // Vor der Exception, mmuss geprüft werden ob es sich um einen
             // potentiellen Feldbefehl handelt, oder einen Platzhalter
             
-            // Zeichen die auf einen Word Feldbefehl hindeuten
-            final char[] creepyChars = " \"*\'+-!#\\".toCharArray();
-            final String pKeyName = keyName;
-            
-            boolean containsCreepyChar = false;
-            for (char ch : creepyChars) {
-                if (pKeyName.contains(Character.toString(ch))) {
-                    containsCreepyChar = true;
-                    break;
-                }
-            }
-            
-            if (containsCreepyChar == false) {
+            if (fieldCode.fieldCommand == false) {
                 // Sieht schlecht aus, sehr wahrscheinlich Platzhalter
                 throw new DocumentPlaceholderMissingException(formatMessage(
                         MicrosoftDocumentKeys.UNKNOWN_PLACE_HOLDER,
-                                /* {0} */ pKeyName));
+                                /* {0} */ keyName));
             }
             
             return; // Joar anderweitiger Feldbefehl
@@ -691,11 +854,12 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
         
         // Beim Ermitteln des Inhaltes, auf Interceptor prüfen und entsprechend zuvor den Context
         // dazu einrichten.
-        interceptionContext.init(keyName, values);
+        final MyInterceptionContext context = interceptionContext.get();
+        context.init(keyName, values);
         
         // Sonderfall: Ist der zurückgegebene DataValue ein erweiterter Wert, dann muss mindestens
         // geprüft werden ob diese Art uns bekannt ist.
-        final DataValue dataValue = handleInterception(value.get(), interceptionContext);
+        final DataValue dataValue = handleInterception(value.get(), context);
         if (dataValue.isExtendedValue()) {
             final ExtendedValue extValue = dataValue.extendedValue();
             
@@ -784,32 +948,28 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
             return Collections.singletonList(wordText);
         }
         
-        // Doch etwas komplizierter Formatiert =D
+        // Doch etwas komplizierter Formatiert =D; CR wird ignoriert
         
-        final List<Node> formattedNodes = new LinkedList<>();
-        final StringBuilder textBuffer = new StringBuilder();
+        final String formattedText = removeCarriageReturns(textContent);
+        int formattingCharIndex = indexOfFormattingChar(formattedText, 0);
         
-        for (char ch : textContent.toCharArray()) {
-            if (ch == '\r') {
-                continue; // CR wird ignoriert
-            }
-            
-            if (ch != '\n' && ch != '\t') {
-                textBuffer.append(ch); // da kein Sonderzeichen
-                continue;
+        if (formattingCharIndex == -1) {
+            // Häufigster Fall: kein Zeilenumbruch oder Tabulator enthalten
+            return formattedText.isEmpty()
+                    ? Collections.emptyList()
+                    : Collections.singletonList(createWordTextNode(document, formattedText));
+        }
+        
+        final List<Node> formattedNodes = new ArrayList<>();
+        int segmentStart = 0;
+        
+        while (formattingCharIndex != -1) {
+            if (formattingCharIndex > segmentStart) {
+                formattedNodes.add(createWordTextNode(
+                        document, formattedText.substring(segmentStart, formattingCharIndex)));
             }
             
-            // Sonderzeichen
-            final boolean needTextNode = textBuffer.length() > 0;
-            
-            if (needTextNode) {
-                final Node textPartNode = createWordTextNode(
-                        document, textBuffer.toString());
-                
-                formattedNodes.add(textPartNode);
-                
-                textBuffer.setLength(0);
-            }
+            final char ch = formattedText.charAt(formattingCharIndex);
             
             switch (ch) {
                 case '\n': formattedNodes.add(document.createElement("w:br"));
@@ -823,13 +983,14 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
                             formatMessage(UNKNOWN_FORMATTING_CHAR,
                                     /* {0} */ Integer.toString((int) ch)));
             }
+            
+            segmentStart = formattingCharIndex + 1;
+            formattingCharIndex = indexOfFormattingChar(formattedText, segmentStart);
         }
         
-        if (textBuffer.length() > 0) {
-            final Node wordTextNode = createWordTextNode(
-                    document, textBuffer.toString());
-            
-            formattedNodes.add(wordTextNode);
+        if (segmentStart < formattedText.length()) {
+            formattedNodes.add(createWordTextNode(
+                    document, formattedText.substring(segmentStart)));
         }
         
         return formattedNodes;
@@ -841,7 +1002,10 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
         // - Weitere Behandlung an die Erweiterungsimplementierung geben
         final Node fieldParent = instrTextNode.getParentNode();
         
-        extAltChunk.insertAltChunkAt(instrTextNode, extValue);
+        // Die Erweiterung ergänzt Styles, Nummerierungen und Relationships des Hauptdokumentes
+        synchronized (registryLock) {
+            extAltChunk.insertAltChunkAt(instrTextNode, extValue);
+        }
     }
     
     private Node createWordTextNode(Document document, String textContent) {
@@ -1201,7 +1365,8 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
     private void subReplaceFieldWithImage(Node instrTextNode, ExtendedValue extValue) {
         final ImageValue imageValue = (ImageValue) extValue;
         
-        final Object[] registrationResult = registerImageResource(imageValue);
+        // Platzhalter ist ein Text-Feld, daher gelten immer die Abmaße aus dem ImageValue
+        final Object[] registrationResult = registerImageResource(imageValue, true);
         final String imgRelId = (String) registrationResult[0];
         final boolean usedResourceKeepsExternal = (boolean) registrationResult[1];
         
@@ -1255,7 +1420,8 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
             return;
         }
         
-        final Object[] registrationResult = registerImageResource(imageValue);
+        final Object[] registrationResult = registerImageResource(
+                imageValue, imageValue.isOverwriteDimension());
         final String imgRelId = (String) registrationResult[0];
         final boolean usedResourceKeepsExternal = (boolean) registrationResult[1];
         
@@ -1280,7 +1446,8 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
             return;
         }
         
-        final Object[] registrationResult = registerImageResource(imageValue);
+        final Object[] registrationResult = registerImageResource(
+                imageValue, imageValue.isOverwriteDimension());
         final String imgRelId = (String) registrationResult[0];
         final boolean usedResourceKeepsExternal = (boolean) registrationResult[1];
         
@@ -1298,8 +1465,9 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
             return Optional.empty();
         }
         
-        interceptionContext.init(keyName, values);
-        final DataValue dataValue = handleInterception(firstValue.get(), interceptionContext);
+        final MyInterceptionContext context = interceptionContext.get();
+        context.init(keyName, values);
+        final DataValue dataValue = handleInterception(firstValue.get(), context);
         if (dataValue.isExtendedValue() == false) {
             return Optional.empty();
         }
@@ -1319,20 +1487,28 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
      * notwendigen Dateien und ggf bettet die Bild-Resource direkt ein.
      * 
      * @param imageValue    Im Container zu registrierende und ggf einzubettetes Bild.
+     * @param useValueDimension {@code true}, wenn die Abmaße aus {@code imageValue} im Dokument
+     *                      angewendet werden (Voraussetzung um das Bild zu verkleinern).
      * @return              {@code Object[length 2]}, mit zwei Werten:
      *                      {@code Object[index 0] = String = imageRelationshipId},
      *                      {@code Object[index 1] = boolean = usedResourceKeepsExternal}.
      */
-    private Object[] registerImageResource(ImageValue imageValue) {
+    private Object[] registerImageResource(ImageValue imageValue, boolean useValueDimension) {
         final Object[] resultArray = new Object[] {
             "",         // Image-Relationship-Id
             false       // true -> keeps external, false -> is embedded
         };
         
         final ImageResource imageResource = imageValue.getImageResource();
-        if (cacheImageResources.containsKey(imageResource)) {
-            // Dann wurde diese Resource schon mal registriert und dem Dokument beigefügt.
-            return cacheImageResources.get(imageResource);
+        final ImageResampler.Target resampleTarget = ImageResampler.targetFor(
+                imageValue, imageResampleDpi(), useValueDimension);
+        
+        final Object cacheKey = (null == resampleTarget) ? imageResource : resampleTarget;
+        synchronized (registryLock) {
+            if (cacheImageResources.containsKey(cacheKey)) {
+                // Dann wurde diese Resource schon mal registriert und dem Dokument beigefügt.
+                return cacheImageResources.get(cacheKey);
+            }
         }
         
         final ImageResourceType imageType;
@@ -1344,7 +1520,7 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
             if (orignMimeType instanceof MicrosoftImageResourceType) {
                 imageType = orignMimeType;
             } else {
-                imageType = convert(orignMimeType, MicrosoftImageResourceType.values());
+                imageType = convert(orignMimeType, MicrosoftImageResourceType.class);
             }
         }
         
@@ -1366,31 +1542,54 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
                         .toAbsolutePath().toString();
             }
             
-            registerRelIdExternalImage(this.extAltChunk.relationshipDocument,
-                    externalTarget, imgRelId);
-        
-            registerContentType(this.extAltChunk.contentTypesDocument,
-                    imageType.getMimeType(), imageType.getFileNameExtensions()[0]);
+            synchronized (registryLock) {
+                final Object[] knownResult = cacheImageResources.get(cacheKey);
+                if (null != knownResult) {
+                    return knownResult;
+                }
+                
+                relationships.registerRelationship(
+                        imgRelId, REL_TYPE_IMAGE, externalTarget, "External");
             
-            usedResourceKeepsExternal = true;
+                contentTypes.registerDefault(
+                        imageType.getFileNameExtensions()[0], imageType.getMimeType());
+                
+                usedResourceKeepsExternal = true;
+                
+                resultArray[0] = imgRelId;
+                resultArray[1] = usedResourceKeepsExternal;
+                
+                this.cacheImageResources.put(cacheKey, resultArray);
+            }
         } else {
             final String mediaPath = "media/" + imgRelId + "." + imageType.getFileNameExtensions()[0];
             
-            extAltChunk.zipFile.createNewFileInZip("word/" + mediaPath);
-            extAltChunk.zipFile.overwrite("word/" + mediaPath, imageResource.loadImageData());
-            
-            registerRelIdEmbeddedImage(this.extAltChunk.relationshipDocument, mediaPath, imgRelId);
-            registerContentType(this.extAltChunk.contentTypesDocument,
-                    imageType.getMimeType(), imageType.getFileNameExtensions()[0]);
+            // Laden und ggf. Verkleinern außerhalb der Sperre
+            final byte[] processedImageData = ImageResampler.process(
+                    imageResource.loadImageData(), imageType, resampleTarget);
             
-            usedResourceKeepsExternal = false;
+            synchronized (registryLock) {
+                final Object[] knownResult = cacheImageResources.get(cacheKey);
+                if (null != knownResult) {
+                    return knownResult;
+                }
+                
+                extAltChunk.zipFile.createNewFileInZip("word/" + mediaPath);
+                extAltChunk.zipFile.overwrite("word/" + mediaPath, processedImageData);
+                
+                relationships.registerRelationship(imgRelId, REL_TYPE_IMAGE, mediaPath, null);
+                contentTypes.registerDefault(
+                        imageType.getFileNameExtensions()[0], imageType.getMimeType());
+                
+                usedResourceKeepsExternal = false;
+                
+                resultArray[0] = imgRelId;
+                resultArray[1] = usedResourceKeepsExternal;
+                
+                this.cacheImageResources.put(cacheKey, resultArray);
+            }
         }
         
-        resultArray[0] = imgRelId;
-        resultArray[1] = usedResourceKeepsExternal;
-        
-        this.cacheImageResources.put(imageResource, resultArray);
-        
         return resultArray;
     }
     
@@ -1404,8 +1603,8 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
             replaceDrawingRelId(wDrawingElement, imgRelId, false /* use r:embed */);
         }
 
-        overwriteDrawingElementIds(wDrawingElement);
-        applyNonVisiblePropertiesToDrawingElement(wDrawingElement, imageValue);
+        final int pictureNumber = overwriteDrawingElementIds(wDrawingElement);
+        applyNonVisiblePropertiesToDrawingElement(wDrawingElement, imageValue, pictureNumber);
         applyVisibleTextPropertiesToDrawingElement(wDrawingElement, imageValue);
         applyVisiblePropertiesToDrawingElement(wDrawingElement, imageValue);
     }
@@ -1548,9 +1747,15 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
         }
     }
     
-    private void overwriteDrawingElementIds(Element drawingElement) {
-        final String myPictureIdMinusOne = Integer.toString(imageCounter);
-        final String myPictureId = Integer.toString(++imageCounter);
+    /**
+     * Vergibt neue IDs für das Bild.
+     * 
+     * @return  Vergebene Bild-Nummer; {@code pic:cNvPr} erhält die Nummer minus eins
+     */
+    private int overwriteDrawingElementIds(Element drawingElement) {
+        final int myPictureNumber = imageCounter.incrementAndGet();
+        final String myPictureIdMinusOne = Integer.toString(myPictureNumber - 1);
+        final String myPictureId = Integer.toString(myPictureNumber);
         
         final Optional<Element> wpDocPr = elementByTagName("wp:docPr", drawingElement);
         if (wpDocPr.isPresent()) {
@@ -1563,6 +1768,8 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
             picCNvPr.get().setAttribute("name", "Picture " + myPictureId);
             picCNvPr.get().setAttribute("id", myPictureIdMinusOne);
         }
+        
+        return myPictureNumber;
     }
     
     private void applyVisibleTextPropertiesToDrawingElement(Element wDrawing, ImageValue imgValue) {
@@ -1589,7 +1796,9 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
         }
     }
     
-    private void applyNonVisiblePropertiesToDrawingElement(Element wDrawing, ImageValue imgValue) {
+    private void applyNonVisiblePropertiesToDrawingElement(
+            Element wDrawing, ImageValue imgValue, int pictureNumber)
+    {
         // Vorher bitte #overwriteDrawingElementIds verwendet und aufrufen
         
         // Überschreibt die nicht-visuellen (also in Word nicht angezeigten) Eigenschaften oder
@@ -1620,7 +1829,7 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
         
         final String orAttrId = picCNvPr.getAttribute("id");
         
-        @Nullable String prId = orAttrId.isEmpty() ? Integer.toString(imageCounter - 1) : orAttrId;
+        @Nullable String prId = orAttrId.isEmpty() ? Integer.toString(pictureNumber - 1) : orAttrId;
         @Nullable String prTitle = imgValue.getTitle().orElse(picCNvPr.getAttribute("title"));
         @Nullable String prDescr = imgValue.getDescription().orElse(picCNvPr.getAttribute("descr"));
         @Nullable String prName = picCNvPr.getAttribute("name");
@@ -1745,7 +1954,7 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
     private void overwritePictureElementIds(Element pictureElement) {
         final Optional<Element> vShape = elementByTagName("v:shape", pictureElement);
         if (vShape.isPresent()) {
-            vShape.get().setAttribute("id", "vShapeImage" + Integer.toString(++imageCounter));
+            vShape.get().setAttribute("id", "vShapeImage" + Integer.toString(imageCounter.incrementAndGet()));
         }
     }
     
@@ -1845,98 +2054,6 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
         vShape.setAttribute("style", String.join(";", tokenList));
     }
     
-    private Element createRelationshipImageEmbeddedElement(Document document, String imageTarget, String rId) {
-        final String IMG_TYPE = "http://schemas.openxmlformats.org/officeDocument/2006/relationships/image";
-        
-        final Element relationship = (Element) document.createElement("Relationship");
-        relationship.setAttribute("Id", rId);
-        relationship.setAttribute("Type", IMG_TYPE);
-        relationship.setAttribute("Target", imageTarget);
-        
-        return relationship;
-    }
-    
-    private Element createRelationshipImageExternalElement(Document document, String imageTarget, String rId) {
-        final Element relElement = createRelationshipImageEmbeddedElement(document, imageTarget, rId);
-        relElement.setAttribute("TargetMode", "External");
-        return relElement;
-    }
-    
-    private void registerRelIdEmbeddedImage(Document document, String imageTarget, String rId) {
-        registerRelIdForImage0(document, imageTarget, rId, true /* ja, erstelle eingebettet */);
-    }
-    
-    private void registerRelIdExternalImage(Document document, String imageTarget, String rId) {
-        registerRelIdForImage0(document, imageTarget, rId, false /* nein, nicht eingebettet, extern */);
-    }
-    
-    private void registerRelIdForImage0(Document document, String imageTarget, String rId, boolean createEmbeddedId) {
-        final Element rootRelElement = (Element) document.getElementsByTagName("Relationships").item(0);
-        final NodeList relationshipList = rootRelElement.getChildNodes();
-        
-        for (int nodeIndex = 0; nodeIndex < relationshipList.getLength(); nodeIndex++) {
-            final Node nodeItem = relationshipList.item(nodeIndex);
-            if (nodeItem instanceof Element == false) continue;
-            
-            final Element relElement = (Element) nodeItem;
-            if (relElement.getNodeName().equals("Relationship") == false) continue;
-            
-            final String attrRId = relElement.getAttribute("Id");
-            
-            if (null != attrRId && attrRId.equals(rId)) {
-                // dann wurde diese ID bereits vormals erfolgreich registriert und muss nicht
-                // (darf nicht) doppelt eingetragen werden.
-                return;
-            }
-        }
-        
-        // Okay, ID unbekannt -> registrieren
-        final Element relImgElement = createEmbeddedId
-                ? createRelationshipImageEmbeddedElement(document, imageTarget, rId)
-                : createRelationshipImageExternalElement(document, imageTarget, rId);
-        
-        if (relationshipList.getLength() == 0) {
-            rootRelElement.appendChild(relImgElement);
-        } else {
-            rootRelElement.insertBefore(relImgElement, rootRelElement.getFirstChild());
-        }
-    }
-    
-    private Element createContentTypeElement(Document document, String mimeContentType, String extension) {
-        final Element xmlDefault = (Element) document.createElement("Default");
-        xmlDefault.setAttribute("ContentType", mimeContentType);
-        xmlDefault.setAttribute("Extension", extension);
-        return xmlDefault;
-    }
-    
-    private void registerContentType(Document document, String mimeContentType, String extension) {
-        final Element rootTypesElement = (Element) document.getElementsByTagName("Types").item(0);
-        final NodeList contentTypeList = rootTypesElement.getChildNodes();
-        
-        for (int nodeIndex = 0; nodeIndex < contentTypeList.getLength(); nodeIndex++) {
-            final Node nodeItem = contentTypeList.item(nodeIndex);
-            if (nodeItem instanceof Element == false) continue;
-            
-            final Element typeElement = (Element) nodeItem;
-            if (typeElement.getNodeName().equals("Default") == false) continue;
-            
-            final String attrContentType = typeElement.getAttribute("ContentType");
-            if (null != attrContentType && attrContentType.equals(mimeContentType)) {
-                // MIME Type ist bereits enthalten und registriert
-                return;
-            }
-        }
-        
-        // Noch nicht registriert, dann einfach hinzufügen
-        final Element newMimeType = createContentTypeElement(document, mimeContentType, extension);
-        
-        if (contentTypeList.getLength() == 0) {
-            rootTypesElement.appendChild(newMimeType);
-        } else {
-            rootTypesElement.insertBefore(newMimeType, rootTypesElement.getFirstChild());
-        }
-    }
-    
     private String formatLength(double length) {
         return BigDecimal.valueOf(length)
                 .setScale(4, RoundingMode.CEILING)
@@ -2164,6 +2281,7 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
         private Document wordDocument;
         private Document relationshipDocument;
         private Document contentTypesDocument;
+        private Document stylesDocument;
         
         public InnerAltChunkExtension setCurrentZipFile(ZIPDocumentFile zipFile) {
             this.zipFile = zipFile;
@@ -2179,6 +2297,11 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
             this.relationshipDocument = doc;
             return this;
         }
+        
+        public InnerAltChunkExtension setStylesDocument(Document doc) {
+            this.stylesDocument = doc;
+            return this;
+        }
 
         @Override
         protected Document getWordDocument() {
@@ -2195,6 +2318,36 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
             return this.contentTypesDocument;
         }
 
+        @Override
+        protected Document getStylesDocument() {
+            return stylesDocument;
+        }
+
+        @Override
+        protected Document getNumberingDocument(boolean createIfMissing) {
+            final String[] numberingPartNames = contentTypes.getPathsForNumbering();
+            
+            if (numberingPartNames.length > 0) {
+                return getDocumentPart(numberingPartNames[0]);
+            }
+            
+            if (createIfMissing == false) {
+                return null;
+            }
+            
+            final Document numberingDocument = createDocumentPart(
+                    PART_NEW_NUMBERING, EMPTY_NUMBERING_XML.getBytes(StandardCharsets.UTF_8));
+            
+            contentTypes.registerOverride(
+                    PART_NEW_NUMBERING, MicrosoftDocumentContentTypes.MIME_TYPE_NUMBERING);
+            // Eindeutige ID wie bei Bildern, damit es keine Überschneidung mit vorhandenen gibt
+            final String numberingRelId = "rNumId" + UUID.randomUUID().toString().replace("-", "");
+            relationships.registerRelationship(
+                    numberingRelId, REL_TYPE_NUMBERING, "numbering.xml", null);
+            
+            return numberingDocument;
+        }
+
         @Override
         protected void overwritePartInContainer(String partName, byte[] data) {
             assert null != partName : "partName == null";
@@ -2205,6 +2358,18 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
             zipFile.overwrite(partName, data);
         }
 
+        @Override
+        protected boolean registerRelationship(
+                String relId, String type, String target, String targetMode)
+        {
+            return relationships.registerRelationship(relId, type, target, targetMode);
+        }
+
+        @Override
+        protected boolean registerContentTypeDefault(String extension, String mimeType) {
+            return contentTypes.registerDefault(extension, mimeType);
+        }
+
         private InnerAltChunkExtension setContentTypesDocument(Document newContentTypes) {
             this.contentTypesDocument = newContentTypes;
             return this;
@@ -2212,6 +2377,103 @@ final class MicrosoftDocument extends AbstractOfficeXmlDocument {
         
     }
     
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    // FELDBEFEHLE (W:INSTRTEXT)
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    
+    private enum FieldKind {
+        
+        /** {@code DOCVARIABLE "NAME"} */
+        DOCVARIABLE,
+        
+        /** {@code MERGEFIELD NAME \* MERGEFORMAT} */
+        MERGEFIELD,
+        
+        /** Platzhalter ohne Feldbefehl oder anderweitiger Feldbefehl (z.B. {@code PAGE}). */
+        PLAIN;
+        
+    }
+    
+    /**
+     * Einmalig zerlegter Inhalt eines {@code w:instrText}.
+     */
+    private static final class FieldCode {
+        
+        private static final String USER_DATA_KEY = FieldCode.class.getName();
+        
+        /** Zeichen die auf einen Word Feldbefehl hindeuten (statt auf einen Platzhalter). */
+        private static final String CREEPY_CHARS = " \"*\'+-!#\\";
+        
+        /** {@code null}, wenn {@code w:instrText} keinen Text enthält. */
+        @Nullable
+        private final FieldKind kind;
+        
+        /** {@code null}, wenn einem {@code MERGEFIELD} der Name fehlt. */
+        @Nullable
+        private final String keyName;
+        
+        /** {@code true}, wenn ein fehlender Wert auf einen anderweitigen Feldbefehl hindeutet. */
+        private final boolean fieldCommand;
+        
+        private FieldCode(@Nullable FieldKind kind, @Nullable String keyName) {
+            this.kind = kind;
+            this.keyName = keyName;
+            this.fieldCommand = null != keyName && containsAnyOf(keyName, CREEPY_CHARS);
+        }
+        
+        private static FieldCode parse(Node instrTextNode) {
+            // Nach Platzhalterbezeichner suchen
+            final NodeList childs = instrTextNode.getChildNodes();
+            String keyName = null;
+            
+            for (int i = 0; i < childs.getLength(); i++) {
+                final Node keyNode = childs.item(i);
+                if (keyNode.getNodeType() == Node.TEXT_NODE) {
+                    keyName = keyNode.getNodeValue().trim().toUpperCase();
+                }
+            }
+            
+            if (null == keyName) {
+                return new FieldCode(null, null);
+            }
+            
+            FieldKind kind = FieldKind.PLAIN;
+            
+            // Field Code mit Platzhalter?
+            if (keyName.contains("DOCVARIABLE")) {
+                keyName = keyName.replace("DOCVARIABLE", "")
+                        .replace('\"', ' ').trim();
+                kind = FieldKind.DOCVARIABLE;
+            }
+            
+            if (keyName.contains("MERGEFIELD")) {
+                keyName = keyName.replace("MERGEFIELD", "")
+                        .replace('\"', ' ').trim();
+                
+                final StringTokenizer t = new StringTokenizer(keyName, " \\*");
+                if (t.hasMoreTokens() == false) {
+                    return new FieldCode(FieldKind.MERGEFIELD, null);
+                }
+                
+                keyName = t.nextToken();
+                kind = FieldKind.MERGEFIELD;
+            }
+            
+            return new FieldCode(kind, keyName);
+        }
+        
+        private static boolean containsAnyOf(String keyName, String chars) {
+            for (int i = 0; i < chars.length(); i++) {
+                if (keyName.indexOf(chars.charAt(i)) != -1) {
+                    return true;
+                }
+            }
+            
+            return false;
+        }
+        
+    }
+    
     ////////////////////////////////////////////////////////////////////////////////////////////////
     // INTERCEPTION-CONTEXT FÜR MS DOKUMENTE
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -24,14 +24,26 @@ package com.mz.solutions.office;
 import static com.mz.solutions.office.resources.AbstractOfficeXmlDocumentKeys.INVALID_DOC_FORMAT;
 import static com.mz.solutions.office.resources.MessageResources.formatMessage;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 /**
+ * Intern - Index über {@code '[Content_Types].xml'} eines Word-Dokumentes.
+ * 
+ * <p>Die Einträge ({@code Override} und {@code Default}) werden einmalig beim Erzeugen eingelesen.
+ * Neue {@code Default} Einträge (Dateinamenserweiterungen) und {@code Override} Einträge werden im
+ * Speicher gesammelt und erst mit {@link #writeChanges()} in das DOM übernommen.</p>
  *
  * @author  Riebe, Moritz   (moritz.riebe@mz-entwickler.de)
  */
@@ -55,6 +67,9 @@ final class MicrosoftDocumentContentTypes {
     private static final String MIME_TYPE_ENDNOTES = 
             "application/vnd.openxmlformats-officedocument.wordprocessingml.endnotes+xml";
     
+    static final String MIME_TYPE_NUMBERING = 
+            "application/vnd.openxmlformats-officedocument.wordprocessingml.numbering+xml";
+    
     ////////////////////////////////////////////////////////////////////////////////////////////////
     
     private static final String[] EMPTY_STRING_ARRAY = new String[0];
@@ -65,8 +80,22 @@ final class MicrosoftDocumentContentTypes {
     
     private final Document docContentTypes;
     
+    /** MIME-Type -&gt; Part-Namen (ohne führenden Slash) aller {@code Override} Einträge. */
+    private final Map<String, List<String>> overridesByType = new HashMap<>();
+    
+    /** Klein geschriebene Dateinamenserweiterungen aller {@code Default} Einträge. */
+    private final Set<String> defaultExtensions = new HashSet<>();
+    
+    /** Neu registrierte {@code Default} Einträge; Erweiterung -&gt; MIME-Type. */
+    private final Map<String, String> newDefaults = new LinkedHashMap<>();
+    
+    /** Neu registrierte {@code Override} Einträge; Part-Name (mit Slash) -&gt; MIME-Type. */
+    private final Map<String, String> newOverrides = new LinkedHashMap<>();
+    
     public MicrosoftDocumentContentTypes(Document docContentTypes) {
         this.docContentTypes = Objects.requireNonNull(docContentTypes, "docContentTypes");
+        
+        indexContentTypes();
     }
     
     public String getPathForMainDocument() {
@@ -97,24 +126,115 @@ final class MicrosoftDocumentContentTypes {
         return findByType(MIME_TYPE_ENDNOTES);
     }
     
+    public String[] getPathsForNumbering() {
+        return findByType(MIME_TYPE_NUMBERING);
+    }
+    
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    
+    /**
+     * Registriert eine Dateinamenserweiterung mit deren MIME-Type, soweit die Erweiterung noch
+     * nicht bekannt ist (unabhängig der Groß- und Kleinschreibung).
+     * 
+     * @param extension     Dateinamenserweiterung ohne Punkt, z.B. {@code 'png'}
+     * @param mimeType      MIME-Type, z.B. {@code 'image/png'}
+     * @return              {@code true}, wenn die Erweiterung neu eingetragen wurde
+     */
+    public boolean registerDefault(String extension, String mimeType) {
+        Objects.requireNonNull(extension, "extension");
+        Objects.requireNonNull(mimeType, "mimeType");
+        
+        if (defaultExtensions.add(extension.toLowerCase(Locale.ENGLISH)) == false) {
+            return false;
+        }
+        
+        newDefaults.put(extension, mimeType);
+        return true;
+    }
+    
+    /**
+     * Registriert einen neuen Teil des Dokumentes mit dessen MIME-Type.
+     * 
+     * @param partName      Pfad im Container ohne führenden Slash, z.B. {@code 'word/numbering.xml'}
+     * @param mimeType      MIME-Type des Teils
+     * @return              {@code true}, wenn der Teil neu eingetragen wurde
+     */
+    public boolean registerOverride(String partName, String mimeType) {
+        Objects.requireNonNull(partName, "partName");
+        Objects.requireNonNull(mimeType, "mimeType");
+        
+        final List<String> partNames = overridesByType
+                .computeIfAbsent(mimeType, key -> new ArrayList<>(3));
+        
+        if (partNames.contains(partName)) {
+            return false;
+        }
+        
+        partNames.add(partName);
+        newOverrides.put("/" + partName, mimeType);
+        return true;
+    }
+    
+    /**
+     * Übernimmt alle neu registrierten {@code Default} und {@code Override} Einträge in das DOM.
+     */
+    public void writeChanges() {
+        if (newDefaults.isEmpty() && newOverrides.isEmpty()) {
+            return;
+        }
+        
+        final Element elTypes = (Element) getDocument().getElementsByTagName("Types").item(0);
+        
+        if (newOverrides.isEmpty() == false) {
+            final DocumentFragment overrideFragment = getDocument().createDocumentFragment();
+            
+            for (Map.Entry<String, String> newOverride : newOverrides.entrySet()) {
+                final Element elOverride = getDocument().createElement("Override");
+                elOverride.setAttribute("PartName", newOverride.getKey());
+                elOverride.setAttribute("ContentType", newOverride.getValue());
+                
+                overrideFragment.appendChild(elOverride);
+            }
+            
+            elTypes.appendChild(overrideFragment);
+            newOverrides.clear();
+        }
+        
+        if (newDefaults.isEmpty()) {
+            return;
+        }
+        
+        final DocumentFragment fragment = getDocument().createDocumentFragment();
+        
+        for (Map.Entry<String, String> newDefault : newDefaults.entrySet()) {
+            final Element elDefault = getDocument().createElement("Default");
+            elDefault.setAttribute("Extension", newDefault.getKey());
+            elDefault.setAttribute("ContentType", newDefault.getValue());
+            
+            fragment.appendChild(elDefault);
+        }
+        
+        // Default-Einträge stehen (wie von Word selbst geschrieben) vor den Override-Einträgen
+        elTypes.insertBefore(fragment, elTypes.getFirstChild());
+        newDefaults.clear();
+    }
+    
     ////////////////////////////////////////////////////////////////////////////////////////////////
     
     private Document getDocument() {
         return this.docContentTypes;
     }
     
-    private String[] findByType(String mimeType) {
+    private void indexContentTypes() {
         final NodeList nodeList = getDocument().getElementsByTagName("Types");
         
         if (nodeList.getLength() == 0) {
-            return EMPTY_STRING_ARRAY;
+            return;
         }
         
         final Element elTypes = (Element) nodeList.item(0);
         final NodeList childElements = elTypes.getChildNodes();
         
-        final List<String> resultList = new ArrayList<>(3);
-        
         for (int elementIndex = 0; elementIndex < childElements.getLength(); elementIndex++) {
             final Node anyChildNode = childElements.item(elementIndex);
             
@@ -122,26 +242,38 @@ final class MicrosoftDocumentContentTypes {
                 continue;
             }
             
-            final Element elOverride = (Element) anyChildNode;
+            final Element elChild = (Element) anyChildNode;
             
-            if ("Override".equals(elOverride.getNodeName()) == false) {
+            if ("Default".equals(elChild.getNodeName())) {
+                final String attrExtension = elChild.getAttribute("Extension");
+                
+                if (attrExtension.isEmpty() == false) {
+                    defaultExtensions.add(attrExtension.toLowerCase(Locale.ENGLISH));
+                }
+                
                 continue;
             }
             
-            final String attrContentType = elOverride.getAttribute("ContentType");
+            if ("Override".equals(elChild.getNodeName()) == false) {
+                continue;
+            }
             
-            if (mimeType.equals(attrContentType)) {
-                final String attrPartName = elOverride.getAttribute("PartName");
-                
-                if (attrPartName.isEmpty()) {
-                    continue;
-                }
-                
-                resultList.add(convertZipFilePath(attrPartName));
+            final String attrPartName = elChild.getAttribute("PartName");
+            
+            if (attrPartName.isEmpty()) {
+                continue;
             }
+            
+            overridesByType
+                    .computeIfAbsent(elChild.getAttribute("ContentType"), key -> new ArrayList<>(3))
+                    .add(convertZipFilePath(attrPartName));
         }
+    }
+    
+    private String[] findByType(String mimeType) {
+        final List<String> resultList = overridesByType.get(mimeType);
         
-        return resultList.isEmpty() ? EMPTY_STRING_ARRAY : resultList.toArray(new String[resultList.size()]);
+        return null == resultList ? EMPTY_STRING_ARRAY : resultList.toArray(EMPTY_STRING_ARRAY);
     }
     
     private String[] assertNonEmptyPartArray(String[] anyStringArray) {
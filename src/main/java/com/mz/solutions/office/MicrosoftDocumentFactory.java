@@ -23,27 +23,13 @@ package com.mz.solutions.office;
 
 import com.mz.solutions.office.resources.MessageResources;
 import static com.mz.solutions.office.resources.MicrosoftDocumentFactoryKeys.NOT_ACCESSIBLE;
-import java.io.IOException;
-import static java.nio.charset.StandardCharsets.US_ASCII;
 import java.nio.file.Path;
+import java.util.function.Function;
 
 final class MicrosoftDocumentFactory extends OfficeDocumentFactory {
 
-    private static final byte[] B_ZIP_PK;
-    private static final byte[] B_CONTENT_TYPES;
-    private static final byte[] B_DOCUMENT;
-    private static final byte[] B_WORD_STYLES;
-    private static final byte[] B_WORD_FONT_TABLE;
-    private static final byte[] B_DOC_PROPS;
-    
-    static {
-        B_ZIP_PK = "PK".getBytes(US_ASCII);
-        B_CONTENT_TYPES = "[Content_Types].xml".getBytes(US_ASCII);
-        B_DOCUMENT = "document.xml".getBytes(US_ASCII);
-        B_WORD_STYLES = "word/styles".getBytes(US_ASCII);
-        B_WORD_FONT_TABLE = "word/fontTable.xml".getBytes(US_ASCII);
-        B_DOC_PROPS = "docProps/app.xml".getBytes(US_ASCII);
-    }
+    private static final String ENTRY_CONTENT_TYPES = "[Content_Types].xml";
+    private static final String ENTRY_PREFIX_WORD = "word/";
 
     protected MicrosoftDocumentFactory() {
         setProperty(MicrosoftProperty.INS_HARD_PAGE_BREAKS, Boolean.TRUE);
@@ -61,32 +47,23 @@ final class MicrosoftDocumentFactory extends OfficeDocumentFactory {
     }
 
     @Override
-    protected boolean isMyDocumentType(Path document) {
-        try {
-            return isMyDocumentType0(document);
-            
-        } catch (Exception ex) {
-            ex.printStackTrace(System.err);
-            return false;
-        }
+    Function<ZIPDocumentFile, OfficeDocument> inMemoryDocumentOpener() {
+        return document -> new MicrosoftDocument(this, document);
     }
-    
-    private boolean isMyDocumentType0(Path document)
-            throws IOException {
-        
+
+    @Override
+    protected boolean isMyDocumentType(Path document) {
         if (isFileAccessible(document) == false) {
             return false;
         }
         
-        final int MAX_BYTES = (1024 * 1024) * 16; /* max. 16 MB byte */
-        final byte[] data = readDataFromFile(document, MAX_BYTES);
-        
-        return contains(data, B_ZIP_PK) && (
-                contains(data, B_CONTENT_TYPES)
-                || contains(data, B_DOCUMENT)
-                || contains(data, B_DOC_PROPS)
-                || contains(data, B_WORD_FONT_TABLE)
-                || contains(data, B_WORD_STYLES));
+        return isMyDocumentType(ZipFormatProbe.probe(document), document);
+    }
+
+    @Override
+    boolean isMyDocumentType(ZipFormatProbe formatProbe, Path document) {
+        return formatProbe.containsEntry(ENTRY_CONTENT_TYPES)
+                && formatProbe.containsEntryWithPrefix(ENTRY_PREFIX_WORD);
     }
 
 }
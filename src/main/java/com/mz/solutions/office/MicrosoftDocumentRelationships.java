@@ -0,0 +1,134 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Intern - Index über die Relationship-IDs eines Relationship-Parts
+ * (z.B. {@code 'word/_rels/document.xml.rels'}).
+ *
+ * <p>Bestehende IDs werden einmalig beim Erzeugen eingelesen. Neue Einträge werden nur im
+ * Speicher gesammelt und erst mit {@link #writeChanges()} (einmalig am Ende des
+ * Ersetzungsvorganges) in das DOM übernommen; die Prüfung auf bereits vergebene IDs ist damit
+ * unabhängig von der Anzahl der Bilder und eingefügten Dokumente.</p>
+ *
+ * @author  Riebe, Moritz   (moritz.riebe@mz-entwickler.de)
+ */
+final class MicrosoftDocumentRelationships {
+
+    private static final String EL_RELATIONSHIPS = "Relationships";
+    private static final String EL_RELATIONSHIP = "Relationship";
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private final Document docRelationships;
+
+    private final Set<String> knownIds = new HashSet<>();
+    private final List<Element> newRelationships = new ArrayList<>();
+
+    public MicrosoftDocumentRelationships(Document docRelationships) {
+        this.docRelationships = Objects.requireNonNull(docRelationships, "docRelationships");
+
+        final NodeList relationshipList = docRelationships.getElementsByTagName(EL_RELATIONSHIP);
+        for (int nodeIndex = 0; nodeIndex < relationshipList.getLength(); nodeIndex++) {
+            final Element relElement = (Element) relationshipList.item(nodeIndex);
+            final String attrId = relElement.getAttribute("Id");
+
+            if (attrId.isEmpty() == false) {
+                knownIds.add(attrId);
+            }
+        }
+    }
+
+    /**
+     * Prüft ob die übergebene ID bereits vergeben wurde; im Dokument oder durch eine vorherige
+     * Registrierung.
+     *
+     * @param relId     Relationship-ID
+     * @return          {@code true}, wenn bereits vorhanden
+     */
+    public boolean containsId(String relId) {
+        return knownIds.contains(relId);
+    }
+
+    /**
+     * Registriert einen neuen Eintrag, soweit die ID noch nicht vergeben ist.
+     *
+     * @param relId         Relationship-ID, z.B. {@code 'rImgId...'}
+     * @param type          Relationship-Typ (Namespace-URI)
+     * @param target        Ziel des Eintrags (relativer Pfad oder externe URI)
+     * @param targetMode    {@code 'Internal'}, {@code 'External'} oder {@code null} wenn das
+     *                      Attribut nicht geschrieben werden soll
+     * @return              {@code true}, wenn der Eintrag neu angelegt wurde; {@code false}, wenn
+     *                      die ID bereits vorhanden war
+     */
+    public boolean registerRelationship(
+            String relId, String type, String target, @Nullable String targetMode)
+    {
+        if (knownIds.add(relId) == false) {
+            return false;
+        }
+
+        final Element relElement = docRelationships.createElement(EL_RELATIONSHIP);
+        relElement.setAttribute("Id", relId);
+        relElement.setAttribute("Type", type);
+        relElement.setAttribute("Target", target);
+
+        if (null != targetMode) {
+            relElement.setAttribute("TargetMode", targetMode);
+        }
+
+        newRelationships.add(relElement);
+        return true;
+    }
+
+    /**
+     * Übernimmt alle neu registrierten Einträge in das DOM des Relationship-Parts.
+     */
+    public void writeChanges() {
+        if (newRelationships.isEmpty()) {
+            return;
+        }
+
+        final Node rootElement = docRelationships.getElementsByTagName(EL_RELATIONSHIPS).item(0);
+        final DocumentFragment fragment = docRelationships.createDocumentFragment();
+
+        for (Element relElement : newRelationships) {
+            fragment.appendChild(relElement);
+        }
+
+        rootElement.appendChild(fragment);
+        newRelationships.clear();
+    }
+
+}
@@ -25,13 +25,17 @@ import com.mz.solutions.office.extension.Extension;
 import com.mz.solutions.office.extension.MicrosoftCustomXml;
 import com.mz.solutions.office.instruction.DocumentProcessingInstruction;
 import com.mz.solutions.office.model.DataPage;
+import com.mz.solutions.office.result.AsyncResult;
 import com.mz.solutions.office.result.Result;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import javax.annotation.OverridingMethodsMustInvokeSuper;
 import javax.annotation.concurrent.NotThreadSafe;
 
@@ -299,6 +303,118 @@ public abstract class OfficeDocument {
         generate(new DataPage(), docResult, NO_INSTRUCTIONS);
     }
     
+    /**
+     * Erzeugt das Dokument asynchron und übergibt dies der nicht-blockierenden
+     * Ausgabeimplementierung.
+     * 
+     * <p>Verhält sich wie {@link #generate(Iterable, Result, DocumentProcessingInstruction...)},
+     * blockiert den Aufrufer jedoch nicht. Ab Java 21 erfolgt die Erstellung auf einem virtuellen
+     * Thread, davor auf einem gemeinsamen Pool von Daemon-Threads. Bis zum Abschluss darf dieses
+     * Dokument nicht anderweitig verwendet und {@code dataPages} nicht verändert werden.</p>
+     * 
+     * @param dataPages     Menge aller Datensätze
+     * 
+     * @param docResult     Nicht-blockierende Ausgabeimplementierung
+     * 
+     * @param instructions  Dokumenten-Anweisungen die bei der Verarbeitung berücksichtigt werden
+     *                      sollen, soweit unterstützt. Nicht unterstützte Anwensungen werden von
+     *                      der Implementierung ignoriert.
+     * 
+     * @return              Wird abgeschlossen sobald {@code docResult} das Dokument geschrieben
+     *                      hat; schlägt mit den Exceptions von {@code generate(..)} fehl.
+     */
+    public CompletableFuture<Void> generateAsync(
+            Iterable<DataPage> dataPages, AsyncResult docResult,
+            DocumentProcessingInstruction ... instructions)
+    {
+        return generateAsync(dataPages, docResult, AsyncExecutors.defaultExecutor(), instructions);
+    }
+    
+    /**
+     * Erzeugt das Dokument asynchron auf dem übergebenen {@link Executor} und übergibt dies der
+     * nicht-blockierenden Ausgabeimplementierung.
+     * 
+     * <p>Siehe {@link #generateAsync(Iterable, AsyncResult, DocumentProcessingInstruction...)}</p>
+     * 
+     * @param dataPages     Menge aller Datensätze
+     * 
+     * @param docResult     Nicht-blockierende Ausgabeimplementierung
+     * 
+     * @param executor      Executor auf dem das Dokument erzeugt wird
+     * 
+     * @param instructions  Dokumenten-Anweisungen die bei der Verarbeitung berücksichtigt werden
+     *                      sollen, soweit unterstützt. Nicht unterstützte Anwensungen werden von
+     *                      der Implementierung ignoriert.
+     * 
+     * @return              Wird abgeschlossen sobald {@code docResult} das Dokument geschrieben
+     *                      hat
+     */
+    public CompletableFuture<Void> generateAsync(
+            Iterable<DataPage> dataPages, AsyncResult docResult, Executor executor,
+            DocumentProcessingInstruction ... instructions)
+    {
+        Objects.requireNonNull(docResult, "docResult");
+        
+        return generateAsyncBuffer(dataPages, executor, instructions)
+                .thenCompose(documentData -> Objects.requireNonNull(
+                        docResult.writeResult(documentData), "AsyncResult#writeResult() == null"))
+                .thenApply(ignored -> (Void) null);
+    }
+    
+    /**
+     * Erzeugt das Dokument asynchron und liefert dieses als nur lesbaren Puffer.
+     * 
+     * <p>Siehe {@link #generateAsync(Iterable, AsyncResult, DocumentProcessingInstruction...)}</p>
+     * 
+     * @param dataPages     Menge aller Datensätze
+     * 
+     * @param instructions  Dokumenten-Anweisungen die bei der Verarbeitung berücksichtigt werden
+     *                      sollen, soweit unterstützt. Nicht unterstützte Anwensungen werden von
+     *                      der Implementierung ignoriert.
+     * 
+     * @return              Erzeugtes Dokument
+     */
+    public CompletableFuture<ByteBuffer> generateAsyncBuffer(
+            Iterable<DataPage> dataPages,
+            DocumentProcessingInstruction ... instructions)
+    {
+        return generateAsyncBuffer(dataPages, AsyncExecutors.defaultExecutor(), instructions);
+    }
+    
+    /**
+     * Erzeugt das Dokument asynchron auf dem übergebenen {@link Executor} und liefert dieses als
+     * nur lesbaren Puffer.
+     * 
+     * <p>Siehe {@link #generateAsync(Iterable, AsyncResult, DocumentProcessingInstruction...)}</p>
+     * 
+     * @param dataPages     Menge aller Datensätze
+     * 
+     * @param executor      Executor auf dem das Dokument erzeugt wird
+     * 
+     * @param instructions  Dokumenten-Anweisungen die bei der Verarbeitung berücksichtigt werden
+     *                      sollen, soweit unterstützt. Nicht unterstützte Anwensungen werden von
+     *                      der Implementierung ignoriert.
+     * 
+     * @return              Erzeugtes Dokument
+     */
+    public CompletableFuture<ByteBuffer> generateAsyncBuffer(
+            Iterable<DataPage> dataPages, Executor executor,
+            DocumentProcessingInstruction ... instructions)
+    {
+        Objects.requireNonNull(dataPages, "dataPages");
+        Objects.requireNonNull(executor, "executor");
+        
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return ByteBuffer.wrap(generate(dataPages.iterator(), instructions))
+                        .asReadOnlyBuffer();
+                
+            } catch (IOException ioe) {
+                throw new UncheckedIOException(ioe);
+            }
+        }, executor);
+    }
+    
     /**
      * Ermittelt ob dieses Dokument die übergebene Erweiterung unterstützt und
      * gibt bei Unterstützung die Schnittstelle für den Zugriff darauf zurück.
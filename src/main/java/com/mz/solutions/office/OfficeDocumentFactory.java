@@ -25,6 +25,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -34,11 +35,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
 import static java.util.stream.Collectors.toList;
 import java.util.stream.Stream;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 import static com.mz.solutions.office.resources.MessageResources.formatMessage;
 import static com.mz.solutions.office.resources.OfficeDocumentFactoryKeys.INVALID_PROP_VALUE;
+import static com.mz.solutions.office.resources.OfficeDocumentFactoryKeys.NO_IN_MEMORY_DOCUMENTS;
 import static com.mz.solutions.office.resources.OfficeDocumentFactoryKeys.NO_PROPERTY;
 
 /**
@@ -142,9 +146,11 @@ public abstract class OfficeDocumentFactory {
     /**
      * Wählt die passende Implementierung anhand des übergebenen Dokumentes aus.
      * 
-     * <p>Voraussetzung dafür ist, das das übergebene Dokument mehrfach geöffnet
-     * und gelesen werden darf, damit jede Implementierung überprüfen kann
-     * ob es sich um ein kompatibles Format handelt.</p>
+     * <p>Das zentrale Verzeichnis des Dokumentes (ZIP) wird dafür einmalig
+     * gelesen und allen Implementierungen zur Prüfung übergeben. Eigene
+     * Implementierungen prüfen weiterhin über
+     * {@link #isMyDocumentType(Path)} und müssen das Dokument dazu ggf.
+     * erneut öffnen dürfen.</p>
      * 
      * @param sourceDocument    Dokument für das eine passende Implementierung
      *                          gewählt werden soll; darf nicht
@@ -161,14 +167,63 @@ public abstract class OfficeDocumentFactory {
                 .map(OfficeDocumentFactoryConstructor::createFactoryInstance)
                 .collect(toList());
         
+        final ZipFormatProbe formatProbe = ZipFormatProbe.probe(sourceDocument);
+        
         return factories.stream()
-                .filter(factory -> factory.isMyDocumentType(sourceDocument))
+                .filter(factory -> factory.isMyDocumentType(formatProbe, sourceDocument))
+                .findFirst();
+    }
+    
+    /**
+     * Wählt die passende Implementierung anhand des übergebenen Dokumentes
+     * (im Speicher) aus.
+     * 
+     * <p>Es wird nur das zentrale Verzeichnis (ZIP) ausgewertet, der Inhalt
+     * wird dafür nicht kopiert. Eigene Implementierungen werden hierbei nicht
+     * berücksichtigt, da diese nur Dateien prüfen können.</p>
+     * 
+     * @param sourceDocument    Vollständiges Dokument; darf nicht
+     *                          {@code null} sein.
+     * 
+     * @return  Factory-Implementierung oder {@code Optional.empty()}.
+     */
+    public static Optional<OfficeDocumentFactory> newInstanceByDocumentType(
+            final byte[] sourceDocument) throws OfficeDocumentException {
+        
+        Objects.requireNonNull(sourceDocument, "sourceDocument");
+        
+        return newInstanceByDocumentType(ByteBuffer.wrap(sourceDocument));
+    }
+    
+    /**
+     * Wählt die passende Implementierung anhand des übergebenen Dokumentes
+     * (im Speicher) aus; siehe {@link #newInstanceByDocumentType(byte[])}.
+     * 
+     * @param sourceDocument    Puffer mit dem vollständigen Dokument ab der
+     *                          aktuellen Position; Position und Limit bleiben
+     *                          unverändert. Darf nicht {@code null} sein.
+     * 
+     * @return  Factory-Implementierung oder {@code Optional.empty()}.
+     */
+    public static Optional<OfficeDocumentFactory> newInstanceByDocumentType(
+            final ByteBuffer sourceDocument) throws OfficeDocumentException {
+        
+        Objects.requireNonNull(sourceDocument, "sourceDocument");
+        
+        final List<OfficeDocumentFactory> factories = factoryImpls.stream()
+                .map(OfficeDocumentFactoryConstructor::createFactoryInstance)
+                .collect(toList());
+        
+        final ZipFormatProbe formatProbe = ZipFormatProbe.probe(sourceDocument);
+        
+        return factories.stream()
+                .filter(factory -> factory.isMyDocumentType(formatProbe, null))
                 .findFirst();
     }
     
     ////////////////////////////////////////////////////////////////////////////
 
-    private final Map<OfficePropertyType, Object> properties;
+    private final Map<OfficePropertyType<?>, Object> properties;
     
     {
         properties = new IdentityHashMap<>();
@@ -179,6 +234,8 @@ public abstract class OfficeDocumentFactory {
         setProperty(OfficeProperty.ERR_ON_VER_MISMATCH, Boolean.FALSE);
         setProperty(OfficeProperty.ERR_ON_NO_DATA, Boolean.TRUE);
         setProperty(OfficeProperty.IMG_LOAD_AND_EMBED_EXTERNAL, Boolean.TRUE);
+        setProperty(OfficeProperty.IMG_RESAMPLE_DPI, 0);
+        setProperty(OfficeProperty.RENDER_PARALLELISM, 0);
     }
     
     /**
@@ -193,6 +250,11 @@ public abstract class OfficeDocumentFactory {
      * Dokumente. Somit wirkt sich eine Einstellungsänderung nicht nur auf
      * nachfolgend geöffnete Dokumente aus!</p>
      * 
+     * <p>Die Einstellungen werden zu Beginn jeder Dokumenten-Erstellung
+     * einmalig übernommen; eine Änderung während einer laufenden Erstellung
+     * (z.B. aus einem anderen Thread) wirkt sich erst auf die nächste
+     * Erstellung aus.</p>
+     * 
      * @param <T>           Typ der Wertes für die Einstellung.
      * 
      * @param property      Instanz der Property-Klasse; z.B.
@@ -208,7 +270,9 @@ public abstract class OfficeDocumentFactory {
                     /* {0} */ property.name()));
         }
         
-        properties.put(property, value);
+        synchronized (properties) {
+            properties.put(property, value);
+        }
     }
     
     /**
@@ -229,7 +293,10 @@ public abstract class OfficeDocumentFactory {
     public final <T> T getProperty(OfficePropertyType<T> property) {
         Objects.requireNonNull(property, "property");
         
-        final T result = (T) properties.get(property);
+        final T result;
+        synchronized (properties) {
+            result = (T) properties.get(property);
+        }
         
         if (property.isValidPropertyValue(result) == false) {
             // Dann wurde wahrscheinlich keine Einstellung gesetzt
@@ -240,6 +307,18 @@ public abstract class OfficeDocumentFactory {
         return result;
     }
     
+    /**
+     * Übernimmt alle aktuell gesetzten Einstellungen als unveränderlichen
+     * Stand für eine Dokumenten-Erstellung.
+     * 
+     * @return          Einstellungen zum Zeitpunkt des Aufrufs
+     */
+    final RenderSettings createRenderSettings() {
+        synchronized (properties) {
+            return new RenderSettings(properties);
+        }
+    }
+    
     /**
      * Öffnet ein Office-Dokument basierend auf dem Format der Office
      * Implementierung für Ersetzungsvorgänge.
@@ -264,6 +343,127 @@ public abstract class OfficeDocumentFactory {
     public abstract OfficeDocument openDocument(Path document)
             throws OfficeDocumentException;
     
+    /**
+     * Öffnet ein Office-Dokument aus einem Stream, z.B. aus einer Datenbank
+     * oder einem Object-Store, ohne dieses vorher als Datei abzulegen.
+     * 
+     * <p>Der Stream wird vollständig gelesen, aber nicht geschlossen.</p>
+     * 
+     * @param document  Stream mit dem vollständigen Dokument; darf nicht
+     *                  {@code null} sein.
+     * 
+     * @return          Dokument
+     * 
+     * @throws          UncheckedIOException
+     *                  Im Falle eines I/O Fehlers beim Lesen des Streams.
+     * 
+     * @throws          OfficeDocumentException
+     *                  Wenn es sich um kein gültiges Dokument handelt.
+     * 
+     * @throws          IllegalStateException
+     *                  Wenn die Implementierung nur Dateien öffnen kann;
+     *                  siehe {@link #isInMemoryDocumentSupported()}.
+     */
+    public final OfficeDocument openDocument(InputStream document)
+            throws OfficeDocumentException {
+        
+        Objects.requireNonNull(document, "document");
+        requireInMemoryDocumentSupport();
+        
+        return openDocument(new ZIPDocumentFile(new ZippedDocument(document)));
+    }
+    
+    /**
+     * Öffnet ein Office-Dokument aus dem übergebenen Byte-Array; siehe
+     * {@link #openDocument(InputStream)}. Das Array wird nicht kopiert und
+     * nach dem Öffnen nicht mehr benötigt.
+     * 
+     * @param document  Vollständiges Dokument; darf nicht {@code null} sein.
+     * 
+     * @return          Dokument
+     * 
+     * @throws          IllegalStateException
+     *                  Wenn die Implementierung nur Dateien öffnen kann;
+     *                  siehe {@link #isInMemoryDocumentSupported()}.
+     */
+    public final OfficeDocument openDocument(byte[] document)
+            throws OfficeDocumentException {
+        
+        Objects.requireNonNull(document, "document");
+        return openDocument(ByteBuffer.wrap(document));
+    }
+    
+    /**
+     * Öffnet ein Office-Dokument aus dem übergebenen Puffer (z.B. auch
+     * Memory-Mapped oder Direct-Buffer); siehe {@link #openDocument(InputStream)}.
+     * 
+     * @param document  Puffer mit dem vollständigen Dokument ab der aktuellen
+     *                  Position; Position und Limit bleiben unverändert. Darf
+     *                  nicht {@code null} sein.
+     * 
+     * @return          Dokument
+     * 
+     * @throws          IllegalStateException
+     *                  Wenn die Implementierung nur Dateien öffnen kann;
+     *                  siehe {@link #isInMemoryDocumentSupported()}.
+     */
+    public final OfficeDocument openDocument(ByteBuffer document)
+            throws OfficeDocumentException {
+        
+        Objects.requireNonNull(document, "document");
+        requireInMemoryDocumentSupport();
+        
+        return openDocument(new ZIPDocumentFile(ZippedDocument.of(document)));
+    }
+    
+    /**
+     * Gibt an ob die Implementierung Dokumente aus dem Speicher öffnen kann
+     * ({@link #openDocument(InputStream)}, {@link #openDocument(byte[])},
+     * {@link #openDocument(ByteBuffer)}); Voraussetzung auch für
+     * {@link TemplateRegistry} und {@link BatchGenerator}.
+     * 
+     * <p>Nur die eingebauten Implementierungen unterstützen dies; eigene
+     * Implementierungen können Dokumente nur über
+     * {@link #openDocument(Path)} öffnen.</p>
+     * 
+     * @return  {@code true}, wenn Dokumente aus dem Speicher geöffnet werden
+     *          können
+     */
+    public final boolean isInMemoryDocumentSupported() {
+        return null != inMemoryDocumentOpener();
+    }
+    
+    final void requireInMemoryDocumentSupport() {
+        if (isInMemoryDocumentSupported() == false) {
+            throw new IllegalStateException(formatMessage(NO_IN_MEMORY_DOCUMENTS,
+                    /* {0} */ getClass().getName()));
+        }
+    }
+    
+    /**
+     * Öffnet das bereits im Speicher gelesene Dokument.
+     * 
+     * @param document  Gelesenes Dokument; wird nicht verändert und darf
+     *                  von mehreren Dokumenten geteilt werden
+     * 
+     * @return          Dokument
+     */
+    final OfficeDocument openDocument(ZIPDocumentFile document) {
+        requireInMemoryDocumentSupport();
+        return inMemoryDocumentOpener().apply(document);
+    }
+    
+    /**
+     * Öffnet bereits im Speicher gelesene Dokumente; wird nur von den
+     * eingebauten Implementierungen bereitgestellt.
+     * 
+     * @return  Funktion zum Öffnen oder {@code null}, wenn nicht unterstützt
+     */
+    @Nullable
+    Function<ZIPDocumentFile, OfficeDocument> inMemoryDocumentOpener() {
+        return null;
+    }
+    
     ///// Interne Implementierungen ////////////////////////////////////////////
     
     /**
@@ -281,6 +481,24 @@ public abstract class OfficeDocumentFactory {
      */
     protected abstract boolean isMyDocumentType(Path document);
     
+    /**
+     * Überprüft anhand des bereits gelesenen zentralen Verzeichnisses ob
+     * diese Implementierung zum Dokument passt.
+     * 
+     * <p>Die Standardimplementierung ignoriert {@code formatProbe} und
+     * delegiert an {@link #isMyDocumentType(Path)}.</p>
+     * 
+     * @param formatProbe   Einträge des Dokumentes; nie {@code null}
+     * @param document      Dokument das zu prüfen ist oder {@code null},
+     *                      wenn das Dokument nur im Speicher vorliegt
+     * 
+     * @return              bei {@code true} ist die Implementierung mit dem
+     *                      übergebenen Dokument kompatibel
+     */
+    boolean isMyDocumentType(ZipFormatProbe formatProbe, @Nullable Path document) {
+        return null != document && isMyDocumentType(document);
+    }
+    
     ////////////////////////////////////////////////////////////////////////////
     // Utility-Methoden zu Vereinfach der Formatüberprüfung
     ////////////////////////////////////////////////////////////////////////////
@@ -294,25 +512,23 @@ public abstract class OfficeDocumentFactory {
     protected byte[] readDataFromFile(Path file, int maxReadBuffer)
             throws IOException {
         
-        // Der folgende Part SOLLTE DRINGEND neu geschrieben werden
-        // weil arsch lahm und ziemlich RAM fressend!!!!
+        // Die eingebauten Implementierungen nutzen stattdessen das zentrale
+        // Verzeichnis (ZipFormatProbe); bleibt für eigene Implementierungen.
         
-        final ByteArrayOutputStream byteOut =
-                new ByteArrayOutputStream(maxReadBuffer);
+        final ByteArrayOutputStream byteOut = new ByteArrayOutputStream(
+                (int) Math.min(maxReadBuffer, Math.max(0L, Files.size(file))));
         
         try (InputStream inFile = Files.newInputStream(file)) {
+            final byte[] buffer = new byte[8192];
             
-            int read = 0;
-            int lastRead = 0;
+            int remaining = maxReadBuffer;
+            int lastRead;
             
-            while (read < maxReadBuffer && lastRead != -1) {
-                lastRead = inFile.read();
-                
-                if (lastRead != -1) {
-                    byteOut.write(lastRead);
-                }
+            while (remaining > 0 && (lastRead = inFile.read(
+                    buffer, 0, Math.min(buffer.length, remaining))) != -1) {
                 
-                read++;
+                byteOut.write(buffer, 0, lastRead);
+                remaining -= lastRead;
             }
         }
         
@@ -84,22 +84,66 @@ public final class OfficeProperty<TPropertyValue>
      */
     public static final OfficeProperty<Boolean> IMG_LOAD_AND_EMBED_EXTERNAL;
     
+    /**
+     * Ziel-Auflösung (DPI) für einzubettende JPEG/PNG Bild-Resourcen.
+     * 
+     * <p>Bei einem Wert größer {@code 0} werden Bilder, deren Pixel-Größe die Anzeige-Größe aus
+     * {@link ImageValue#setDimension} bei dieser Auflösung übersteigt, vor dem Einbetten herunter
+     * skaliert und neu komprimiert. Bilder deren Anzeige-Größe vom Dokument (Bild-Platzhalter)
+     * vorgegeben wird, bleiben unverändert, sofern nicht
+     * {@link ImageValue#setOverwriteDimension(boolean)} gesetzt wurde. Verarbeitete Bilder werden
+     * anhand von Inhalt und Ziel-Größe zwischengespeichert.</p>
+     * 
+     * <p>Die Voreinstellung ist {@code 0}; Bilder werden unverändert eingebettet. Übliche Werte
+     * sind {@code 150} (Bildschirm) oder {@code 300} (Druck).</p>
+     */
+    public static final OfficeProperty<Integer> IMG_RESAMPLE_DPI;
+    
+    /**
+     * Anzahl der {@code DataPage}'s die gleichzeitig (in mehreren Threads) befüllt werden.
+     * 
+     * <p>Bei einem Wert größer {@code 1} werden die Seiten auf einem eigenen {@code ForkJoinPool}
+     * mit der angegebenen Anzahl an Threads befüllt und anschließend in ursprünglicher
+     * Reihenfolge ins Dokument übernommen. Verwendete {@code ValueInterceptor}'s müssen dafür
+     * thread-safe sein. Bei Word-Dokumenten werden zusätzlich Kopf- und Fußzeilen sowie Fuß- und
+     * Endnoten gleichzeitig zum Hauptdokument befüllt; Anweisungen für Kopf- und Fußzeilen werden
+     * dabei weiterhin im aufrufenden Thread abgefragt. Die Nummerierung eingefügter Bilder folgt
+     * dann nicht mehr zwingend der Reihenfolge der Seiten.</p>
+     * 
+     * <p>Die Voreinstellung ist {@code 0}; alle Seiten werden nacheinander im aufrufenden Thread
+     * befüllt. Sinnvoll ist z.B. {@code Runtime.getRuntime().availableProcessors()}.</p>
+     */
+    public static final OfficeProperty<Integer> RENDER_PARALLELISM;
+    
     static {
         ERR_ON_VER_MISMATCH = new OfficeProperty<>("ERR_ON_VER_MISMATCH");
         ERR_ON_MISSING_VAL = new OfficeProperty<>("ERR_ON_MISSING_VAL");
         ERR_ON_NO_DATA = new OfficeProperty<>("ERR_ON_NO_DATA");
         IMG_LOAD_AND_EMBED_EXTERNAL = new OfficeProperty<>("IMG_LOAD_AND_EMBED_EXTERNAL");
+        IMG_RESAMPLE_DPI = new OfficeProperty<>("IMG_RESAMPLE_DPI", Integer.class);
+        RENDER_PARALLELISM = new OfficeProperty<>("RENDER_PARALLELISM", Integer.class);
     }
     
     ////////////////////////////////////////////////////////////////////////////
     
+    private final Class<?> valueType;
+    
     private OfficeProperty(String name) {
+        this(name, Boolean.class);
+    }
+    
+    private OfficeProperty(String name, Class<?> valueType) {
         super(name);
+        this.valueType = valueType;
     }
 
     @Override
     public boolean isValidPropertyValue(TPropertyValue value) {
-        return value instanceof Boolean;
+        if (value instanceof Integer) {
+            return valueType == Integer.class && ((Integer) value) >= 0;
+        }
+        
+        return valueType.isInstance(value);
     }
 
 }
@@ -35,6 +35,9 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.w3c.dom.*;
 
 final class OpenDocument extends AbstractOfficeXmlDocument {
@@ -54,16 +57,38 @@ final class OpenDocument extends AbstractOfficeXmlDocument {
     
     ////////////////////////////////////////////////////////////////////////////////////////////////
     
-    private final MyInterceptionContext interceptionContext = new MyInterceptionContext();
+    /** Je Thread, da Seiten auch parallel befüllt werden können. */
+    private final ThreadLocal<MyInterceptionContext> interceptionContext =
+            ThreadLocal.withInitial(MyInterceptionContext::new);
     
-    private volatile int imageCounter = 16_000;
-    private int styleCounter = 0;
+    private final AtomicInteger imageCounter = new AtomicInteger(16_000);
+    private final AtomicInteger styleCounter = new AtomicInteger(0);
     
-    private volatile Map<ImageResource, String> cacheImageResources = new IdentityHashMap<>();
+    /**
+     * Sperre für die eingebetteten Bild-Resourcen, das Manifest und den neuen Dokument-Container;
+     * wird bei paralleler Befüllung der Seiten von mehreren Threads verwendet.
+     */
+    private final Object imageRegistryLock = new Object();
+    
+    /**
+     * Bereits eingebettete Bild-Resourcen; Schlüssel ist die {@link ImageResource} selbst oder,
+     * wenn Bilder verkleinert werden, das {@link ImageResampler.Target} (Resource + Ziel-Größe).
+     */
+    private final Map<Object, String> cacheImageResources = new HashMap<>();
+    
+    /**
+     * Neu eingebettete Dateien (Pfad &rarr; MIME-Type) für {@code META-INF/manifest.xml}; wird
+     * erst nach dem Befüllen des Dokumentes einmalig in das Manifest übernommen.
+     */
+    private final Map<String, String> manifestEntries = new LinkedHashMap<>();
     
     public OpenDocument(OfficeDocumentFactory factory, Path document) {
         super(factory, document);
     }
+    
+    public OpenDocument(OfficeDocumentFactory factory, ZIPDocumentFile document) {
+        super(factory, document);
+    }
 
     @Override
     protected String getImplementedOfficeName() {
@@ -72,14 +97,17 @@ final class OpenDocument extends AbstractOfficeXmlDocument {
     
     @Override
     protected void createAndFillDocument(Iterator<DataPage> dataPages) {
-        this.imageCounter = 16_000;
-        this.styleCounter = 0;
+        this.imageCounter.set(16_000);
+        this.styleCounter.set(0);
         this.cacheImageResources.clear();
+        this.manifestEntries.clear();
         
         try {
             fillDocuments0(dataPages);
+            writeManifestEntries();
         } finally {
             this.cacheImageResources.clear();
+            this.manifestEntries.clear();
         }
     }
     
@@ -88,29 +116,28 @@ final class OpenDocument extends AbstractOfficeXmlDocument {
         removeUserFieldDeclaration(documentContent);
         
         final Node nodeContentBody = findDocumentBody(documentContent);
+        prepareTableLayouts(nodeContentBody);
         
-        // Leeren Content-Body um alle Datensätze anfügen zu können
-        final Node newFullContentBody = nodeContentBody.cloneNode(true);
-        final NodeList bodyChildNodes = newFullContentBody.getChildNodes();
-        
-        for (int i = 0; i < bodyChildNodes.getLength(); i++) {
-            newFullContentBody.removeChild(bodyChildNodes.item(i));
-        }
+        // Leeren Content-Body um alle Datensätze anfügen zu können; die flache Kopie übernimmt
+        // nur das Element samt Attributen
+        final Node newFullContentBody = nodeContentBody.cloneNode(false);
         
         boolean missingDataPages = true;
         
+        if (renderParallelism() > 1) {
+            missingDataPages = fillPagesInParallel(
+                    dataPageIterator, documentContent, newFullContentBody) == false;
+        }
+        
         while (dataPageIterator.hasNext()) {
             final DataPage nextPage = dataPageIterator.next();
             final Node newContentBody = nodeContentBody.cloneNode(true);
             
+            startInterceptorPage(nextPage);
             replaceDocumentTree(newContentBody, nextPage);
             
-            // Alle Elemente im leeren Content-Body anfügen
-            final NodeList filledNodes = newContentBody.getChildNodes();
-            
-            for (int i = 0; i < filledNodes.getLength(); i++) {
-                newFullContentBody.appendChild(filledNodes.item(i));
-            }
+            // Alle Elemente im Content-Body anfügen; gesammelt als Fragment in einem Schritt
+            newFullContentBody.appendChild(moveChildNodesToFragment(newContentBody));
             
             missingDataPages = false;
         }
@@ -131,10 +158,129 @@ final class OpenDocument extends AbstractOfficeXmlDocument {
         parentNode.replaceChild(newFullContentBody, nodeContentBody);
     }
     
+    /**
+     * Befüllt alle Seiten parallel. Jede Seite wird in einem eigenen XML-Dokument (Kopie von
+     * {@code content.xml}) befüllt, sodass sich die Threads keine DOM-Strukturen teilen; danach
+     * werden Inhalt und neu angelegte Styles der Seite in Reihenfolge übernommen.
+     * 
+     * @return  {@code true}, wenn mindestens eine Seite befüllt wurde
+     */
+    private boolean fillPagesInParallel(
+            Iterator<DataPage> dataPageIterator,
+            Document documentContent,
+            Node newFullContentBody)
+    {
+        final int parallelism = renderParallelism();
+        final Element contentRoot = documentContent.getDocumentElement();
+        final Element automaticStyles = elementByTagName(
+                "office:automatic-styles", contentRoot).orElse(null);
+        
+        final BlockingQueue<Document> pageTemplates = newPageTemplates(contentRoot, parallelism);
+        
+        final Map<String, Element> knownStyles = namedChildElements(automaticStyles);
+        final Map<String, String> sharedHiddenStyleNames = new ConcurrentHashMap<>();
+        
+        return fillPagesInParallel(dataPageIterator, parallelism, dataPage -> {
+            final Document pageDocument = copyPageTemplate(pageTemplates);
+            pageDocument.setUserData(StyleIndex.USER_DATA_KEY,
+                    new StyleIndex(pageDocument, sharedHiddenStyleNames), null);
+            
+            final Node pageContentBody = findDocumentBody(pageDocument);
+            
+            startInterceptorPage(dataPage);
+            replaceDocumentTree(pageContentBody, dataPage);
+            
+            return pageDocument;
+            
+        }, pageDocument -> {
+            final DocumentFragment pageContent = moveChildNodesToFragment(
+                    findDocumentBody(pageDocument));
+            
+            newFullContentBody.appendChild(documentContent.adoptNode(pageContent));
+            
+            if (null == automaticStyles) {
+                return;
+            }
+            
+            // Auf der Seite neu angelegte Styles (versteckte Absätze, Grafiken) übernehmen; an
+            // gleicher Position wie auf der Seite, also wie bei der sequentiellen Befüllung
+            final Element pageAutomaticStyles = elementByTagName(
+                    "office:automatic-styles", pageDocument.getDocumentElement()).orElse(null);
+            
+            Element previousStyle = null;
+            
+            for (Map.Entry<String, Element> pageStyle
+                    : namedChildElements(pageAutomaticStyles).entrySet())
+            {
+                final Element knownStyle = knownStyles.get(pageStyle.getKey());
+                if (null != knownStyle) {
+                    previousStyle = knownStyle;
+                    continue;
+                }
+                
+                final Node newStyle = documentContent.adoptNode(pageStyle.getValue());
+                automaticStyles.insertBefore(newStyle, null == previousStyle
+                        ? automaticStyles.getFirstChild()
+                        : previousStyle.getNextSibling());
+                
+                previousStyle = (Element) newStyle;
+                knownStyles.put(pageStyle.getKey(), previousStyle);
+            }
+        });
+    }
+    
+    /** Kind-Elemente mit {@code style:name} Attribut, nach Namen. */
+    private Map<String, Element> namedChildElements(Element parentElement) {
+        final Map<String, Element> namedElements = new LinkedHashMap<>();
+        
+        if (null == parentElement) {
+            return namedElements;
+        }
+        
+        for (Node child = parentElement.getFirstChild(); null != child;
+                child = child.getNextSibling())
+        {
+            if (child instanceof Element && ((Element) child).hasAttribute("style:name")) {
+                final Element namedElement = (Element) child;
+                namedElements.putIfAbsent(namedElement.getAttribute("style:name"), namedElement);
+            }
+        }
+        
+        return namedElements;
+    }
+    
     private Document getDocumentManifest() {
         return getDocumentPart(ZIP_MANIFEST);
     }
     
+    private void writeManifestEntries() {
+        if (manifestEntries.isEmpty()) {
+            return; // Manifest muss nicht einmal gelesen werden
+        }
+        
+        final Document documentManifest = getDocumentManifest();
+        final NodeList manifestNodeList = documentManifest.getElementsByTagName("manifest:manifest");
+        if (manifestNodeList.getLength() == 0) {
+            throw new IllegalStateException("Internal - no manifest root element found");
+        }
+        
+        final Element manifest = (Element) manifestNodeList.item(0);
+        final NodeList existingFileEntries = manifest.getElementsByTagName("manifest:file-entry");
+        final Set<String> existingFullPaths = new HashSet<>();
+        
+        for (int i = 0; i < existingFileEntries.getLength(); i++) {
+            existingFullPaths.add(((Element) existingFileEntries.item(i))
+                    .getAttribute("manifest:full-path"));
+        }
+        
+        for (Map.Entry<String, String> manifestEntry : manifestEntries.entrySet()) {
+            if (existingFullPaths.add(manifestEntry.getKey())) {
+                manifest.appendChild(createManifestFileEntryElement(
+                        documentManifest, manifestEntry.getValue(), manifestEntry.getKey()));
+            }
+        }
+    }
+    
     private void processHeaderFooter() {
         if (hasHeaderFooterInstructions() == false) return;
         
@@ -187,6 +333,7 @@ final class OpenDocument extends AbstractOfficeXmlDocument {
         
         if (null == values) return; // Kein Ersetzungsvorgang
         
+        startInterceptorPage(values);
         replaceDocumentTree(element, values);
     }
 
@@ -240,21 +387,36 @@ final class OpenDocument extends AbstractOfficeXmlDocument {
     }
     
     private void replaceFieldsAndImages(Node documentBody, DataValueMap value) {
-        for (Node drawFrameNode : walkDrawFrames(documentBody)) {
-            replaceDrawFrame((Element) drawFrameNode, value);
-        }
+        final PlaceholderNodes placeholderNodes = new PlaceholderNodes(documentBody);
         
-        for (Node userFieldNode : walkUserFields(documentBody)) {
-            replaceFieldNode(userFieldNode, value);
+        for (Node drawFrameNode : placeholderNodes.drawFrames) {
+            if (isAttachedTo(drawFrameNode, documentBody)) {
+                replaceDrawFrame((Element) drawFrameNode, value);
+            }
         }
         
-        for (Node placeholderNode : walkPlaceholders(documentBody)) {
-            replaceFieldNode(placeholderNode, value);
+        // Reihenfolge wie zuvor: Benutzerfelder, Platzhalter, Datenbank-Felder
+        for (Node fieldNode : placeholderNodes.fields) {
+            if (isAttachedTo(fieldNode, documentBody)) {
+                replaceFieldNode(fieldNode, value);
+            }
         }
-        
-        for (Node databaseNode : walkDatabaseDisplayFields(documentBody)) {
-            replaceFieldNode(databaseNode, value);
+    }
+    
+    /**
+     * Prüft ob der Node (noch) unterhalb des Wurzel-Nodes hängt; Nodes in zuvor entfernten
+     * Absätzen oder Tabellen werden nicht mehr ersetzt.
+     */
+    private boolean isAttachedTo(Node anyNode, Node rootNode) {
+        for (Node currentNode = anyNode; null != currentNode;
+                currentNode = currentNode.getParentNode())
+        {
+            if (currentNode == rootNode) {
+                return true;
+            }
         }
+        
+        return false;
     }
     
     private void replaceUnknownTable(Node tableNode, DataMap values) {
@@ -273,10 +435,78 @@ final class OpenDocument extends AbstractOfficeXmlDocument {
                     "(Internal Error) Found unknown table: " + tableName);
         }
         
-        final List<Node> tableRows = walkTableRows(tableNode).asList();
+        final TableLayout tableLayout = tableLayoutOf(tableNode);
+        final Node[] tableRows = tableLayout.resolveRows(tableNode);
+        final int dataRowIndex = tableLayout.dataRowIndex;
+        
+        // Alle Zeilen die NICHT die zu wiederholende Datenzeilen sind
+        // ganz normal ersetzen
+        for (int i = 0; i < tableRows.length; i++) {
+            if (dataRowIndex == i /* current */) {
+                continue;
+            }
+            
+            replaceFieldsAndImages(tableRows[i], tableData.get());
+        }
+        
+        if (tableLayout.hasDataRow() == false) {
+            // Keine Datenzeile vorhanden. Also kann die Ersetzung jener ausfallen.
+            removeTableElementIfZeroRows(tableNode, tableRows.length);
+            return;
+        }
+        
+        final Node tableDataRow = tableRows[dataRowIndex];
+        final Node tableDataRowParent = tableDataRow.getParentNode();
+        
+        int insertedRowCount = 0;
+        
+        final Iterator<DataTableRow> rowIterator = tableData.get().iterator();
+        while (rowIterator.hasNext()) {
+            final DataTableRow rowData = rowIterator.next();
+            final Node newTableRow = tableDataRow.cloneNode(true);
+            
+            replaceDocumentTree(newTableRow, rowData);
+            
+            tableDataRowParent.insertBefore(newTableRow, tableDataRow);
+            insertedRowCount++;
+        }
+        
+        tableDataRowParent.removeChild(tableDataRow);
+        removeTableElementIfZeroRows(tableNode, tableRows.length - 1 + insertedRowCount);
+    }
+    
+    /**
+     * Aufbau der Tabelle; wird beim ersten Zugriff ermittelt und am Tabellen-Element hinterlegt.
+     * Kopien des Elementes (je Seite bzw. je Zeile einer äußeren Tabelle) übernehmen den Aufbau
+     * über {@link #COPY_ON_CLONE}, sodass dieser je Vorlagen-Tabelle nur einmal
+     * ermittelt wird.
+     */
+    private TableLayout tableLayoutOf(Node tableNode) {
+        final Object knownLayout = tableNode.getUserData(TableLayout.USER_DATA_KEY);
+        if (knownLayout instanceof TableLayout) {
+            return (TableLayout) knownLayout;
+        }
         
-        final int dataRowIndex;// = tableRows.size() - 1; // tableRows.size() == 1 ? 0 : 1;
-        final boolean thereIsNoDataRow;
+        final TableLayout tableLayout = analyzeTableLayout(tableNode);
+        tableNode.setUserData(TableLayout.USER_DATA_KEY, tableLayout, COPY_ON_CLONE);
+        
+        return tableLayout;
+    }
+    
+    /**
+     * Ermittelt vorab den Aufbau aller (auch verschachtelter) Tabellen der Vorlage, damit jede
+     * Kopie davon den bereits ermittelten Aufbau übernimmt.
+     */
+    private void prepareTableLayouts(Node templateNode) {
+        for (Node tableNode : nodesByTagName("table:table", templateNode)) {
+            tableLayoutOf(tableNode);
+        }
+    }
+    
+    private TableLayout analyzeTableLayout(Node tableNode) {
+        final List<Node> tableRows = new ArrayList<>(walkTableRows(tableNode).asList());
+        
+        final int dataRowIndex;
         
         if (hasTableHeaderRows(tableNode)) {
             int assumedDataRowIndex = -1; // Keine Data-Row
@@ -298,51 +528,17 @@ final class OpenDocument extends AbstractOfficeXmlDocument {
                 }
             }
             
-            // Wenn dataRowIndex||assumedDataRowIndex == -1 dann:
+            // Wenn assumedDataRowIndex == -1 dann:
             // Keine Datenzeile gefunden? Dann sind alles Kopf-Zeilen. Ersetzungsvorgang
             // kann somit nach dem Ersetzen der Kopfzeilen enden.
-            if (assumedDataRowIndex == -1) {
-                thereIsNoDataRow = true;
-            } else {
-                thereIsNoDataRow = false;
-            }
-            
             dataRowIndex = assumedDataRowIndex;
+        } else if (tableRows.isEmpty()) {
+            dataRowIndex = -1;
         } else {
             dataRowIndex = tableRows.size() == 1 ? 0 : 1;
-            thereIsNoDataRow = false;
         }
         
-        final Node tableDataRow = tableRows.get(dataRowIndex);
-        
-        // Alle Zeilen die NICHT die zu wiederholende Datenzeilen sind
-        // ganz normal ersetzen
-        for (int i = 0; i < tableRows.size(); i++) {
-            if (dataRowIndex == i /* current */) {
-                continue;
-            }
-            
-            replaceFieldsAndImages(tableRows.get(i), tableData.get());
-        }
-        
-        if (thereIsNoDataRow) {
-            // Keine Datenzeile vorhanden. Also kann die Ersetzung jener ausfallen.
-            removeTableElementIfZeroRows(tableNode);
-            return;
-        }
-        
-        final Iterator<DataTableRow> rowIterator = tableData.get().iterator();
-        while (rowIterator.hasNext()) {
-            final DataTableRow rowData = rowIterator.next();
-            final Node newTableRow = tableDataRow.cloneNode(true);
-            
-            replaceDocumentTree(newTableRow, rowData);
-            
-            tableNode.insertBefore(newTableRow, tableDataRow);
-        }
-        
-        tableNode.removeChild(tableDataRow);
-        removeTableElementIfZeroRows(tableNode);
+        return new TableLayout(tableNode, tableRows, dataRowIndex);
     }
     
     private boolean hasTableHeaderRows(Node tableNode) {
@@ -368,13 +564,15 @@ final class OpenDocument extends AbstractOfficeXmlDocument {
      * keine Zeilen), sowohl keine Kopf wie Fußzeilen, dann erkennt diese Methode dies und entfernt
      * die in Office eh nicht mehr sichtbare Tabelle auf XML Ebene komplett.
      * 
-     * @param tableNode     Element {@code table:table}.
+     * @param tableNode             Element {@code table:table}.
+     * 
+     * @param remainingRowCount     Anzahl der Zeilen nach dem Ersetzen; Zeilen von verschachtelten
+     *                              Tabellen liegen immer in einer Zelle und damit in einer Zeile.
      */
-    private void removeTableElementIfZeroRows(Node tableNode) {
+    private void removeTableElementIfZeroRows(Node tableNode, int remainingRowCount) {
         final Element tableTable = (Element) tableNode;
-        final NodeList tableTableRowElements = tableTable.getElementsByTagName("table:table-row");
         
-        if (tableTableRowElements.getLength() == 0) {
+        if (remainingRowCount == 0) {
             // Dann haben wir ein quasi leeres table:table Element (außergenommen paar anderer
             // Defintionen die nicht sichtbar sind) und jenes Element entfernen wir gleich ganz.
             tableTable.getParentNode().removeChild(tableTable);
@@ -395,6 +593,7 @@ final class OpenDocument extends AbstractOfficeXmlDocument {
                             /* {0} */ fieldName));
         }
         
+        final MyInterceptionContext interceptionContext = this.interceptionContext.get();
         interceptionContext.init(fieldName, values);
         
         final DataValue dataValue = handleInterception(value.get(), interceptionContext);
@@ -500,31 +699,19 @@ final class OpenDocument extends AbstractOfficeXmlDocument {
             return;
         }
         
-        final StringBuilder textBuilder = new StringBuilder();
+        // Text an Zeilenumbrüchen und Tabulatoren aufteilen; CR wird ignoriert
+        final String formattedText = removeCarriageReturns(textContent);
         
-        for (char chLetter : textContent.toCharArray()) {
-            if (chLetter == '\r') {
-                continue;
-            }
-            
-            final boolean special = chLetter == '\n' || chLetter == '\t';
-            
-            if (special == false) {
-                textBuilder.append(chLetter);
-                continue;
-            }
-            
-            // Behandlung Formatierungsangabe
-            final boolean needTextNode = textBuilder.length() != 0;
-            
-            if (needTextNode) {
-                final String nodeText = textBuilder.toString();
-                final Node textNode = document.createTextNode(nodeText);
-                
-                parentNode.insertBefore(textNode, userFieldNode);
-                textBuilder.setLength(0);
+        int segmentStart = 0;
+        int formattingCharIndex = indexOfFormattingChar(formattedText, 0);
+        
+        while (formattingCharIndex != -1) {
+            if (formattingCharIndex > segmentStart) {
+                final String nodeText = formattedText.substring(segmentStart, formattingCharIndex);
+                parentNode.insertBefore(document.createTextNode(nodeText), userFieldNode);
             }
             
+            final char chLetter = formattedText.charAt(formattingCharIndex);
             final Node formatElement;
             
             switch (chLetter) {
@@ -537,10 +724,13 @@ final class OpenDocument extends AbstractOfficeXmlDocument {
             }
             
             parentNode.insertBefore(formatElement, userFieldNode);
+            
+            segmentStart = formattingCharIndex + 1;
+            formattingCharIndex = indexOfFormattingChar(formattedText, segmentStart);
         }
         
-        if (textBuilder.length() > 0) {
-            final String text = textBuilder.toString();
+        if (segmentStart < formattedText.length()) {
+            final String text = formattedText.substring(segmentStart);
             final Node textNode = document.createTextNode(text);
             
             parentNode.insertBefore(textNode, userFieldNode);
@@ -554,13 +744,22 @@ final class OpenDocument extends AbstractOfficeXmlDocument {
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
     private String incrementedStyleSuffix() {
-        styleCounter++;
-        return ".MZ.SCOPY" + styleCounter;
+        return ".MZ.SCOPY" + styleCounter.incrementAndGet();
     }
     
-    private Element prepareStyleElementFor(Element anyStyledElement) {
-        final Element style = lookupStyleElementFor(anyStyledElement);
+    private StyleIndex styleIndexOf(Document document) {
+        final Object knownIndex = document.getUserData(StyleIndex.USER_DATA_KEY);
+        if (knownIndex instanceof StyleIndex) {
+            return (StyleIndex) knownIndex;
+        }
+        
+        final StyleIndex styleIndex = new StyleIndex(document, new HashMap<>());
+        document.setUserData(StyleIndex.USER_DATA_KEY, styleIndex, null);
         
+        return styleIndex;
+    }
+    
+    private Element prepareStyleElementFor(Element style) {
         final Element styleCopy = (Element) style.cloneNode(true);
         final String attrStyleName = styleCopy.getAttribute("style:name");
         final String newStyleName = attrStyleName + incrementedStyleSuffix();
@@ -571,38 +770,66 @@ final class OpenDocument extends AbstractOfficeXmlDocument {
         style.getParentNode().insertBefore(styleCopy, style);
         style.getParentNode().insertBefore(style, styleCopy);
         
+        styleIndexOf(style.getOwnerDocument()).stylesByName().put(newStyleName, styleCopy);
+        
         return styleCopy;
     }
     
     private void markStyleTextOrParagraphHiddenFor(Element anyElement) {
-        final Element elStyleStyle = prepareStyleElementFor(anyElement);
-        final Element styleTextProperties = elementByTagName("style:text-properties", elStyleStyle).orElse(null);
+        anyElement.setAttribute("text:style-name", lookupHiddenStyleNameFor(anyElement));
+    }
+    
+    /**
+     * Liefert den Namen der versteckten Variante des Styles vom Element; je Basis-Style wird diese
+     * nur beim ersten Mal kopiert und danach wiederverwendet.
+     */
+    private String lookupHiddenStyleNameFor(Element anyElement) {
+        final StyleIndex styleIndex = styleIndexOf(anyElement.getOwnerDocument());
+        final String styleName = lookupStyleNameFor(anyElement);
+        
+        // Auch bereits versteckte Styles sind eingetragen (bei paralleler Befüllung ggf. nur in
+        // einer anderen Seite vorhanden)
+        final String knownStyleName = styleIndex.hiddenStyleNames.get(styleName);
+        if (null != knownStyleName) {
+            return knownStyleName;
+        }
+        
+        final Element style = lookupStyleElementFor(anyElement);
+        final String hiddenStyleName = styleIndex.hiddenStyleNames.computeIfAbsent(
+                style.getAttribute("style:name"), baseStyleName -> createHiddenStyleVariant(style));
+        
+        styleIndex.hiddenStyleNames.putIfAbsent(hiddenStyleName, hiddenStyleName);
+        
+        return hiddenStyleName;
+    }
+    
+    private String createHiddenStyleVariant(Element style) {
+        final Element styleTextProperties = elementByTagName("style:text-properties", style).orElse(null);
+        final String attrTextDisplay = null == styleTextProperties
+                ? null
+                : styleTextProperties.getAttribute("text:display");
         
-        final String attrTextDisplay = styleTextProperties.getAttribute("text:display");
         if (null != attrTextDisplay && attrTextDisplay.isEmpty() == false) {
-            return;
+            // Anzeige wird bereits durch den Style selbst festgelegt; bleibt unverändert
+            return style.getAttribute("style:name");
         }
         
-        styleTextProperties.setAttribute("text:display", "none");
-        anyElement.setAttribute("text:style-name", elStyleStyle.getAttribute("style:name"));
+        final Element hiddenVariant = prepareStyleElementFor(style);
+        final Element copyTextProperties = elementByTagName(
+                "style:text-properties", hiddenVariant)
+                .orElseGet(() -> (Element) hiddenVariant.appendChild(
+                        hiddenVariant.getOwnerDocument().createElement("style:text-properties")));
+
+        copyTextProperties.setAttribute("text:display", "none");
+        
+        return hiddenVariant.getAttribute("style:name");
     }
     
     private Element lookupStyleElementFor(Element anyElement) {
         final String styleName = lookupStyleNameFor(anyElement);
         assert null != styleName : "null == styleName";
-        final NodeList styleStyleList = anyElement.getOwnerDocument()
-                .getElementsByTagName("style:style");
         
-        for (int i = 0; i < styleStyleList.getLength(); i++) {
-            final Element styleStyle = (Element) styleStyleList.item(i);
-            final String attrStyleName = styleStyle.getAttribute("style:name");
-            
-            if (styleName.equals(attrStyleName)) {
-                return styleStyle;
-            }
-        }
-        
-        return null;
+        return styleIndexOf(anyElement.getOwnerDocument()).stylesByName().get(styleName);
     }
     
     private String lookupStyleNameFor(Element anyElement) {
@@ -685,6 +912,7 @@ final class OpenDocument extends AbstractOfficeXmlDocument {
             return Optional.empty();
         }
         
+        final MyInterceptionContext interceptionContext = this.interceptionContext.get();
         interceptionContext.init(keyName, values);
         final DataValue dataValue = handleInterception(firstValue.get(), interceptionContext);
         if (dataValue.isExtendedValue() == false) {
@@ -703,11 +931,14 @@ final class OpenDocument extends AbstractOfficeXmlDocument {
 
     
     private void setupDrawFrameElement(Element drawFrame, ImageValue imageValue) {
-        final ImageResource imageResource = imageValue.getImageResource();
+        // Abmaße aus dem ImageValue gelten nur, wenn der Rahmen keine eigenen vorgibt
+        final boolean useValueDimension = imageValue.isOverwriteDimension()
+                || drawFrame.getAttribute("svg:height").isEmpty()
+                || drawFrame.getAttribute("svg:width").isEmpty();
         
-        final String imagePath = registerImageResource(imageResource);
+        final String imagePath = registerImageResource(imageValue, useValueDimension);
         
-        final String imageId = Integer.toString(imageCounter++);
+        final String imageId = Integer.toString(imageCounter.getAndIncrement());
         final String attrDrawName = "Image " + imageId;
         final String attrDrawStyleName = "GrStId" + imageId;
         
@@ -816,7 +1047,11 @@ final class OpenDocument extends AbstractOfficeXmlDocument {
         return styleStyle;
     }
     
-    private String registerImageResource(ImageResource imageResource) {
+    private String registerImageResource(ImageValue imageValue, boolean useValueDimension) {
+        final ImageResource imageResource = imageValue.getImageResource();
+        final ImageResampler.Target resampleTarget = ImageResampler.targetFor(
+                imageValue, imageResampleDpi(), useValueDimension);
+        
         final ImageResourceType mimeType;
         {
             final ImageResourceType originMimeType = Objects.requireNonNull(
@@ -826,12 +1061,15 @@ final class OpenDocument extends AbstractOfficeXmlDocument {
             if (originMimeType instanceof OpenDocumentImageResourceType) {
                 mimeType = originMimeType;
             } else {
-                mimeType = convert(originMimeType, OpenDocumentImageResourceType.values());
+                mimeType = convert(originMimeType, OpenDocumentImageResourceType.class);
             }
         }
         
-        if (cacheImageResources.containsKey(imageResource)) {
-            return cacheImageResources.get(imageResource);
+        final Object cacheKey = (null == resampleTarget) ? imageResource : resampleTarget;
+        synchronized (imageRegistryLock) {
+            if (cacheImageResources.containsKey(cacheKey)) {
+                return cacheImageResources.get(cacheKey);
+            }
         }
         
         final boolean isExternalResource = imageResource instanceof LocalImageResource
@@ -844,14 +1082,18 @@ final class OpenDocument extends AbstractOfficeXmlDocument {
                 final String resourceURL =  ((ExternalImageResource) imageResource)
                         .getResourceURL().toString();
                 
-                this.cacheImageResources.put(imageResource, resourceURL);
+                synchronized (imageRegistryLock) {
+                    this.cacheImageResources.put(cacheKey, resourceURL);
+                }
                 
                 return resourceURL;
             } else if (imageResource instanceof LocalImageResource) {
                 final String localFilePath = "file:///" + ((LocalImageResource) imageResource)
                         .getLocalResource().toAbsolutePath().toString().replace('\\', '/');
                 
-                this.cacheImageResources.put(imageResource, localFilePath);
+                synchronized (imageRegistryLock) {
+                    this.cacheImageResources.put(cacheKey, localFilePath);
+                }
                 
                 return localFilePath;
             }
@@ -862,32 +1104,38 @@ final class OpenDocument extends AbstractOfficeXmlDocument {
                 + (UUID.randomUUID().toString().replace("-", "") + ".")
                 + mimeType.getFileNameExtensions()[0];
         
-        final NodeList manifestNodeList = getDocumentManifest().getElementsByTagName("manifest:manifest");
-        if (manifestNodeList.getLength() == 0) {
-            throw new IllegalStateException("Internal - no manifest root element found");
-        }
-        
-        final Element manifest = (Element) manifestNodeList.item(0);
-        final Element manifestFileEntry = createManifestFileEntryElement(
-                Objects.requireNonNull(
-                        mimeType.getMimeType(),
-                        "ImageResourceType#getMimeType() == null"),
-                imagePath);
-        
-        manifest.appendChild(manifestFileEntry);
+        final String imageMimeType = Objects.requireNonNull(
+                mimeType.getMimeType(),
+                "ImageResourceType#getMimeType() == null");
         
-        // Zum Pfad die Bild-Resource einbinden
-        getNewDocumentFile().createNewFileInZip(imagePath);
-        getNewDocumentFile().overwrite(imagePath, Objects.requireNonNull(
-                imageResource.loadImageData(), "ImageResource#loadData() == null"));
+        // Laden und Verkleinern außerhalb der Sperre; bei gleichzeitigem Einbetten derselben
+        // Resource gewinnt das zuerst eingetragene Ergebnis
+        final byte[] imageData = Objects.requireNonNull(
+                imageResource.loadImageData(), "ImageResource#loadData() == null");
+        final byte[] processedImageData = ImageResampler.process(imageData, mimeType, resampleTarget);
         
-        this.cacheImageResources.put(imageResource, imagePath);
+        synchronized (imageRegistryLock) {
+            final String knownImagePath = cacheImageResources.get(cacheKey);
+            if (null != knownImagePath) {
+                return knownImagePath;
+            }
+            
+            this.manifestEntries.put(imagePath, imageMimeType);
+            
+            // Zum Pfad die Bild-Resource einbinden
+            getNewDocumentFile().createNewFileInZip(imagePath);
+            getNewDocumentFile().overwrite(imagePath, processedImageData);
+            
+            this.cacheImageResources.put(cacheKey, imagePath);
+        }
         
         return imagePath;
     }
     
-    private Element createManifestFileEntryElement(String mimeType, String resourcePath) {
-        final Element manifestFileEntry = getDocumentManifest().createElement("manifest:file-entry");
+    private Element createManifestFileEntryElement(
+            Document documentManifest, String mimeType, String resourcePath)
+    {
+        final Element manifestFileEntry = documentManifest.createElement("manifest:file-entry");
         manifestFileEntry.setAttribute("manifest:media-type", mimeType);
         manifestFileEntry.setAttribute("manifest:full-path", resourcePath);
         return manifestFileEntry;
@@ -949,26 +1197,6 @@ final class OpenDocument extends AbstractOfficeXmlDocument {
                 .noRecursionByElements("table:table-cell");
     }
     
-    private GenericNodeIterator walkUserFields(Node rootNode) {
-        return new GenericNodeIterator(rootNode, "text:user-field-get")
-                .noRecursionByElements("table:table");
-    }
-    
-    private GenericNodeIterator walkDrawFrames(Node rootNode) {
-        return new GenericNodeIterator(rootNode, "draw:frame")
-                .noRecursionByElements("table:table");
-    }
-    
-    private GenericNodeIterator walkPlaceholders(Node rootNode) {
-        return new GenericNodeIterator(rootNode, "text:placeholder")
-                .noRecursionByElements("table:table");
-    }
-    
-    private GenericNodeIterator walkDatabaseDisplayFields(Node rootNode) {
-        return new GenericNodeIterator(rootNode, "text:database-display")
-                .noRecursionByElements("table:table");
-    }
-    
 
     ////////////////////////////////////////////////////////////////////////////////////////////////
     // INTERCEPTION CONTEXT FÜR DIE VERWENDUNG VON VALUE-INTERCEPTOR'S
@@ -1011,4 +1239,172 @@ final class OpenDocument extends AbstractOfficeXmlDocument {
         
     }
     
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    
+    /**
+     * Alle {@code style:style} Elemente eines XML-Dokumentes nach Namen, sowie die Namen der
+     * bereits erzeugten versteckten Varianten je Basis-Style; hinterlegt am Dokument selbst.
+     */
+    private static final class StyleIndex {
+        
+        private static final String USER_DATA_KEY = StyleIndex.class.getName();
+        
+        private final Document document;
+        private Map<String, Element> stylesByName;
+        
+        /**
+         * Basis-Style &rarr; versteckte Variante; bei paralleler Befüllung von allen Seiten
+         * gemeinsam verwendet (thread-safe).
+         */
+        private final Map<String, String> hiddenStyleNames;
+        
+        private StyleIndex(Document document, Map<String, String> hiddenStyleNames) {
+            this.document = document;
+            this.hiddenStyleNames = hiddenStyleNames;
+        }
+        
+        private Map<String, Element> stylesByName() {
+            if (null != stylesByName) {
+                return stylesByName;
+            }
+            
+            stylesByName = new HashMap<>();
+            
+            final NodeList styleStyleList = document.getElementsByTagName("style:style");
+            for (int i = 0; i < styleStyleList.getLength(); i++) {
+                final Element styleStyle = (Element) styleStyleList.item(i);
+                
+                // Wie zuvor bei der linearen Suche gewinnt der erste Style mit dem Namen
+                stylesByName.putIfAbsent(styleStyle.getAttribute("style:name"), styleStyle);
+            }
+            
+            return stylesByName;
+        }
+        
+    }
+    
+    /**
+     * Aufbau einer Vorlagen-Tabelle: Position aller Zeilen (als Pfad der Kind-Indizes ausgehend
+     * vom {@code table:table} Element) und die zu wiederholende Datenzeile.
+     */
+    private static final class TableLayout {
+        
+        private static final String USER_DATA_KEY = TableLayout.class.getName();
+        
+        private final int[][] rowPaths;
+        private final int dataRowIndex;
+        
+        private TableLayout(Node tableNode, List<Node> tableRows, int dataRowIndex) {
+            this.rowPaths = new int[tableRows.size()][];
+            this.dataRowIndex = dataRowIndex;
+            
+            for (int i = 0; i < rowPaths.length; i++) {
+                rowPaths[i] = childIndexPath(tableNode, tableRows.get(i));
+            }
+        }
+        
+        private boolean hasDataRow() {
+            return dataRowIndex != -1;
+        }
+        
+        private Node[] resolveRows(Node tableNode) {
+            final Node[] tableRows = new Node[rowPaths.length];
+            
+            for (int i = 0; i < rowPaths.length; i++) {
+                Node currentNode = tableNode;
+                
+                for (int childIndex : rowPaths[i]) {
+                    currentNode = currentNode.getChildNodes().item(childIndex);
+                }
+                
+                tableRows[i] = currentNode;
+            }
+            
+            return tableRows;
+        }
+        
+        private static int[] childIndexPath(Node tableNode, Node tableRow) {
+            final Deque<Integer> childIndexes = new ArrayDeque<>();
+            
+            for (Node currentNode = tableRow; currentNode != tableNode;
+                    currentNode = currentNode.getParentNode())
+            {
+                int childIndex = 0;
+                for (Node sibling = currentNode.getPreviousSibling(); null != sibling;
+                        sibling = sibling.getPreviousSibling())
+                {
+                    childIndex++;
+                }
+                
+                childIndexes.push(childIndex);
+            }
+            
+            return childIndexes.stream().mapToInt(Integer::intValue).toArray();
+        }
+        
+    }
+    
+    /**
+     * Alle zu ersetzenden {@code draw:frame}, {@code text:user-field-get},
+     * {@code text:placeholder} und {@code text:database-display} Elemente, gesammelt in einem
+     * einzigen Durchlauf; verschachtelte Tabellen werden (wie zuvor) nicht durchsucht.
+     */
+    private static final class PlaceholderNodes {
+        
+        private final List<Node> drawFrames = new ArrayList<>();
+        
+        /** Felder in der Reihenfolge Benutzerfelder, Platzhalter, Datenbank-Felder. */
+        private final List<Node> fields;
+        
+        private final List<Node> userFields = new ArrayList<>();
+        private final List<Node> placeholders = new ArrayList<>();
+        private final List<Node> databaseFields = new ArrayList<>();
+        
+        private PlaceholderNodes(Node rootNode) {
+            collect(rootNode, false);
+            
+            this.fields = new ArrayList<>(
+                    userFields.size() + placeholders.size() + databaseFields.size());
+            
+            fields.addAll(userFields);
+            fields.addAll(placeholders);
+            fields.addAll(databaseFields);
+        }
+        
+        private void collect(Node node, boolean insideDrawFrame) {
+            boolean insideAnyDrawFrame = insideDrawFrame;
+            
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                switch (node.getNodeName()) {
+                    case "table:table":
+                        return;
+                    case "text:user-field-get":
+                        userFields.add(node);
+                        return;
+                    case "text:placeholder":
+                        placeholders.add(node);
+                        return;
+                    case "text:database-display":
+                        databaseFields.add(node);
+                        return;
+                    case "draw:frame":
+                        // Verschachtelte Rahmen gehören zum äußeren Rahmen, Felder darin nicht
+                        if (insideDrawFrame == false) {
+                            drawFrames.add(node);
+                        }
+                        
+                        insideAnyDrawFrame = true;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            
+            for (Node child = node.getFirstChild(); null != child; child = child.getNextSibling()) {
+                collect(child, insideAnyDrawFrame);
+            }
+        }
+        
+    }
+    
 }
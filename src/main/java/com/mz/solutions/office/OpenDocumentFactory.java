@@ -23,9 +23,8 @@ package com.mz.solutions.office;
 
 import static com.mz.solutions.office.resources.MessageResources.formatMessage;
 import static com.mz.solutions.office.resources.OpenDocumentFactoryKeys.NOT_ACCESSIBLE;
-import java.io.IOException;
-import static java.nio.charset.StandardCharsets.US_ASCII;
 import java.nio.file.Path;
+import java.util.function.Function;
 
 /**
  * Factory Implementierung für OpenOffice.
@@ -35,21 +34,10 @@ import java.nio.file.Path;
  */
 final class OpenDocumentFactory extends OfficeDocumentFactory {
     
-    private static final byte[] B_ZIP_PK;
-    private static final byte[] B_MIME;
-    private static final byte[] B_OASIS;
-    private static final byte[] B_META;
-    private static final byte[] B_MANIFEST;
-    private static final byte[] B_CONTENT;
+    private static final String MIME_PREFIX_OASIS = "application/vnd.oasis.opendocument.";
     
-    static {
-        B_ZIP_PK = "PK".getBytes(US_ASCII);
-        B_MIME = "application/vnd.oasis.opendocument.text".getBytes(US_ASCII);
-        B_OASIS = "urn:oasis:names:tc:opendocument:xmlns".getBytes(US_ASCII);
-        B_META = "office:document-meta".getBytes(US_ASCII);
-        B_MANIFEST = "META-INF/manifest.xml".getBytes(US_ASCII);
-        B_CONTENT = "content.xml".getBytes(US_ASCII);
-    }
+    private static final String ENTRY_MANIFEST = "META-INF/manifest.xml";
+    private static final String ENTRY_CONTENT = "content.xml";
 
     @Override
     public OfficeDocument openDocument(Path document) {
@@ -61,33 +49,31 @@ final class OpenDocumentFactory extends OfficeDocumentFactory {
         return new OpenDocument(this, document);
     }
 
+    @Override
+    Function<ZIPDocumentFile, OfficeDocument> inMemoryDocumentOpener() {
+        return document -> new OpenDocument(this, document);
+    }
+
     @Override
     protected boolean isMyDocumentType(Path document) {
-        try {
-            return isMyDocumentType0(document);
-            
-        } catch (Exception ex) {
-            ex.printStackTrace(System.err);
+        if (isFileAccessible(document) == false) {
             return false;
         }
+        
+        return isMyDocumentType(ZipFormatProbe.probe(document), document);
     }
-    
-    private boolean isMyDocumentType0(Path document)
-            throws IOException {
+
+    @Override
+    boolean isMyDocumentType(ZipFormatProbe formatProbe, Path document) {
+        final String mimeType = formatProbe.getMimeType();
         
-        if (isFileAccessible(document) == false) {
-            return false;
+        if (null != mimeType) {
+            return mimeType.startsWith(MIME_PREFIX_OASIS);
         }
         
-        final int MAX_BYTES = (1024 * 1024) * 16; /* max. 16 MB Bytes */
-        final byte[] data = readDataFromFile(document, MAX_BYTES);
-        
-        return contains(data, B_ZIP_PK) && (
-                contains(data, B_MIME)
-                || contains(data, B_OASIS)
-                || contains(data, B_META)
-                || contains(data, B_MANIFEST)
-                || contains(data, B_CONTENT));
+        // 'mimetype' ist laut Spezifikation optional (bzw. ggf. komprimiert abgelegt)
+        return formatProbe.containsEntry(ENTRY_CONTENT)
+                && formatProbe.containsEntry(ENTRY_MANIFEST);
     }
     
 }
@@ -0,0 +1,88 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office;
+
+import java.util.Map;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Intern - Unveränderlicher Stand der Einstellungen einer {@link OfficeDocumentFactory} für genau
+ * eine Dokumenten-Erstellung.
+ *
+ * <p>Der Stand wird zu Beginn von {@code generate(...)} einmalig übernommen. Während der Erstellung
+ * werden nur noch die Felder gelesen; Änderungen an der Factory (auch aus anderen Threads) wirken
+ * sich erst auf die nächste Erstellung aus. Implementierungsspezifische Einstellungen, die die
+ * Factory nicht kennt (z.B. {@link MicrosoftProperty} bei {@link OpenDocumentFactory}), sind
+ * {@code false}.</p>
+ *
+ * @author  Riebe, Moritz   (moritz.riebe@mz-entwickler.de)
+ */
+@Immutable
+final class RenderSettings {
+
+    /** {@link OfficeProperty#ERR_ON_MISSING_VAL} ist {@code Boolean.FALSE}. */
+    final boolean ignoreMissingValues;
+
+    /** {@link OfficeProperty#ERR_ON_VER_MISMATCH} ist {@code Boolean.FALSE}. */
+    final boolean ignoreVersionMismatch;
+
+    /** {@link OfficeProperty#ERR_ON_NO_DATA} ist {@code Boolean.FALSE}. */
+    final boolean ignoreMissingDataPages;
+
+    /** {@link OfficeProperty#IMG_LOAD_AND_EMBED_EXTERNAL} */
+    final boolean loadAndEmbedExternalImages;
+
+    /** {@link OfficeProperty#IMG_RESAMPLE_DPI}; {@code 0} wenn nicht gesetzt. */
+    final int imageResampleDpi;
+
+    /** {@link OfficeProperty#RENDER_PARALLELISM}; {@code 0} wenn nicht gesetzt. */
+    final int renderParallelism;
+
+    /** {@link MicrosoftProperty#INS_HARD_PAGE_BREAKS} */
+    final boolean insertHardPageBreaks;
+
+    /** {@link MicrosoftProperty#USE_DRAWING_OVER_VML} */
+    final boolean useDrawingOverVml;
+
+    RenderSettings(Map<OfficePropertyType<?>, Object> properties) {
+        this.ignoreMissingValues = Boolean.FALSE.equals(
+                properties.get(OfficeProperty.ERR_ON_MISSING_VAL));
+        this.ignoreVersionMismatch = Boolean.FALSE.equals(
+                properties.get(OfficeProperty.ERR_ON_VER_MISMATCH));
+        this.ignoreMissingDataPages = Boolean.FALSE.equals(
+                properties.get(OfficeProperty.ERR_ON_NO_DATA));
+        this.loadAndEmbedExternalImages = Boolean.TRUE.equals(
+                properties.get(OfficeProperty.IMG_LOAD_AND_EMBED_EXTERNAL));
+
+        final Object resampleDpi = properties.get(OfficeProperty.IMG_RESAMPLE_DPI);
+        this.imageResampleDpi = resampleDpi instanceof Integer ? (Integer) resampleDpi : 0;
+
+        final Object parallelism = properties.get(OfficeProperty.RENDER_PARALLELISM);
+        this.renderParallelism = parallelism instanceof Integer ? (Integer) parallelism : 0;
+
+        this.insertHardPageBreaks = Boolean.TRUE.equals(
+                properties.get(MicrosoftProperty.INS_HARD_PAGE_BREAKS));
+        this.useDrawingOverVml = Boolean.TRUE.equals(
+                properties.get(MicrosoftProperty.USE_DRAWING_OVER_VML));
+    }
+
+}
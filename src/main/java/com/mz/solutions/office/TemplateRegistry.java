@@ -0,0 +1,356 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office;
+
+import com.mz.solutions.office.OfficeDocumentException.InvalidDocumentFormatForImplementation;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.ZipException;
+import javax.annotation.concurrent.ThreadSafe;
+
+import static com.mz.solutions.office.resources.AbstractOfficeXmlDocumentKeys.INVALID_DOC_FORMAT;
+import static com.mz.solutions.office.resources.MessageResources.formatMessage;
+import static com.mz.solutions.office.resources.OfficeDocumentFactoryKeys.NO_IN_MEMORY_DOCUMENTS;
+
+/**
+ * Zwischenspeicher für bereits gelesene Vorlagen einer {@link OfficeDocumentFactory}.
+ *
+ * <p>{@link OfficeDocumentFactory#openDocument(Path)} liest und entpackt die Vorlage bei jedem
+ * Aufruf erneut. Die Registry hält die entpackten Vorlagen im Speicher und erzeugt bei
+ * {@link #openDocument(Path)} nur noch ein neues {@link OfficeDocument} auf Basis der bereits
+ * gelesenen Daten. Die gelesene Vorlage selbst wird dabei nie verändert und von allen erzeugten
+ * Dokumenten gemeinsam verwendet.</p>
+ *
+ * <ul>
+ *  <li>Die Größe des Zwischenspeichers wird über die Summe der entpackten Bytes begrenzt; bei
+ *      Überschreitung werden die am längsten nicht verwendeten Vorlagen verworfen.</li>
+ *  <li>Bei jedem Zugriff werden Änderungszeitpunkt und Dateigröße geprüft; wurde die Vorlage
+ *      geändert, wird sie neu gelesen.</li>
+ *  <li>Fordern mehrere Threads gleichzeitig dieselbe (noch nicht gelesene) Vorlage an, wird diese
+ *      nur einmal gelesen und das Ergebnis von allen wartenden Threads verwendet.</li>
+ * </ul>
+ *
+ * <p>Einstellungen werden, wie bei direkt geöffneten Dokumenten, der übergebenen Factory
+ * entnommen. Erzeugte Dokumente sind weiterhin nicht für die gleichzeitige Verwendung durch mehrere
+ * Threads gedacht; dafür wird je Anfrage einfach {@link #openDocument(Path)} aufgerufen.</p>
+ *
+ * <pre>
+ *  final TemplateRegistry templates = TemplateRegistry.newRegistry(
+ *          OfficeDocumentFactory.newMicrosoftOfficeInstance(), 256L * 1024L * 1024L);
+ *
+ *  // je Anfrage
+ *  templates.openDocument(invoiceTemplate).generate(dataPage, ResultFactory.toFile(output));
+ * </pre>
+ *
+ * @author  Riebe, Moritz   (moritz.riebe@mz-entwickler.de)
+ */
+@ThreadSafe
+public final class TemplateRegistry {
+
+    /**
+     * Erzeugt eine neue Registry für Vorlagen der übergebenen Factory.
+     *
+     * @param factory           Factory mit der die Vorlagen geöffnet werden; muss Dokumente
+     *                          aus dem Speicher öffnen können
+     *                          ({@link OfficeDocumentFactory#isInMemoryDocumentSupported()}).
+     *
+     * @param maxCachedBytes    Obergrenze für die Summe der entpackten Vorlagen in Bytes. Die
+     *                          zuletzt gelesene Vorlage bleibt immer erhalten, auch wenn diese
+     *                          allein größer ist.
+     *
+     * @return                  Neue Registry
+     *
+     * @throws  IllegalArgumentException
+     *          Wenn die Factory Dokumente nur aus Dateien öffnen kann oder
+     *          {@code maxCachedBytes} negativ ist.
+     */
+    public static TemplateRegistry newRegistry(OfficeDocumentFactory factory, long maxCachedBytes) {
+        Objects.requireNonNull(factory, "factory");
+
+        if (factory.isInMemoryDocumentSupported() == false) {
+            throw new IllegalArgumentException(formatMessage(NO_IN_MEMORY_DOCUMENTS,
+                    /* {0} */ factory.getClass().getName()));
+        }
+
+        if (maxCachedBytes < 0L) {
+            throw new IllegalArgumentException("maxCachedBytes < 0");
+        }
+
+        return new TemplateRegistry(factory, maxCachedBytes);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private final OfficeDocumentFactory factory;
+    private final long maxCachedBytes;
+
+    /** LRU-Reihenfolge; Zugriff nur synchronisiert über sich selbst. */
+    private final Map<Path, CachedTemplate> cache = new LinkedHashMap<>(16, 0.75F, true);
+
+    private long cachedBytes = 0L;
+
+    /** Laufende Ladevorgänge, auf die weitere Anfragen derselben Vorlage warten. */
+    private final ConcurrentMap<Path, CompletableFuture<CachedTemplate>> pendingLoads =
+            new ConcurrentHashMap<>();
+
+    private TemplateRegistry(OfficeDocumentFactory factory, long maxCachedBytes) {
+        this.factory = factory;
+        this.maxCachedBytes = maxCachedBytes;
+    }
+
+    /**
+     * Öffnet die Vorlage; ist diese bereits gelesen und unverändert, ohne erneuten Zugriff auf
+     * deren Inhalt.
+     *
+     * @param template  Pfad zur Vorlage, darf nicht {@code null} sein.
+     *
+     * @return          Neues Dokument auf Basis der (zwischengespeicherten) Vorlage
+     *
+     * @throws  UncheckedIOException
+     *          Wenn die Vorlage nicht gelesen werden kann.
+     *
+     * @throws  OfficeDocumentException
+     *          Wenn die Vorlage nicht zur Factory passt.
+     */
+    public OfficeDocument openDocument(Path template) throws OfficeDocumentException {
+        Objects.requireNonNull(template, "template");
+
+        final Path cacheKey = template.toAbsolutePath().normalize();
+        final FileStamp fileStamp = FileStamp.of(cacheKey);
+
+        CachedTemplate cachedTemplate;
+        synchronized (cache) {
+            cachedTemplate = cache.get(cacheKey);
+
+            if (null != cachedTemplate && cachedTemplate.fileStamp.equals(fileStamp) == false) {
+                removeFromCache(cacheKey);
+                cachedTemplate = null;
+            }
+        }
+
+        if (null == cachedTemplate) {
+            cachedTemplate = loadTemplate(cacheKey, fileStamp);
+        }
+
+        return factory.openDocument(cachedTemplate.document);
+    }
+
+    /**
+     * Verwirft die Vorlage aus dem Zwischenspeicher.
+     *
+     * @param template  Pfad zur Vorlage
+     */
+    public void invalidate(Path template) {
+        Objects.requireNonNull(template, "template");
+
+        synchronized (cache) {
+            removeFromCache(template.toAbsolutePath().normalize());
+        }
+    }
+
+    /**
+     * Verwirft alle Vorlagen aus dem Zwischenspeicher.
+     */
+    public void invalidateAll() {
+        synchronized (cache) {
+            cache.clear();
+            cachedBytes = 0L;
+        }
+    }
+
+    /**
+     * Summe der entpackten Bytes aller zwischengespeicherten Vorlagen.
+     *
+     * @return  Größe in Bytes
+     */
+    public long getCachedBytes() {
+        synchronized (cache) {
+            return cachedBytes;
+        }
+    }
+
+    /**
+     * Anzahl der zwischengespeicherten Vorlagen.
+     *
+     * @return  Anzahl
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private CachedTemplate loadTemplate(Path cacheKey, FileStamp fileStamp) {
+        final CompletableFuture<CachedTemplate> myLoad = new CompletableFuture<>();
+        final CompletableFuture<CachedTemplate> runningLoad = pendingLoads.putIfAbsent(
+                cacheKey, myLoad);
+
+        if (null != runningLoad) {
+            return awaitLoad(runningLoad);
+        }
+
+        try {
+            final CachedTemplate loadedTemplate = new CachedTemplate(
+                    fileStamp, readTemplate(cacheKey));
+
+            synchronized (cache) {
+                final CachedTemplate replacedTemplate = cache.put(cacheKey, loadedTemplate);
+                if (null != replacedTemplate) {
+                    cachedBytes -= replacedTemplate.weight;
+                }
+
+                cachedBytes += loadedTemplate.weight;
+                evictEldest();
+            }
+
+            myLoad.complete(loadedTemplate);
+            return loadedTemplate;
+
+        } catch (RuntimeException | Error ex) {
+            myLoad.completeExceptionally(ex);
+            throw ex;
+
+        } finally {
+            pendingLoads.remove(cacheKey, myLoad);
+        }
+    }
+
+    private static CachedTemplate awaitLoad(CompletableFuture<CachedTemplate> runningLoad) {
+        try {
+            return runningLoad.join();
+
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+
+            throw ex;
+        }
+    }
+
+    private static ZIPDocumentFile readTemplate(Path template) {
+        try {
+            return new ZIPDocumentFile(template);
+
+        } catch (UncheckedIOException ioException) {
+            if (ioException.getCause() instanceof ZipException) {
+                throw new InvalidDocumentFormatForImplementation(
+                        formatMessage(INVALID_DOC_FORMAT), ioException);
+            }
+
+            throw ioException;
+
+        } catch (RuntimeException errorWhileLoading) {
+            throw new InvalidDocumentFormatForImplementation(
+                    formatMessage(INVALID_DOC_FORMAT), errorWhileLoading);
+        }
+    }
+
+    private void removeFromCache(Path cacheKey) {
+        assert Thread.holdsLock(cache);
+
+        final CachedTemplate removedTemplate = cache.remove(cacheKey);
+        if (null != removedTemplate) {
+            cachedBytes -= removedTemplate.weight;
+        }
+    }
+
+    private void evictEldest() {
+        assert Thread.holdsLock(cache);
+
+        // Die zuletzt gelesene Vorlage bleibt immer erhalten, auch wenn sie allein zu groß ist
+        while (cachedBytes > maxCachedBytes && cache.size() > 1) {
+            removeFromCache(cache.keySet().iterator().next());
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final class CachedTemplate {
+
+        private final FileStamp fileStamp;
+        private final ZIPDocumentFile document;
+        private final long weight;
+
+        private CachedTemplate(FileStamp fileStamp, ZIPDocumentFile document) {
+            this.fileStamp = fileStamp;
+            this.document = document;
+            this.weight = document.getTotalSize();
+        }
+
+    }
+
+    /**
+     * Änderungszeitpunkt und Größe einer Datei.
+     */
+    private static final class FileStamp {
+
+        private static FileStamp of(Path file) {
+            try {
+                return new FileStamp(Files.getLastModifiedTime(file), Files.size(file));
+            } catch (IOException ioException) {
+                throw new UncheckedIOException(ioException);
+            }
+        }
+
+        private final FileTime lastModified;
+        private final long size;
+
+        private FileStamp(FileTime lastModified, long size) {
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(lastModified, size);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+
+            final FileStamp other = (FileStamp) obj;
+            return this.size == other.size && this.lastModified.equals(other.lastModified);
+        }
+
+    }
+
+}
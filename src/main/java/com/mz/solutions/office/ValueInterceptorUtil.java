@@ -22,33 +22,117 @@
 package com.mz.solutions.office;
 
 import com.mz.solutions.office.extension.ExtendedValue;
+import com.mz.solutions.office.model.DataMap;
+import com.mz.solutions.office.model.DataTable;
+import com.mz.solutions.office.model.DataTableMap;
+import com.mz.solutions.office.model.DataTableRow;
 import com.mz.solutions.office.model.DataValue;
+import com.mz.solutions.office.model.DataValueMap;
+import com.mz.solutions.office.model.interceptor.BulkValueInterceptor;
 import com.mz.solutions.office.model.interceptor.DataValueResult;
 import com.mz.solutions.office.model.interceptor.InterceptionContext;
 import com.mz.solutions.office.model.interceptor.ValueInterceptor;
+import com.mz.solutions.office.model.interceptor.ValueInterceptor.CacheScope;
 import com.mz.solutions.office.model.interceptor.ValueInterceptorException;
+import com.mz.solutions.office.model.interceptor.ValueInterceptorException.FailedInterceptorExecutionException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import static com.mz.solutions.office.resources.AbstractOfficeXmlDocumentKeys.INTERCEPTOR_DEPTH;
+import static com.mz.solutions.office.resources.BulkValueInterceptorKeys.RESULT_COUNT;
+import static com.mz.solutions.office.resources.MessageResources.formatMessage;
 
 final class ValueInterceptorUtil {
     
+    /** Maximale Anzahl verschachtelter Interceptors (Interceptor liefert Interceptor, ...). */
+    static final int MAX_INTERCEPTOR_DEPTH = 64;
+    
+    /** Ergebnisse mit {@link CacheScope#GLOBAL}, je Interceptor-Instanz. */
+    private static final Map<ValueInterceptor, Map<Object, Optional<DataValue>>> GLOBAL_MEMO =
+            Collections.synchronizedMap(new WeakHashMap<>());
+    
     @Nullable @CheckForNull
     public static final DataValue callInterceptors(
             final DataValue dataValue,
             final InterceptionContext interceptionContext)
             throws ValueInterceptorException
     {
-        if (dataValue.isExtendedValue() == false) {
-            return dataValue;
+        return callInterceptors(dataValue, interceptionContext, null);
+    }
+    
+    @Nullable @CheckForNull
+    public static final DataValue callInterceptors(
+            final DataValue dataValue,
+            final InterceptionContext interceptionContext,
+            final @Nullable Memo memo)
+            throws ValueInterceptorException
+    {
+        DataValue currentValue = dataValue;
+        
+        for (int depth = 0; depth < MAX_INTERCEPTOR_DEPTH; depth++) {
+            if (currentValue.isExtendedValue() == false) {
+                return currentValue;
+            }
+            
+            final ExtendedValue extendedValue = currentValue.extendedValue();
+            
+            if ((extendedValue instanceof ValueInterceptor) == false) {
+                return currentValue;
+            }
+            
+            final DataValueResult prefetchedResult = null == memo
+                    ? null
+                    : memo.prefetchedResult(interceptionContext.getParentValueMap(), currentValue);
+            
+            currentValue = null != prefetchedResult
+                    ? prefetchedResult.value()
+                    : callInterceptor(
+                            (ValueInterceptor) extendedValue, interceptionContext, memo);
+            
+            if (null == currentValue) {
+                return null;
+            }
         }
         
-        final ExtendedValue extendedValue = dataValue.extendedValue();
+        throw new FailedInterceptorExecutionException(formatMessage(INTERCEPTOR_DEPTH,
+                /* {0} */ interceptionContext.getPlaceholderName(),
+                /* {1} */ MAX_INTERCEPTOR_DEPTH));
+    }
+    
+    @Nullable
+    private static DataValue callInterceptor(
+            final ValueInterceptor valueInterceptor,
+            final InterceptionContext interceptionContext,
+            final @Nullable Memo memo)
+            throws ValueInterceptorException
+    {
+        final Map<Object, Optional<DataValue>> scopeMemo = findMemo(valueInterceptor, memo);
+        final Object cacheKey = null == scopeMemo
+                ? null
+                : valueInterceptor.getCacheKey(interceptionContext);
         
-        if ((extendedValue instanceof ValueInterceptor) == false) {
-            return dataValue;
+        if (null != cacheKey) {
+            final Optional<DataValue> memoValue = scopeMemo.get(cacheKey);
+            
+            if (null != memoValue) {
+                return memoValue.orElse(null);
+            }
         }
         
-        final ValueInterceptor valueInterceptor = (ValueInterceptor) extendedValue;
         final DataValueResult interceptorResult;
         
         try {
@@ -57,16 +141,261 @@ final class ValueInterceptorUtil {
         } catch (ValueInterceptorException valueInterceptorException) {
             throw valueInterceptorException;
         } catch (Exception otherException) {
-            throw new ValueInterceptorException.FailedInterceptorExecutionException(otherException);
+            throw new FailedInterceptorExecutionException(otherException);
         }
         
         final DataValue resultValue = interceptorResult.value();
         
-        if (null == resultValue) {
+        if (null != cacheKey) {
+            scopeMemo.put(cacheKey, Optional.ofNullable(resultValue));
+        }
+        
+        return resultValue;
+    }
+    
+    @CheckForNull
+    private static Map<Object, Optional<DataValue>> findMemo(
+            final ValueInterceptor valueInterceptor,
+            final @Nullable Memo memo)
+    {
+        final CacheScope cacheScope = valueInterceptor.getCacheScope();
+        
+        if (null == cacheScope || cacheScope == CacheScope.NONE) {
             return null;
         }
         
-        return callInterceptors(resultValue, interceptionContext);
+        if (cacheScope == CacheScope.GLOBAL) {
+            return GLOBAL_MEMO.computeIfAbsent(
+                    valueInterceptor, interceptor -> new ConcurrentHashMap<>());
+        }
+        
+        if (null == memo) {
+            return null; // Ohne Erstellungsvorgang kein Dokument/ keine Seite
+        }
+        
+        if (cacheScope == CacheScope.PAGE) {
+            return memo.pageMemo.computeIfAbsent(valueInterceptor, interceptor -> new HashMap<>());
+        }
+        
+        // Wird bei paralleler Erstellung von allen Seiten gemeinsam verwendet
+        return memo.documentMemo.computeIfAbsent(
+                valueInterceptor, interceptor -> new ConcurrentHashMap<>());
+    }
+    
+    /**
+     * Zwischengespeicherte Interceptor-Ergebnisse einer Dokumenten-Erstellung.
+     * 
+     * <p>Eine Instanz ist nur für einen Thread gedacht; bei paralleler Erstellung der Seiten
+     * erhält jede Seite über {@link #forkPage()} eine eigene Instanz, die nur die Ergebnisse mit
+     * {@link CacheScope#DOCUMENT} (thread-safe) mit den anderen teilt.</p>
+     */
+    @NotThreadSafe
+    static final class Memo {
+        
+        private final Map<ValueInterceptor, Map<Object, Optional<DataValue>>> documentMemo;
+        
+        private final Map<ValueInterceptor, Map<Object, Optional<DataValue>>> pageMemo =
+                new IdentityHashMap<>();
+        
+        /**
+         * Gesammelt aufgelöste Werte von {@link BulkValueInterceptor}'s je Werte-Map und
+         * {@link DataValue} (jeweils Identität).
+         */
+        private final Map<DataValueMap<?>, Map<DataValue, DataValueResult>> prefetchedResults =
+                new IdentityHashMap<>();
+        
+        Memo() {
+            this(new ConcurrentHashMap<>());
+        }
+        
+        private Memo(Map<ValueInterceptor, Map<Object, Optional<DataValue>>> documentMemo) {
+            this.documentMemo = documentMemo;
+        }
+        
+        /**
+         * Neue Instanz für eine Seite, die in einem anderen Thread erstellt wird.
+         * 
+         * @return  Instanz mit gemeinsamen Ergebnissen für {@link CacheScope#DOCUMENT}
+         */
+        Memo forkPage() {
+            return new Memo(documentMemo);
+        }
+        
+        /**
+         * Verwirft die Ergebnisse mit {@link CacheScope#PAGE}; wird zu Beginn jeder
+         * {@code DataPage} bzw. Kopf-/Fußzeile aufgerufen.
+         */
+        void startPage() {
+            pageMemo.clear();
+        }
+        
+        /**
+         * Löst alle {@link BulkValueInterceptor}'s im Daten-Modell (samt Tabellen) gesammelt auf,
+         * mit einem Aufruf je Interceptor-Instanz. Bereits gesammelte Werte-Maps werden
+         * übersprungen.
+         * 
+         * @param values        Daten-Modell einer Seite oder Kopf-/Fußzeile
+         * 
+         * @param document      Dokument für die Kontexte
+         */
+        void prefetch(DataMap<?> values, OfficeDocument document) {
+            final Map<BulkValueInterceptor, List<BulkRequest>> requests = new IdentityHashMap<>();
+            collectBulkRequests(values, document, requests);
+            
+            if (requests.isEmpty()) {
+                return;
+            }
+            
+            final List<CompletableFuture<Void>> pendingResolves = new ArrayList<>();
+            
+            for (Entry<BulkValueInterceptor, List<BulkRequest>> entry : requests.entrySet()) {
+                final BulkValueInterceptor interceptor = entry.getKey();
+                final List<BulkRequest> interceptorRequests = entry.getValue();
+                final Executor executor = interceptor.getExecutor();
+                
+                if (null == executor) {
+                    resolveAll(interceptor, interceptorRequests);
+                } else {
+                    pendingResolves.add(CompletableFuture.runAsync(
+                            () -> resolveAll(interceptor, interceptorRequests), executor));
+                }
+            }
+            
+            try {
+                CompletableFuture.allOf(pendingResolves.toArray(new CompletableFuture<?>[0])).join();
+                
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof ValueInterceptorException) {
+                    throw (ValueInterceptorException) ex.getCause();
+                }
+                
+                throw new FailedInterceptorExecutionException(ex.getCause());
+            }
+            
+            // Ergebnisse erst nach Abschluss aller Aufrufe im Erstellungs-Thread übernehmen
+            for (List<BulkRequest> interceptorRequests : requests.values()) {
+                for (BulkRequest request : interceptorRequests) {
+                    prefetchedResults
+                            .computeIfAbsent(request.valueMap, map -> new IdentityHashMap<>())
+                            .put(request.dataValue, request.result);
+                }
+            }
+        }
+        
+        @CheckForNull
+        private DataValueResult prefetchedResult(
+                @Nullable DataValueMap<?> valueMap, DataValue dataValue)
+        {
+            final Map<DataValue, DataValueResult> mapResults = prefetchedResults.get(valueMap);
+            return null == mapResults ? null : mapResults.get(dataValue);
+        }
+        
+        private void collectBulkRequests(
+                DataValueMap<?> valueMap,
+                OfficeDocument document,
+                Map<BulkValueInterceptor, List<BulkRequest>> requests)
+        {
+            if (prefetchedResults.containsKey(valueMap) == false) {
+                for (DataValue dataValue : valueMap.getValues()) {
+                    final ExtendedValue extendedValue = dataValue.isExtendedValue()
+                            ? dataValue.extendedValue()
+                            : null;
+                    
+                    if (extendedValue instanceof BulkValueInterceptor) {
+                        requests.computeIfAbsent(
+                                (BulkValueInterceptor) extendedValue, key -> new ArrayList<>())
+                                .add(new BulkRequest(valueMap, dataValue, document));
+                    }
+                }
+                
+                // Auch ohne Bulk-Interceptor merken, damit nicht erneut gesammelt wird
+                prefetchedResults.computeIfAbsent(valueMap, map -> new IdentityHashMap<>());
+            }
+            
+            if (valueMap instanceof DataTableMap) {
+                for (DataTable table : ((DataTableMap<?>) valueMap).getTables()) {
+                    collectBulkRequests(table, document, requests);
+                    
+                    for (DataTableRow tableRow : table) {
+                        collectBulkRequests(tableRow, document, requests);
+                    }
+                }
+            }
+        }
+        
+        private static void resolveAll(BulkValueInterceptor interceptor, List<BulkRequest> requests) {
+            final List<InterceptionContext> contexts = new ArrayList<>(requests.size());
+            for (BulkRequest request : requests) {
+                contexts.add(request);
+            }
+            
+            final List<DataValueResult> results;
+            
+            try {
+                results = interceptor.resolveAll(Collections.unmodifiableList(contexts));
+                
+            } catch (ValueInterceptorException valueInterceptorException) {
+                throw valueInterceptorException;
+            } catch (Exception otherException) {
+                throw new FailedInterceptorExecutionException(otherException);
+            }
+            
+            final long resultCount = null == results
+                    ? 0L
+                    : results.stream().filter(result -> null != result).count();
+            
+            if (resultCount != requests.size() || results.size() != requests.size()) {
+                throw new FailedInterceptorExecutionException(formatMessage(RESULT_COUNT,
+                        /* {0} */ interceptor.getClass().getName(),
+                        /* {1} */ resultCount,
+                        /* {2} */ requests.size()));
+            }
+            
+            for (int index = 0; index < requests.size(); index++) {
+                requests.get(index).result = results.get(index);
+            }
+        }
+        
+    }
+    
+    /**
+     * Unveränderlicher Kontext eines gesammelt aufzulösenden Platzhalters; nimmt zusätzlich das
+     * Ergebnis auf.
+     */
+    private static final class BulkRequest extends InterceptionContext {
+        
+        private final DataValueMap<?> valueMap;
+        private final DataValue dataValue;
+        private final OfficeDocument document;
+        
+        private DataValueResult result;
+
+        private BulkRequest(DataValueMap<?> valueMap, DataValue dataValue, OfficeDocument document) {
+            this.valueMap = valueMap;
+            this.dataValue = dataValue;
+            this.document = document;
+        }
+        
+        @Override
+        public OfficeDocumentFactory getDocumentFactory() {
+            return document.getRelatedFactory();
+        }
+
+        @Override
+        public OfficeDocument getDocument() {
+            return document;
+        }
+
+        @Override
+        public String getPlaceholderName() {
+            return dataValue.getKeyName();
+        }
+
+        @Override
+        public DataValueMap<?> getParentValueMap() {
+            return valueMap;
+        }
+        
     }
     
 }
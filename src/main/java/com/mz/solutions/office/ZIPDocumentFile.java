@@ -60,10 +60,46 @@ final class ZIPDocumentFile {
         readZipFile(documentFile);
     }
     
+    /**
+     * Übernimmt die Einträge eines bereits im Speicher gelesenen Dokumentes; die Daten werden
+     * dabei nicht kopiert.
+     * 
+     * @param zippedDocument    Aus Stream oder Puffer gelesenes Dokument
+     */
+    public ZIPDocumentFile(final ZippedDocument zippedDocument) {
+        this.zipItems = new LinkedList<>();
+        
+        for (ZippedEntry zippedEntry : zippedDocument.getEntries()) {
+            final ZipFileItem item = new ZipFileItem();
+            item.zipEntry = new ZipEntry(zippedEntry.entry);
+            item.zipEntry.setCompressedSize(-1L);
+            item.data = zippedEntry.data;
+            
+            zipItems.add(item);
+        }
+    }
+    
     private ZIPDocumentFile(final List<ZipFileItem> copyOfZipItems) {
         this.zipItems = copyOfZipItems;
     }
     
+    /**
+     * Summe der Größen aller (unkomprimierten) Einträge.
+     * 
+     * @return  Größe in Bytes
+     */
+    public long getTotalSize() {
+        long totalSize = 0L;
+        
+        for (ZipFileItem zipItem : zipItems) {
+            if (null != zipItem.data) {
+                totalSize += zipItem.data.length;
+            }
+        }
+        
+        return totalSize;
+    }
+    
     public ZIPDocumentFile cloneDocument() {
         final List<ZipFileItem> clonedItems = new LinkedList<>();
         
@@ -170,6 +206,16 @@ final class ZIPDocumentFile {
         this.zipItems.add(zipItem);
     }
     
+    /**
+     * Überschreibt den Inhalt des Eintrags mit dem übergebenen Namen.
+     * 
+     * <p>Das übergebene Array wird nicht kopiert, sondern direkt übernommen (z.B. geteilte
+     * Textbausteine oder Bild-Daten) und darf danach nicht mehr verändert werden.</p>
+     * 
+     * @param name      Name des bestehenden Eintrags
+     * @param data      Neuer Inhalt
+     * @return          Eigene Instanz
+     */
     public ZIPDocumentFile overwrite(String name, byte[] data) {
         final ZipFileItem zipItem = findItemByName(name);
         
@@ -180,7 +226,7 @@ final class ZIPDocumentFile {
         zipItem.zipEntry.setLastAccessTime(FileTime.from(Instant.now()));
         zipItem.zipEntry.setLastModifiedTime(FileTime.from(Instant.now()));
         
-        zipItem.data = Arrays.copyOf(data, data.length);
+        zipItem.data = data;
         
         return this;
     }
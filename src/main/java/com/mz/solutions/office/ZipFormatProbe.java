@@ -0,0 +1,371 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Intern - Schnelle Formaterkennung von ZIP-basierten Dokumenten anhand des zentralen
+ * Verzeichnisses (Central Directory).
+ *
+ * <p>Gelesen werden nur der End-Of-Central-Directory Eintrag am Ende der Datei, das zentrale
+ * Verzeichnis selbst (die Dateinamen aller Einträge) und - soweit vorhanden - der unkomprimierte
+ * Inhalt des Eintrags {@code 'mimetype'} (OpenDocument). Der Aufwand ist damit unabhängig von der
+ * Größe des Dokumentes. Das Ergebnis wird einmalig ermittelt und von allen Implementierungen
+ * gemeinsam ausgewertet.</p>
+ *
+ * @author  Riebe, Moritz   (moritz.riebe@mz-entwickler.de)
+ */
+@Immutable
+final class ZipFormatProbe {
+
+    /** Ergebnis für alles, was kein (lesbares) ZIP-Archiv ist. */
+    static final ZipFormatProbe NOT_A_ZIP = new ZipFormatProbe(false, Collections.emptySet(), null);
+
+    private static final int SIG_EOCD = 0x06054b50;
+    private static final int SIG_ZIP64_EOCD = 0x06064b50;
+    private static final int SIG_ZIP64_LOCATOR = 0x07064b50;
+    private static final int SIG_CENTRAL_ENTRY = 0x02014b50;
+    private static final int SIG_LOCAL_HEADER = 0x04034b50;
+
+    private static final int EOCD_MIN_SIZE = 22;
+    private static final int EOCD_MAX_COMMENT = 0xFFFF;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+
+    /** Erster Leseversuch am Dateiende; genügt bei Archiven ohne Kommentar. */
+    private static final int TAIL_FIRST_READ = 1024;
+
+    /** Obergrenze für das zentrale Verzeichnis (ca. 200.000 Einträge). */
+    private static final int MAX_CENTRAL_DIRECTORY_SIZE = 16 * 1024 * 1024;
+
+    private static final int MAX_MIMETYPE_SIZE = 256;
+
+    private static final String ENTRY_MIMETYPE = "mimetype";
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Ermittelt die Einträge der übergebenen Datei.
+     *
+     * @param document  Datei die geprüft werden soll
+     * @return          Ergebnis, bei Fehlern {@link #NOT_A_ZIP}; nie {@code null}
+     */
+    public static ZipFormatProbe probe(Path document) {
+        try (FileChannel channel = FileChannel.open(document, StandardOpenOption.READ)) {
+            return probe0(new ChannelSource(channel));
+
+        } catch (IOException | RuntimeException ex) {
+            return NOT_A_ZIP;
+        }
+    }
+
+    /**
+     * Ermittelt die Einträge des Dokumentes im Puffer (ab dessen aktueller Position), ohne den
+     * Inhalt zu kopieren; Position und Limit von {@code document} bleiben unverändert.
+     *
+     * @param document  Puffer mit dem vollständigen Dokument
+     * @return          Ergebnis, bei Fehlern {@link #NOT_A_ZIP}; nie {@code null}
+     */
+    public static ZipFormatProbe probe(ByteBuffer document) {
+        try {
+            return probe0(new BufferSource(document.slice()));
+
+        } catch (IOException | RuntimeException ex) {
+            return NOT_A_ZIP;
+        }
+    }
+
+    private static ZipFormatProbe probe0(ByteSource source) throws IOException {
+        final long fileSize = source.size();
+        if (fileSize < EOCD_MIN_SIZE) {
+            return NOT_A_ZIP;
+        }
+
+        long eocdPosition = findEndOfCentralDirectory(source, TAIL_FIRST_READ);
+        if (eocdPosition < 0 && fileSize > TAIL_FIRST_READ) {
+            // Nur bei einem Archiv-Kommentar muss weiter gesucht werden
+            eocdPosition = findEndOfCentralDirectory(source, EOCD_MIN_SIZE + EOCD_MAX_COMMENT);
+        }
+
+        if (eocdPosition < 0) {
+            return NOT_A_ZIP;
+        }
+
+        final ByteBuffer eocd = source.read(eocdPosition, EOCD_MIN_SIZE);
+        long cdSize = eocd.getInt(12) & 0xFFFFFFFFL;
+        long cdOffset = eocd.getInt(16) & 0xFFFFFFFFL;
+
+        if (cdSize == 0xFFFFFFFFL || cdOffset == 0xFFFFFFFFL) {
+            final long locatorPosition = eocdPosition - ZIP64_LOCATOR_SIZE;
+            if (locatorPosition < 0) {
+                return NOT_A_ZIP;
+            }
+
+            final ByteBuffer locator = source.read(locatorPosition, ZIP64_LOCATOR_SIZE);
+            if (locator.getInt(0) != SIG_ZIP64_LOCATOR) {
+                return NOT_A_ZIP;
+            }
+
+            final ByteBuffer zip64Eocd = source.read(locator.getLong(8), 56);
+            if (zip64Eocd.getInt(0) != SIG_ZIP64_EOCD) {
+                return NOT_A_ZIP;
+            }
+
+            cdSize = zip64Eocd.getLong(40);
+            cdOffset = zip64Eocd.getLong(48);
+        }
+
+        if (cdSize > MAX_CENTRAL_DIRECTORY_SIZE || cdOffset < 0 || cdOffset + cdSize > fileSize) {
+            return NOT_A_ZIP;
+        }
+
+        final ByteBuffer centralDirectory = source.read(cdOffset, (int) cdSize);
+        final Set<String> entryNames = new HashSet<>();
+        String mimeType = null;
+
+        int position = 0;
+        while (position + 46 <= centralDirectory.limit()
+                && centralDirectory.getInt(position) == SIG_CENTRAL_ENTRY)
+        {
+            final int method = centralDirectory.getShort(position + 10) & 0xFFFF;
+            final long uncompressedSize = centralDirectory.getInt(position + 24) & 0xFFFFFFFFL;
+            final int nameLength = centralDirectory.getShort(position + 28) & 0xFFFF;
+            final int extraLength = centralDirectory.getShort(position + 30) & 0xFFFF;
+            final int commentLength = centralDirectory.getShort(position + 32) & 0xFFFF;
+            final long localHeaderOffset = centralDirectory.getInt(position + 42) & 0xFFFFFFFFL;
+
+            if (position + 46 + nameLength > centralDirectory.limit()) {
+                break;
+            }
+
+            final byte[] nameBytes = new byte[nameLength];
+            for (int index = 0; index < nameLength; index++) {
+                nameBytes[index] = centralDirectory.get(position + 46 + index);
+            }
+
+            final String entryName = new String(nameBytes, UTF_8);
+            entryNames.add(entryName);
+
+            if (ENTRY_MIMETYPE.equals(entryName) && method == 0
+                    && uncompressedSize <= MAX_MIMETYPE_SIZE)
+            {
+                mimeType = readStoredEntry(source, localHeaderOffset, (int) uncompressedSize);
+            }
+
+            position += 46 + nameLength + extraLength + commentLength;
+        }
+
+        if (entryNames.isEmpty()) {
+            return NOT_A_ZIP;
+        }
+
+        return new ZipFormatProbe(true, entryNames, mimeType);
+    }
+
+    private static long findEndOfCentralDirectory(ByteSource source, int maxTailSize)
+            throws IOException
+    {
+        final long fileSize = source.size();
+        final int tailSize = (int) Math.min(fileSize, maxTailSize);
+        final long tailPosition = fileSize - tailSize;
+
+        final ByteBuffer tail = source.read(tailPosition, tailSize);
+
+        for (int position = tailSize - EOCD_MIN_SIZE; position >= 0; position--) {
+            if (tail.getInt(position) == SIG_EOCD) {
+                return tailPosition + position;
+            }
+        }
+
+        return -1L;
+    }
+
+    @CheckForNull
+    private static String readStoredEntry(ByteSource source, long localHeaderOffset, int size)
+            throws IOException
+    {
+        final ByteBuffer localHeader = source.read(localHeaderOffset, 30);
+        if (localHeader.getInt(0) != SIG_LOCAL_HEADER) {
+            return null;
+        }
+
+        final int nameLength = localHeader.getShort(26) & 0xFFFF;
+        final int extraLength = localHeader.getShort(28) & 0xFFFF;
+
+        final ByteBuffer data = source.read(localHeaderOffset + 30 + nameLength + extraLength, size);
+        final byte[] dataBytes = new byte[size];
+        data.get(dataBytes);
+
+        return new String(dataBytes, US_ASCII).trim();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private final boolean zip;
+    private final Set<String> entryNames;
+    private final String mimeType;
+
+    private ZipFormatProbe(boolean zip, Set<String> entryNames, @Nullable String mimeType) {
+        this.zip = zip;
+        this.entryNames = Collections.unmodifiableSet(entryNames);
+        this.mimeType = mimeType;
+    }
+
+    /**
+     * Konnte das zentrale Verzeichnis eines ZIP-Archives gelesen werden.
+     *
+     * @return  {@code true}, wenn es sich um ein ZIP-Archiv handelt
+     */
+    public boolean isZip() {
+        return zip;
+    }
+
+    /**
+     * Prüft ob ein Eintrag mit exakt diesem Namen vorhanden ist.
+     *
+     * @param entryName     z.B. {@code '[Content_Types].xml'}
+     * @return              {@code true}, wenn vorhanden
+     */
+    public boolean containsEntry(String entryName) {
+        return entryNames.contains(entryName);
+    }
+
+    /**
+     * Prüft ob mindestens ein Eintrag mit dem übergebenen Präfix beginnt.
+     *
+     * @param namePrefix    z.B. {@code 'word/'}
+     * @return              {@code true}, wenn vorhanden
+     */
+    public boolean containsEntryWithPrefix(String namePrefix) {
+        for (String entryName : entryNames) {
+            if (entryName.startsWith(namePrefix)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Inhalt des unkomprimierten Eintrags {@code 'mimetype'} (OpenDocument).
+     *
+     * @return  z.B. {@code 'application/vnd.oasis.opendocument.text'} oder {@code null}
+     */
+    @CheckForNull
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Wahlfreier Lesezugriff auf die zu prüfenden Daten.
+     */
+    private static interface ByteSource {
+
+        long size() throws IOException;
+
+        /**
+         * Liest exakt {@code length} Bytes ab {@code position}.
+         *
+         * @return  Puffer in Little-Endian Byte-Reihenfolge, Position {@code 0}
+         * @throws  IOException Wenn nicht genügend Bytes vorhanden sind
+         */
+        ByteBuffer read(long position, int length) throws IOException;
+
+    }
+
+    private static final class ChannelSource implements ByteSource {
+
+        private final FileChannel channel;
+
+        private ChannelSource(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public ByteBuffer read(long position, int length) throws IOException {
+            if (position < 0 || position + length > channel.size()) {
+                throw new IOException("Out of range");
+            }
+
+            final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of file");
+                }
+            }
+
+            buffer.flip();
+            return buffer;
+        }
+
+    }
+
+    private static final class BufferSource implements ByteSource {
+
+        private final ByteBuffer buffer;
+
+        private BufferSource(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public long size() {
+            return buffer.limit();
+        }
+
+        @Override
+        public ByteBuffer read(long position, int length) throws IOException {
+            if (position < 0 || position + length > buffer.limit()) {
+                throw new IOException("Out of range");
+            }
+
+            final ByteBuffer view = buffer.duplicate();
+            view.position((int) position).limit((int) position + length);
+
+            return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+    }
+
+}
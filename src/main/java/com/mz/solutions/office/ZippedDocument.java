@@ -21,15 +21,30 @@
  */
 package com.mz.solutions.office;
 
+import com.mz.solutions.office.OfficeDocumentException.InvalidDocumentFormatForImplementation;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipInputStream;
 
+import static com.mz.solutions.office.resources.AbstractOfficeXmlDocumentKeys.INVALID_DOC_FORMAT;
+import static com.mz.solutions.office.resources.MessageResources.formatMessage;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 /**
+ * Vollständig in den Speicher gelesenes ZIP-Dokument aus einer beliebigen Quelle (Stream,
+ * Byte-Array oder {@link ByteBuffer}); Grundlage für {@link ZIPDocumentFile} wenn die Vorlage
+ * nicht als Datei vorliegt.
+ * 
+ * <p>Der übergebene Stream wird bis zum Ende gelesen, aber nicht geschlossen.</p>
  *
  * @author Riebe, Moritz (moritz.riebe@mz-entwickler.de)
  */
@@ -38,21 +53,129 @@ final class ZippedDocument {
     private final List<ZippedEntry> entries = new ArrayList<>();
     
     public ZippedDocument(InputStream inSource) {
-        try (ZipInputStream inZip = new ZipInputStream(inSource)) {
+        try (ZipInputStream inZip = new ZipInputStream(new NonClosingInputStream(inSource), UTF_8)) {
             readEntries(inZip);
+            
+            // Das zentrale Verzeichnis am Ende liest ZipInputStream nicht mehr
+            skipRemaining(inSource);
+            
+        } catch (ZipException zipException) {
+            throw new InvalidDocumentFormatForImplementation(
+                    formatMessage(INVALID_DOC_FORMAT), zipException);
+            
         } catch (IOException ioException) {
             throw new UncheckedIOException(ioException);
         }
+        
+        if (entries.isEmpty()) {
+            // Kein ZIP-Archiv; ZipInputStream liefert dann einfach keine Einträge
+            throw new InvalidDocumentFormatForImplementation(formatMessage(INVALID_DOC_FORMAT));
+        }
+    }
+    
+    /**
+     * Liest das Dokument aus dem Puffer, ohne dessen Inhalt vorher zu kopieren; Position und
+     * Limit von {@code source} bleiben unverändert.
+     * 
+     * @param source    Puffer mit dem vollständigen Dokument ab der aktuellen Position
+     * @return          Eingelesenes Dokument
+     */
+    public static ZippedDocument of(ByteBuffer source) {
+        return new ZippedDocument(new ByteBufferInputStream(source.duplicate()));
     }
 
+    private static void skipRemaining(InputStream inSource) throws IOException {
+        final byte[] buffer = new byte[8 * 1024];
+        
+        while (inSource.read(buffer) != -1) {
+            // verwerfen
+        }
+    }
+    
     private void readEntries(ZipInputStream inZip) throws IOException {
+        final byte[] buffer = new byte[16 * 1024];
+        
         ZipEntry currentEntry;
         while (null != (currentEntry = inZip.getNextEntry())) {
             final ZippedEntry newEntry = new ZippedEntry();
             
             newEntry.entry = currentEntry;
             
+            if (currentEntry.isDirectory() == false) {
+                final long entrySize = currentEntry.getSize();
+                final ByteArrayOutputStream byteOut = new ByteArrayOutputStream(
+                        entrySize > 0 && entrySize < Integer.MAX_VALUE ? (int) entrySize : 4096);
+                
+                int readBytes;
+                while ((readBytes = inZip.read(buffer)) != -1) {
+                    byteOut.write(buffer, 0, readBytes);
+                }
+                
+                newEntry.data = byteOut.toByteArray();
+            }
+            
+            entries.add(newEntry);
+        }
+    }
+    
+    /**
+     * Alle Einträge in der Reihenfolge des Archives.
+     * 
+     * @return  Einträge, nie {@code null}
+     */
+    public List<ZippedEntry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+    
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+    
+    private static final class NonClosingInputStream extends FilterInputStream {
+
+        private NonClosingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+            // Stream gehört dem Aufrufer
+        }
+        
+    }
+    
+    private static final class ByteBufferInputStream extends InputStream {
+        
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            
+            if (buffer.hasRemaining() == false) {
+                return -1;
+            }
+            
+            final int readBytes = Math.min(length, buffer.remaining());
+            buffer.get(target, offset, readBytes);
+            
+            return readBytes;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
         }
+        
     }
     
 }
@@ -0,0 +1,476 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office.extension;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * Intern - Einmalig eingelesenes Word-Dokument ({@code *.docx}) als Quelle für das direkte
+ * Zusammenführen mit {@link MicrosoftInsertDoc#mergeFile(java.nio.file.Path)}.
+ *
+ * <p>Enthält den Body (ohne abschließendes {@code w:sectPr}), Formatvorlagen, Nummerierungen, die
+ * vom Body referenzierten Relationships sowie die Bild-Daten. Eine Instanz wird am
+ * {@link ImportFileCache.ImportFile} gehalten und über alle Dokumente hinweg wiederverwendet;
+ * Lesezugriffe auf die DOM-Bäume sind über die Instanz selbst zu synchronisieren.</p>
+ *
+ * <p>Verwendet der Body Teile die nicht zusammengeführt werden können (z.B. Diagramme,
+ * eingebettete Objekte, Fuß-/Endnoten, Kommentare oder Bild-Aufzählungszeichen), ist die
+ * Quelle nicht {@link #isMergeable() zusammenführbar} und es wird stattdessen
+ * {@code w:altChunk} verwendet.</p>
+ *
+ * @author  Riebe, Moritz   (moritz.riebe@mz-entwickler.de)
+ */
+final class DocxMergeSource {
+
+    private static final Logger LOG = Logger.getLogger(DocxMergeSource.class.getName());
+
+    static final String REL_TYPE_IMAGE =
+            "http://schemas.openxmlformats.org/officeDocument/2006/relationships/image";
+
+    private static final String REL_TYPE_SUFFIX_DOCUMENT = "/officeDocument";
+    private static final String REL_TYPE_SUFFIX_STYLES = "/styles";
+    private static final String REL_TYPE_SUFFIX_NUMBERING = "/numbering";
+
+    /**
+     * Verweise auf Kopf-/Fußzeilen in Abschnittswechseln innerhalb des Bodys; diese werden
+     * entfernt, die Abschnitte übernehmen dann die Kopf-/Fußzeilen des Ziel-Dokumentes.
+     */
+    private static final String[] HEADER_FOOTER_REFERENCES = {
+        "w:headerReference", "w:footerReference"
+    };
+
+    /** Verweise im Body auf Teile, die nicht mit übernommen werden (können). */
+    private static final String[] UNSUPPORTED_ELEMENTS = {
+        "w:footnoteReference", "w:endnoteReference", "w:commentReference", "w:altChunk",
+        "w:subDoc"
+    };
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private final String contentHash;
+
+    private boolean mergeable;
+
+    private Element documentRoot;
+    private final List<Node> bodyNodes = new ArrayList<>();
+
+    @Nullable private Document stylesDocument;
+    @Nullable private Document numberingDocument;
+
+    /** Vom Body verwendete Relationships; ID -&gt; Eintrag. */
+    private final Map<String, Relationship> relationships = new LinkedHashMap<>();
+
+    /** Bild-Daten eingebetteter Bilder; Pfad im Container (ohne führenden Slash) -&gt; Daten. */
+    private final Map<String, byte[]> mediaParts = new HashMap<>();
+
+    /** Dateinamenserweiterung (klein) -&gt; MIME-Type aus {@code [Content_Types].xml}. */
+    private final Map<String, String> contentTypeDefaults = new HashMap<>();
+
+    private DocxMergeSource(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * Liest das übergebene Dokument ein; Fehler beim Einlesen führen nicht zu einer Exception,
+     * sondern zu einer nicht zusammenführbaren Quelle.
+     *
+     * @param importFile    Geladenes Dokument
+     * @return              Quelle, nie {@code null}
+     */
+    static DocxMergeSource parse(ImportFileCache.ImportFile importFile) {
+        final DocxMergeSource source = new DocxMergeSource(importFile.getContentHash());
+
+        try {
+            source.mergeable = source.parse0(readZipEntries(importFile.getData()));
+        } catch (IOException | SAXException | ParserConfigurationException | RuntimeException ex) {
+            LOG.log(Level.FINE, "Document can't be merged, falling back to w:altChunk", ex);
+            source.mergeable = false;
+        }
+
+        return source;
+    }
+
+    private static Map<String, byte[]> readZipEntries(byte[] zipData) throws IOException {
+        final Map<String, byte[]> zipEntries = new HashMap<>();
+        final byte[] buffer = new byte[16 * 1024];
+
+        try (ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(zipData))) {
+            ZipEntry zipEntry;
+            while ((zipEntry = zipIn.getNextEntry()) != null) {
+                if (zipEntry.isDirectory()) {
+                    continue;
+                }
+
+                final ByteArrayOutputStream entryOut = new ByteArrayOutputStream();
+                int readBytes;
+                while ((readBytes = zipIn.read(buffer)) != -1) {
+                    entryOut.write(buffer, 0, readBytes);
+                }
+
+                zipEntries.put(zipEntry.getName(), entryOut.toByteArray());
+            }
+        }
+
+        return zipEntries;
+    }
+
+    private boolean parse0(Map<String, byte[]> zipEntries)
+            throws IOException, SAXException, ParserConfigurationException
+    {
+        final DocumentBuilder docBuilder = newDocumentBuilder();
+
+        final byte[] packageRels = zipEntries.get("_rels/.rels");
+        if (null == packageRels) {
+            return false;
+        }
+
+        final String mainPartName = findTargetByTypeSuffix(
+                docBuilder.parse(new ByteArrayInputStream(packageRels)), "", REL_TYPE_SUFFIX_DOCUMENT);
+
+        if (null == mainPartName || zipEntries.containsKey(mainPartName) == false) {
+            return false;
+        }
+
+        final int indexOfSlash = mainPartName.lastIndexOf('/');
+        final String mainPartDir = mainPartName.substring(0, indexOfSlash + 1);
+        final String mainRelsName = mainPartDir + "_rels/"
+                + mainPartName.substring(indexOfSlash + 1) + ".rels";
+
+        final Document mainDocument = docBuilder.parse(
+                new ByteArrayInputStream(zipEntries.get(mainPartName)));
+
+        final Document mainRels = zipEntries.containsKey(mainRelsName)
+                ? docBuilder.parse(new ByteArrayInputStream(zipEntries.get(mainRelsName)))
+                : null;
+
+        this.documentRoot = mainDocument.getDocumentElement();
+
+        final NodeList bodyList = mainDocument.getElementsByTagName("w:body");
+        if (bodyList.getLength() == 0) {
+            return false;
+        }
+
+        final NodeList bodyChildren = bodyList.item(0).getChildNodes();
+        for (int nodeIndex = 0; nodeIndex < bodyChildren.getLength(); nodeIndex++) {
+            final Node bodyChild = bodyChildren.item(nodeIndex);
+
+            if (bodyChild.getNodeType() != Node.ELEMENT_NODE
+                    || "w:sectPr".equals(bodyChild.getNodeName()))
+            {
+                continue; // Seiten-Einstellungen bleiben die vom Ziel-Dokument
+            }
+
+            removeHeaderFooterReferences(bodyChild);
+            bodyNodes.add(bodyChild);
+        }
+
+        for (String unsupportedElement : UNSUPPORTED_ELEMENTS) {
+            if (mainDocument.getElementsByTagName(unsupportedElement).getLength() > 0) {
+                return false;
+            }
+        }
+
+        if (null != mainRels) {
+            if (collectRelationships(mainRels, mainPartDir, zipEntries) == false) {
+                return false;
+            }
+
+            final String stylesPartName = findTargetByTypeSuffix(
+                    mainRels, mainPartDir, REL_TYPE_SUFFIX_STYLES);
+            final String numberingPartName = findTargetByTypeSuffix(
+                    mainRels, mainPartDir, REL_TYPE_SUFFIX_NUMBERING);
+
+            this.stylesDocument = parseOptional(docBuilder, zipEntries, stylesPartName);
+            this.numberingDocument = parseOptional(docBuilder, zipEntries, numberingPartName);
+
+            // Bild-Aufzählungszeichen verweisen über eigene Relationships der Nummerierung auf
+            // Bilder, diese werden nicht mit übernommen
+            if (null != numberingDocument && numberingDocument
+                    .getElementsByTagName("w:numPicBullet").getLength() > 0)
+            {
+                return false;
+            }
+        }
+
+        final byte[] contentTypes = zipEntries.get("[Content_Types].xml");
+        if (null != contentTypes) {
+            final NodeList defaultList = docBuilder.parse(new ByteArrayInputStream(contentTypes))
+                    .getElementsByTagName("Default");
+
+            for (int nodeIndex = 0; nodeIndex < defaultList.getLength(); nodeIndex++) {
+                final Element elDefault = (Element) defaultList.item(nodeIndex);
+                contentTypeDefaults.put(
+                        elDefault.getAttribute("Extension").toLowerCase(Locale.ENGLISH),
+                        elDefault.getAttribute("ContentType"));
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Entfernt Verweise auf Kopf-/Fußzeilen aus Abschnittswechseln ({@code w:pPr/w:sectPr})
+     * innerhalb des übernommenen Body-Elementes.
+     */
+    private static void removeHeaderFooterReferences(Node bodyChild) {
+        final Element bodyElement = (Element) bodyChild;
+
+        for (String referenceElement : HEADER_FOOTER_REFERENCES) {
+            final NodeList referenceList = bodyElement.getElementsByTagName(referenceElement);
+
+            // Rückwärts, da die NodeList live ist
+            for (int nodeIndex = referenceList.getLength() - 1; nodeIndex >= 0; nodeIndex--) {
+                final Node referenceNode = referenceList.item(nodeIndex);
+                referenceNode.getParentNode().removeChild(referenceNode);
+            }
+        }
+    }
+
+    /**
+     * Sammelt alle vom Body über {@code r:*} Attribute referenzierten Relationships ein; das
+     * abschließende {@code w:sectPr} wird nicht übernommen und daher auch nicht betrachtet.
+     *
+     * @return  {@code false}, wenn eine Relationship auf einen nicht unterstützten Teil verweist
+     */
+    private boolean collectRelationships(Document mainRels, String mainPartDir,
+            Map<String, byte[]> zipEntries)
+    {
+        final Map<String, Element> relById = new HashMap<>();
+        final NodeList relList = mainRels.getElementsByTagName("Relationship");
+        for (int nodeIndex = 0; nodeIndex < relList.getLength(); nodeIndex++) {
+            final Element relElement = (Element) relList.item(nodeIndex);
+            relById.put(relElement.getAttribute("Id"), relElement);
+        }
+
+        for (Node bodyNode : bodyNodes) {
+            if (collectRelationships(bodyNode, relById, mainPartDir, zipEntries) == false) {
+                return false;
+            }
+
+            final NodeList bodyElements = ((Element) bodyNode).getElementsByTagName("*");
+            for (int nodeIndex = 0; nodeIndex < bodyElements.getLength(); nodeIndex++) {
+                if (collectRelationships(
+                        bodyElements.item(nodeIndex), relById, mainPartDir, zipEntries) == false)
+                {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private boolean collectRelationships(Node bodyElement, Map<String, Element> relById,
+            String mainPartDir, Map<String, byte[]> zipEntries)
+    {
+        final NamedNodeMap attributes = bodyElement.getAttributes();
+
+        for (int attrIndex = 0; attrIndex < attributes.getLength(); attrIndex++) {
+            final Attr attribute = (Attr) attributes.item(attrIndex);
+            if (attribute.getName().startsWith("r:") == false) {
+                continue;
+            }
+
+            final String relId = attribute.getValue();
+            if (relationships.containsKey(relId)) {
+                continue;
+            }
+
+            final Element relElement = relById.get(relId);
+            if (null == relElement) {
+                return false;
+            }
+
+            final String relType = relElement.getAttribute("Type");
+            final String relTarget = relElement.getAttribute("Target");
+            final boolean isExternal = "External".equals(relElement.getAttribute("TargetMode"));
+
+            if (isExternal) {
+                relationships.put(relId, new Relationship(relType, relTarget, true));
+                continue;
+            }
+
+            if (REL_TYPE_IMAGE.equals(relType) == false) {
+                return false; // z.B. Diagramme, OLE-Objekte, SmartArt
+            }
+
+            final String mediaPartName = resolvePartName(mainPartDir, relTarget);
+            final byte[] mediaData = zipEntries.get(mediaPartName);
+            if (null == mediaData) {
+                return false;
+            }
+
+            mediaParts.put(mediaPartName, mediaData);
+            relationships.put(relId, new Relationship(relType, mediaPartName, false));
+        }
+
+        return true;
+    }
+
+    @CheckForNull
+    private static Document parseOptional(DocumentBuilder docBuilder,
+            Map<String, byte[]> zipEntries, @Nullable String partName)
+            throws IOException, SAXException
+    {
+        if (null == partName || zipEntries.containsKey(partName) == false) {
+            return null;
+        }
+
+        return docBuilder.parse(new ByteArrayInputStream(zipEntries.get(partName)));
+    }
+
+    @CheckForNull
+    private static String findTargetByTypeSuffix(Document relsDocument, String baseDir,
+            String typeSuffix)
+    {
+        final NodeList relList = relsDocument.getElementsByTagName("Relationship");
+        for (int nodeIndex = 0; nodeIndex < relList.getLength(); nodeIndex++) {
+            final Element relElement = (Element) relList.item(nodeIndex);
+
+            if (relElement.getAttribute("Type").endsWith(typeSuffix)) {
+                return resolvePartName(baseDir, relElement.getAttribute("Target"));
+            }
+        }
+
+        return null;
+    }
+
+    private static String resolvePartName(String baseDir, String target) {
+        return target.startsWith("/") ? target.substring(1) : (baseDir + target);
+    }
+
+    private static DocumentBuilder newDocumentBuilder() throws ParserConfigurationException {
+        final DocumentBuilderFactory docBuilderFactory = DocumentBuilderFactory.newInstance();
+        docBuilderFactory.setIgnoringComments(true);
+
+        try {
+            // Voll expandierte DOM-Bäume, da diese später von mehreren Threads gelesen werden
+            docBuilderFactory.setFeature(
+                    "http://apache.org/xml/features/dom/defer-node-expansion", false);
+        } catch (ParserConfigurationException ex) {
+            // Andere Implementierung, dann bleibt es bei der Voreinstellung
+        }
+
+        return docBuilderFactory.newDocumentBuilder();
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public boolean isMergeable() {
+        return mergeable;
+    }
+
+    public Element getDocumentRoot() {
+        return documentRoot;
+    }
+
+    public List<Node> getBodyNodes() {
+        return Collections.unmodifiableList(bodyNodes);
+    }
+
+    @CheckForNull
+    public Document getStylesDocument() {
+        return stylesDocument;
+    }
+
+    @CheckForNull
+    public Document getNumberingDocument() {
+        return numberingDocument;
+    }
+
+    public Map<String, Relationship> getRelationships() {
+        return Collections.unmodifiableMap(relationships);
+    }
+
+    public byte[] getMediaData(String mediaPartName) {
+        return mediaParts.get(mediaPartName);
+    }
+
+    @CheckForNull
+    public String getContentTypeByExtension(String extension) {
+        return contentTypeDefaults.get(extension.toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * Vom Body verwendete Relationship.
+     */
+    static final class Relationship {
+
+        private final String type;
+        private final String target;
+        private final boolean external;
+
+        private Relationship(String type, String target, boolean external) {
+            this.type = type;
+            this.target = target;
+            this.external = external;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Bei externen Relationships die URI, ansonsten der Pfad im Container.
+         *
+         * @return  z.B. {@code 'word/media/image1.png'}
+         */
+        public String getTarget() {
+            return target;
+        }
+
+        public boolean isExternal() {
+            return external;
+        }
+
+    }
+
+}
@@ -0,0 +1,459 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office.extension;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Intern - Führt eingelesene Word-Dokumente ({@link DocxMergeSource}) direkt in ein einzelnes
+ * Ziel-Dokument zusammen.
+ *
+ * <p>Je Quelle (Inhalts-Hash) werden Formatvorlagen, Nummerierungen, Bilder und Hyperlinks nur
+ * einmal in das Ziel-Dokument übernommen und der Body einmalig als {@link DocumentFragment}
+ * (mit bereits umgeschriebenen IDs) aufbereitet. Jede weitere Einsetzung derselben Quelle ist
+ * dann nur noch eine Kopie dieses Fragmentes.</p>
+ *
+ * <p>Die aufbereiteten Bodies liegen in einem eigenen XML-Dokument des Mergers; das
+ * Hauptdokument ({@code word/document.xml}) wird nur von {@link #applyNamespaces()} verändert,
+ * da Seiten währenddessen von anderen Threads befüllt werden können.</p>
+ *
+ * <p>Bei Formatvorlagen mit identischer {@code w:styleId} gewinnt die Vorlage des
+ * Ziel-Dokumentes. Nummerierungen erhalten neue IDs oberhalb der im Ziel-Dokument vergebenen.</p>
+ *
+ * @author  Riebe, Moritz   (moritz.riebe@mz-entwickler.de)
+ */
+@NotThreadSafe
+final class DocxMerger {
+
+    private static final String ATTR_W_VAL = "w:val";
+
+    private static final String EL_ABSTRACT_NUM = "w:abstractNum";
+    private static final String EL_ABSTRACT_NUM_ID = "w:abstractNumId";
+    private static final String EL_NUM = "w:num";
+    private static final String EL_NUM_ID = "w:numId";
+
+    /** Kennungen die je Absatz eindeutig sein sollten und bei Kopien entfernt werden. */
+    private static final String[] PARAGRAPH_ID_ATTRIBUTES = { "w14:paraId", "w14:textId" };
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private final MicrosoftInsertDoc extension;
+    private final Document wordDocument;
+
+    /** Eigenes Dokument für die aufbereiteten Bodies, unabhängig vom Ziel-Dokument. */
+    private final Document mergeDocument;
+
+    /** Inhalts-Hash -&gt; aufbereiteter Body in {@link #mergeDocument}. */
+    private final Map<String, DocumentFragment> mergedBodies = new HashMap<>();
+
+    /** Namespace-Deklarationen der Quellen, die noch im Ziel-Dokument fehlen können. */
+    private final Map<String, String> pendingNamespaces = new LinkedHashMap<>();
+
+    /** Bereits in den Container geschriebene Bilder. */
+    private final Set<String> writtenMediaParts = new HashSet<>();
+
+    private Set<String> knownStyleIds;
+
+    private int nextAbstractNumId = -1;
+    private int nextNumId = -1;
+
+    DocxMerger(MicrosoftInsertDoc extension, Document wordDocument) {
+        this.extension = extension;
+        this.wordDocument = wordDocument;
+        this.mergeDocument = wordDocument.getImplementation().createDocument(null, null, null);
+    }
+
+    /**
+     * Gehört dieser Merger zum übergebenen Ziel-Dokument.
+     *
+     * @param document  Aktuelles Ziel-Dokument
+     * @return          {@code true}, wenn es dasselbe Dokument ist
+     */
+    boolean isMergerOf(Document document) {
+        return wordDocument == document;
+    }
+
+    /**
+     * Ersetzt {@code paragraphNode} durch den Body der Quelle.
+     *
+     * @param paragraphNode     Absatz mit dem Platzhalter
+     * @param source            Zusammenführbare Quelle
+     * @return                  {@code false}, wenn das Ziel-Dokument die Zusammenführung nicht
+     *                          unterstützt (dann ist nichts verändert worden)
+     */
+    boolean mergeAt(Node paragraphNode, DocxMergeSource source) {
+        assert source.isMergeable() : "source not mergeable";
+
+        DocumentFragment mergedBody = mergedBodies.get(source.getContentHash());
+
+        if (null == mergedBody) {
+            mergedBody = mergeSource(source);
+
+            if (null == mergedBody) {
+                return false;
+            }
+
+            mergedBodies.put(source.getContentHash(), mergedBody);
+        }
+
+        // Seiten, Kopf- und Fußzeilen können in eigenen XML-Dokumenten befüllt werden
+        final Node mergedCopy = paragraphNode.getOwnerDocument().importNode(mergedBody, true);
+
+        final Node parentNode = paragraphNode.getParentNode();
+        parentNode.insertBefore(mergedCopy, paragraphNode);
+        parentNode.removeChild(paragraphNode);
+
+        return true;
+    }
+
+    @CheckForNull
+    private DocumentFragment mergeSource(DocxMergeSource source) {
+        // Die DOM-Bäume der Quelle werden u.U. von mehreren Dokumenten gleichzeitig gelesen
+        synchronized (source) {
+            final Document numberingDocument;
+            if (null != source.getNumberingDocument()) {
+                numberingDocument = extension.getNumberingDocument(true);
+
+                if (null == numberingDocument) {
+                    return null;
+                }
+            } else {
+                numberingDocument = null;
+            }
+
+            final Map<String, String> relIdMap = mergeRelationships(source);
+            final Map<String, String> numIdMap = (null == numberingDocument)
+                    ? new HashMap<>()
+                    : mergeNumbering(source, numberingDocument);
+
+            mergeStyles(source, numIdMap);
+            collectNamespaces(source.getDocumentRoot());
+
+            final DocumentFragment mergedBody = mergeDocument.createDocumentFragment();
+            for (Node bodyNode : source.getBodyNodes()) {
+                final Node importedNode = mergeDocument.importNode(bodyNode, true);
+                rewriteImportedNode(importedNode, relIdMap, numIdMap);
+
+                mergedBody.appendChild(importedNode);
+            }
+
+            return mergedBody;
+        }
+    }
+
+    /**
+     * Übernimmt die Namespace-Deklarationen aller bisher eingesetzten Quellen in das
+     * Wurzel-Element des Ziel-Dokumentes; nur aufrufen, wenn kein anderer Thread mehr auf das
+     * Ziel-Dokument zugreift.
+     */
+    void applyNamespaces() {
+        final Element targetRoot = wordDocument.getDocumentElement();
+
+        for (Map.Entry<String, String> namespace : pendingNamespaces.entrySet()) {
+            if (targetRoot.hasAttribute(namespace.getKey()) == false) {
+                targetRoot.setAttribute(namespace.getKey(), namespace.getValue());
+            }
+        }
+
+        pendingNamespaces.clear();
+    }
+
+    private void collectNamespaces(Element sourceRoot) {
+        final NamedNodeMap sourceAttributes = sourceRoot.getAttributes();
+
+        for (int attrIndex = 0; attrIndex < sourceAttributes.getLength(); attrIndex++) {
+            final Attr attribute = (Attr) sourceAttributes.item(attrIndex);
+
+            if (attribute.getName().startsWith("xmlns:")) {
+                pendingNamespaces.putIfAbsent(attribute.getName(), attribute.getValue());
+            }
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private Map<String, String> mergeRelationships(DocxMergeSource source) {
+        final String idPrefix = "rMrg" + source.getContentHash().substring(0, 12);
+        final Map<String, String> relIdMap = new HashMap<>();
+
+        for (Map.Entry<String, DocxMergeSource.Relationship> entry
+                : source.getRelationships().entrySet())
+        {
+            final String newRelId = idPrefix + entry.getKey();
+            final DocxMergeSource.Relationship relationship = entry.getValue();
+
+            relIdMap.put(entry.getKey(), newRelId);
+
+            if (relationship.isExternal()) {
+                extension.registerRelationship(
+                        newRelId, relationship.getType(), relationship.getTarget(), "External");
+                continue;
+            }
+
+            final String mediaPartName = relationship.getTarget();
+            final String fileName = mediaPartName.substring(mediaPartName.lastIndexOf('/') + 1);
+            final String newTarget = "media/" + idPrefix + "_" + fileName;
+
+            extension.registerRelationship(
+                    newRelId, relationship.getType(), newTarget, "Internal");
+
+            if (writtenMediaParts.add(newTarget) == false) {
+                continue; // Mehrere Relationships auf dasselbe Bild
+            }
+
+            extension.overwritePartInContainer(
+                    "word/" + newTarget, source.getMediaData(mediaPartName));
+
+            final int indexOfDot = fileName.lastIndexOf('.');
+            if (indexOfDot != -1) {
+                final String fileExtension = fileName.substring(indexOfDot + 1);
+                final String mimeType = source.getContentTypeByExtension(fileExtension);
+
+                if (null != mimeType) {
+                    extension.registerContentTypeDefault(fileExtension, mimeType);
+                }
+            }
+        }
+
+        return relIdMap;
+    }
+
+    private Map<String, String> mergeNumbering(
+            DocxMergeSource source, Document numberingDocument)
+    {
+        final Element targetRoot = numberingDocument.getDocumentElement();
+
+        if (nextAbstractNumId == -1) {
+            nextAbstractNumId = maxIdOf(targetRoot, EL_ABSTRACT_NUM, EL_ABSTRACT_NUM_ID) + 1;
+            // w:numId="0" steht in Word für "keine Nummerierung"
+            nextNumId = Math.max(1, maxIdOf(targetRoot, EL_NUM, EL_NUM_ID) + 1);
+        }
+
+        final Element sourceRoot = source.getNumberingDocument().getDocumentElement();
+        copyNamespaces(sourceRoot, targetRoot);
+
+        // Reihenfolge laut Schema: alle w:abstractNum vor den w:num Einträgen
+        final Node firstNum = firstChildElement(targetRoot, EL_NUM);
+        final Node numInsertPoint = firstChildElement(targetRoot, "w:numIdMacAtCleanup");
+
+        final Map<String, String> abstractNumIdMap = new HashMap<>();
+        final Map<String, String> numIdMap = new HashMap<>();
+
+        final NodeList sourceChildren = sourceRoot.getChildNodes();
+        for (int nodeIndex = 0; nodeIndex < sourceChildren.getLength(); nodeIndex++) {
+            final Node sourceChild = sourceChildren.item(nodeIndex);
+
+            if (EL_ABSTRACT_NUM.equals(sourceChild.getNodeName()) == false) {
+                continue;
+            }
+
+            final Element abstractNum = (Element) numberingDocument.importNode(sourceChild, true);
+            final String newId = Integer.toString(nextAbstractNumId++);
+
+            abstractNumIdMap.put(abstractNum.getAttribute(EL_ABSTRACT_NUM_ID), newId);
+            abstractNum.setAttribute(EL_ABSTRACT_NUM_ID, newId);
+
+            targetRoot.insertBefore(abstractNum, firstNum);
+        }
+
+        for (int nodeIndex = 0; nodeIndex < sourceChildren.getLength(); nodeIndex++) {
+            final Node sourceChild = sourceChildren.item(nodeIndex);
+
+            if (EL_NUM.equals(sourceChild.getNodeName()) == false) {
+                continue;
+            }
+
+            final Element num = (Element) numberingDocument.importNode(sourceChild, true);
+            final String newId = Integer.toString(nextNumId++);
+
+            numIdMap.put(num.getAttribute(EL_NUM_ID), newId);
+            num.setAttribute(EL_NUM_ID, newId);
+
+            final NodeList abstractNumRefs = num.getElementsByTagName(EL_ABSTRACT_NUM_ID);
+            for (int refIndex = 0; refIndex < abstractNumRefs.getLength(); refIndex++) {
+                remapValue((Element) abstractNumRefs.item(refIndex), abstractNumIdMap);
+            }
+
+            targetRoot.insertBefore(num, numInsertPoint);
+        }
+
+        return numIdMap;
+    }
+
+    private void mergeStyles(DocxMergeSource source, Map<String, String> numIdMap) {
+        final Document sourceStyles = source.getStylesDocument();
+        final Document targetStyles = extension.getStylesDocument();
+
+        if (null == sourceStyles || null == targetStyles) {
+            return;
+        }
+
+        final Element targetRoot = targetStyles.getDocumentElement();
+
+        if (null == knownStyleIds) {
+            knownStyleIds = new HashSet<>();
+
+            final NodeList targetStyleList = targetStyles.getElementsByTagName("w:style");
+            for (int nodeIndex = 0; nodeIndex < targetStyleList.getLength(); nodeIndex++) {
+                knownStyleIds.add(((Element) targetStyleList.item(nodeIndex))
+                        .getAttribute("w:styleId"));
+            }
+        }
+
+        copyNamespaces(sourceStyles.getDocumentElement(), targetRoot);
+
+        final NodeList sourceStyleList = sourceStyles.getElementsByTagName("w:style");
+        for (int nodeIndex = 0; nodeIndex < sourceStyleList.getLength(); nodeIndex++) {
+            final Element sourceStyle = (Element) sourceStyleList.item(nodeIndex);
+
+            if (knownStyleIds.add(sourceStyle.getAttribute("w:styleId")) == false) {
+                continue; // Vorlage des Ziel-Dokumentes gewinnt
+            }
+
+            final Element importedStyle = (Element) targetStyles.importNode(sourceStyle, true);
+
+            final NodeList numIdList = importedStyle.getElementsByTagName(EL_NUM_ID);
+            for (int refIndex = 0; refIndex < numIdList.getLength(); refIndex++) {
+                remapValue((Element) numIdList.item(refIndex), numIdMap);
+            }
+
+            targetRoot.appendChild(importedStyle);
+        }
+    }
+
+    /**
+     * Schreibt im importierten Teilbaum Relationship-IDs und Nummerierungs-IDs um und entfernt
+     * Abschnittswechsel sowie Absatz-Kennungen.
+     */
+    private void rewriteImportedNode(Node importedNode,
+            Map<String, String> relIdMap, Map<String, String> numIdMap)
+    {
+        if (importedNode.getNodeType() != Node.ELEMENT_NODE) {
+            return;
+        }
+
+        final Element element = (Element) importedNode;
+        final String nodeName = element.getNodeName();
+
+        if ("w:sectPr".equals(nodeName)) {
+            element.getParentNode().removeChild(element);
+            return;
+        }
+
+        if (EL_NUM_ID.equals(nodeName)) {
+            remapValue(element, numIdMap);
+        }
+
+        for (String attrName : PARAGRAPH_ID_ATTRIBUTES) {
+            element.removeAttribute(attrName);
+        }
+
+        final NamedNodeMap attributes = element.getAttributes();
+        for (int attrIndex = 0; attrIndex < attributes.getLength(); attrIndex++) {
+            final Attr attribute = (Attr) attributes.item(attrIndex);
+
+            if (attribute.getName().startsWith("r:")) {
+                final String newRelId = relIdMap.get(attribute.getValue());
+
+                if (null != newRelId) {
+                    attribute.setValue(newRelId);
+                }
+            }
+        }
+
+        Node childNode = element.getFirstChild();
+        while (null != childNode) {
+            final Node nextNode = childNode.getNextSibling();
+            rewriteImportedNode(childNode, relIdMap, numIdMap);
+            childNode = nextNode;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static void remapValue(Element element, Map<String, String> idMap) {
+        final String newValue = idMap.get(element.getAttribute(ATTR_W_VAL));
+
+        if (null != newValue) {
+            element.setAttribute(ATTR_W_VAL, newValue);
+        }
+    }
+
+    private static int maxIdOf(Element root, String elementName, String idAttribute) {
+        int maxId = -1;
+
+        final NodeList elementList = root.getElementsByTagName(elementName);
+        for (int nodeIndex = 0; nodeIndex < elementList.getLength(); nodeIndex++) {
+            try {
+                maxId = Math.max(maxId, Integer.parseInt(
+                        ((Element) elementList.item(nodeIndex)).getAttribute(idAttribute)));
+            } catch (NumberFormatException ex) {
+                // Ungültige ID, wird bei der Vergabe neuer IDs nicht berücksichtigt
+            }
+        }
+
+        return maxId;
+    }
+
+    @Nullable
+    private static Node firstChildElement(Element parent, String elementName) {
+        Node childNode = parent.getFirstChild();
+
+        while (null != childNode && elementName.equals(childNode.getNodeName()) == false) {
+            childNode = childNode.getNextSibling();
+        }
+
+        return childNode;
+    }
+
+    /**
+     * Übernimmt im Ziel noch nicht deklarierte Namespace-Präfixe; ohne diese wäre eingefügtes
+     * Markup mit z.B. {@code w14:} Präfix ungültig.
+     */
+    private static void copyNamespaces(Element sourceRoot, Element targetRoot) {
+        final NamedNodeMap sourceAttributes = sourceRoot.getAttributes();
+
+        for (int attrIndex = 0; attrIndex < sourceAttributes.getLength(); attrIndex++) {
+            final Attr attribute = (Attr) sourceAttributes.item(attrIndex);
+            final String attrName = attribute.getName();
+
+            if (attrName.startsWith("xmlns:") && targetRoot.hasAttribute(attrName) == false) {
+                targetRoot.setAttribute(attrName, attribute.getValue());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,208 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office.extension;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Intern - Prozessweiter Zwischenspeicher für einzufügende Dokumente (Textbausteine).
+ *
+ * <p>Schlüssel ist der absolute, normalisierte Dateipfad. Ein Eintrag ist nur gültig, solange
+ * Änderungszeitpunkt und Dateigröße unverändert sind; andernfalls wird die Datei neu geladen.
+ * Zu jedem Eintrag wird einmalig ein Inhalts-Hash berechnet, mit dem identische Inhalte innerhalb
+ * eines Dokumentes nur einmal abgelegt werden.</p>
+ *
+ * <p>Die zurückgegebenen Daten werden nicht kopiert und dürfen nicht verändert werden.</p>
+ *
+ * @author  Riebe, Moritz   (moritz.riebe@mz-entwickler.de)
+ */
+@ThreadSafe
+final class ImportFileCache {
+
+    /** Obergrenze der zwischengespeicherten Bytes über alle Einträge. */
+    private static final long MAX_CACHED_BYTES = 64L * 1024L * 1024L;
+
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+
+    /** LRU-Reihenfolge; Zugriff nur synchronisiert über sich selbst. */
+    private static final Map<Path, ImportFile> CACHE = new LinkedHashMap<>(16, 0.75F, true);
+
+    private static long cachedBytes = 0L;
+
+    private ImportFileCache() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Liefert den (ggf. zwischengespeicherten) Inhalt der Datei.
+     *
+     * @param importFile    Pfad zum einzufügenden Dokument
+     *
+     * @return              Geladene Datei samt Inhalts-Hash, nie {@code null}
+     *
+     * @throws  UncheckedIOException
+     *          Gewrappte IOException bei einem Ein-/Ausgabefehler.
+     */
+    public static ImportFile load(Path importFile) {
+        final Path cacheKey = importFile.toAbsolutePath().normalize();
+
+        final FileTime lastModified;
+        final long fileSize;
+        try {
+            lastModified = Files.getLastModifiedTime(cacheKey);
+            fileSize = Files.size(cacheKey);
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+
+        synchronized (CACHE) {
+            final ImportFile cachedFile = CACHE.get(cacheKey);
+            if (null != cachedFile && cachedFile.isUpToDate(lastModified, fileSize)) {
+                return cachedFile;
+            }
+        }
+
+        final byte[] data;
+        try {
+            data = Files.readAllBytes(cacheKey);
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+
+        final ImportFile loadedFile = new ImportFile(lastModified, data);
+
+        synchronized (CACHE) {
+            final ImportFile replacedFile = CACHE.put(cacheKey, loadedFile);
+            if (null != replacedFile) {
+                cachedBytes -= replacedFile.data.length;
+            }
+
+            cachedBytes += data.length;
+            evictEldest();
+        }
+
+        return loadedFile;
+    }
+
+    private static void evictEldest() {
+        assert Thread.holdsLock(CACHE);
+
+        // Der zuletzt geladene Eintrag bleibt immer erhalten, auch wenn er allein zu groß ist
+        while (cachedBytes > MAX_CACHED_BYTES && CACHE.size() > 1) {
+            final Path eldestKey = CACHE.keySet().iterator().next();
+            cachedBytes -= CACHE.remove(eldestKey).data.length;
+        }
+    }
+
+    private static String sha256Hex(byte[] data) {
+        final byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex); // SHA-256 ist von jeder JRE zu unterstützen
+        }
+
+        final char[] hexChars = new char[digest.length * 2];
+        for (int index = 0; index < digest.length; index++) {
+            hexChars[index * 2] = HEX_CHARS[(digest[index] >> 4) & 0x0F];
+            hexChars[index * 2 + 1] = HEX_CHARS[digest[index] & 0x0F];
+        }
+
+        return new String(hexChars);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Geladene Datei mit Änderungszeitpunkt und Inhalts-Hash.
+     */
+    @ThreadSafe
+    static final class ImportFile {
+
+        private final FileTime lastModified;
+        private final byte[] data;
+        private final String contentHash;
+
+        /** Bei Bedarf eingelesenes Dokument für das direkte Zusammenführen. */
+        private volatile DocxMergeSource mergeSource;
+
+        private ImportFile(FileTime lastModified, byte[] data) {
+            this.lastModified = lastModified;
+            this.data = data;
+            this.contentHash = sha256Hex(data);
+        }
+
+        private boolean isUpToDate(FileTime currentModified, long currentSize) {
+            return lastModified.equals(currentModified) && data.length == currentSize;
+        }
+
+        /**
+         * Inhalt der Datei; darf nicht verändert werden.
+         *
+         * @return  Dateiinhalt, nie {@code null}
+         */
+        public byte[] getData() {
+            return data;
+        }
+
+        /**
+         * SHA-256 des Inhalts als Hex-Zeichenkette (klein geschrieben).
+         *
+         * @return  z.B. {@code '9f86d081884c7d65...'}, nie {@code null}
+         */
+        public String getContentHash() {
+            return contentHash;
+        }
+
+        /**
+         * Liefert das (einmalig) eingelesene Dokument zum direkten Zusammenführen; die Quelle
+         * lebt so lange wie dieser Eintrag im Zwischenspeicher.
+         *
+         * @return  Eingelesene Quelle, nie {@code null}
+         */
+        public DocxMergeSource getMergeSource() {
+            DocxMergeSource result = mergeSource;
+
+            if (null == result) {
+                synchronized (this) {
+                    result = mergeSource;
+                    if (null == result) {
+                        result = mergeSource = DocxMergeSource.parse(this);
+                    }
+                }
+            }
+
+            return result;
+        }
+
+    }
+
+}
@@ -26,13 +26,11 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
 import java.util.Objects;
 
 import static com.mz.solutions.office.resources.MessageResources.formatMessage;
 import static java.util.Objects.requireNonNull;
 import java.util.Optional;
-import java.util.UUID;
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nullable;
 import org.w3c.dom.Document;
@@ -101,10 +99,19 @@ import org.w3c.dom.NodeList;
   page.addValue(new DataValue("BottomTextIns", MicrosoftInsertDoc.insertFile(bottomText)));
  </pre>
  * 
- * <p><b>Empfehlung bei Verwendung:</b> Wird ein Textbaustein innerhalb eines Dokumentes mehrfach
- * verwendet, dann ist es von Vorteil für die Ladezeit und Größe der späteren Datei, das die Instanz
- * von {@link ExtendedValue} nicht mehrfach erzeugt wird, sondern nach einmaliger Erzeugung mehrfach
- * verwendet wird.</p>
+ * <p><b>Hinweis zur Verwendung:</b> Wird ein Textbaustein innerhalb eines Dokumentes mehrfach
+ * verwendet, wird dieser nur einmal im Dokument abgelegt; unabhängig davon ob dafür die selbe
+ * Instanz von {@link ExtendedValue} oder mehrere erzeugt wurden. Maßgeblich ist allein der Inhalt.
+ * Eingelesene Dateien werden prozessweit zwischengespeichert (Schlüssel: Pfad und
+ * Änderungszeitpunkt) und bei Änderung der Datei neu geladen.</p>
+ * 
+ * <p><b>Zusammenführen von Word-Dokumenten:</b> Mit {@link #mergeFile(Path)} wird ein Word-Dokument
+ * nicht als {@code w:altChunk} abgelegt (das erst Word beim Öffnen konvertiert), sondern dessen
+ * Body samt Formatvorlagen, Nummerierungen, Bildern und Hyperlinks direkt in das Dokument
+ * übernommen. Das eingelesene Dokument wird zusammen mit der Datei zwischengespeichert und für
+ * jede weitere Einsetzung wiederverwendet. Verwendet das Dokument Teile die nicht übernommen werden
+ * können (z.B. Diagramme, eingebettete Objekte, Fuß-/Endnoten oder Kommentare), wird automatisch
+ * auf {@code w:altChunk} zurückgegriffen.</p>
  * 
  * <p>Leere Texteinsetzungen (also Platzhalter an denen kein Dokument eingefügt werden sollen)
  * können über eine leere Zeichenkette (normales {@link DataValue}) angezeigt werden, dann bleibt
@@ -224,6 +231,17 @@ public abstract class MicrosoftInsertDoc implements Extension {
             return mimeType;
         }
         
+        /**
+         * Handelt es sich um ein Word-Dokument (ZIP-Container), das auch direkt zusammengeführt
+         * werden kann.
+         * 
+         * @return  {@code true} bei {@code docx}, {@code docm}, {@code dotx} und {@code dotm}
+         */
+        protected boolean isWordPackage() {
+            return this == WORD_PROCESSING_ML || this == OFFICE_WORD_MACRO_ENABLED
+                    || this == OFFICE_WORD_TEMPLATE || this == OFFICE_WORD_MACRO_ENABLED_TEMPLATE;
+        }
+        
     }
     
     ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -302,6 +320,40 @@ public abstract class MicrosoftInsertDoc implements Extension {
         return insertFile(docToImport, opDocFormat.get());
     }
     
+    /**
+     * Erzeugt einen erweiterten Wert für ein Word-Dokument ({@code *.docx}, {@code *.docm},
+     * {@code *.dotx}, {@code *.dotm}), dessen Inhalt direkt mit dem Dokument zusammengeführt
+     * werden soll, anstatt es als {@code w:altChunk} einzubetten.
+     * 
+     * <p>Übernommen werden der Body (ohne die Seiten- und Abschnittseinstellungen), fehlende
+     * Formatvorlagen (bei gleicher ID gewinnt die Vorlage des Dokumentes), Nummerierungen,
+     * eingebettete Bilder und externe Verweise (Hyperlinks). Ist eine Übernahme nicht möglich,
+     * wird das Dokument wie bei {@link #insertFile(Path)} als {@code w:altChunk} eingefügt.</p>
+     * 
+     * @param docToMerge    Pfad zum Word-Dokument, darf nicht {@code null} sein.
+     * 
+     * @return              Erweiterter-Wert, nie {@code null}.
+     * 
+     * @throws  IllegalStateException
+     *          Wenn das Dateiformat (aus der Dateinamenserweiterung) kein Word-Dokument ist.
+     * 
+     * @throws  UncheckedIOException 
+     *          Für den Fall, das am übergebenen Dateipfad sich kein Dokument befindet.
+     */
+    public static ExtendedValue mergeFile(Path docToMerge) throws UncheckedIOException {
+        requireNonNull(docToMerge, "docToMerge");
+        
+        final Optional<ImportFormatType> opDocFormat = ImportFormatType
+                .byFileExtension(docToMerge);
+        
+        if (opDocFormat.isPresent() == false || opDocFormat.get().isWordPackage() == false) {
+            throw new IllegalStateException(formatMessage(
+                    "MicrosoftInsertDoc_NotMergeable", docToMerge));
+        }
+        
+        return new MergeDocExtValue(docToMerge, opDocFormat.get());
+    }
+    
     /**
      * Erstellt einen erweiterten Wert für einen Einsetzungsvorgang in dem KEINE Einfügeopration
      * ausgefhrt werden soll und der Absatz (mit dem Platzhalter) vollständig entfernt werden soll.
@@ -313,8 +365,8 @@ public abstract class MicrosoftInsertDoc implements Extension {
     }
     
     /**
-     * Interne Darstellung des erweiterten Wertes mit AltChunkID, gecachetem Dateiinhalt und
-     * angegebenem Formattyp.
+     * Interne Darstellung des erweiterten Wertes mit Pfad und angegebenem Formattyp; Dateiinhalt
+     * und AltChunkID werden über den {@link ImportFileCache} ermittelt.
      */
     private static class AltChunkExtValue extends ExtendedValue {
         
@@ -323,21 +375,12 @@ public abstract class MicrosoftInsertDoc implements Extension {
         
         /** Formattyp (unabhängig der Dateiendung). */
         private final ImportFormatType format;
-        
-        /** UUID wird als ChunkID verwendet um grundsätzlich Eindeutigkeit zu bekommen. */
-        private final UUID chunkUID;
-        
-        /** Ist nach dem ersten Laden mit dem Teildokument belegt und dann non-null. */
-        @Nullable
-        private transient byte[] cachedDocument;
 
         public AltChunkExtValue(Path importFile, ImportFormatType format) {
             this.importFile = requireNonNull(importFile, "importFile");
             this.format = requireNonNull(format, "format");
             
             checkFileExists(importFile);
-            
-            this.chunkUID = UUID.randomUUID();
         }
         
         private void checkFileExists(Path file) {
@@ -351,45 +394,42 @@ public abstract class MicrosoftInsertDoc implements Extension {
         }
         
         /**
-         * Lädt das Dokument welches unter dem Pfad angegeben ist und cached es.
+         * Lädt das Dokument welches unter dem Pfad angegeben ist über den prozessweiten
+         * {@link ImportFileCache}.
          * 
-         * @return  Array aus bytes mit dem Dateiinhalt, nie {@code null}
+         * @return  Geladene Datei, nie {@code null}
          * 
          * @throws  UncheckedIOException
          *          Gewrappte IOException bei einem Ein-/Ausgabefehler.
          */
-        protected byte[] loadImportDocument() {
-            if (null != this.cachedDocument) {
-                return Arrays.copyOf(cachedDocument, cachedDocument.length);
-            }
-            
-            try {
-                this.cachedDocument = Files.readAllBytes(importFile);
-            } catch (IOException ioException) {
-                throw new UncheckedIOException(ioException);
-            }
-            
-            return Arrays.copyOf(cachedDocument, cachedDocument.length);
+        protected ImportFileCache.ImportFile loadImportFile() {
+            return ImportFileCache.load(importFile);
         }
-
+        
         /**
-         * AltChunk Relationship-ID die eindeutig über mehrere Dokumente ist.
+         * AltChunk Relationship-ID, abgeleitet vom Inhalt des Dokumentes und vom Format.
+         * 
+         * <p>Identische Inhalte erhalten damit die selbe ID und werden innerhalb eines Dokumentes
+         * nur einmal abgelegt und eingetragen.</p>
          * 
-         * <p>Der internen UUID (ChunkUID) werden die Bindestriche zuvor entfernt.</p>
+         * @param loadedFile  Mit {@link #loadImportFile()} geladene Datei
          * 
-         * @return  z.B. {@code 'altChunk75886d8ee2084c10b151f6b52bce9174'}, nie {@code null}.
+         * @return  z.B. {@code 'altChunk75886d8ee2084c10b151f6b52bce9174docx'}, nie {@code null}.
          */
-        protected String getChunkUID() {
-            return ("altChunk" + chunkUID.toString()).replace("-", "");
+        protected String getChunkUID(ImportFileCache.ImportFile loadedFile) {
+            return "altChunk" + loadedFile.getContentHash().substring(0, 32)
+                    + format.fileExtension;
         }
         
         /**
          * Interner Dateiname mit Bezug zur ChunkID.
          * 
-         * @return  z.B. {@code 'altChunk75886d8ee2084c10b151f6b52bce9174.docx'}.
+         * @param chunkUID  Mit {@link #getChunkUID} ermittelte ID
+         * 
+         * @return  z.B. {@code 'altChunk75886d8ee2084c10b151f6b52bce9174docx.docx'}.
          */
-        protected String getTargetName() {
-            return getChunkUID() + "." + format.fileExtension;
+        protected String getTargetName(String chunkUID) {
+            return chunkUID + "." + format.fileExtension;
         }
 
         /**
@@ -454,6 +494,24 @@ public abstract class MicrosoftInsertDoc implements Extension {
         
     }
     
+    /**
+     * Word-Dokument das direkt zusammengeführt werden soll; kann dies nicht erfolgen, wird es wie
+     * ein {@link AltChunkExtValue} behandelt.
+     */
+    private static class MergeDocExtValue extends AltChunkExtValue {
+
+        public MergeDocExtValue(Path importFile, ImportFormatType format) {
+            super(importFile, format);
+        }
+        
+        @Override
+        public String altString() {
+            return ExtendedValue.class.getSimpleName()
+                    + "[MERGE:" + getFormat() + "://\'" + getImportFile() + "\']";
+        }
+        
+    }
+    
     /**
      * Erweiterter Wert der einer nicht vorhandenen Ersetzung entspricht, dessen Absatz jedoch
      * (in dem das Platzhalter dazu angegeben wurde) mit entfernt werden soll.
@@ -495,6 +553,9 @@ public abstract class MicrosoftInsertDoc implements Extension {
     private static final String EL_RELATIONSHIP = "Relationship";
     
     ////////////////////////////////////////////////////////////////////////////////////////////////
+    
+    /** Zusammenführung in das aktuelle Dokument; wird bei einem neuen Dokument neu erzeugt. */
+    private DocxMerger docxMerger;
 
     /**
      * Interner Konstruktor - nicht verwenden.
@@ -504,6 +565,35 @@ public abstract class MicrosoftInsertDoc implements Extension {
     protected abstract Document getWordDocument();
     protected abstract Document getRelationshipDocument();
     protected abstract Document getContentTypeDocument();
+    
+    /**
+     * Formatvorlagen ({@code 'word/styles.xml'}) des Dokumentes für {@link #mergeFile(Path)}.
+     * 
+     * <p>Die Standardimplementierung liefert {@code null}; es werden dann keine Formatvorlagen
+     * übernommen.</p>
+     * 
+     * @return  Formatvorlagen oder {@code null}
+     */
+    @Nullable
+    protected Document getStylesDocument() {
+        return null;
+    }
+    
+    /**
+     * Nummerierungen ({@code 'word/numbering.xml'}) des Dokumentes für {@link #mergeFile(Path)}.
+     * 
+     * <p>Die Standardimplementierung liefert {@code null}; Dokumente mit Nummerierungen werden
+     * dann als {@code w:altChunk} eingefügt.</p>
+     * 
+     * @param createIfMissing   Teil anlegen (inkl. Relationship und Content-Type), wenn das
+     *                          Dokument noch keine Nummerierungen besitzt
+     * 
+     * @return                  Nummerierungen oder {@code null}
+     */
+    @Nullable
+    protected Document getNumberingDocument(boolean createIfMissing) {
+        return null;
+    }
 
     /**
      * Implementiert das hinzufügen einer "Unter"-Datei zum eigentlichen Dokument.
@@ -548,24 +638,68 @@ public abstract class MicrosoftInsertDoc implements Extension {
         // anlegen und abhängig der r:id eintragen.
         
         final AltChunkExtValue chunkExtValue = (AltChunkExtValue) extValue;
+        final ImportFileCache.ImportFile loadedFile = chunkExtValue.loadImportFile();
+        
         final Node paragraphNode = findUpperAllowedParent(anyNode);
         final Node allowedParentNode = paragraphNode.getParentNode();
         
+        if (extValue instanceof MergeDocExtValue && mergeAt(paragraphNode, loadedFile)) {
+            return;
+        }
+        
+        final String chunkID = chunkExtValue.getChunkUID(loadedFile);
+        
         allowedParentNode.replaceChild(
-                createAltChunkElement(chunkExtValue.getChunkUID()),
-                paragraphNode);
+                createAltChunkElement(paragraphNode.getOwnerDocument(), chunkID), paragraphNode);
         
         
         // Im Relationships-Dokument eine neue r:id einfügen, nur wenn diese noch nicht enthalten
         // ist; eine bereits eingetragene wird nicht doppelt eingetragen.
         // Ist die ChunkID noch nicht eingetragen gewesen, wird auch das Teildokument dem
         // (ZIP) Container hinzugefügt.
-        if (registerAndInsertChunkRelationship(chunkExtValue)) {
+        if (registerAndInsertChunkRelationship(chunkExtValue, chunkID, loadedFile)) {
             // Auch in Content-Types mit aufführen anhand der Dateinamensendung
             registerMimeType(chunkExtValue);
         }
     }
     
+    /**
+     * Führt das Word-Dokument direkt an der Stelle des Absatzes zusammen.
+     * 
+     * @param paragraphNode     Absatz mit dem Platzhalter
+     * @param loadedFile        Geladenes Word-Dokument
+     * 
+     * @return                  {@code false}, wenn stattdessen {@code w:altChunk} verwendet
+     *                          werden muss.
+     */
+    private boolean mergeAt(Node paragraphNode, ImportFileCache.ImportFile loadedFile) {
+        final DocxMergeSource mergeSource = loadedFile.getMergeSource();
+        
+        if (mergeSource.isMergeable() == false) {
+            return false;
+        }
+        
+        final Document wordDocument = getWordDocument();
+        if (null == docxMerger || docxMerger.isMergerOf(wordDocument) == false) {
+            docxMerger = new DocxMerger(this, wordDocument);
+        }
+        
+        return docxMerger.mergeAt(paragraphNode, mergeSource);
+    }
+    
+    /**
+     * Übernimmt die Namespace-Deklarationen aller per {@link #mergeFile(Path)} zusammengeführten
+     * Dokumente in das Wurzel-Element von {@link #getWordDocument()}.
+     * 
+     * <p>Muss nach dem Befüllen aller Seiten und Teile aufgerufen werden, sobald kein anderer
+     * Thread mehr auf das Hauptdokument zugreift.</p>
+     */
+    public void applyMergedNamespaces() {
+        if (null != docxMerger && docxMerger.isMergerOf(getWordDocument())) {
+            docxMerger.applyNamespaces();
+        }
+    }
+    
     /**
      * Sucht an der Stelle des Platzhalter-Nodes, in den höherwertigen Parent-Nodes nach einem
      * passenden Elternelement für w:altChunk.
@@ -690,13 +824,68 @@ public abstract class MicrosoftInsertDoc implements Extension {
      * 
      * @param chunkExtValue     Erweiterter Wert
      * 
+     * @param chunkID           Vom Inhalt abgeleitete AltChunkID
+     * 
+     * @param loadedFile        Inhalt des einzufügenden Dokumentes
+     * 
      * @return                  {@code true}, wenn eine Eintragung erfolgen musste.
      */
-    private boolean registerAndInsertChunkRelationship(AltChunkExtValue chunkExtValue) {
+    private boolean registerAndInsertChunkRelationship(AltChunkExtValue chunkExtValue,
+            String chunkID, ImportFileCache.ImportFile loadedFile)
+    {
+        final String targetName = chunkExtValue.getTargetName(chunkID);
+        final boolean isNewRelationship = registerRelationship(
+                chunkID, NS_ALT_CHUNK, targetName, "Internal");
+        
+        if (isNewRelationship == false) {
+            // Die ID (chunkID) ist bereits eingetragen (ggf. dadurch das dieser oder ein Wert
+            // mit identischem Inhalt bereits woanders im Dokument eingesetzt wurde) und muss
+            // dem entsprechend nicht erneut eingetragen werden und auch nicht erneut dem
+            // Dokument hinzugefügt werden.
+            //
+            // Das Eintragen in die [Content-Types].xml kann damit auch entfallen, das dies
+            // ansonsten eh passiert wäre.
+            return false;
+        }
+        
+        // Die Chunk-ID ist noch nicht in Relationships eingetragen und auch noch nicht in der
+        // ZIP Datei enthalten ...
+        overwritePartInContainer("word/" + targetName, loadedFile.getData());
+        
+        return true;
+    }
+    
+    /**
+     * Registriert den MIME-Type in der Content-Types-Datei sobald der Dateityp noch unbekannt ist.
+     * 
+     * @param extValue  Erweiterter Wert
+     */
+    private void registerMimeType(AltChunkExtValue extValue) {
+        registerContentTypeDefault(
+                extValue.getFormat().getFileExtension(),
+                extValue.getFormat().getMimeType());
+    }
+    
+    /**
+     * Trägt eine Relationship im Relationship-Dokument ein, soweit die ID noch nicht vergeben ist.
+     * 
+     * <p>Die Standardimplementierung durchsucht dafür jedes mal das DOM von
+     * {@link #getRelationshipDocument()}. Implementierungen die die Relationships bereits
+     * indiziert im Speicher halten, sollten diese Methode überschreiben.</p>
+     * 
+     * @param relId         Relationship-ID
+     * @param type          Relationship-Typ (Namespace-URI)
+     * @param target        Ziel im Container
+     * @param targetMode    z.B. {@code 'Internal'}
+     * 
+     * @return              {@code true}, wenn die ID neu eingetragen wurde.
+     */
+    protected boolean registerRelationship(
+            String relId, String type, String target, String targetMode)
+    {
         final Document docRel = getRelationshipDocument();
         final Node nodeRelRoot = docRel.getElementsByTagName(EL_RELATIONSHIPS).item(0);
         final NodeList relChilds = nodeRelRoot.getChildNodes();
-        final String chunkID = chunkExtValue.getChunkUID();
         
         for (int i = 0; i < relChilds.getLength(); i++) {
             final Node childNode = relChilds.item(i);
@@ -712,47 +901,35 @@ public abstract class MicrosoftInsertDoc implements Extension {
             
             final NamedNodeMap attributes = childNode.getAttributes();
             final Node attrId = attributes.getNamedItem("Id");
-
-            if (null == attrId) {
-                continue;
-            }
-
-            final String idValue = attrId.getNodeValue();
-            final boolean idIsAlreadyPresent = chunkID.equals(idValue);
-
-            if (idIsAlreadyPresent) {
-                // Die ID (chunkID) ist bereits eingetragen (ggf. dadurch das dieser erweiterte
-                // Wert bereits woanders im Dokument eingesetzt wurde) und muss dem entsprechend
-                // nicht erneut eingetragen werden und auch nicht erneut dem Dokument
-                // hinzugefügt werden.
-                //
-                // Das Eintragen in die [Content-Types].xml kann damit auch entfallen, das dies
-                // ansonsten eh passiert wäre.
+            
+            if (null != attrId && relId.equals(attrId.getNodeValue())) {
                 return false;
             }
         }
         
+        final Element elementRel = docRel.createElement(EL_RELATIONSHIP);
+        elementRel.setAttribute("Id", relId);
+        elementRel.setAttribute("TargetMode", targetMode);
+        elementRel.setAttribute("Type", type);
+        elementRel.setAttribute("Target", target);
         
-        // Die Chunk-ID ist noch nicht in Relationships eingetragen und auch noch nicht in der
-        // ZIP Datei enthalten ...
-        final Node newRelNode = createRelationshipElement(chunkExtValue);
-        nodeRelRoot.appendChild(newRelNode);
-        
-        overwritePartInContainer(
-                "word/" + chunkExtValue.getTargetName(),
-                chunkExtValue.loadImportDocument());
-        
+        nodeRelRoot.appendChild(elementRel);
         return true;
     }
     
     /**
-     * Registriert den MIME-Type in der Content-Types-Datei sobald der Dateityp noch unbekannt ist.
+     * Trägt eine Dateinamenserweiterung in die Content-Types-Datei ein, soweit diese noch
+     * unbekannt ist.
      * 
-     * @param extValue  Erweiterter Wert
+     * <p>Die Standardimplementierung durchsucht dafür jedes mal das DOM von
+     * {@link #getContentTypeDocument()}; siehe {@link #registerRelationship}.</p>
+     * 
+     * @param extension     Dateinamenserweiterung ohne Punkt
+     * @param mimeType      MIME-Type zur Erweiterung
+     * 
+     * @return              {@code true}, wenn die Erweiterung neu eingetragen wurde.
      */
-    private void registerMimeType(AltChunkExtValue extValue) {
-        final String FILE_EXT = extValue.getFormat().getFileExtension();
-        
+    protected boolean registerContentTypeDefault(String extension, String mimeType) {
         final Document doc = getContentTypeDocument();
         final NodeList typeNodes = doc.getElementsByTagName("Default");
         
@@ -760,24 +937,24 @@ public abstract class MicrosoftInsertDoc implements Extension {
             final Node node = typeNodes.item(nodeIndex);
             final NamedNodeMap attributes = node.getAttributes();
             
-            final String extension = attributes.getNamedItem("Extension").getTextContent();
-            if (FILE_EXT.equalsIgnoreCase(extension)) {
+            final String typeExtension = attributes.getNamedItem("Extension").getTextContent();
+            if (extension.equalsIgnoreCase(typeExtension)) {
                 // Bereits vorhanden!!
-                return;
+                return false;
             }
         }
         
         final Node rootNode = doc.getElementsByTagName("Types").item(0);
         final Element extensionNode = doc.createElement("Default");
         
-        extensionNode.setAttribute("Extension", extValue.getFormat().getFileExtension());
-        extensionNode.setAttribute("ContentType", extValue.getFormat().getMimeType());
+        extensionNode.setAttribute("Extension", extension);
+        extensionNode.setAttribute("ContentType", mimeType);
         
         rootNode.insertBefore(extensionNode, rootNode.getFirstChild());
+        return true;
     }
     
-    private Node createAltChunkElement(String chunkID) {
-        final Document doc = getWordDocument();
+    private Node createAltChunkElement(Document doc, String chunkID) {
         final Element elementAltChunk = doc.createElement("w:altChunk");
         
         elementAltChunk.setAttribute("r:id", chunkID);
@@ -785,18 +962,6 @@ public abstract class MicrosoftInsertDoc implements Extension {
         return elementAltChunk;
     }
     
-    private Node createRelationshipElement(AltChunkExtValue extValue) {
-        final Document doc = getRelationshipDocument();
-        
-        final Element elementRel = doc.createElement(EL_RELATIONSHIP);
-        elementRel.setAttribute("Id", extValue.getChunkUID());
-        elementRel.setAttribute("TargetMode", "Internal");
-        elementRel.setAttribute("Type", NS_ALT_CHUNK);
-        elementRel.setAttribute("Target", extValue.getTargetName());
-        
-        return elementRel;
-    }
-
     /**
      * Prüft ob der übergebene erweiterte Wert vom Typ dieser Erweiterung stammt.
      * 
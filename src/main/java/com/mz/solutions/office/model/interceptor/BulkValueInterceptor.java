@@ -0,0 +1,140 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office.model.interceptor;
+
+import com.mz.solutions.office.model.DataPage;
+import com.mz.solutions.office.model.DataTable;
+import com.mz.solutions.office.model.DataValue;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import javax.annotation.CheckForNull;
+
+import static com.mz.solutions.office.resources.BulkValueInterceptorKeys.RESULT_COUNT;
+import static com.mz.solutions.office.resources.MessageResources.formatMessage;
+
+/**
+ * Value-Interceptor, der alle Platzhalter einer {@link DataPage} (samt deren {@link DataTable}'s)
+ * mit einem einzigen Aufruf auflöst, z.B. mit nur einer Datenbank-Abfrage anstatt einer je
+ * Platzhalter.
+ * 
+ * <p>Vor der Ersetzung einer {@link DataPage} bzw. Kopf-/Fußzeile sammelt die Implementierung
+ * alle {@link DataValue}'s mit einem {@code BulkValueInterceptor} aus dem Daten-Modell und ruft je
+ * Interceptor-Instanz einmalig {@link #resolveAll(List)} auf. Die Ergebnisse werden danach beim
+ * Ersetzen der Platzhalter verwendet. Gesammelt wird anhand des Daten-Modells; es können daher
+ * auch Werte angefragt werden, deren Platzhalter im Dokument gar nicht vorkommt.</p>
+ * 
+ * <p>Liefert {@link #getExecutor()} einen {@link Executor}, erfolgt der Aufruf von
+ * {@link #resolveAll(List)} auf diesem; mehrere Bulk-Interceptors einer Seite arbeiten dann
+ * gleichzeitig. Ohne vorheriges Sammeln (z.B. bei Office-Implementierungen ohne Unterstützung)
+ * wird {@link #resolveAll(List)} je Platzhalter mit nur einem Element aufgerufen.</p>
+ * 
+ * <pre>
+ *  class CustomerNameInterceptor extends BulkValueInterceptor {
+ * 
+ *      public List&lt;DataValueResult&gt; resolveAll(List&lt;InterceptionContext&gt; contexts) {
+ *          final Map&lt;String, String&gt; names = customerDao.findNames(
+ *                  contexts.stream().map(this::customerIdOf).collect(toList()));
+ * 
+ *          return contexts.stream()
+ *                  .map(context -&gt; DataValueResult.useValue(new DataValue(
+ *                          context.getPlaceholderName(), names.get(customerIdOf(context)))))
+ *                  .collect(toList());
+ *      }
+ * 
+ *  }
+ * </pre>
+ * 
+ * @author Riebe, Moritz (moritz.riebe@mz-entwickler.de)
+ */
+public abstract class BulkValueInterceptor extends ValueInterceptor {
+    
+    /**
+     * Bulk-Interceptor mit alternativem Text für Office-Implementierungen ohne eine solche
+     * Unterstützung.
+     * 
+     * @param altText       Alternativer Text
+     */
+    public BulkValueInterceptor(String altText) {
+        super(altText);
+    }
+    
+    /**
+     * Bulk-Interceptor ohne alternativen Text.
+     */
+    public BulkValueInterceptor() {
+        super();
+    }
+    
+    /**
+     * Erzeugt die Werte für alle übergebenen Platzhalter.
+     * 
+     * <p>Die übergebenen Kontexte sind unveränderlich und bieten keinen Low-Level- oder
+     * XML-Zugriff; {@link InterceptionContext#getParentValueMap()} ist die {@link DataPage},
+     * {@link DataTable} oder Tabellen-Zeile, in welcher der {@link DataValue} hinterlegt ist.</p>
+     * 
+     * @param contexts      Kontexte aller Platzhalter; nie leer
+     * 
+     * @return              Ergebnisse in gleicher Reihenfolge und Anzahl wie {@code contexts}
+     * 
+     * @throws ValueInterceptorException
+     *          Bei Fehlern während der Erzeugung
+     */
+    public abstract List<DataValueResult> resolveAll(List<InterceptionContext> contexts)
+            throws ValueInterceptorException;
+    
+    /**
+     * Executor auf dem {@link #resolveAll(List)} aufgerufen wird.
+     * 
+     * @return      Executor oder {@code null} für den Aufruf im erzeugenden Thread
+     */
+    @CheckForNull
+    public Executor getExecutor() {
+        return null;
+    }
+
+    /**
+     * Löst einen einzelnen Platzhalter über {@link #resolveAll(List)} auf; wird nur verwendet,
+     * wenn der Wert nicht bereits gesammelt aufgelöst wurde.
+     * 
+     * @param context   Kontext des Platzhalters
+     * 
+     * @return          Ergebnis
+     */
+    @Override
+    public DataValueResult interceptPlaceholder(InterceptionContext context)
+            throws ValueInterceptorException
+    {
+        final List<DataValueResult> results = resolveAll(Collections.singletonList(context));
+        
+        if (null == results || results.size() != 1) {
+            throw new ValueInterceptorException.FailedInterceptorExecutionException(
+                    formatMessage(RESULT_COUNT,
+                            /* {0} */ getClass().getName(),
+                            /* {1} */ null == results ? 0 : results.size(),
+                            /* {2} */ 1));
+        }
+        
+        return results.get(0);
+    }
+    
+}
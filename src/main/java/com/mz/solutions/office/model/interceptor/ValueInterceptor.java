@@ -25,6 +25,8 @@ import com.mz.solutions.office.extension.ExtendedValue;
 import com.mz.solutions.office.model.DataValue;
 import com.mz.solutions.office.model.DataValueMap;
 import java.util.Objects;
+import java.util.function.Function;
+import javax.annotation.CheckForNull;
 
 /**
  * Bei Bedarf spät (lazy) evaluierte Platzhalter im Ersetzungsvorgang für aufwendigere Ersetzungen
@@ -92,6 +94,19 @@ import java.util.Objects;
  *  page.addValue(new DataValue("FULLNAME", new FullNameInterceptor()));
  * </pre>
  * 
+ * <p><b>Zwischenspeicherung:</b> Aufwendige Interceptors (z.B. Abfragen von Wechselkursen oder
+ * Übersetzungen) können über {@link #getCacheScope()} und {@link #getCacheKey(InterceptionContext)}
+ * festlegen, dass deren Ergebnis für gleiche Schlüssel wiederverwendet wird, anstatt für jedes
+ * Vorkommen des Platzhalters erneut erzeugt zu werden. Mit {@link #cached(CacheScope, Function)}
+ * kann jeder bestehende Interceptor entsprechend verpackt werden:</p>
+ * 
+ * <pre>
+ *  row.addValue(new DataValue("PRICE_EUR", ValueInterceptor.callFunction(context -&gt; {
+ *      return DataValueResult.useValue(new DataValue(context.getPlaceholderName(),
+ *              exchangeRates.convert(...)));
+ *  }).cached(CacheScope.DOCUMENT, context -&gt; currencyOf(context.getParentValueMap()))));
+ * </pre>
+ * 
  * @see InterceptionContext         Kontext während des Evaluierungsvorganges
  * @see ValueInterceptorFunction    Methoden-Signatur für Interceptors
  * 
@@ -135,6 +150,28 @@ public abstract class ValueInterceptor extends ExtendedValue implements ValueInt
         return new FunctionBasedValueInterceptor(interceptorFunction);
     }
     
+    /**
+     * Gültigkeitsbereich in dem das Ergebnis eines Interceptors wiederverwendet wird.
+     */
+    public static enum CacheScope {
+        
+        /** Keine Zwischenspeicherung; der Interceptor wird bei jedem Vorkommen aufgerufen. */
+        NONE,
+        
+        /** Wiederverwendung innerhalb der Ersetzung einer {@code DataPage} (bzw. Kopf-/Fußzeile). */
+        PAGE,
+        
+        /** Wiederverwendung innerhalb einer Dokumenten-Erstellung ({@code generate(..)}). */
+        DOCUMENT,
+        
+        /**
+         * Wiederverwendung solange die Interceptor-Instanz existiert, auch über mehrere Dokumente
+         * und Threads hinweg.
+         */
+        GLOBAL;
+        
+    }
+    
     private static class FunctionBasedValueInterceptor extends ValueInterceptor {
         
         private final ValueInterceptorFunction function;
@@ -160,6 +197,40 @@ public abstract class ValueInterceptor extends ExtendedValue implements ValueInt
         
     }
     
+    private static final class CachingValueInterceptor extends ValueInterceptor {
+        
+        private final ValueInterceptor interceptor;
+        private final CacheScope cacheScope;
+        private final Function<? super InterceptionContext, ?> cacheKey;
+
+        public CachingValueInterceptor(
+                final ValueInterceptor interceptor,
+                final CacheScope cacheScope,
+                final Function<? super InterceptionContext, ?> cacheKey)
+        {
+            super(interceptor.altString());
+            this.interceptor = interceptor;
+            this.cacheScope = Objects.requireNonNull(cacheScope, "cacheScope");
+            this.cacheKey = Objects.requireNonNull(cacheKey, "cacheKey");
+        }
+
+        @Override
+        public CacheScope getCacheScope() {
+            return cacheScope;
+        }
+
+        @Override
+        public Object getCacheKey(InterceptionContext context) {
+            return cacheKey.apply(context);
+        }
+
+        @Override
+        public DataValueResult interceptPlaceholder(InterceptionContext context) {
+            return interceptor.interceptPlaceholder(context);
+        }
+        
+    }
+    
     ////////////////////////////////////////////////////////////////////////////////////////////////
     
     private final String altText;
@@ -190,6 +261,67 @@ public abstract class ValueInterceptor extends ExtendedValue implements ValueInt
         return altText;
     }
 
+    /**
+     * Gültigkeitsbereich in dem das Ergebnis dieses Interceptors wiederverwendet werden darf.
+     * 
+     * <p>Standardmäßig {@link CacheScope#NONE}; Unterklassen überschreiben diese Methode um
+     * eine Zwischenspeicherung zu ermöglichen.</p>
+     * 
+     * @return      Gültigkeitsbereich, nie {@code null}
+     */
+    public CacheScope getCacheScope() {
+        return CacheScope.NONE;
+    }
+    
+    /**
+     * Schlüssel unter dem das Ergebnis für den aktuellen Aufruf zwischengespeichert wird; Aufrufe
+     * mit gleichem Schlüssel (im {@link #getCacheScope() Gültigkeitsbereich}) erhalten das bereits
+     * erzeugte Ergebnis ohne erneuten Aufruf.
+     * 
+     * <p>Standardmäßig der Name des Platzhalters. Der Schlüssel muss {@code equals} und
+     * {@code hashCode} korrekt implementieren und darf nicht auf den Kontext selbst verweisen, da
+     * dieser wiederverwendet wird.</p>
+     * 
+     * @param context   Kontext des aktuellen Aufrufs
+     * 
+     * @return          Schlüssel oder {@code null} wenn dieser Aufruf nicht zwischengespeichert
+     *                  werden soll
+     */
+    @CheckForNull
+    public Object getCacheKey(InterceptionContext context) {
+        return context.getPlaceholderName();
+    }
+    
+    /**
+     * Verpackt diesen Interceptor so, dass dessen Ergebnisse im angegebenen Gültigkeitsbereich
+     * je Platzhalter-Name wiederverwendet werden.
+     * 
+     * @param cacheScope    Gültigkeitsbereich
+     * 
+     * @return              Neuer Interceptor mit Zwischenspeicherung
+     */
+    public ValueInterceptor cached(final CacheScope cacheScope) {
+        return cached(cacheScope, InterceptionContext::getPlaceholderName);
+    }
+    
+    /**
+     * Verpackt diesen Interceptor so, dass dessen Ergebnisse im angegebenen Gültigkeitsbereich
+     * je Schlüssel wiederverwendet werden.
+     * 
+     * @param cacheScope    Gültigkeitsbereich
+     * 
+     * @param cacheKey      Liefert den Schlüssel je Aufruf, siehe
+     *                      {@link #getCacheKey(InterceptionContext)}
+     * 
+     * @return              Neuer Interceptor mit Zwischenspeicherung
+     */
+    public ValueInterceptor cached(
+            final CacheScope cacheScope,
+            final Function<? super InterceptionContext, ?> cacheKey)
+    {
+        return new CachingValueInterceptor(this, cacheScope, cacheKey);
+    }
+    
     /**
      * {@inheritDoc}
      */
@@ -31,5 +31,6 @@ public interface AbstractOfficeXmlDocumentKeys {
     static final String INVALID_DOC_FORMAT = "AbstractOfficeXmlDocument_InvalidDocFormat";
     static final String IMPL_NAME_ERR = "AbstractOfficeXmlDocument_ImplNameErr";
     static final String CREATION_FAILED = "AbstractOfficeXmlDocument_CreationFailed";
+    static final String INTERCEPTOR_DEPTH = "AbstractOfficeXmlDocument_InterceptorDepth";
     
 }
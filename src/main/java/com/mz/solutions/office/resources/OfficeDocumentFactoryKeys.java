@@ -32,5 +32,6 @@ public interface OfficeDocumentFactoryKeys {
     
     static final String INVALID_PROP_VALUE = "OfficeDocumentFactory_InvalidPropertyValue";
     static final String NO_PROPERTY = "OfficeDocumentFactory_NoProperty";
+    static final String NO_IN_MEMORY_DOCUMENTS = "OfficeDocumentFactory_NoInMemoryDocuments";
     
 }
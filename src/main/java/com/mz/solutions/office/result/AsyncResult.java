@@ -0,0 +1,53 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office.result;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Schnittstelle zum nicht-blockierenden Abspeichern von generierten Dokumenten, z.B. über
+ * asynchrone Kanäle oder reaktive Clients.
+ * 
+ * <p>Wird von {@code OfficeDocument.generateAsync(..)} verwendet. Die Rückgabe ist erst dann
+ * abzuschließen, wenn das Dokument vollständig geschrieben wurde; Fehler werden über eine
+ * fehlgeschlagene {@link CompletionStage} gemeldet. Fertige Implementierungen sind über
+ * {@link ResultFactory} zugänglich.</p>
+ * 
+ * @see     ResultFactory Vorimplementierungen
+ * 
+ * @author  Riebe, Moritz   (moritz.riebe@mz-entwickler.de)
+ */
+@FunctionalInterface
+public interface AsyncResult {
+
+    /**
+     * Beginnt das Schreiben des übergebenen Dokumentes zum gewünschten Ziel.
+     * 
+     * @param dataToWrite   Dokument als nur lesbarer Puffer (Position {@code 0}, Limit
+     *                      Dokumentengröße)
+     * 
+     * @return              Wird abgeschlossen sobald das Dokument geschrieben wurde
+     */
+    public CompletionStage<?> writeResult(ByteBuffer dataToWrite);
+    
+}
@@ -21,11 +21,17 @@
  */
 package com.mz.solutions.office.result;
 
+import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
 import java.nio.file.Files;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Fertige Implementierungen zum Abspeichern von Dokumenten.
@@ -74,4 +80,118 @@ public final class ResultFactory {
         return data -> outputStream.write(data);
     }
     
+    /**
+     * Verwendet eine (blockierende) {@link Result}-Implementierung als {@link AsyncResult}; das
+     * Schreiben erfolgt im Thread, der das Dokument erzeugt hat.
+     * 
+     * @param docResult     Ausgabeimplementierung
+     * 
+     * @return              {@code AsyncResult}-Implementierung
+     */
+    public static AsyncResult toAsync(Result docResult) {
+        Objects.requireNonNull(docResult, "docResult");
+        
+        return data -> {
+            final CompletableFuture<Void> written = new CompletableFuture<>();
+            
+            try {
+                final byte[] dataToWrite = new byte[data.remaining()];
+                data.duplicate().get(dataToWrite);
+                
+                docResult.writeResult(dataToWrite);
+                written.complete(null);
+                
+            } catch (IOException | RuntimeException ex) {
+                written.completeExceptionally(ex);
+            }
+            
+            return written;
+        };
+    }
+    
+    /**
+     * Speichert das Dokument nicht-blockierend über einen {@link AsynchronousFileChannel} an den
+     * übergebenen Pfad und legt die Datei an oder überschreibt eine bestehende.
+     * 
+     * @param outputFile    Zieldokument/-datei
+     * 
+     * @return              {@code AsyncResult}-Implementierung
+     */
+    public static AsyncResult toAsyncFile(Path outputFile) {
+        Objects.requireNonNull(outputFile, "outputFile");
+        
+        return data -> {
+            final CompletableFuture<Void> written = new CompletableFuture<>();
+            final AsynchronousFileChannel channel;
+            
+            try {
+                channel = AsynchronousFileChannel.open(outputFile,
+                        StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.CREATE);
+                
+            } catch (IOException | RuntimeException ex) {
+                written.completeExceptionally(ex);
+                return written;
+            }
+            
+            new AsyncFileWriter(channel, data.duplicate(), written).writeNext(0L);
+            return written;
+        };
+    }
+    
+    /** Schreibt den Puffer in (ggf. mehreren) asynchronen Schritten und schließt den Kanal. */
+    private static final class AsyncFileWriter implements CompletionHandler<Integer, Long> {
+        
+        private final AsynchronousFileChannel channel;
+        private final ByteBuffer data;
+        private final CompletableFuture<Void> written;
+
+        private AsyncFileWriter(
+                AsynchronousFileChannel channel,
+                ByteBuffer data,
+                CompletableFuture<Void> written) {
+            
+            this.channel = channel;
+            this.data = data;
+            this.written = written;
+        }
+        
+        private void writeNext(long position) {
+            if (data.hasRemaining() == false) {
+                closeChannel(null);
+                return;
+            }
+            
+            channel.write(data, position, position, this);
+        }
+
+        @Override
+        public void completed(Integer bytesWritten, Long position) {
+            writeNext(position + bytesWritten);
+        }
+
+        @Override
+        public void failed(Throwable error, Long position) {
+            closeChannel(error);
+        }
+        
+        private void closeChannel(Throwable error) {
+            try {
+                channel.close();
+            } catch (IOException closeFailed) {
+                if (null == error) {
+                    error = closeFailed;
+                }
+            }
+            
+            if (null == error) {
+                written.complete(null);
+            } else {
+                written.completeExceptionally(error);
+            }
+        }
+        
+    }
+    
 }
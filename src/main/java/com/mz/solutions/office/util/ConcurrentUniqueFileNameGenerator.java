@@ -0,0 +1,100 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office.util;
+
+import com.mz.solutions.office.util.PlaceMarkerInserter.CompiledTemplate;
+import static com.mz.solutions.office.util.PlaceMarkerInserter.ReplaceStrategy.REPLACE_ALL;
+import java.util.Map;
+import static java.util.Objects.requireNonNull;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Thread-sichere Variante von {@link UniqueFileNameGenerator} für die
+ * gemeinsame Verwendung durch mehrere Threads, z.B. durch parallel arbeitende
+ * Serien-Vorgänge.
+ * 
+ * <p>Benennung und Nummerierung sind identisch zu {@link UniqueFileNameGenerator}.
+ * Rufen mehrere Threads gleichzeitig mit demselben Ergebnis-Dateinamen auf,
+ * erhält jeder eine eigene Nummer; welcher Thread welche Nummer erhält ist
+ * jedoch nicht festgelegt.</p>
+ * 
+ * @author  Riebe, Moritz       (moritz.riebe@mz-entwickler.de)
+ */
+@ThreadSafe
+public final class ConcurrentUniqueFileNameGenerator {
+    
+    /**
+     * Anzahl der bisherigen Vergaben je Dateiname (in Großbuchstaben) vor
+     * deren Umwandlung zur Nummerierung.
+     */
+    private final ConcurrentMap<String, AtomicInteger> usedFileNameCounts =
+            new ConcurrentHashMap<>();
+    
+    /** {@link PlaceMarkerInserter} ist nicht thread-safe, daher einer je Thread. */
+    private final ThreadLocal<PlaceMarkerInserter> replacer =
+            ThreadLocal.withInitial(PlaceMarkerInserter::new);
+    
+    private final CompiledTemplate fileNamePattern;
+    
+    /**
+     * Erzeugt einen Dateinamens-Generator anhand einer Vorlage der Benennung
+     * der Dateien.
+     * 
+     * @param fileNamePattern   Dateiname mit Platzhaltern der verwendet werden
+     *                          soll; siehe {@link UniqueFileNameGenerator}.
+     */
+    public ConcurrentUniqueFileNameGenerator(final String fileNamePattern) {
+        this.fileNamePattern = replacer.get().compile(requireNonNull(fileNamePattern));
+    }
+    
+    /**
+     * Generiert einen eindeutigen und einmaligen Dateinamen anhand des im
+     * Konstruktor übergebenen Dateinamens-Musters.
+     * 
+     * @param replaceMap        Ersetzungs-Map zum Ausfüllen der Platzhalter
+     *                          im Dateinamen
+     * 
+     * @return                  Einmaligener/ Eindeutiger Dateinamen; ggf. mit
+     *                          einer Nummerierung am Ende
+     * 
+     * @see UniqueFileNameGenerator#nextFileName(Map)
+     */
+    public String nextFileName(final Map<String, String> replaceMap) {
+        requireNonNull(replaceMap, "replaceMap == null");
+        
+        final PlaceMarkerInserter myReplacer = replacer.get();
+        myReplacer.useSpecificPlaceMarker(replaceMap);
+        
+        final String result = myReplacer.replaceForFileName(
+                fileNamePattern, REPLACE_ALL).trim();
+        
+        final int nFile = usedFileNameCounts
+                .computeIfAbsent(result.toUpperCase(), name -> new AtomicInteger())
+                .incrementAndGet();
+        
+        return UniqueFileNameGenerator.numberFileName(result, nFile);
+    }
+    
+}
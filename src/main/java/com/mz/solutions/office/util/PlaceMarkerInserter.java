@@ -23,15 +23,14 @@ package com.mz.solutions.office.util;
 
 import static com.mz.solutions.office.util.WindowsFileName.MAX_NAME_LENGTH;
 import static com.mz.solutions.office.util.WindowsFileName.isLetterForbidden;
-import java.text.CharacterIterator;
-import static java.text.CharacterIterator.DONE;
-import java.text.StringCharacterIterator;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.TextStyle;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import static java.util.Objects.requireNonNull;
@@ -40,6 +39,7 @@ import java.util.function.Supplier;
 import java.util.logging.Logger;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
 import javax.annotation.concurrent.NotThreadSafe;
 
 /**
@@ -352,64 +352,177 @@ public final class PlaceMarkerInserter {
             return template;
         }
         
+        return fillPlaceHolders(compile(template), strategy);
+    }
+    
+    private String fillPlaceHolders(
+            final CompiledTemplate template,
+            final ReplaceStrategy strategy) {
+        
+        requireNonNull(template, "template == null");
+        requireNonNull(strategy, "strategy == null");
+        
         @Nullable
         final Map<String, String> localPlaceMarker;
         if (null != specificPlaceMarker) {
             localPlaceMarker = requireNonNull(
                     specificPlaceMarker.get(),
                     "specificPlaceMarker#get() lieferte null zurück beim "
-                            + "Template: " + template);
+                            + "Template: " + template.template);
             
         } else {
             localPlaceMarker = null; // keine spezielle Ersetzungsmap
         }
         
-        final StringBuilder resultString = new StringBuilder(
-                template.length() * 3);
+        final String[] segments = template.segments;
+        final int countSegments = segments.length;
         
-        final CharacterIterator itr = new StringCharacterIterator(template);
+        if (countSegments == 1) {
+            return segments[0]; // Keine Platzhalter
+        }
         
-        do {
-            if (template.startsWith(identifierStartDelimiter, itr.getIndex())) {
-                itr.setIndex(itr.getIndex() + identifierStartDelimiter.length());
-                
-                int indexOfEndDelimiter = template
-                        .indexOf(identifierEndDelimiter, itr.getIndex());
-                
-                if (indexOfEndDelimiter == -1) {
-                    throw new IllegalStateException("Kein Ende des "
-                            + "Platzhalters gefunden: "
-                            + template.substring(itr.getIndex()));
-                }
-                
-                String identifier = template
-                        .substring(itr.getIndex(), indexOfEndDelimiter);
-                
-                String value = getPlaceMarkerValue(
-                        localPlaceMarker,
-                        identifier,
-                        strategy
-                );
-                
-                resultString.append(value);
-                
-                itr.setIndex(
-                        itr.getIndex()
-                                + identifier.length()
-                                + identifierEndDelimiter.length()
-                                - 1
-                );
-                
-            } else {
-                resultString.append(itr.current());
-            }
+        // Jeden Platzhalter genau einmal auflösen (Strategie und Lazy-Werte
+        // werden so nicht doppelt aufgerufen) und dabei die Länge summieren,
+        // damit genau einmal passend allokiert wird
+        final String[] values = new String[countSegments];
+        int resultLength = 0;
+        for (int index = 0; index < countSegments; index++) {
+            values[index] = (index & 1) == 0
+                    ? segments[index]
+                    : getPlaceMarkerValue(localPlaceMarker, segments[index],
+                            template.markers[index >> 1], strategy);
             
-            itr.next();
-        } while (itr.current() != DONE);
+            resultLength += values[index].length();
+        }
+        
+        final StringBuilder resultString = new StringBuilder(resultLength);
+        for (String value : values) {
+            resultString.append(value);
+        }
         
         return resultString.toString();
     }
     
+    /**
+     * Zerlegt eine Vorlage einmalig in Text- und Platzhalter-Abschnitte, die
+     * danach beliebig oft ohne erneutes Parsen eingesetzt werden können.
+     * <br><br>
+     * 
+     * Die vorbereitete Vorlage ist unveränderlich und kann auch von anderen
+     * Instanzen und Threads verwendet werden. Platzhalter werden mit den
+     * Trennzeichen dieser Instanz erkannt.
+     * 
+     * <pre>
+     *  CompiledTemplate title = pmi.compile("Rechnung ${nr} vom ${sys.datum.din}");
+     * 
+     *  for (Map&lt;String, String&gt; invoice : invoices) {
+     *      pmi.useSpecificPlaceMarker(invoice);
+     *      String result = pmi.replace(title);
+     *  }
+     * </pre>
+     * 
+     * @param template          Vorlage mit Platzhaltern, darf nicht
+     *                          {@code null} sein.
+     * 
+     * @return                  Vorbereitete Vorlage
+     * 
+     * @throws  IllegalStateException
+     *          Wenn das Ende eines Platzhalters nicht gefunden wurde.
+     */
+    public CompiledTemplate compile(@Nonnull final String template) {
+        requireNonNull(template, "template == null");
+        
+        final List<String> segments = new ArrayList<>();
+        final List<String> markers = new ArrayList<>();
+        
+        final int lenStart = identifierStartDelimiter.length();
+        final int lenEnd = identifierEndDelimiter.length();
+        
+        int lastIndex = 0, ofsBeginMarker;
+        
+        while ((ofsBeginMarker = template.indexOf(
+                identifierStartDelimiter, lastIndex)) != -1) {
+            
+            final int ofsIdentifier = ofsBeginMarker + lenStart;
+            final int ofsEndMarker = template.indexOf(
+                    identifierEndDelimiter, ofsIdentifier);
+            
+            if (ofsEndMarker == -1) {
+                throw new IllegalStateException("Kein Ende des "
+                        + "Platzhalters gefunden: "
+                        + template.substring(ofsIdentifier));
+            }
+            
+            segments.add(template.substring(lastIndex, ofsBeginMarker));
+            segments.add(template.substring(ofsIdentifier, ofsEndMarker));
+            
+            lastIndex = ofsEndMarker + lenEnd;
+            markers.add(template.substring(ofsBeginMarker, lastIndex));
+        }
+        
+        segments.add(template.substring(lastIndex));
+        
+        return new CompiledTemplate(
+                template,
+                segments.toArray(new String[segments.size()]),
+                markers.toArray(new String[markers.size()]));
+    }
+    
+    /**
+     * Ersetzt Platzhalter in einer mit {@link #compile(String)} vorbereiteten
+     * Vorlage.
+     * 
+     * @param template          Vorbereitete Vorlage
+     * 
+     * @return                  Zeichenkette in der <b>alle</b> Platzhalter
+     *                          ersetzt wurden.
+     * 
+     * @see #replace(String)
+     */
+    public String replace(@Nonnull final CompiledTemplate template) {
+        return fillPlaceHolders(template, replaceStrategy);
+    }
+    
+    /**
+     * Ersetzt Platzhalter in einer mit {@link #compile(String)} vorbereiteten
+     * Vorlage.
+     * 
+     * @param template          Vorbereitete Vorlage
+     * 
+     * @param strategy          Behandlungsart im Falle eines fehlenden Wertes
+     *                          der einzusetzen ist.
+     * 
+     * @return                  Zeichenkette in der Platzhalter ersetzt wurden.
+     * 
+     * @see #replace(String, ReplaceStrategy)
+     */
+    public String replace(
+            @Nonnull final CompiledTemplate template,
+            @Nonnull final ReplaceStrategy strategy) {
+        
+        return fillPlaceHolders(template, strategy);
+    }
+    
+    /**
+     * Ersetzt Platzhalter in einer mit {@link #compile(String)} vorbereiteten
+     * Vorlage mit Sonderbehandlung für Dateinamen.
+     * 
+     * @param template          Vorbereitete Vorlage
+     * 
+     * @param strategy          Behandlungsart im Falle eines fehlenden Wertes
+     *                          der einzusetzen ist.
+     * 
+     * @return                  Dateiname in dem Platzhalter ersetzt wurden.
+     * 
+     * @see #replaceForFileName(String, ReplaceStrategy)
+     */
+    public String replaceForFileName(
+            @Nonnull final CompiledTemplate template,
+            @Nonnull final ReplaceStrategy strategy) {
+        
+        return toFileName(fillPlaceHolders(template, strategy));
+    }
+    
     /**
      * Ersetzt Platzhalter in einer Zeichenkette.
      * <br><br>
@@ -548,8 +661,10 @@ public final class PlaceMarkerInserter {
             @Nonnull final String template,
             @Nonnull final ReplaceStrategy strategy) {
         
-        final String result = fillPlaceHolders(template, strategy);
-        
+        return toFileName(fillPlaceHolders(template, strategy));
+    }
+    
+    private String toFileName(final String result) {
         final String trimmed;
         if (result.length() > WindowsFileName.MAX_NAME_LENGTH) {
             trimmed = trimToFileName(result);
@@ -660,6 +775,7 @@ public final class PlaceMarkerInserter {
     private String getPlaceMarkerValue(
             final Map<String, String> localPlaceHolder,
             final String identifier,
+            final String marker,
             final ReplaceStrategy strategy) {
         
         String globalValue = globalPlaceMarker.get(identifier);
@@ -680,9 +796,7 @@ public final class PlaceMarkerInserter {
                         + identifier + "\' nicht gefunden");
                 
             case IGNORE_MISSING:
-                return identifierStartDelimiter
-                        + identifier
-                        + identifierEndDelimiter;
+                return marker;
                 
             case REMOVE_MISSING:
                 return "";
@@ -715,4 +829,50 @@ public final class PlaceMarkerInserter {
                 .concat(input.substring(indexOfExtension));
     }
     
+    /**
+     * Mit {@link #compile(String)} vorbereitete Vorlage; abwechselnd Text-
+     * und Platzhalter-Abschnitte, beginnend und endend mit Text (ggf. leer).
+     */
+    @Immutable
+    public static final class CompiledTemplate {
+        
+        private final String template;
+        
+        /** Gerade Indizes: Text; ungerade Indizes: Bezeichner des Platzhalters. */
+        private final String[] segments;
+        
+        /** Platzhalter samt Trennzeichen, je Bezeichner in {@code segments}. */
+        private final String[] markers;
+
+        private CompiledTemplate(
+                final String template,
+                final String[] segments,
+                final String[] markers) {
+            
+            this.template = template;
+            this.segments = segments;
+            this.markers = markers;
+        }
+        
+        /**
+         * Anzahl der Platzhalter in der Vorlage (auch mehrfach vorkommende).
+         * 
+         * @return      Anzahl der Platzhalter
+         */
+        public int getPlaceMarkerCount() {
+            return markers.length;
+        }
+
+        /**
+         * Liefert die ursprüngliche Vorlage.
+         * 
+         * @return      Vorlage wie an {@link #compile(String)} übergeben
+         */
+        @Override
+        public String toString() {
+            return template;
+        }
+        
+    }
+    
 }
@@ -21,11 +21,11 @@
  */
 package com.mz.solutions.office.util;
 
+import com.mz.solutions.office.util.PlaceMarkerInserter.CompiledTemplate;
 import static com.mz.solutions.office.util.PlaceMarkerInserter.ReplaceStrategy.REPLACE_ALL;
 import static com.mz.solutions.office.util.WindowsFileName.MAX_NAME_LENGTH;
 import static com.mz.solutions.office.util.WindowsFileName.isLetterForbidden;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.HashMap;
 import java.util.Map;
 import static java.util.Objects.requireNonNull;
 import javax.annotation.concurrent.NotThreadSafe;
@@ -66,6 +66,10 @@ import javax.annotation.concurrent.NotThreadSafe;
  * maximalen Länge, eine Nummerierung vorgenommen und ggf. die Anzahl
  * notwendiger Zeichen abgeschnitten für den Platz der Nummerierung.</p>
  * 
+ * <p>Für die gemeinsame Verwendung durch mehrere Threads (z.B. bei
+ * parallelen Serien-Vorgängen) steht {@link ConcurrentUniqueFileNameGenerator}
+ * zur Verfügung.</p>
+ * 
  * <!-- @date    2014-12-05 -->
  * @author  Riebe, Moritz       (moritz.riebe@mz-entwickler.de)
  */
@@ -73,18 +77,13 @@ import javax.annotation.concurrent.NotThreadSafe;
 public final class UniqueFileNameGenerator {
     
     /**
-     * Liste aller bereits vergebener Dateinamen (vor!) deren Umwandlung zur
-     * Nummerierung. <br><br>
-     * 
-     * <p>Die Implementierung sieht vor das mehrfach auftretende Dateinamen auch
-     * mehrfach in dieser Liste hinzugefügt (Duplikate) werden um die korrekte
-     * Numerierung anhand der Anzahl zu ermitteln. Wegen String-Interning ist
-     * der RAM Verbrauch dahingehend okay.</p>
+     * Anzahl der bisherigen Vergaben je Dateiname (vor!) deren Umwandlung zur
+     * Nummerierung; der Dateiname ist in Großbuchstaben hinterlegt.
      */
-    private final List<String> alreadyUsedFileNames = new LinkedList<>();
+    private final Map<String, Integer> usedFileNameCounts = new HashMap<>();
     private final PlaceMarkerInserter replacer = new PlaceMarkerInserter();
     
-    private final String fileNamePattern;
+    private final CompiledTemplate fileNamePattern;
     
     /**
      * Erzeugt einen Dateinamens-Generator anhand einer Vorlage der Benennung
@@ -98,7 +97,7 @@ public final class UniqueFileNameGenerator {
      *                          soll.
      */
     public UniqueFileNameGenerator(final String fileNamePattern) {
-        this.fileNamePattern = requireNonNull(fileNamePattern);
+        this.fileNamePattern = replacer.compile(requireNonNull(fileNamePattern));
     }
     
     /**
@@ -126,24 +125,28 @@ public final class UniqueFileNameGenerator {
         
         final String upperResult = result.toUpperCase();
         
-        // Prüfen ob dieser Name bereits verwendet wurde
-        // wenn nicht, einfach zurückgeben!
-        if (alreadyUsedFileNames.contains(upperResult) == false) {
-            // Vor der Rückgabe EINMAL hinzufügen, weil dieser Dateiname damit
-            // als 'verbraucht' registriert wird
-            alreadyUsedFileNames.add(upperResult);
+        // Zählt das wievielte mal -> bei 2 wird _2 angefügt, da der erste
+        // Eintrag keine Nummerierung enthält
+        final int nFile = usedFileNameCounts.merge(upperResult, 1, Integer::sum);
+        
+        return numberFileName(result, nFile);
+    }
+    
+    /**
+     * Hängt die Nummerierung an den Dateinamen (vor der Dateinamenserweiterung)
+     * an; beim ersten Auftreten bleibt der Dateiname unverändert.
+     * 
+     * @param result    Dateiname nach dem Ersetzen der Platzhalter
+     * 
+     * @param nFile     Wievieltes Auftreten des Dateinamens, beginnend bei 1
+     * 
+     * @return          Dateiname mit Nummerierung, ggf. gekürzt
+     */
+    static String numberFileName(final String result, final int nFile) {
+        if (nFile <= 1) {
             return result;
         }
         
-        // Auch wenn bereits vorhanden, wird der Dateiname nochmals hinzugefügt
-        // (als Duplikat) um die Anzahl des Auftretens des Dateinamens
-        // zählen zu können
-        alreadyUsedFileNames.add(upperResult);
-        
-        // Zählt das wievielte mal -> bei 2 wird _2 angefügt, da der erste
-        // Eintrag keine Nummerierung enthält
-        final int nFile = countFileName(upperResult);
-
         // Länge der Zahl als Zeichenkette plus Unterstrich
         final String strNum = Integer.toString(nFile);
         final int reqLength = strNum.length() + 1;
@@ -170,13 +173,6 @@ public final class UniqueFileNameGenerator {
         return nwFileName;
     }
     
-    // Zählt wie häufiger der Dateiname bereits verwendet wurde unabhängig
-    private int countFileName(final String fileName) {
-        return (int) alreadyUsedFileNames.stream()
-                .filter(name -> name.equals(fileName))
-                .count();
-    }
-    
     /**
      * Prüft einen beliebigen Dateinamen (mit und ohne Platzhalter) ob dieser
      * eine Dateinamenserweiterung besitzt.
@@ -23,10 +23,16 @@ package com.mz.solutions.office;
 
 import com.mz.solutions.office.model.DataPage;
 import com.mz.solutions.office.result.ResultFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 import org.junit.jupiter.api.BeforeAll;
 
 public abstract class AbstractOfficeTest {
@@ -88,6 +94,43 @@ public abstract class AbstractOfficeTest {
         document.generate(page, ResultFactory.toFile(docOutput));
     }
 
+    /**
+     * Liest eine Datei aus einem erzeugten Dokument (ZIP) als UTF-8 Text.
+     * 
+     * @return  Inhalt oder {@code null}, wenn die Datei nicht enthalten ist
+     */
+    protected static String readZipEntry(byte[] document, String entryName) {
+        try (ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(document))) {
+            for (ZipEntry entry = zipIn.getNextEntry(); null != entry; entry = zipIn.getNextEntry()) {
+                if (entry.getName().equals(entryName)) {
+                    final ByteArrayOutputStream entryData = new ByteArrayOutputStream();
+                    final byte[] buffer = new byte[8192];
+                    
+                    for (int read = zipIn.read(buffer); read != -1; read = zipIn.read(buffer)) {
+                        entryData.write(buffer, 0, read);
+                    }
+                    
+                    return new String(entryData.toByteArray(), StandardCharsets.UTF_8);
+                }
+            }
+            
+            return null;
+            
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    protected static int countOccurrences(String text, String part) {
+        int count = 0;
+        
+        for (int index = text.indexOf(part); index != -1; index = text.indexOf(part, index + 1)) {
+            count++;
+        }
+        
+        return count;
+    }
+
     protected static String randStr(int length) {
         final char[] ALPHA = "abcdefghijklmnopqrstuvwxyzABDEFGHIJKLMNOPQRSTUVWXYZ0123456789 -"
                 .toCharArray();
@@ -0,0 +1,261 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office;
+
+import com.mz.solutions.office.model.DataPage;
+import com.mz.solutions.office.model.DataValue;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class BatchGeneratorTest extends AbstractOfficeTest {
+
+    private static final Path TEMPLATE = TEST_SOURCE_DIRECTORY
+            .resolve("placeholders").resolve("MSO_HeaderFooter_SimpleNoHeaderFooter.docx");
+
+    private static final int DOCUMENT_COUNT = 24;
+
+    @Test
+    void testWriteToDirectory_OneDocumentPerPage() throws IOException {
+
+        final Path directory = TESTS_OUTPUT_PATH.resolve("batch_directory");
+
+        final BatchGenerator.Summary summary = newBatch()
+                .setParallelism(4)
+                .writeToDirectory(letterPages(DOCUMENT_COUNT), directory);
+
+        assertEquals(DOCUMENT_COUNT, summary.getDocumentsWritten());
+        assertEquals(0L, summary.getDocumentsFailed());
+
+        // Jedes Dokument enthält ausschließlich seine eigenen Daten
+        for (int number = 0; number < DOCUMENT_COUNT; number++) {
+            final byte[] document = Files.readAllBytes(directory.resolve(fileNameOf(number)));
+            final String wordDocument = readZipEntry(document, "word/document.xml");
+
+            assertTrue(wordDocument.contains(letterValueOf(number) + "<"));
+            assertEquals(1, countOccurrences(wordDocument, "Letter number "));
+        }
+    }
+
+    @Test
+    void testWriteToZip_OneEntryPerPage() throws IOException {
+
+        final ByteArrayOutputStream zipOutput = new ByteArrayOutputStream();
+
+        final BatchGenerator.Summary summary = newBatch()
+                .setParallelism(3)
+                .writeToZip(letterPages(DOCUMENT_COUNT), zipOutput);
+
+        assertEquals(DOCUMENT_COUNT, summary.getDocumentsWritten());
+
+        final Map<String, byte[]> entries = readEntries(zipOutput.toByteArray());
+        assertEquals(DOCUMENT_COUNT, entries.size());
+
+        for (int number = 0; number < DOCUMENT_COUNT; number++) {
+            final String wordDocument = readZipEntry(
+                    entries.get(fileNameOf(number)), "word/document.xml");
+
+            assertTrue(wordDocument.contains(letterValueOf(number) + "<"));
+        }
+    }
+
+    @Test
+    void testWriteToZip_InvalidAndDuplicateFileNamesReported() {
+
+        final List<String> failedFileNames = new CopyOnWriteArrayList<>();
+        final AtomicInteger finishedBatches = new AtomicInteger();
+
+        final Map<Integer, String> fileNames = new HashMap<>();
+        fileNames.put(0, "letter.docx");
+        fileNames.put(1, "LETTER.docx");          // doppelt, ohne Groß-/Kleinschreibung
+        fileNames.put(2, "../escape.docx");       // außerhalb des Archivs
+        fileNames.put(3, "other.docx");
+
+        final BatchGenerator.Summary summary = BatchGenerator
+                .newBatch(newFactory(), TEMPLATE, page -> fileNames.get(numberOf(page)))
+                .setListener(new BatchGenerator.Listener() {
+                    @Override
+                    public void documentFailed(DataPage dataPage, String fileName, Throwable error) {
+                        failedFileNames.add(fileName);
+                    }
+
+                    @Override
+                    public void batchFinished(BatchGenerator.Summary summary) {
+                        finishedBatches.incrementAndGet();
+                    }
+                })
+                .writeToZip(letterPages(4), new ByteArrayOutputStream());
+
+        assertEquals(2L, summary.getDocumentsWritten());
+        assertEquals(2L, summary.getDocumentsFailed());
+        assertTrue(failedFileNames.contains("LETTER.docx"));
+        assertTrue(failedFileNames.contains("../escape.docx"));
+        assertEquals(1, finishedBatches.get());
+    }
+
+    @Test
+    void testWriteToZip_PendingDocumentsLimitStreamReading() {
+
+        final int maxPending = 2;
+
+        final AtomicLong pagesRead = new AtomicLong();
+        final AtomicLong documentsFinished = new AtomicLong();
+        final AtomicLong maxAhead = new AtomicLong();
+
+        final Stream<DataPage> pages = letterPages(DOCUMENT_COUNT).peek(page -> {
+            final long ahead = pagesRead.incrementAndGet() - documentsFinished.get();
+            maxAhead.accumulateAndGet(ahead, Math::max);
+        });
+
+        newBatch()
+                .setParallelism(2)
+                .setMaxPendingDocuments(maxPending)
+                .setListener(new BatchGenerator.Listener() {
+                    @Override
+                    public void documentWritten(String fileName, long written, double perSecond) {
+                        documentsFinished.incrementAndGet();
+                    }
+                })
+                .writeToZip(pages, new ByteArrayOutputStream());
+
+        assertEquals(DOCUMENT_COUNT, pagesRead.get());
+
+        // Angenommene Dokumente plus die eine gelesene, noch wartende Seite
+        assertTrue(maxAhead.get() <= maxPending + 1, "read ahead: " + maxAhead.get());
+    }
+
+    @Test
+    void testWriteToZip_ArchiveErrorAbortsBatch() {
+
+        final AtomicLong pagesRead = new AtomicLong();
+        final Stream<DataPage> pages = letterPages(DOCUMENT_COUNT)
+                .peek(page -> pagesRead.incrementAndGet());
+
+        final OutputStream failingOutput = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+
+        assertThrows(UncheckedIOException.class, () -> newBatch()
+                .setParallelism(1)
+                .setMaxPendingDocuments(1)
+                .writeToZip(pages, failingOutput));
+
+        assertTrue(pagesRead.get() < DOCUMENT_COUNT, "pages read: " + pagesRead.get());
+    }
+
+    @Test
+    void testNewBatch_RejectsFactoryWithoutInMemoryDocuments() {
+
+        final OfficeDocumentFactory fileOnlyFactory = new OfficeDocumentFactory() {
+            @Override
+            public OfficeDocument openDocument(Path document) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            protected boolean isMyDocumentType(Path document) {
+                return false;
+            }
+        };
+
+        assertThrows(IllegalArgumentException.class, () -> BatchGenerator.newBatch(
+                fileOnlyFactory, TEMPLATE, page -> "letter.docx"));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static OfficeDocumentFactory newFactory() {
+        return OfficeDocumentFactory.newMicrosoftOfficeInstance();
+    }
+
+    private static BatchGenerator newBatch() {
+        return BatchGenerator.newBatch(newFactory(), TEMPLATE,
+                page -> fileNameOf(numberOf(page)));
+    }
+
+    private static Stream<DataPage> letterPages(int count) {
+        return IntStream.range(0, count).mapToObj(number -> {
+            final DataPage page = new DataPage();
+
+            page.addValue(new DataValue("ANY_VALUE", letterValueOf(number)));
+            page.addValue(new DataValue("NUMBER", Integer.toString(number)));
+
+            return page;
+        });
+    }
+
+    private static int numberOf(DataPage page) {
+        return Integer.parseInt(page.getValueByKey("NUMBER").get().getValue());
+    }
+
+    private static String fileNameOf(int number) {
+        return "letter_" + number + ".docx";
+    }
+
+    private static String letterValueOf(int number) {
+        return "Letter number " + number;
+    }
+
+    private static Map<String, byte[]> readEntries(byte[] zipData) throws IOException {
+        final Map<String, byte[]> entries = new HashMap<>();
+
+        try (ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(zipData))) {
+            for (ZipEntry entry = zipIn.getNextEntry(); null != entry; entry = zipIn.getNextEntry()) {
+                final ByteArrayOutputStream entryData = new ByteArrayOutputStream();
+                final byte[] buffer = new byte[8192];
+
+                for (int read = zipIn.read(buffer); read != -1; read = zipIn.read(buffer)) {
+                    entryData.write(buffer, 0, read);
+                }
+
+                entries.put(entry.getName(), entryData.toByteArray());
+            }
+        }
+
+        return Collections.unmodifiableMap(entries);
+    }
+
+}
@@ -0,0 +1,244 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office;
+
+import com.mz.solutions.office.model.DataPage;
+import com.mz.solutions.office.model.DataTable;
+import com.mz.solutions.office.model.DataTableRow;
+import com.mz.solutions.office.model.DataValue;
+import com.mz.solutions.office.model.interceptor.BulkValueInterceptor;
+import com.mz.solutions.office.model.interceptor.DataValueResult;
+import com.mz.solutions.office.model.interceptor.InterceptionContext;
+import com.mz.solutions.office.model.interceptor.ValueInterceptorException.FailedInterceptorExecutionException;
+import com.mz.solutions.office.result.ResultFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class BulkValueInterceptorTest extends AbstractOfficeTest {
+
+    private static final Path WORD_PLACEHOLDERS = TEST_SOURCE_DIRECTORY
+            .resolve("placeholders").resolve("Word_Placeholders.docx");
+
+    private static final int PAGE_COUNT = 3;
+
+    @Test
+    void testResolveAll_OneCallPerPage() {
+
+        final RecordingInterceptor interceptor = new RecordingInterceptor(null);
+        final String wordDocument = generate(interceptor, interceptor, 0);
+
+        assertEquals(PAGE_COUNT, interceptor.calls.size());
+
+        for (List<String> contexts : interceptor.calls) {
+            assertEquals(2, contexts.size());
+            assertTrue(contexts.contains("VALUE_1"));
+            assertTrue(contexts.contains("VALUE_2"));
+        }
+
+        assertTrue(wordDocument.contains(">Bulk VALUE_1<"));
+        assertTrue(wordDocument.contains(">Bulk VALUE_2<"));
+    }
+
+    @Test
+    void testResolveAll_TableValuesCollectedWithPage() {
+
+        final RecordingInterceptor interceptor = new RecordingInterceptor(null);
+
+        final DataPage page = newPage(interceptor, interceptor);
+        final DataTable table = new DataTable("NOT_IN_DOCUMENT");
+
+        for (int rowNo = 0; rowNo < 3; rowNo++) {
+            table.addTableRow(new DataTableRow(new DataValue("ROW_VALUE", interceptor)));
+        }
+
+        page.addTable(table);
+        generate(page, 0);
+
+        // Seite und alle Tabellen-Zeilen in einem Aufruf; Kontext ist die jeweilige Werte-Map
+        assertEquals(1, interceptor.calls.size());
+        assertEquals(5, interceptor.calls.get(0).size());
+        assertEquals(3, interceptor.parentMaps.stream()
+                .filter(map -> map instanceof DataTableRow).count());
+        assertEquals(2, interceptor.parentMaps.stream().filter(map -> map == page).count());
+    }
+
+    @Test
+    void testResolveAll_ParallelPages() {
+
+        final RecordingInterceptor interceptor = new RecordingInterceptor(null);
+        final String wordDocument = generate(interceptor, interceptor, 4);
+
+        assertEquals(PAGE_COUNT, interceptor.calls.size());
+        assertTrue(wordDocument.contains(">Bulk VALUE_1<"));
+    }
+
+    @Test
+    void testResolveAll_OnExecutor() {
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2,
+                runnable -> new Thread(runnable, "bulk-resolver"));
+
+        try {
+            final RecordingInterceptor first = new RecordingInterceptor(executor);
+            final RecordingInterceptor second = new RecordingInterceptor(executor);
+
+            final String wordDocument = generate(first, second, 0);
+
+            assertEquals(PAGE_COUNT, first.calls.size());
+            assertEquals(PAGE_COUNT, second.calls.size());
+            assertTrue(first.threadNames.stream().allMatch("bulk-resolver"::equals));
+            assertTrue(second.threadNames.stream().allMatch("bulk-resolver"::equals));
+
+            assertTrue(wordDocument.contains(">Bulk VALUE_2<"));
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testResolveAll_WrongResultCount() {
+
+        final BulkValueInterceptor missingResult = new BulkValueInterceptor() {
+            @Override
+            public List<DataValueResult> resolveAll(List<InterceptionContext> contexts) {
+                return toResults(contexts.subList(1, contexts.size()));
+            }
+        };
+
+        assertThrows(FailedInterceptorExecutionException.class,
+                () -> generate(missingResult, missingResult, 0));
+    }
+
+    @Test
+    void testResolveAll_ExceptionPassedOn() {
+
+        final BulkValueInterceptor failing = new BulkValueInterceptor() {
+            @Override
+            public List<DataValueResult> resolveAll(List<InterceptionContext> contexts) {
+                throw new IllegalStateException("database down");
+            }
+        };
+
+        final FailedInterceptorExecutionException thrown = assertThrows(
+                FailedInterceptorExecutionException.class, () -> generate(failing, failing, 0));
+
+        assertTrue(thrown.getCause() instanceof IllegalStateException);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final class RecordingInterceptor extends BulkValueInterceptor {
+
+        private final Executor executor;
+
+        private final List<List<String>> calls = new CopyOnWriteArrayList<>();
+        private final List<Object> parentMaps = new CopyOnWriteArrayList<>();
+        private final List<String> threadNames = new CopyOnWriteArrayList<>();
+
+        private RecordingInterceptor(Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public Executor getExecutor() {
+            return executor;
+        }
+
+        @Override
+        public List<DataValueResult> resolveAll(List<InterceptionContext> contexts) {
+            calls.add(contexts.stream()
+                    .map(InterceptionContext::getPlaceholderName)
+                    .collect(Collectors.toList()));
+
+            contexts.forEach(context -> parentMaps.add(context.getParentValueMap()));
+            threadNames.add(Thread.currentThread().getName());
+
+            return toResults(contexts);
+        }
+
+    }
+
+    private static List<DataValueResult> toResults(List<InterceptionContext> contexts) {
+        final List<DataValueResult> results = new ArrayList<>(contexts.size());
+
+        for (InterceptionContext context : contexts) {
+            results.add(DataValueResult.useValue(new DataValue(
+                    context.getPlaceholderName(), "Bulk " + context.getPlaceholderName())));
+        }
+
+        return results;
+    }
+
+    private static DataPage newPage(BulkValueInterceptor valueOne, BulkValueInterceptor valueTwo) {
+        final DataPage page = new DataPage();
+
+        page.addValue(new DataValue("VALUE_1", valueOne));
+        page.addValue(new DataValue("VALUE_2", valueTwo));
+        page.addValue(new DataValue("VALUE_3", "Value 3 Replaced"));
+
+        return page;
+    }
+
+    private static String generate(
+            BulkValueInterceptor valueOne, BulkValueInterceptor valueTwo, int parallelism) {
+
+        final List<DataPage> pages = new ArrayList<>();
+        for (int pageNo = 0; pageNo < PAGE_COUNT; pageNo++) {
+            pages.add(newPage(valueOne, valueTwo));
+        }
+
+        return generate(pages, parallelism);
+    }
+
+    private static String generate(DataPage page, int parallelism) {
+        final List<DataPage> pages = new ArrayList<>();
+        pages.add(page);
+
+        return generate(pages, parallelism);
+    }
+
+    private static String generate(List<DataPage> pages, int parallelism) {
+        final OfficeDocumentFactory docFactory = OfficeDocumentFactory.newMicrosoftOfficeInstance();
+        docFactory.setProperty(OfficeProperty.ERR_ON_MISSING_VAL, Boolean.FALSE);
+        docFactory.setProperty(OfficeProperty.RENDER_PARALLELISM, parallelism);
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        docFactory.openDocument(WORD_PLACEHOLDERS).generate(pages, ResultFactory.toStream(output));
+
+        return readZipEntry(output.toByteArray(), "word/document.xml");
+    }
+
+}
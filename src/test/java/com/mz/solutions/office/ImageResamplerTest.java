@@ -0,0 +1,246 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office;
+
+import com.mz.solutions.office.model.images.ImageResource;
+import com.mz.solutions.office.model.images.ImageValue;
+import com.mz.solutions.office.model.images.StandardImageResourceType;
+import com.mz.solutions.office.model.images.UnitOfLength;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ImageResamplerTest extends AbstractOfficeTest {
+
+    private static final StandardImageResourceType PNG = StandardImageResourceType.PNG;
+    private static final StandardImageResourceType JPEG = StandardImageResourceType.JPG;
+
+    @Test
+    void testTargetFor_MillimetersAndDpiToPixels() {
+
+        // 1 Zoll x 2 Zoll bei 150 DPI; angefangene Pixel werden aufgerundet
+        final ImageResampler.Target target = ImageResampler.targetFor(
+                imageValue(25.4D, 50.8D), 150, true);
+
+        assertEquals(150, target.getWidthPx());
+        assertEquals(300, target.getHeightPx());
+
+        final ImageResampler.Target roundedUp = ImageResampler.targetFor(
+                imageValue(10.0D, 0.01D), 96, true);
+
+        assertEquals(38, roundedUp.getWidthPx());
+        assertEquals(1, roundedUp.getHeightPx());
+    }
+
+    @Test
+    void testTargetFor_Disabled() {
+
+        final ImageValue imageValue = imageValue(50.0D, 50.0D);
+
+        assertNull(ImageResampler.targetFor(imageValue, 0, true));
+        assertNull(ImageResampler.targetFor(imageValue, 150, false));
+    }
+
+    @Test
+    void testProcess_PngDownscaled() throws IOException {
+
+        final byte[] imageData = encode(noiseImage(400, 200, 1L), "png");
+        final byte[] result = ImageResampler.process(imageData, PNG, target(100, 100));
+
+        final BufferedImage resultImage = decode(result);
+
+        // Seitenverhältnis bleibt erhalten
+        assertEquals(100, resultImage.getWidth());
+        assertEquals(50, resultImage.getHeight());
+        assertTrue(result.length < imageData.length);
+    }
+
+    @Test
+    void testProcess_JpegDownscaled() throws IOException {
+
+        final byte[] imageData = encode(noiseImage(800, 600, 2L), "jpeg");
+        final byte[] result = ImageResampler.process(imageData, JPEG, target(200, 200));
+
+        final BufferedImage resultImage = decode(result);
+
+        assertEquals(200, resultImage.getWidth());
+        assertEquals(150, resultImage.getHeight());
+    }
+
+    @Test
+    void testProcess_NoDownscaleKeepsOriginal() throws IOException {
+
+        final byte[] pngData = encode(noiseImage(100, 100, 3L), "png");
+        final byte[] jpegData = encode(noiseImage(100, 100, 4L), "jpeg");
+
+        // Weder größer noch neu kodiert (auch kein verlustbehaftetes JPEG)
+        assertSame(pngData, ImageResampler.process(pngData, PNG, target(100, 200)));
+        assertSame(jpegData, ImageResampler.process(jpegData, JPEG, target(400, 400)));
+        assertSame(pngData, ImageResampler.process(pngData, PNG, null));
+    }
+
+    @Test
+    void testProcess_ResultsCached() throws IOException {
+
+        final byte[] imageData = encode(noiseImage(400, 400, 5L), "png");
+        final ImageResampler.Target target = target(50, 50);
+
+        assertFalse(ImageResampler.isCached(imageData, target));
+
+        final byte[] first = ImageResampler.process(imageData, PNG, target);
+        final byte[] second = ImageResampler.process(imageData.clone(), PNG, target);
+
+        // Gleicher Inhalt liefert das zwischengespeicherte Ergebnis
+        assertTrue(ImageResampler.isCached(imageData, target));
+        assertSame(first, second);
+
+        // Andere Ziel-Größe ist ein eigener Eintrag
+        assertFalse(ImageResampler.isCached(imageData, target(40, 40)));
+    }
+
+    @Test
+    void testProcess_KeepOriginalCached() throws IOException {
+
+        final byte[] imageData = encode(noiseImage(80, 80, 6L), "png");
+        final ImageResampler.Target target = target(200, 200);
+
+        assertSame(imageData, ImageResampler.process(imageData, PNG, target));
+        assertTrue(ImageResampler.isCached(imageData, target));
+
+        // Auch aus dem Zwischenspeicher die Daten des Aufrufers
+        final byte[] sameContent = imageData.clone();
+        assertSame(sameContent, ImageResampler.process(sameContent, PNG, target));
+    }
+
+    @Test
+    void testProcess_UnreadableDataKeepsOriginal() {
+
+        final byte[] imageData = new byte[4096];
+        new Random(7L).nextBytes(imageData);
+
+        final ImageResampler.Target target = target(10, 10);
+
+        assertSame(imageData, ImageResampler.process(imageData, PNG, target));
+        assertSame(imageData, ImageResampler.process(imageData, JPEG, target));
+        assertTrue(ImageResampler.isCached(imageData, target));
+    }
+
+    @Test
+    void testProcess_JpegWithRotationOrColorProfileKeepsOriginal() throws IOException {
+
+        final byte[] jpegData = encode(noiseImage(800, 600, 8L), "jpeg");
+        final ImageResampler.Target target = target(200, 200);
+
+        final byte[] rotated = insertJpegSegment(jpegData, 0xE1, exifOrientation(6));
+        final byte[] withProfile = insertJpegSegment(jpegData, 0xE2,
+                "ICC_PROFILE\0\1\1dummy".getBytes(StandardCharsets.US_ASCII));
+
+        assertSame(rotated, ImageResampler.process(rotated, JPEG, target));
+        assertSame(withProfile, ImageResampler.process(withProfile, JPEG, target));
+
+        // Orientierung "normal" wird weiterhin verkleinert
+        final byte[] notRotated = insertJpegSegment(jpegData, 0xE1, exifOrientation(1));
+        assertEquals(200, decode(ImageResampler.process(notRotated, JPEG, target)).getWidth());
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static ImageValue imageValue(double widthMm, double heightMm) {
+        return new ImageValue(ImageResource.dummyColorImage(0x336699))
+                .setDimension(widthMm, heightMm, UnitOfLength.MILLIMETERS);
+    }
+
+    /** Ziel-Größe in Pixel bei 254 DPI (10 Pixel je Millimeter); angefangene Pixel zählen. */
+    private static ImageResampler.Target target(int widthPx, int heightPx) {
+        return ImageResampler.targetFor(
+                imageValue((widthPx - 0.5D) / 10.0D, (heightPx - 0.5D) / 10.0D), 254, true);
+    }
+
+    private static BufferedImage noiseImage(int width, int height, long seed) {
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        final Random random = new Random(seed);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+
+        return image;
+    }
+
+    private static byte[] encode(BufferedImage image, String formatName) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(image, formatName, output));
+
+        return output.toByteArray();
+    }
+
+    private static BufferedImage decode(byte[] imageData) throws IOException {
+        final BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageData));
+        assertNotNull(image);
+
+        return image;
+    }
+
+    /** Fügt ein Segment direkt nach SOI ein. */
+    private static byte[] insertJpegSegment(byte[] jpegData, int marker, byte[] payload) {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final int segmentLength = payload.length + 2;
+
+        output.write(jpegData, 0, 2);
+        output.write(0xFF);
+        output.write(marker);
+        output.write(segmentLength >> 8);
+        output.write(segmentLength & 0xFF);
+        output.write(payload, 0, payload.length);
+        output.write(jpegData, 2, jpegData.length - 2);
+
+        return output.toByteArray();
+    }
+
+    /** EXIF (Big-Endian) mit nur einem IFD-Eintrag: Orientierung. */
+    private static byte[] exifOrientation(int orientation) {
+        return new byte[] {
+            'E', 'x', 'i', 'f', 0, 0,
+            'M', 'M', 0, 42, 0, 0, 0, 8,    // TIFF-Header, IFD ab Offset 8
+            0, 1,                           // ein Eintrag
+            0x01, 0x12, 0, 3, 0, 0, 0, 1,   // Orientierung, SHORT, Anzahl 1
+            0, (byte) orientation, 0, 0,
+            0, 0, 0, 0                      // kein weiteres IFD
+        };
+    }
+
+}
@@ -0,0 +1,287 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office;
+
+import com.mz.solutions.office.extension.MicrosoftInsertDoc;
+import com.mz.solutions.office.instruction.DocumentProcessingInstruction;
+import com.mz.solutions.office.model.DataPage;
+import com.mz.solutions.office.model.DataTable;
+import com.mz.solutions.office.model.DataTableRow;
+import com.mz.solutions.office.model.DataValue;
+import com.mz.solutions.office.model.images.ImageResource;
+import com.mz.solutions.office.model.images.ImageValue;
+import com.mz.solutions.office.model.images.StandardImageResourceType;
+import com.mz.solutions.office.result.ResultFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class MicrosoftDocumentParallelTest extends AbstractOfficeTest {
+
+    private static final Path PLACEHOLDERS = TEST_SOURCE_DIRECTORY.resolve("placeholders");
+    private static final Path TABLES = TEST_SOURCE_DIRECTORY.resolve("tables");
+    private static final Path IMAGES = TEST_SOURCE_DIRECTORY.resolve("images");
+
+    /** Wird per {@code w:altChunk} eingefügt. */
+    private static final Path INSERT_SOURCE = PLACEHOLDERS
+            .resolve("MSO_HeaderFooter_SimpleNoHeaderFooter.docx");
+
+    /** Wird zusammengeführt, enthält ein Bild. */
+    private static final Path MERGE_SOURCE = IMAGES.resolve("WordImageScaling_wDrawing.docx");
+
+    private static final String[] IMAGE_PLACEHOLDERS = { "IMAGE_RED", "IMAGE_GREEN", "IMAGE_BLUE" };
+
+    /** Relationships und Content-Types, Reihenfolge abhängig von der Reihenfolge der Seiten. */
+    private static final Pattern REGISTRY_ENTRY = Pattern.compile(
+            "<(?:Relationship|Default|Override) [^>]*>");
+
+    private static final int PAGE_COUNT = 12;
+    private static final int PARALLELISM = 4;
+
+    @Test
+    void testParallel_InsertMergeAndImagesEqualToSequential() {
+
+        final byte[] parallel = assertParallelEqualsSequential(
+                PLACEHOLDERS.resolve("Word_Placeholders.docx"),
+                MicrosoftDocumentParallelTest::newInsertMergeAndImagesPage);
+
+        final String wordDocument = readZipEntry(parallel, "word/document.xml");
+
+        // Eingefügt, zusammengeführt und je Seite Bilder; Reihenfolge der Seiten bleibt erhalten
+        assertTrue(wordDocument.contains("<w:altChunk"));
+        assertTrue(wordDocument.contains("r:embed=\"rMrg"));
+        assertTrue(wordDocument.contains("r:embed=\"rImgId"));
+
+        int lastIndex = -1;
+        for (int pageNo = 1; pageNo <= PAGE_COUNT; pageNo++) {
+            final int index = wordDocument.indexOf(pageLabel(pageNo), lastIndex + 1);
+
+            assertTrue(index > lastIndex, pageLabel(pageNo));
+            lastIndex = index;
+        }
+    }
+
+    @Test
+    void testParallel_TablesEqualToSequential() {
+
+        final Path template = TABLES.resolve("NormalTables.docx");
+        final byte[] parallel = assertParallelEqualsSequential(template, pageNo -> {
+            final DataTable table = new DataTable("T_FULL");
+
+            for (int rowNo = 0; rowNo <= pageNo % 4; rowNo++) {
+                table.addTableRow(new DataTableRow(
+                        new DataValue("VALUE_1", pageLabel(pageNo) + " row " + rowNo),
+                        new DataValue("VALUE_2", imageValue(rowNo)),
+                        new DataValue("VALUE_3", "Row value 3")));
+            }
+
+            return new DataPage()
+                    .addValues(
+                            new DataValue("VALUE_1", pageLabel(pageNo)),
+                            new DataValue("VALUE_2", "Page value 2"),
+                            new DataValue("VALUE_3", "Page value 3"))
+                    .addTable(table);
+        });
+
+        final String wordDocument = readZipEntry(parallel, "word/document.xml");
+
+        assertTrue(wordDocument.contains(pageLabel(PAGE_COUNT) + " row 0"));
+        assertTrue(wordDocument.contains("r:embed=\"rImgId"));
+    }
+
+    @Test
+    void testParallel_HeaderFooterEqualToSequential() {
+
+        final DataPage headerFooter = new DataPage().addValues(
+                new DataValue("HEADER_VALUE_1", imageValue(0)),
+                new DataValue("HEADER_VALUE_2", MicrosoftInsertDoc.insertFile(INSERT_SOURCE)),
+                new DataValue("HEADER_VALUE_3", MicrosoftInsertDoc.mergeFile(MERGE_SOURCE)),
+                new DataValue("FOOTER_VALUE_1", imageValue(1)),
+                new DataValue("FOOTER_VALUE_2", "Footer value 2"));
+
+        final byte[] parallel = assertParallelEqualsSequential(
+                PLACEHOLDERS.resolve("MSO_HeaderFooter_SectionsAndPages.docx"),
+                pageNo -> new DataPage().addValue(new DataValue("ANY_VALUE", pageLabel(pageNo))),
+                DocumentProcessingInstruction.replaceHeaderFooterWith(headerFooter));
+
+        assertTrue(readZipEntry(parallel, "word/header1.xml").contains("r:embed=\"rImgId"));
+        assertTrue(readZipEntry(parallel, "word/header2.xml").contains("<w:altChunk"));
+        assertTrue(readZipEntry(parallel, "word/header3.xml").contains("r:embed=\"rMrg"));
+        assertTrue(readZipEntry(parallel, "word/footer2.xml").contains("Footer value 2"));
+    }
+
+    @Test
+    void testParallel_FootnotesEndnotesWithImageEqualToSequential() {
+
+        final byte[] parallel = assertParallelEqualsSequential(
+                PLACEHOLDERS.resolve("MSO_Notes_FootnotesEndnotes.docx"),
+                pageNo -> new DataPage().addValue(new DataValue("ANY_VALUE", imageValue(pageNo))));
+
+        assertTrue(readZipEntry(parallel, "word/footnotes.xml").contains("r:embed=\"rImgId"));
+        assertTrue(readZipEntry(parallel, "word/endnotes.xml").contains("r:embed=\"rImgId"));
+    }
+
+    @Test
+    void testParallel_FootnotesEndnotesWithInsertedFileEqualToSequential() {
+
+        final byte[] parallel = assertParallelEqualsSequential(
+                PLACEHOLDERS.resolve("MSO_Notes_FootnotesEndnotes.docx"),
+                pageNo -> new DataPage().addValue(new DataValue(
+                        "ANY_VALUE", MicrosoftInsertDoc.insertFile(INSERT_SOURCE))));
+
+        assertTrue(readZipEntry(parallel, "word/footnotes.xml").contains("<w:altChunk"));
+        assertTrue(readZipEntry(parallel, "word/endnotes.xml").contains("<w:altChunk"));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static DataPage newInsertMergeAndImagesPage(int pageNo) {
+        final DataPage page = new DataPage();
+
+        page.addValue(new DataValue("VALUE_1", pageLabel(pageNo)));
+        page.addValue(new DataValue("VALUE_2", MicrosoftInsertDoc.insertFile(INSERT_SOURCE)));
+        page.addValue(new DataValue("VALUE_3", MicrosoftInsertDoc.mergeFile(MERGE_SOURCE)));
+
+        // Jede Seite verwendet die Bilder in anderer Reihenfolge
+        for (int index = 0; index < IMAGE_PLACEHOLDERS.length; index++) {
+            page.addValue(new DataValue(IMAGE_PLACEHOLDERS[index], imageValue(pageNo + index)));
+        }
+
+        return page;
+    }
+
+    private static ImageValue imageValue(int imageNo) {
+        final Path imagePath = IMAGES.resolve("img_result_" + (1 + imageNo % 3) + ".png");
+
+        return new ImageValue(ImageResource.loadImage(imagePath, StandardImageResourceType.PNG));
+    }
+
+    private static String pageLabel(int pageNo) {
+        return String.format("Page %02d", pageNo);
+    }
+
+    private static byte[] assertParallelEqualsSequential(
+            Path template, IntFunction<DataPage> pageFactory,
+            DocumentProcessingInstruction ... instructions) {
+
+        final List<DataPage> pages = new ArrayList<>();
+        for (int pageNo = 1; pageNo <= PAGE_COUNT; pageNo++) {
+            pages.add(pageFactory.apply(pageNo));
+        }
+
+        final byte[] sequential = generate(template, pages, 0, instructions);
+        final byte[] parallel = generate(template, pages, PARALLELISM, instructions);
+
+        final List<String> sequentialParts = xmlPartNamesOf(sequential);
+        assertEquals(sequentialParts, xmlPartNamesOf(parallel));
+
+        for (String partName : sequentialParts) {
+            final String sequentialPart = readZipEntry(sequential, partName);
+            final String parallelPart = readZipEntry(parallel, partName);
+
+            if (partName.endsWith(".rels") || partName.equals("[Content_Types].xml")) {
+                assertEquals(registryEntriesOf(sequentialPart), registryEntriesOf(parallelPart),
+                        partName);
+            } else {
+                assertEquals(normalize(sequentialPart), normalize(parallelPart), partName);
+            }
+        }
+
+        return parallel;
+    }
+
+    private static byte[] generate(
+            Path template, List<DataPage> pages, int parallelism,
+            DocumentProcessingInstruction ... instructions) {
+
+        final OfficeDocumentFactory docFactory = OfficeDocumentFactory.newMicrosoftOfficeInstance();
+        docFactory.setProperty(OfficeProperty.ERR_ON_MISSING_VAL, Boolean.FALSE);
+        docFactory.setProperty(OfficeProperty.RENDER_PARALLELISM, parallelism);
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        docFactory.openDocument(template)
+                .generate(pages, ResultFactory.toStream(output), instructions);
+
+        return output.toByteArray();
+    }
+
+    private static List<String> xmlPartNamesOf(byte[] document) {
+        final List<String> partNames = new ArrayList<>();
+
+        try (ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(document))) {
+            for (ZipEntry entry = zipIn.getNextEntry(); null != entry; entry = zipIn.getNextEntry()) {
+                if (entry.getName().endsWith(".xml") || entry.getName().endsWith(".rels")) {
+                    partNames.add(entry.getName());
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        assertFalse(partNames.isEmpty());
+        Collections.sort(partNames);
+
+        return partNames;
+    }
+
+    private static List<String> registryEntriesOf(String xml) {
+        final List<String> entries = new ArrayList<>();
+
+        final Matcher matcher = REGISTRY_ENTRY.matcher(normalize(xml));
+        while (matcher.find()) {
+            entries.add(matcher.group());
+        }
+
+        Collections.sort(entries);
+        return entries;
+    }
+
+    /**
+     * Bild-IDs (Relationship und Zeichnungsobjekt) werden bei paralleler Erstellung in anderer
+     * Reihenfolge vergeben und sind daher nicht Teil des Vergleichs.
+     */
+    private static String normalize(String xml) {
+        return xml
+                .replaceAll("rImgId[0-9a-f]{32}", "rImgId")
+                .replaceAll("rNumId[0-9a-f]{32}", "rNumId")
+                .replaceAll("(<(?:wp:docPr|pic:cNvPr) [^>]*?\\bid=\")\\d+\"", "$1\"")
+                .replaceAll("Picture \\d+", "Picture")
+                .replaceAll("vShapeImage\\d+", "vShapeImage");
+    }
+
+}
@@ -0,0 +1,232 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office;
+
+import com.mz.solutions.office.model.DataPage;
+import com.mz.solutions.office.model.DataValue;
+import com.mz.solutions.office.model.interceptor.ValueInterceptor;
+import com.mz.solutions.office.model.interceptor.ValueInterceptorException;
+import com.mz.solutions.office.result.AsyncResult;
+import com.mz.solutions.office.result.ResultFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class OfficeDocumentAsyncTest extends AbstractOfficeTest {
+
+    private static final Path WORD_PLACEHOLDERS = TEST_SOURCE_DIRECTORY
+            .resolve("placeholders").resolve("Word_Placeholders.docx");
+
+    private static final long TIMEOUT_SECONDS = 30L;
+
+    @Test
+    void testGenerateAsync_CompletesWithSameDocument() throws Exception {
+
+        final OfficeDocument document = openDocument();
+
+        final AtomicReference<ByteBuffer> writtenData = new AtomicReference<>();
+        final CompletableFuture<Void> generated = document.generateAsync(pages("Async"),
+                data -> {
+                    writtenData.set(data);
+                    return CompletableFuture.completedFuture(null);
+                });
+
+        generated.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        final ByteBuffer data = writtenData.get();
+        assertTrue(data.isReadOnly());
+        assertEquals(0, data.position());
+
+        final byte[] asyncDocument = new byte[data.remaining()];
+        data.get(asyncDocument);
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        document.generate(pages("Async"), ResultFactory.toStream(output));
+
+        assertEquals(readZipEntry(output.toByteArray(), "word/document.xml"),
+                readZipEntry(asyncDocument, "word/document.xml"));
+        assertTrue(readZipEntry(asyncDocument, "word/document.xml").contains(">Async 1<"));
+    }
+
+    @Test
+    void testGenerateAsyncBuffer_ReadOnlyBuffer() throws Exception {
+
+        final ByteBuffer data = openDocument().generateAsyncBuffer(pages("Buffer"))
+                .get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertTrue(data.isReadOnly());
+
+        final byte[] document = new byte[data.remaining()];
+        data.get(document);
+
+        assertTrue(readZipEntry(document, "word/document.xml").contains(">Buffer 2<"));
+    }
+
+    @Test
+    void testGenerateAsync_CustomExecutor() throws Exception {
+
+        final AtomicInteger executions = new AtomicInteger();
+        final AtomicReference<String> generatingThread = new AtomicReference<>();
+
+        final Executor executor = command -> {
+            executions.incrementAndGet();
+
+            final Thread thread = new Thread(command, "custom-async-executor");
+            thread.start();
+        };
+
+        final CompletableFuture<Void> generated = openDocument().generateAsync(
+                pages("Executor"),
+                data -> {
+                    generatingThread.set(Thread.currentThread().getName());
+                    return CompletableFuture.completedFuture(null);
+                },
+                executor);
+
+        generated.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertEquals(1, executions.get());
+        assertEquals("custom-async-executor", generatingThread.get());
+    }
+
+    @Test
+    void testGenerateAsync_IOExceptionFromResult() {
+
+        final IOException writeFailed = new IOException("disk full");
+
+        final CompletableFuture<Void> generated = openDocument().generateAsync(
+                pages("Failing"),
+                ResultFactory.toAsync(data -> {
+                    throw writeFailed;
+                }));
+
+        final CompletionException thrown = assertThrows(CompletionException.class, generated::join);
+        assertEquals(writeFailed, thrown.getCause());
+    }
+
+    @Test
+    void testGenerateAsync_FailedStageFromResult() {
+
+        final IOException writeFailed = new IOException("connection reset");
+        final CompletableFuture<Void> failedStage = new CompletableFuture<>();
+        failedStage.completeExceptionally(writeFailed);
+
+        final CompletableFuture<Void> generated = openDocument().generateAsync(
+                pages("Failing"), data -> failedStage);
+
+        final CompletionException thrown = assertThrows(CompletionException.class, generated::join);
+        assertEquals(writeFailed, thrown.getCause());
+    }
+
+    @Test
+    void testGenerateAsync_ValueInterceptorExceptionFromGeneration() {
+
+        final DataPage page = new DataPage();
+        page.addValue(new DataValue("VALUE_1", ValueInterceptor.callFunction(context -> {
+            throw new IllegalStateException("lookup failed");
+        })));
+
+        final AtomicInteger writeCalls = new AtomicInteger();
+        final CompletableFuture<Void> generated = openDocument().generateAsync(
+                Collections.singletonList(page),
+                data -> {
+                    writeCalls.incrementAndGet();
+                    return CompletableFuture.completedFuture(null);
+                });
+
+        final CompletionException thrown = assertThrows(CompletionException.class, generated::join);
+
+        assertTrue(thrown.getCause() instanceof ValueInterceptorException, thrown.toString());
+        assertEquals(0, writeCalls.get());
+    }
+
+    @Test
+    void testGenerateAsync_ResultWithoutCompletionStage() {
+
+        final AsyncResult noStage = data -> null;
+        final CompletableFuture<Void> generated = openDocument()
+                .generateAsync(pages("Null"), noStage);
+
+        final CompletionException thrown = assertThrows(CompletionException.class, generated::join);
+
+        assertTrue(thrown.getCause() instanceof NullPointerException);
+        assertEquals("AsyncResult#writeResult() == null", thrown.getCause().getMessage());
+    }
+
+    @Test
+    void testToAsyncFile_WritesWholeDocument() throws Exception {
+
+        final Path outputFile = TESTS_OUTPUT_PATH.resolve("OfficeDocumentAsync_Output.docx");
+
+        // Vorhandene (größere) Datei wird vollständig ersetzt
+        final byte[] existingData = new byte[512 * 1024];
+        Arrays.fill(existingData, (byte) 'X');
+        Files.write(outputFile, existingData);
+
+        openDocument().generateAsync(pages("File"), ResultFactory.toAsyncFile(outputFile))
+                .get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        final byte[] writtenDocument = Files.readAllBytes(outputFile);
+
+        assertNotEquals(existingData.length, writtenDocument.length);
+        assertTrue(readZipEntry(writtenDocument, "word/document.xml").contains(">File 1<"));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static OfficeDocument openDocument() {
+        final OfficeDocumentFactory docFactory = OfficeDocumentFactory.newMicrosoftOfficeInstance();
+        docFactory.setProperty(OfficeProperty.ERR_ON_MISSING_VAL, Boolean.FALSE);
+
+        return docFactory.openDocument(WORD_PLACEHOLDERS);
+    }
+
+    private static List<DataPage> pages(String label) {
+        return Arrays.asList(page(label + " 1"), page(label + " 2"));
+    }
+
+    private static DataPage page(String value) {
+        final DataPage page = new DataPage();
+        page.addValue(new DataValue("VALUE_1", value));
+
+        return page;
+    }
+
+}
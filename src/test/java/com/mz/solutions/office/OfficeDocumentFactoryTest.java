@@ -0,0 +1,222 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office;
+
+import com.mz.solutions.office.model.DataPage;
+import com.mz.solutions.office.model.DataValue;
+import com.mz.solutions.office.result.ResultFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class OfficeDocumentFactoryTest extends AbstractOfficeTest {
+
+    private static final Path PLACEHOLDERS = TEST_SOURCE_DIRECTORY.resolve("placeholders");
+
+    private static final Path WORD_TEMPLATE = PLACEHOLDERS.resolve("Word_Placeholders.docx");
+    private static final Path WRITER_TEMPLATE = PLACEHOLDERS
+            .resolve("LibreOffice_PlaceholdersAndUserDefiniedFields.odt");
+
+    @Test
+    void testOpenDocument_InputStreamReadButNotClosed() throws IOException {
+
+        final byte[] templateData = Files.readAllBytes(WORD_TEMPLATE);
+        final TrackingInputStream templateStream = new TrackingInputStream(templateData);
+
+        final OfficeDocument document = wordFactory().openDocument(templateStream);
+
+        assertFalse(templateStream.closed);
+        assertEquals(0, templateStream.available());
+
+        assertEquals(generateWordBody(wordFactory().openDocument(WORD_TEMPLATE)),
+                generateWordBody(document));
+    }
+
+    @Test
+    void testOpenDocument_ByteArray() throws IOException {
+
+        final byte[] templateData = Files.readAllBytes(WORD_TEMPLATE);
+        final byte[] unchangedData = templateData.clone();
+
+        final OfficeDocument document = wordFactory().openDocument(templateData);
+
+        assertEquals(generateWordBody(wordFactory().openDocument(WORD_TEMPLATE)),
+                generateWordBody(document));
+        assertArrayEquals(unchangedData, templateData);
+    }
+
+    @Test
+    void testOpenDocument_ByteBufferPositionAndLimitUnchanged() throws IOException {
+
+        final byte[] templateData = Files.readAllBytes(WORD_TEMPLATE);
+
+        // Dokument mitten im Puffer, davor und dahinter fremde Daten
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(templateData.length + 64);
+        buffer.put(new byte[16]).put(templateData).put(new byte[48]);
+        buffer.position(16).limit(16 + templateData.length);
+
+        final OfficeDocument document = wordFactory().openDocument(buffer);
+
+        assertEquals(16, buffer.position());
+        assertEquals(16 + templateData.length, buffer.limit());
+
+        assertEquals(generateWordBody(wordFactory().openDocument(WORD_TEMPLATE)),
+                generateWordBody(document));
+    }
+
+    @Test
+    void testOpenDocument_ReadOnlyByteBuffer() throws IOException {
+
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(WRITER_TEMPLATE))
+                .asReadOnlyBuffer();
+
+        final OfficeDocumentFactory docFactory = OfficeDocumentFactory.newOpenOfficeInstance();
+        docFactory.setProperty(OfficeProperty.ERR_ON_MISSING_VAL, Boolean.FALSE);
+
+        final DataPage page = new DataPage();
+        page.addValue(new DataValue("VALUE_1", "From Buffer"));
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        docFactory.openDocument(buffer).generate(page, ResultFactory.toStream(output));
+
+        assertEquals(0, buffer.position());
+        assertTrue(readZipEntry(output.toByteArray(), "content.xml").contains("From Buffer"));
+    }
+
+    @Test
+    void testOpenDocument_InvalidData() {
+
+        final byte[] invalidData = new byte[2048];
+        new Random(1L).nextBytes(invalidData);
+
+        assertThrows(OfficeDocumentException.class,
+                () -> wordFactory().openDocument(invalidData));
+        assertThrows(OfficeDocumentException.class,
+                () -> wordFactory().openDocument(new ByteArrayInputStream(invalidData)));
+    }
+
+    @Test
+    void testInMemoryDocumentSupported_BuiltInFactories() {
+
+        final OfficeDocumentFactory wordFactory =
+                OfficeDocumentFactory.newMicrosoftOfficeInstance();
+        final OfficeDocumentFactory writerFactory = OfficeDocumentFactory.newOpenOfficeInstance();
+
+        assertTrue(wordFactory.isInMemoryDocumentSupported());
+        assertTrue(writerFactory.isInMemoryDocumentSupported());
+
+        wordFactory.requireInMemoryDocumentSupport();
+        writerFactory.requireInMemoryDocumentSupport();
+    }
+
+    @Test
+    void testInMemoryDocumentSupported_FileOnlyFactory() throws IOException {
+
+        final OfficeDocumentFactory fileOnly = new FileOnlyDocumentFactory();
+        final byte[] templateData = Files.readAllBytes(WORD_TEMPLATE);
+        final TrackingInputStream templateStream = new TrackingInputStream(templateData);
+
+        assertFalse(fileOnly.isInMemoryDocumentSupported());
+        assertThrows(IllegalStateException.class, fileOnly::requireInMemoryDocumentSupport);
+
+        assertThrows(IllegalStateException.class, () -> fileOnly.openDocument(templateStream));
+        assertThrows(IllegalStateException.class, () -> fileOnly.openDocument(templateData));
+        assertThrows(IllegalStateException.class,
+                () -> fileOnly.openDocument(ByteBuffer.wrap(templateData)));
+
+        // Der Stream wird bei fehlender Unterstützung nicht angefasst
+        assertEquals(templateData.length, templateStream.available());
+        assertFalse(templateStream.closed);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> TemplateRegistry.newRegistry(fileOnly, Long.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class,
+                () -> BatchGenerator.newBatch(fileOnly, WORD_TEMPLATE, page -> "unused.docx"));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static OfficeDocumentFactory wordFactory() {
+        final OfficeDocumentFactory docFactory = OfficeDocumentFactory.newMicrosoftOfficeInstance();
+        docFactory.setProperty(OfficeProperty.ERR_ON_MISSING_VAL, Boolean.FALSE);
+
+        return docFactory;
+    }
+
+    private static String generateWordBody(OfficeDocument document) {
+        final DataPage page = new DataPage();
+        page.addValue(new DataValue("VALUE_1", "In Memory"));
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        document.generate(page, ResultFactory.toStream(output));
+
+        final String wordDocument = readZipEntry(output.toByteArray(), "word/document.xml");
+        assertTrue(wordDocument.contains(">In Memory<"));
+
+        return wordDocument;
+    }
+
+    /** Merkt sich, ob der Stream geschlossen wurde. */
+    private static final class TrackingInputStream extends ByteArrayInputStream {
+
+        private boolean closed = false;
+
+        private TrackingInputStream(byte[] data) {
+            super(data);
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+
+    }
+
+    /** Eigene Implementierung, die Dokumente nur aus Dateien öffnen kann. */
+    private static final class FileOnlyDocumentFactory extends OfficeDocumentFactory {
+
+        @Override
+        public OfficeDocument openDocument(Path document) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected boolean isMyDocumentType(Path document) {
+            return false;
+        }
+
+    }
+
+}
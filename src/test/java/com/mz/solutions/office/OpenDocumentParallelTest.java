@@ -0,0 +1,172 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office;
+
+import com.mz.solutions.office.instruction.DocumentProcessingInstruction;
+import com.mz.solutions.office.model.DataPage;
+import com.mz.solutions.office.model.DataTable;
+import com.mz.solutions.office.model.DataTableRow;
+import com.mz.solutions.office.model.DataValue;
+import com.mz.solutions.office.model.hints.StandardFormatHint;
+import com.mz.solutions.office.result.ResultFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class OpenDocumentParallelTest extends AbstractOfficeTest {
+
+    private static final Path PLACEHOLDERS = TEST_SOURCE_DIRECTORY.resolve("placeholders");
+    private static final Path TABLES = TEST_SOURCE_DIRECTORY.resolve("tables");
+
+    private static final int PAGE_COUNT = 12;
+    private static final int PARALLELISM = 4;
+
+    @Test
+    void testParallel_PlaceholdersEqualToSequential() {
+
+        assertParallelEqualsSequential(
+                PLACEHOLDERS.resolve("LibreOffice_PlaceholdersAndUserDefiniedFields.odt"),
+                pageNo -> new DataPage().addValues(
+                        new DataValue("VALUE_1", pageLabel(pageNo) + " value 1"),
+                        new DataValue("VALUE_2", pageLabel(pageNo) + " value 2"),
+                        new DataValue("VALUE_3", pageLabel(pageNo) + " value 3")));
+    }
+
+    @Test
+    void testParallel_TablesEqualToSequential() {
+
+        assertParallelEqualsSequential(TABLES.resolve("NormalTables.odt"), pageNo -> {
+            final DataTable table = new DataTable("T_FULL");
+
+            for (int rowNo = 0; rowNo <= pageNo % 4; rowNo++) {
+                table.addTableRow(new DataTableRow(
+                        new DataValue("VALUE_1", pageLabel(pageNo) + " row " + rowNo),
+                        new DataValue("VALUE_2", "Row value 2"),
+                        new DataValue("VALUE_3", "Row value 3")));
+            }
+
+            return new DataPage()
+                    .addValues(
+                            new DataValue("VALUE_1", pageLabel(pageNo)),
+                            new DataValue("VALUE_2", "Page value 2"),
+                            new DataValue("VALUE_3", "Page value 3"))
+                    .addTable(table);
+        });
+    }
+
+    @Test
+    void testParallel_HeaderFooterEqualToSequential() {
+
+        final DataPage headerFooter = new DataPage();
+        for (String part : new String[] { "HEADER", "FOOTER" }) {
+            for (int valueNo = 1; valueNo <= 3; valueNo++) {
+                headerFooter.addValue(new DataValue(
+                        part + "_VALUE_" + valueNo, part + " value " + valueNo));
+            }
+        }
+
+        assertParallelEqualsSequential(
+                PLACEHOLDERS.resolve("LOO_HeaderFooter_SectionsAndPages.odt"),
+                pageNo -> new DataPage().addValue(new DataValue("ANY_VALUE", pageLabel(pageNo))),
+                DocumentProcessingInstruction.replaceHeaderFooterWith(headerFooter));
+    }
+
+    @Test
+    void testParallel_HiddenParagraphsEqualToSequential() {
+
+        assertParallelEqualsSequential(
+                PLACEHOLDERS.resolve("StandardFormatHint_LibreOffice.odt"),
+                pageNo -> new DataPage().addValues(
+                        new DataValue("ANY_VALUE", pageLabel(pageNo)),
+                        new DataValue("STANDARD_FORMAT_HINT_1", StandardFormatHint.PARAGRAPH_KEEP),
+                        new DataValue("STANDARD_FORMAT_HINT_2", StandardFormatHint.PARAGRAPH_HIDDEN),
+                        new DataValue("STANDARD_FORMAT_HINT_3", StandardFormatHint.PARAGRAPH_REMOVE),
+                        new DataValue("FORMAT_HINT_TABLE_KEEP", StandardFormatHint.TABLE_KEEP),
+                        new DataValue("FORMAT_HINT_TABLE_REMOVE", StandardFormatHint.TABLE_REMOVE)));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static void assertParallelEqualsSequential(
+            Path template, IntFunction<DataPage> pageFactory,
+            DocumentProcessingInstruction ... instructions) {
+
+        final List<DataPage> pages = new ArrayList<>();
+        for (int pageNo = 1; pageNo <= PAGE_COUNT; pageNo++) {
+            pages.add(pageFactory.apply(pageNo));
+        }
+
+        final byte[] sequential = generate(template, pages, 0, instructions);
+        final byte[] parallel = generate(template, pages, PARALLELISM, instructions);
+
+        for (String entryName : new String[] { "content.xml", "styles.xml" }) {
+            assertEquals(normalize(readZipEntry(sequential, entryName)),
+                    normalize(readZipEntry(parallel, entryName)), entryName);
+        }
+
+        // Reihenfolge der Seiten bleibt erhalten
+        final String content = readZipEntry(parallel, "content.xml");
+        int lastIndex = -1;
+
+        for (int pageNo = 1; pageNo <= PAGE_COUNT; pageNo++) {
+            final int index = content.indexOf(pageLabel(pageNo), lastIndex + 1);
+
+            assertTrue(index > lastIndex, pageLabel(pageNo));
+            lastIndex = index;
+        }
+    }
+
+    private static byte[] generate(
+            Path template, List<DataPage> pages, int parallelism,
+            DocumentProcessingInstruction ... instructions) {
+
+        final OfficeDocumentFactory docFactory = OfficeDocumentFactory.newOpenOfficeInstance();
+        docFactory.setProperty(OfficeProperty.ERR_ON_MISSING_VAL, Boolean.FALSE);
+        docFactory.setProperty(OfficeProperty.RENDER_PARALLELISM, parallelism);
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        docFactory.openDocument(template)
+                .generate(pages, ResultFactory.toStream(output), instructions);
+
+        return output.toByteArray();
+    }
+
+    private static String pageLabel(int pageNo) {
+        return String.format("Page %02d", pageNo);
+    }
+
+    /**
+     * Nummern kopierter Styles werden bei paralleler Erstellung in anderer Reihenfolge vergeben
+     * und sind daher nicht Teil des Vergleichs.
+     */
+    private static String normalize(String xml) {
+        return null == xml ? null : xml.replaceAll("\\.MZ\\.SCOPY\\d+", ".MZ.SCOPY");
+    }
+
+}
@@ -0,0 +1,259 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office;
+
+import com.mz.solutions.office.model.DataPage;
+import com.mz.solutions.office.model.DataValue;
+import com.mz.solutions.office.result.ResultFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class TemplateRegistryTest extends AbstractOfficeTest {
+
+    private static final Path PLACEHOLDERS = TEST_SOURCE_DIRECTORY.resolve("placeholders");
+
+    private static final Path TEMPLATE_A = PLACEHOLDERS.resolve("MSO_HeaderFooter_SimpleNoHeaderFooter.docx");
+    private static final Path TEMPLATE_B = PLACEHOLDERS.resolve("MSO_Notes_FootnotesEndnotes.docx");
+    private static final Path TEMPLATE_C = PLACEHOLDERS.resolve("MSO_HeaderFooter_SimpleExistingHeaderFooter.docx");
+
+    private static final Path REGISTRY_DIRECTORY = TESTS_OUTPUT_PATH.resolve("registry");
+
+    @BeforeEach
+    void createRegistryDirectory() throws IOException {
+        Files.createDirectories(REGISTRY_DIRECTORY);
+    }
+
+    @Test
+    void testOpenDocument_UnchangedTemplateIsCached() throws IOException {
+
+        final Path template = copyTemplate(TEMPLATE_A, "cached.docx");
+        final TemplateRegistry registry = newRegistry(Long.MAX_VALUE);
+
+        final ZIPDocumentFile first = sourceOf(registry.openDocument(template));
+        final ZIPDocumentFile second = sourceOf(registry.openDocument(template));
+
+        assertSame(first, second);
+        assertEquals(1, registry.size());
+        assertEquals(first.getTotalSize(), registry.getCachedBytes());
+
+        // Erzeugte Dokumente funktionieren wie direkt geöffnete
+        assertTrue(generateText(registry.openDocument(template)).contains("Replaced by registry"));
+    }
+
+    @Test
+    void testOpenDocument_ReloadOnModificationTime() throws IOException {
+
+        final Path template = copyTemplate(TEMPLATE_A, "mtime.docx");
+        final TemplateRegistry registry = newRegistry(Long.MAX_VALUE);
+
+        final ZIPDocumentFile first = sourceOf(registry.openDocument(template));
+
+        // Gleicher Inhalt und gleiche Größe, nur der Änderungszeitpunkt ist neu
+        final FileTime modified = Files.getLastModifiedTime(template);
+        Files.setLastModifiedTime(template, FileTime.fromMillis(modified.toMillis() + 10_000L));
+
+        final ZIPDocumentFile reloaded = sourceOf(registry.openDocument(template));
+
+        assertNotSame(first, reloaded);
+        assertEquals(1, registry.size());
+        assertSame(reloaded, sourceOf(registry.openDocument(template)));
+    }
+
+    @Test
+    void testOpenDocument_ReloadOnSize() throws IOException {
+
+        final Path template = copyTemplate(TEMPLATE_A, "size.docx");
+        final TemplateRegistry registry = newRegistry(Long.MAX_VALUE);
+
+        final ZIPDocumentFile first = sourceOf(registry.openDocument(template));
+
+        // Andere Vorlage (andere Größe) mit dem ursprünglichen Änderungszeitpunkt
+        final FileTime modified = Files.getLastModifiedTime(template);
+        Files.copy(TEMPLATE_B, template, StandardCopyOption.REPLACE_EXISTING);
+        Files.setLastModifiedTime(template, modified);
+
+        final ZIPDocumentFile reloaded = sourceOf(registry.openDocument(template));
+
+        assertNotSame(first, reloaded);
+        assertEquals(reloaded.getTotalSize(), registry.getCachedBytes());
+        assertTrue(generateText(registry.openDocument(template)).contains("footnotes"));
+    }
+
+    @Test
+    void testOpenDocument_ConcurrentRequestsLoadOnce() throws Exception {
+
+        final Path template = copyTemplate(TEMPLATE_C, "concurrent.docx");
+        final TemplateRegistry registry = newRegistry(Long.MAX_VALUE);
+
+        final int threadCount = 8;
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+
+        try {
+            final List<Future<ZIPDocumentFile>> results = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                results.add(executor.submit((Callable<ZIPDocumentFile>) () -> {
+                    startSignal.await();
+                    return sourceOf(registry.openDocument(template));
+                }));
+            }
+
+            startSignal.countDown();
+
+            final ZIPDocumentFile expected = results.get(0).get();
+            for (Future<ZIPDocumentFile> result : results) {
+                assertSame(expected, result.get());
+            }
+
+            assertEquals(1, registry.size());
+            assertEquals(expected.getTotalSize(), registry.getCachedBytes());
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testOpenDocument_EvictsLeastRecentlyUsedByBytes() throws IOException {
+
+        final Path templateA = copyTemplate(TEMPLATE_A, "lru_a.docx");
+        final Path templateB = copyTemplate(TEMPLATE_B, "lru_b.docx");
+        final Path templateC = copyTemplate(TEMPLATE_C, "lru_c.docx");
+
+        final long weightA = weightOf(templateA);
+        final long weightB = weightOf(templateB);
+        final long weightC = weightOf(templateC);
+
+        // Platz für A und die größere von B und C, aber nicht für alle drei
+        final TemplateRegistry registry = newRegistry(weightA + Math.max(weightB, weightC));
+
+        final ZIPDocumentFile sourceA = sourceOf(registry.openDocument(templateA));
+        final ZIPDocumentFile sourceB = sourceOf(registry.openDocument(templateB));
+
+        assertSame(sourceA, sourceOf(registry.openDocument(templateA))); // B am längsten unbenutzt
+        registry.openDocument(templateC);
+
+        assertEquals(2, registry.size());
+        assertEquals(weightA + weightC, registry.getCachedBytes());
+
+        assertSame(sourceA, sourceOf(registry.openDocument(templateA)));
+        assertNotSame(sourceB, sourceOf(registry.openDocument(templateB)));
+    }
+
+    @Test
+    void testOpenDocument_LastLoadedTemplateKeptWhenTooLarge() throws IOException {
+
+        final Path template = copyTemplate(TEMPLATE_A, "too_large.docx");
+        final TemplateRegistry registry = newRegistry(0L);
+
+        final ZIPDocumentFile first = sourceOf(registry.openDocument(template));
+
+        assertEquals(1, registry.size());
+        assertSame(first, sourceOf(registry.openDocument(template)));
+
+        registry.invalidateAll();
+
+        assertEquals(0, registry.size());
+        assertEquals(0L, registry.getCachedBytes());
+    }
+
+    @Test
+    void testNewRegistry_RejectsFactoryWithoutInMemoryDocuments() {
+
+        final OfficeDocumentFactory fileOnlyFactory = new OfficeDocumentFactory() {
+            @Override
+            public OfficeDocument openDocument(Path document) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            protected boolean isMyDocumentType(Path document) {
+                return false;
+            }
+        };
+
+        assertFalse(fileOnlyFactory.isInMemoryDocumentSupported());
+        assertTrue(OfficeDocumentFactory.newMicrosoftOfficeInstance().isInMemoryDocumentSupported());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> TemplateRegistry.newRegistry(fileOnlyFactory, Long.MAX_VALUE));
+        assertThrows(IllegalStateException.class,
+                () -> fileOnlyFactory.openDocument(new byte[0]));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static TemplateRegistry newRegistry(long maxCachedBytes) {
+        final OfficeDocumentFactory factory = OfficeDocumentFactory.newMicrosoftOfficeInstance();
+        factory.setProperty(OfficeProperty.ERR_ON_MISSING_VAL, Boolean.FALSE);
+
+        return TemplateRegistry.newRegistry(factory, maxCachedBytes);
+    }
+
+    private static Path copyTemplate(Path template, String fileName) throws IOException {
+        return Files.copy(template, REGISTRY_DIRECTORY.resolve(fileName),
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static long weightOf(Path template) {
+        final TemplateRegistry registry = newRegistry(Long.MAX_VALUE);
+        registry.openDocument(template);
+
+        return registry.getCachedBytes();
+    }
+
+    private static ZIPDocumentFile sourceOf(OfficeDocument document) {
+        return ((AbstractOfficeXmlDocument) document).getSourceDocumentFile();
+    }
+
+    private static String generateText(OfficeDocument document) {
+        final DataPage page = new DataPage();
+        page.addValue(new DataValue("ANY_VALUE", "Replaced by registry"));
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        document.generate(page, ResultFactory.toStream(output));
+
+        return readZipEntry(output.toByteArray(), "word/document.xml");
+    }
+
+}
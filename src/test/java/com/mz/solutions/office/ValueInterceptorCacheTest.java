@@ -0,0 +1,233 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office;
+
+import com.mz.solutions.office.model.DataPage;
+import com.mz.solutions.office.model.DataValue;
+import com.mz.solutions.office.model.interceptor.DataValueResult;
+import com.mz.solutions.office.model.interceptor.ValueInterceptor;
+import com.mz.solutions.office.model.interceptor.ValueInterceptor.CacheScope;
+import com.mz.solutions.office.result.ResultFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ValueInterceptorCacheTest extends AbstractOfficeTest {
+
+    private static final Path WORD_PLACEHOLDERS = TEST_SOURCE_DIRECTORY
+            .resolve("placeholders").resolve("Word_Placeholders.docx");
+
+    private static final int PAGE_COUNT = 4;
+
+    @Test
+    void testCacheScope_None() throws IOException {
+
+        final AtomicInteger calls = new AtomicInteger();
+        generate(countingInterceptor(calls), 0);
+
+        assertEquals(PAGE_COUNT * placeholdersPerPage(), calls.get());
+    }
+
+    @Test
+    void testCacheScope_Page() {
+
+        final AtomicInteger calls = new AtomicInteger();
+        final String wordDocument = generate(
+                countingInterceptor(calls).cached(CacheScope.PAGE), 0);
+
+        // Je Seite ein Aufruf; alle Vorkommen einer Seite erhalten denselben Wert
+        assertEquals(PAGE_COUNT, calls.get());
+
+        for (int call = 1; call <= PAGE_COUNT; call++) {
+            assertTrue(wordDocument.contains(">Intercepted " + call + "<"), "Intercepted " + call);
+        }
+    }
+
+    @Test
+    void testCacheScope_Document() {
+
+        final AtomicInteger calls = new AtomicInteger();
+        final ValueInterceptor interceptor = countingInterceptor(calls).cached(CacheScope.DOCUMENT);
+
+        generate(interceptor, 0);
+        assertEquals(1, calls.get());
+
+        // Jede weitere Erstellung beginnt ohne zwischengespeicherte Ergebnisse
+        final String wordDocument = generate(interceptor, 0);
+
+        assertEquals(2, calls.get());
+        assertTrue(wordDocument.contains(">Intercepted 2<"));
+        assertTrue(wordDocument.contains(">Intercepted 1<") == false);
+    }
+
+    @Test
+    void testCacheScope_DocumentSharedByParallelPages() {
+
+        final AtomicInteger calls = new AtomicInteger();
+        generate(countingInterceptor(calls).cached(CacheScope.DOCUMENT), 4);
+
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testCacheScope_Global() {
+
+        final AtomicInteger calls = new AtomicInteger();
+        final ValueInterceptor interceptor = countingInterceptor(calls).cached(CacheScope.GLOBAL);
+
+        generate(interceptor, 0);
+        generate(interceptor, 4);
+
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testCacheKey_NullKeyIsNotCached() throws IOException {
+
+        final AtomicInteger calls = new AtomicInteger();
+        generate(countingInterceptor(calls).cached(CacheScope.DOCUMENT, context -> null), 0);
+
+        assertEquals(PAGE_COUNT * placeholdersPerPage(), calls.get());
+    }
+
+    @Test
+    void testCacheKey_OnePerPlaceholderName() {
+
+        final AtomicInteger calls = new AtomicInteger();
+        final ValueInterceptor interceptor = countingInterceptor(calls).cached(CacheScope.DOCUMENT);
+
+        // Gleiche Instanz für zwei Platzhalter; Schlüssel ist der Name des Platzhalters
+        final String wordDocument = generate(interceptor, interceptor, 0);
+
+        assertEquals(2, calls.get());
+        assertTrue(wordDocument.contains(">Intercepted 1<"));
+        assertTrue(wordDocument.contains(">Intercepted 2<"));
+    }
+
+    @Test
+    void testInterceptorDepth_NestedInterceptorsResolved() {
+
+        final int nesting = ValueInterceptorUtil.MAX_INTERCEPTOR_DEPTH - 1;
+        final String wordDocument = generate(nestedInterceptor(nesting, "Innermost value"), 0);
+
+        assertTrue(wordDocument.contains(">Innermost value<"));
+    }
+
+    @Test
+    void testInterceptorDepth_EndlessNestingStopped() {
+
+        final ValueInterceptor[] selfReturning = new ValueInterceptor[1];
+        selfReturning[0] = ValueInterceptor.callFunction(context -> DataValueResult.useValue(
+                new DataValue(context.getPlaceholderName(), selfReturning[0])));
+
+        final Throwable thrown = assertThrows(RuntimeException.class,
+                () -> generate(selfReturning[0], 0));
+
+        final String maxDepth = String.valueOf(ValueInterceptorUtil.MAX_INTERCEPTOR_DEPTH);
+        assertTrue(causeChainContains(thrown, maxDepth), String.valueOf(thrown));
+
+        // Tiefe genau an der Grenze ist ebenfalls ein Fehler
+        assertThrows(RuntimeException.class, () -> generate(
+                nestedInterceptor(ValueInterceptorUtil.MAX_INTERCEPTOR_DEPTH, "Too deep"), 0));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static String generate(ValueInterceptor valueOne, int parallelism) {
+        return generate(valueOne, null, parallelism);
+    }
+
+    private static String generate(
+            ValueInterceptor valueOne, ValueInterceptor valueTwo, int parallelism) {
+
+        final OfficeDocumentFactory docFactory = OfficeDocumentFactory.newMicrosoftOfficeInstance();
+        docFactory.setProperty(OfficeProperty.ERR_ON_MISSING_VAL, Boolean.FALSE);
+        docFactory.setProperty(OfficeProperty.RENDER_PARALLELISM, parallelism);
+
+        final List<DataPage> pages = new ArrayList<>();
+        for (int pageNo = 0; pageNo < PAGE_COUNT; pageNo++) {
+            final DataPage page = new DataPage();
+
+            page.addValue(new DataValue("VALUE_1", valueOne));
+            page.addValue(null == valueTwo
+                    ? new DataValue("VALUE_2", "Value 2 Replaced")
+                    : new DataValue("VALUE_2", valueTwo));
+            page.addValue(new DataValue("VALUE_3", "Value 3 Replaced"));
+
+            pages.add(page);
+        }
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        docFactory.openDocument(WORD_PLACEHOLDERS).generate(pages, ResultFactory.toStream(output));
+
+        return readZipEntry(output.toByteArray(), "word/document.xml");
+    }
+
+    private static int placeholdersPerPage() throws IOException {
+        return countOccurrences(readZipEntry(Files.readAllBytes(WORD_PLACEHOLDERS),
+                "word/document.xml"), "MERGEFIELD VALUE_1 ");
+    }
+
+    /** Liefert bei jedem Aufruf einen neuen Wert "Intercepted 1", "Intercepted 2", ... */
+    private static ValueInterceptor countingInterceptor(AtomicInteger calls) {
+        return ValueInterceptor.callFunction(context -> DataValueResult.useValue(new DataValue(
+                context.getPlaceholderName(), "Intercepted " + calls.incrementAndGet())));
+    }
+
+    /** Interceptor, der über {@code nesting} weitere Interceptors den Wert liefert. */
+    private static ValueInterceptor nestedInterceptor(int nesting, String value) {
+        final Function<ValueInterceptor, ValueInterceptor> wrap = inner -> ValueInterceptor
+                .callFunction(context -> DataValueResult.useValue(
+                        new DataValue(context.getPlaceholderName(), inner)));
+
+        ValueInterceptor interceptor = ValueInterceptor.callFunction(context -> DataValueResult
+                .useValue(new DataValue(context.getPlaceholderName(), value)));
+
+        for (int level = 1; level < nesting; level++) {
+            interceptor = wrap.apply(interceptor);
+        }
+
+        return interceptor;
+    }
+
+    private static boolean causeChainContains(Throwable thrown, String part) {
+        for (Throwable cause = thrown; null != cause; cause = cause.getCause()) {
+            if (String.valueOf(cause.getMessage()).contains(part)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+}
@@ -0,0 +1,230 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ZipFormatProbeTest extends AbstractOfficeTest {
+
+    private static final Path WORD_PLACEHOLDERS = TEST_SOURCE_DIRECTORY
+            .resolve("placeholders").resolve("Word_Placeholders.docx");
+
+    private static final Path LIBRE_OFFICE_PLACEHOLDERS = TEST_SOURCE_DIRECTORY
+            .resolve("placeholders").resolve("LibreOffice_PlaceholdersAndUserDefiniedFields.odt");
+
+    private static final String MIME_ODT = "application/vnd.oasis.opendocument.text";
+
+    @Test
+    void testProbe_WordDocument() {
+
+        final ZipFormatProbe probe = ZipFormatProbe.probe(WORD_PLACEHOLDERS);
+
+        assertTrue(probe.isZip());
+        assertTrue(probe.containsEntry("[Content_Types].xml"));
+        assertTrue(probe.containsEntry("word/document.xml"));
+        assertTrue(probe.containsEntryWithPrefix("word/"));
+        assertFalse(probe.containsEntry("content.xml"));
+    }
+
+    @Test
+    void testProbe_OpenDocument_MimeTypeFromStoredEntry() {
+
+        final ZipFormatProbe probe = ZipFormatProbe.probe(LIBRE_OFFICE_PLACEHOLDERS);
+
+        assertTrue(probe.isZip());
+        assertTrue(probe.containsEntry("content.xml"));
+        assertEquals(MIME_ODT, probe.getMimeType());
+    }
+
+    @Test
+    void testProbe_PathAndBufferAreEqual() throws IOException {
+
+        final byte[] document = Files.readAllBytes(LIBRE_OFFICE_PLACEHOLDERS);
+
+        // Dokument liegt nicht am Anfang des Puffers; Position und Limit bleiben unverändert
+        final byte[] padded = new byte[document.length + 16];
+        System.arraycopy(document, 0, padded, 8, document.length);
+
+        final ByteBuffer buffer = ByteBuffer.wrap(padded, 8, document.length);
+        final ZipFormatProbe probe = ZipFormatProbe.probe(buffer);
+
+        assertEquals(8, buffer.position());
+        assertEquals(8 + document.length, buffer.limit());
+
+        assertTrue(probe.isZip());
+        assertEquals(MIME_ODT, probe.getMimeType());
+        assertTrue(probe.containsEntry("content.xml"));
+    }
+
+    @Test
+    void testProbe_LongArchiveComment() throws IOException {
+
+        // Kommentar länger als der erste Leseversuch am Dateiende
+        final char[] comment = new char[4000];
+        Arrays.fill(comment, 'c');
+
+        final byte[] archive = createArchive(new String(comment));
+        final ZipFormatProbe probe = ZipFormatProbe.probe(ByteBuffer.wrap(archive));
+
+        assertTrue(probe.isZip());
+        assertEquals(MIME_ODT, probe.getMimeType());
+        assertTrue(probe.containsEntry("content.xml"));
+    }
+
+    @Test
+    void testProbe_Zip64EndOfCentralDirectory() throws IOException {
+
+        final byte[] archive = toZip64(createArchive(null), true);
+        final ZipFormatProbe probe = ZipFormatProbe.probe(ByteBuffer.wrap(archive));
+
+        assertTrue(probe.isZip());
+        assertEquals(MIME_ODT, probe.getMimeType());
+        assertTrue(probe.containsEntry("content.xml"));
+    }
+
+    @Test
+    void testProbe_Zip64WithoutLocator() throws IOException {
+
+        final byte[] archive = toZip64(createArchive(null), false);
+
+        assertSame(ZipFormatProbe.NOT_A_ZIP, ZipFormatProbe.probe(ByteBuffer.wrap(archive)));
+    }
+
+    @Test
+    void testProbe_NotAZip() {
+
+        final byte[] text = "Kein ZIP-Archiv, nur etwas Text der länger als 22 Bytes ist."
+                .getBytes(StandardCharsets.UTF_8);
+
+        assertSame(ZipFormatProbe.NOT_A_ZIP, ZipFormatProbe.probe(ByteBuffer.wrap(text)));
+        assertSame(ZipFormatProbe.NOT_A_ZIP, ZipFormatProbe.probe(ByteBuffer.allocate(0)));
+        assertSame(ZipFormatProbe.NOT_A_ZIP,
+                ZipFormatProbe.probe(TEST_SOURCE_DIRECTORY.resolve("does-not-exist.docx")));
+
+        // Abgeschnittenes Archiv: Ende des zentralen Verzeichnisses fehlt
+        final byte[] truncated = Arrays.copyOf(text, 10);
+        assertFalse(ZipFormatProbe.probe(ByteBuffer.wrap(truncated)).isZip());
+    }
+
+    @Test
+    void testNewInstanceByDocumentType_FromMemory() throws IOException {
+
+        final byte[] wordDocument = Files.readAllBytes(WORD_PLACEHOLDERS);
+        final byte[] openDocument = Files.readAllBytes(LIBRE_OFFICE_PLACEHOLDERS);
+
+        assertTrue(OfficeDocumentFactory.newInstanceByDocumentType(wordDocument).get()
+                instanceof MicrosoftDocumentFactory);
+        assertTrue(OfficeDocumentFactory.newInstanceByDocumentType(openDocument).get()
+                instanceof OpenDocumentFactory);
+        assertFalse(OfficeDocumentFactory.newInstanceByDocumentType(new byte[64]).isPresent());
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /** ODF-ähnliches Archiv; {@code mimetype} unkomprimiert als erster Eintrag. */
+    private static byte[] createArchive(String comment) throws IOException {
+        final ByteArrayOutputStream archive = new ByteArrayOutputStream();
+
+        try (ZipOutputStream zipOut = new ZipOutputStream(archive)) {
+            final byte[] mimeType = MIME_ODT.getBytes(StandardCharsets.US_ASCII);
+            final CRC32 crc = new CRC32();
+            crc.update(mimeType);
+
+            final ZipEntry mimeTypeEntry = new ZipEntry("mimetype");
+            mimeTypeEntry.setMethod(ZipEntry.STORED);
+            mimeTypeEntry.setSize(mimeType.length);
+            mimeTypeEntry.setCrc(crc.getValue());
+
+            zipOut.putNextEntry(mimeTypeEntry);
+            zipOut.write(mimeType);
+            zipOut.closeEntry();
+
+            zipOut.putNextEntry(new ZipEntry("content.xml"));
+            zipOut.write("<office:document-content/>".getBytes(StandardCharsets.UTF_8));
+            zipOut.closeEntry();
+
+            if (null != comment) {
+                zipOut.setComment(comment);
+            }
+        }
+
+        return archive.toByteArray();
+    }
+
+    /**
+     * Schreibt das Ende des zentralen Verzeichnisses im ZIP64-Format: Größe und Position im
+     * klassischen Datensatz werden mit {@code 0xFFFFFFFF} markiert und stehen nur noch im
+     * ZIP64-Datensatz.
+     */
+    private static byte[] toZip64(byte[] archive, boolean withLocator) {
+        final int eocdPosition = archive.length - 22;
+        final ByteBuffer eocd = ByteBuffer.wrap(archive, eocdPosition, 22)
+                .slice().order(ByteOrder.LITTLE_ENDIAN);
+
+        final int entryCount = eocd.getShort(10) & 0xFFFF;
+        final long cdSize = eocd.getInt(12) & 0xFFFFFFFFL;
+        final long cdOffset = eocd.getInt(16) & 0xFFFFFFFFL;
+
+        final ByteBuffer result = ByteBuffer.allocate(eocdPosition + 56 + 20 + 22)
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        result.put(archive, 0, eocdPosition);
+
+        final long zip64EocdPosition = result.position();
+        result.putInt(0x06064b50).putLong(44L)
+                .putShort((short) 45).putShort((short) 45)
+                .putInt(0).putInt(0)
+                .putLong(entryCount).putLong(entryCount)
+                .putLong(cdSize).putLong(cdOffset);
+
+        if (withLocator) {
+            result.putInt(0x07064b50).putInt(0).putLong(zip64EocdPosition).putInt(1);
+        } else {
+            result.put(new byte[20]);
+        }
+
+        result.putInt(0x06054b50).putShort((short) 0).putShort((short) 0)
+                .putShort((short) entryCount).putShort((short) entryCount)
+                .putInt(0xFFFFFFFF).putInt(0xFFFFFFFF)
+                .putShort((short) 0);
+
+        return result.array();
+    }
+
+}
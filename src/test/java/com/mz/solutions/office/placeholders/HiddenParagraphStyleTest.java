@@ -0,0 +1,192 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office.placeholders;
+
+import com.mz.solutions.office.OfficeDocumentFactory;
+import com.mz.solutions.office.OfficeProperty;
+import com.mz.solutions.office.model.DataPage;
+import com.mz.solutions.office.model.DataValue;
+import com.mz.solutions.office.model.hints.StandardFormatHint;
+import com.mz.solutions.office.result.ResultFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class HiddenParagraphStyleTest extends AbstractClassPlaceholderTest {
+
+    private static final Path STANDARD_FORMAT_HINT = TEST_SOURCE_DIRECTORY
+            .resolve(packageName).resolve("StandardFormatHint_LibreOffice.odt");
+
+    /** Automatische Styles mit {@code text:display="none"}. */
+    private static final Pattern HIDDEN_STYLE = Pattern.compile(
+            "<style:style [^>]*?style:name=\"([^\"]+)\"[^>]*(?<!/)>(?:(?!</style:style>).)*?"
+                    + "text:display=\"none\"");
+
+    private static final int PAGE_COUNT = 6;
+
+    @Test
+    void testParagraphHidden_OneStyleVariantPerBaseStyle() throws IOException {
+
+        final byte[] template = Files.readAllBytes(STANDARD_FORMAT_HINT);
+
+        final String singlePage = generate(template, 1, 0);
+        final String manyPages = generate(template, PAGE_COUNT, 0);
+
+        final Set<String> hiddenStyles = hiddenStyleNamesOf(singlePage);
+
+        // Je Basis-Style nur eine versteckte Variante, unabhängig von der Anzahl der Seiten
+        assertFalse(hiddenStyles.isEmpty());
+        assertEquals(hiddenStyles.size(), hiddenStyleNamesOf(manyPages).size());
+        assertEquals(PAGE_COUNT * usagesOf(singlePage, hiddenStyles),
+                usagesOf(manyPages, hiddenStyleNamesOf(manyPages)));
+    }
+
+    @Test
+    void testParagraphHidden_ParallelPagesShareStyleVariants() throws IOException {
+
+        final byte[] template = Files.readAllBytes(STANDARD_FORMAT_HINT);
+
+        final String sequential = generate(template, PAGE_COUNT, 0);
+        final String parallel = generate(template, PAGE_COUNT, 4);
+
+        final Set<String> hiddenStyles = hiddenStyleNamesOf(parallel);
+
+        assertEquals(hiddenStyleNamesOf(sequential).size(), hiddenStyles.size());
+        assertEquals(usagesOf(sequential, hiddenStyleNamesOf(sequential)),
+                usagesOf(parallel, hiddenStyles));
+    }
+
+    @Test
+    void testParagraphHidden_StyleWithoutTextProperties() throws IOException {
+
+        // Paragraph-Style "P1" ohne <style:text-properties>
+        final byte[] template = replaceInContent(Files.readAllBytes(STANDARD_FORMAT_HINT),
+                "(<style:style style:name=\"P1\"[^>]*>)<style:text-properties[^>]*/>", "$1");
+
+        assertFalse(readZipEntry(template, "content.xml").matches(
+                "(?s).*<style:style style:name=\"P1\"[^>]*><style:text-properties.*"));
+
+        final String content = generate(template, 1, 0);
+
+        assertTrue(hiddenStyleNamesOf(content).stream()
+                .anyMatch(styleName -> styleName.startsWith("P1.")), content);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static String generate(byte[] template, int pageCount, int parallelism) {
+        final OfficeDocumentFactory docFactory = OfficeDocumentFactory.newOpenOfficeInstance();
+        docFactory.setProperty(OfficeProperty.RENDER_PARALLELISM, parallelism);
+
+        final List<DataPage> pages = new ArrayList<>();
+        for (int pageNo = 0; pageNo < pageCount; pageNo++) {
+            final DataPage page = new DataPage();
+
+            page.addValue(new DataValue("ANY_VALUE", "Wert ersetzt!"));
+            page.addValue(new DataValue("STANDARD_FORMAT_HINT_1", StandardFormatHint.PARAGRAPH_KEEP));
+            page.addValue(new DataValue("STANDARD_FORMAT_HINT_2", StandardFormatHint.PARAGRAPH_HIDDEN));
+            page.addValue(new DataValue("STANDARD_FORMAT_HINT_3", StandardFormatHint.PARAGRAPH_REMOVE));
+
+            page.addValue(new DataValue("FORMAT_HINT_TABLE_KEEP", StandardFormatHint.TABLE_KEEP));
+            page.addValue(new DataValue("FORMAT_HINT_TABLE_REMOVE", StandardFormatHint.TABLE_REMOVE));
+
+            pages.add(page);
+        }
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        docFactory.openDocument(template).generate(pages, ResultFactory.toStream(output));
+
+        return readZipEntry(output.toByteArray(), "content.xml");
+    }
+
+    private static Set<String> hiddenStyleNamesOf(String content) {
+        final Set<String> styleNames = new HashSet<>();
+
+        final Matcher matcher = HIDDEN_STYLE.matcher(content);
+        while (matcher.find()) {
+            styleNames.add(matcher.group(1));
+        }
+
+        return styleNames;
+    }
+
+    private static int usagesOf(String content, Set<String> styleNames) {
+        int usages = 0;
+
+        for (String styleName : styleNames) {
+            usages += countOccurrences(content, "text:style-name=\"" + styleName + "\"");
+        }
+
+        return usages;
+    }
+
+    private static byte[] replaceInContent(byte[] document, String regex, String replacement)
+            throws IOException {
+
+        final ByteArrayOutputStream result = new ByteArrayOutputStream();
+
+        try (ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(document));
+             ZipOutputStream zipOut = new ZipOutputStream(result)) {
+
+            for (ZipEntry entry = zipIn.getNextEntry(); null != entry; entry = zipIn.getNextEntry()) {
+                final ByteArrayOutputStream entryData = new ByteArrayOutputStream();
+                final byte[] buffer = new byte[8192];
+
+                for (int read = zipIn.read(buffer); read != -1; read = zipIn.read(buffer)) {
+                    entryData.write(buffer, 0, read);
+                }
+
+                byte[] data = entryData.toByteArray();
+                if (entry.getName().equals("content.xml")) {
+                    data = new String(data, StandardCharsets.UTF_8)
+                            .replaceFirst(regex, replacement)
+                            .getBytes(StandardCharsets.UTF_8);
+                }
+
+                zipOut.putNextEntry(new ZipEntry(entry.getName()));
+                zipOut.write(data);
+                zipOut.closeEntry();
+            }
+        }
+
+        return result.toByteArray();
+    }
+
+}
@@ -0,0 +1,219 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office.placeholders;
+
+import com.mz.solutions.office.OfficeDocumentFactory;
+import com.mz.solutions.office.OfficeProperty;
+import com.mz.solutions.office.extension.ExtendedValue;
+import com.mz.solutions.office.extension.MicrosoftInsertDoc;
+import com.mz.solutions.office.model.DataPage;
+import com.mz.solutions.office.model.DataValue;
+import com.mz.solutions.office.result.ResultFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class MicrosoftInsertDocTest extends AbstractClassPlaceholderTest {
+
+    private static final Path WORD_PLACEHOLDERS = TEST_SOURCE_DIRECTORY
+            .resolve(packageName).resolve("Word_Placeholders.docx");
+
+    private static final Path INSERT_SOURCE = TEST_SOURCE_DIRECTORY
+            .resolve(packageName).resolve("MSO_HeaderFooter_SimpleNoHeaderFooter.docx");
+
+    private static final Path OTHER_SOURCE = TEST_SOURCE_DIRECTORY
+            .resolve(packageName).resolve("MSO_HeaderFooter_SimpleExistingHeaderFooter.docx");
+
+    @Test
+    void testInsertFile_SameFileOnSeveralPagesStoredOnce() throws Exception {
+
+        final DataPage[] pages = new DataPage[4];
+        for (int pageIndex = 0; pageIndex < pages.length; pageIndex++) {
+            // Je Seite (und Platzhalter) eine eigene Instanz für die selbe Datei
+            pages[pageIndex] = insertPage(
+                    MicrosoftInsertDoc.insertFile(INSERT_SOURCE),
+                    MicrosoftInsertDoc.insertFile(INSERT_SOURCE));
+        }
+
+        final byte[] document = generate(pages);
+
+        final String wordDocument = readZipEntry(document, "word/document.xml");
+        final String relationships = readZipEntry(document, "word/_rels/document.xml.rels");
+
+        final String templateDocument = readZipEntry(
+                Files.readAllBytes(WORD_PLACEHOLDERS), "word/document.xml");
+
+        // Jeder Platzhalter wird zu einem w:altChunk, alle verweisen auf den selben Teil
+        final int placeholders = countOccurrences(templateDocument, "MERGEFIELD VALUE_1 ")
+                + countOccurrences(templateDocument, "MERGEFIELD VALUE_2 ");
+
+        assertTrue(placeholders > 0);
+        assertEquals(pages.length * placeholders, countOccurrences(wordDocument, "<w:altChunk "));
+        assertEquals(1, countOccurrences(relationships, "Id=\"altChunk"));
+
+        assertChunkParts(document, Files.readAllBytes(INSERT_SOURCE));
+    }
+
+    @Test
+    void testInsertFile_SameContentFromDifferentPathsStoredOnce() throws Exception {
+
+        final Path copiedSource = TESTS_OUTPUT_PATH.resolve("InsertDoc_CopiedSource.docx");
+        Files.copy(INSERT_SOURCE, copiedSource, StandardCopyOption.REPLACE_EXISTING);
+
+        final byte[] document = generate(
+                insertPage(
+                        MicrosoftInsertDoc.insertFile(INSERT_SOURCE),
+                        MicrosoftInsertDoc.insertFile(copiedSource)),
+                insertPage(
+                        MicrosoftInsertDoc.insertFile(copiedSource),
+                        MicrosoftInsertDoc.insertFile(OTHER_SOURCE)));
+
+        final String relationships = readZipEntry(document, "word/_rels/document.xml.rels");
+
+        // Nur der abweichende Inhalt ergibt einen zweiten Teil
+        assertEquals(2, chunkPartsOf(document).size());
+        assertEquals(2, countOccurrences(relationships, "Id=\"altChunk"));
+    }
+
+    @Test
+    void testInsertFile_ChangedSizeIsReloaded() throws Exception {
+
+        final Path changingSource = TESTS_OUTPUT_PATH.resolve("InsertDoc_ChangedSize.docx");
+        final FileTime lastModified = FileTime.fromMillis(1_500_000_000_000L);
+
+        final byte[] firstData = Files.readAllBytes(INSERT_SOURCE);
+        Files.write(changingSource, firstData);
+        Files.setLastModifiedTime(changingSource, lastModified);
+
+        assertChunkParts(generate(changingSource), firstData);
+
+        // Anderer Inhalt und andere Größe, aber unveränderter Änderungszeitpunkt
+        final byte[] secondData = Files.readAllBytes(OTHER_SOURCE);
+        assertNotEquals(firstData.length, secondData.length);
+
+        Files.write(changingSource, secondData);
+        Files.setLastModifiedTime(changingSource, lastModified);
+
+        assertChunkParts(generate(changingSource), secondData);
+    }
+
+    @Test
+    void testInsertFile_ChangedModificationTimeIsReloaded() throws Exception {
+
+        final Path changingSource = TESTS_OUTPUT_PATH.resolve("InsertDoc_ChangedTime.docx");
+
+        final byte[] firstData = Files.readAllBytes(INSERT_SOURCE);
+        Files.write(changingSource, firstData);
+        Files.setLastModifiedTime(changingSource, FileTime.fromMillis(1_500_000_000_000L));
+
+        assertChunkParts(generate(changingSource), firstData);
+
+        // Gleiche Größe, anderer Inhalt (Einfügen per w:altChunk liest den Inhalt nicht ein)
+        final byte[] secondData = firstData.clone();
+        secondData[secondData.length - 1] ^= 0x01;
+
+        Files.write(changingSource, secondData);
+        Files.setLastModifiedTime(changingSource, FileTime.fromMillis(1_600_000_000_000L));
+
+        assertChunkParts(generate(changingSource), secondData);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private byte[] generate(Path insertSource) {
+        return generate(insertPage(
+                MicrosoftInsertDoc.insertFile(insertSource),
+                MicrosoftInsertDoc.insertFile(insertSource)));
+    }
+
+    private byte[] generate(DataPage... pages) {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        final OfficeDocumentFactory docFactory = OfficeDocumentFactory.newMicrosoftOfficeInstance();
+        docFactory.setProperty(OfficeProperty.ERR_ON_MISSING_VAL, Boolean.FALSE);
+
+        docFactory.openDocument(WORD_PLACEHOLDERS)
+                .generate(Arrays.asList(pages), ResultFactory.toStream(output));
+
+        return output.toByteArray();
+    }
+
+    private DataPage insertPage(ExtendedValue firstValue, ExtendedValue secondValue) {
+        final DataPage page = new DataPage();
+
+        page.addValue(new DataValue("VALUE_1", firstValue));
+        page.addValue(new DataValue("VALUE_2", secondValue));
+        page.addValue(new DataValue("VALUE_3", "Value 3 Replaced"));
+
+        return page;
+    }
+
+    /** Prüft, dass genau ein Teil mit dem gegebenen Inhalt im Container abgelegt ist. */
+    private static void assertChunkParts(byte[] document, byte[] chunkData) throws Exception {
+        assertEquals(Arrays.asList(chunkPartName(chunkData)), chunkPartsOf(document));
+    }
+
+    /** Name des Teils im Container, wie er aus dem Inhalts-Hash abgeleitet wird. */
+    private static String chunkPartName(byte[] data) throws Exception {
+        final byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+
+        final StringBuilder hexDigest = new StringBuilder();
+        for (byte digestByte : digest) {
+            hexDigest.append(String.format("%02x", digestByte));
+        }
+
+        return "word/altChunk" + hexDigest.substring(0, 32) + "docx.docx";
+    }
+
+    private static List<String> chunkPartsOf(byte[] document) throws IOException {
+        final List<String> chunkParts = new ArrayList<>();
+
+        try (ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(document))) {
+            ZipEntry entry;
+            while (null != (entry = zipIn.getNextEntry())) {
+                if (entry.getName().startsWith("word/altChunk")) {
+                    chunkParts.add(entry.getName());
+                }
+            }
+        }
+
+        assertTrue(chunkParts.size() > 0);
+        return chunkParts;
+    }
+
+}
@@ -0,0 +1,384 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office.placeholders;
+
+import com.mz.solutions.office.OfficeDocumentFactory;
+import com.mz.solutions.office.OfficeProperty;
+import com.mz.solutions.office.extension.MicrosoftInsertDoc;
+import com.mz.solutions.office.model.DataPage;
+import com.mz.solutions.office.model.DataValue;
+import com.mz.solutions.office.result.ResultFactory;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class MicrosoftMergeDocTest extends AbstractClassPlaceholderTest {
+
+    private static final Path WORD_PLACEHOLDERS = TEST_SOURCE_DIRECTORY
+            .resolve(packageName).resolve("Word_Placeholders.docx");
+
+    private static final Path MERGE_SOURCE = TEST_SOURCE_DIRECTORY
+            .resolve(packageName).resolve("MSO_HeaderFooter_SimpleExistingHeaderFooter.docx");
+
+    private static final String NS_RELATIONSHIPS =
+            "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+    private static final String REL_TYPE_IMAGE = NS_RELATIONSHIPS + "/image";
+
+    /** Fester Zeitstempel, damit die erzeugten Quellen immer den selben Inhalt haben. */
+    private static final long ZIP_ENTRY_TIME = 1_500_000_000_000L;
+
+    @Test
+    void testMergeFile_BodyMergedWithoutAltChunk() throws Exception {
+
+        final byte[] document = generateWithMergedFile();
+        Files.write(TESTS_OUTPUT_PATH.resolve("Word_Placeholders_Merged_Output.docx"), document);
+
+        final String wordDocument = readZipEntry(document, "word/document.xml");
+        final String templateDocument = readZipEntry(
+                Files.readAllBytes(WORD_PLACEHOLDERS), "word/document.xml");
+
+        // Je Platzhalter und Seite einmal der Body des zusammengeführten Dokumentes, kein
+        // w:altChunk
+        final int placeholders = countOccurrences(templateDocument, "MERGEFIELD VALUE_1 ");
+
+        assertTrue(placeholders > 0);
+        assertEquals(2 * placeholders,
+                countOccurrences(wordDocument, "SIMPLE HEADER AND FOOTER IN DOCUMENT."));
+        assertFalse(wordDocument.contains("w:altChunk"));
+        assertFalse(wordDocument.contains("MERGEFIELD VALUE_1"));
+    }
+
+    @Test
+    void testMergeFile_HeaderFooterOfSourceNotTakenOver() throws Exception {
+
+        final byte[] document = generateWithMergedFile();
+
+        final String wordDocument = readZipEntry(document, "word/document.xml");
+        final String relationships = readZipEntry(document, "word/_rels/document.xml.rels");
+
+        // Kopf- und Fußzeilen der Quelle gehören nicht zum Body und werden nicht übernommen
+        assertFalse(wordDocument.contains("w:headerReference"));
+        assertFalse(wordDocument.contains("w:footerReference"));
+        assertFalse(relationships.contains("header"));
+        assertFalse(relationships.contains("footer"));
+
+        // Der Abschnitt des Ziel-Dokumentes bleibt erhalten
+        assertTrue(wordDocument.contains("<w:sectPr"));
+    }
+
+    @Test
+    void testMergeFile_StylesOfTargetWin() throws Exception {
+
+        final byte[] document = generateWithSources(
+                writeSource("MergeSource_ListA.docx", "MERGED LIST A", "FF0000", false),
+                writeSource("MergeSource_ListB.docx", "MERGED LIST B", "00FF00", false));
+
+        final String styles = readZipEntry(document, "word/styles.xml");
+
+        // Vorhandene Vorlage "Normal" bleibt die des Ziel-Dokumentes
+        assertEquals(1, countOccurrences(styles, "w:styleId=\"Normal\""));
+        assertFalse(styles.contains("<w:color w:val=\"FF0000\"/>"));
+
+        // Neue Vorlage nur einmal, und zwar die der zuerst eingesetzten Quelle
+        assertEquals(1, countOccurrences(styles, "w:styleId=\"MergedList\""));
+        assertTrue(styles.contains("<w:shd w:fill=\"FF0000\"/>"));
+        assertFalse(styles.contains("00FF00"));
+    }
+
+    @Test
+    void testMergeFile_NumberingIdsRemapped() throws Exception {
+
+        final byte[] document = generateWithSources(
+                writeSource("MergeSource_ListA.docx", "MERGED LIST A", "FF0000", false),
+                writeSource("MergeSource_ListB.docx", "MERGED LIST B", "00FF00", false));
+
+        final String wordDocument = readZipEntry(document, "word/document.xml");
+        final String numbering = readZipEntry(document, "word/numbering.xml");
+        final String styles = readZipEntry(document, "word/styles.xml");
+
+        // Beide Quellen verwenden abstractNumId 5 und numId 3; im Ziel eindeutig
+        assertTrue(numbering.contains("<w:abstractNum w:abstractNumId=\"0\""));
+        assertTrue(numbering.contains("<w:abstractNum w:abstractNumId=\"1\""));
+        assertTrue(numbering.contains("<w:num w:numId=\"1\"><w:abstractNumId w:val=\"0\"/>"));
+        assertTrue(numbering.contains("<w:num w:numId=\"2\"><w:abstractNumId w:val=\"1\"/>"));
+        assertFalse(numbering.contains("w:abstractNumId=\"5\""));
+        assertFalse(numbering.contains("w:numId=\"3\""));
+
+        // Absätze und die übernommene Vorlage verweisen auf die neuen IDs
+        assertTrue(wordDocument.contains("<w:numId w:val=\"1\"/></w:numPr></w:pPr>"
+                + "<w:r><w:t>MERGED LIST A</w:t>"));
+        assertTrue(wordDocument.contains("<w:numId w:val=\"2\"/></w:numPr></w:pPr>"
+                + "<w:r><w:t>MERGED LIST B</w:t>"));
+        assertFalse(wordDocument.contains("<w:numId w:val=\"3\"/>"));
+        assertTrue(styles.contains("<w:numId w:val=\"1\"/>"));
+    }
+
+    @Test
+    void testMergeFile_ImagePartRelationshipAndContentType() throws Exception {
+
+        final Path mergeSource = writeSource(
+                "MergeSource_ListA.docx", "MERGED LIST A", "FF0000", false);
+
+        final byte[] document = generateWithSources(mergeSource, mergeSource);
+
+        final String wordDocument = readZipEntry(document, "word/document.xml");
+        final String relationships = readZipEntry(document, "word/_rels/document.xml.rels");
+        final String contentTypes = readZipEntry(document, "[Content_Types].xml");
+
+        final String relId = "rMrg" + sha256Hex(Files.readAllBytes(mergeSource)).substring(0, 12)
+                + "rId10";
+        final String mediaTarget = "media/" + relId.substring(0, 16) + "_image1.png";
+
+        // Eine Relationship und ein Bild, auch wenn die Quelle mehrfach eingesetzt wird
+        assertEquals(1, countOccurrences(relationships, "Id=\"" + relId + "\""));
+        assertTrue(relationships.contains("Target=\"" + mediaTarget + "\""));
+        assertTrue(relationships.contains("Type=\"" + REL_TYPE_IMAGE + "\""));
+        assertTrue(wordDocument.contains("r:embed=\"" + relId + "\""));
+        assertFalse(wordDocument.contains("r:embed=\"rId10\""));
+
+        assertArrayEquals(imageData(), readZipEntryData(document, "word/" + mediaTarget));
+        assertTrue(contentTypes.contains("Extension=\"png\""));
+        assertTrue(contentTypes.contains("ContentType=\"image/png\""));
+    }
+
+    @Test
+    void testMergeFile_PictureBulletsFallBackToAltChunk() throws Exception {
+
+        final byte[] document = generateWithSources(
+                writeSource("MergeSource_PictureBullets.docx", "PICTURE BULLETS", "0000FF", true),
+                writeSource("MergeSource_ListA.docx", "MERGED LIST A", "FF0000", false));
+
+        final String wordDocument = readZipEntry(document, "word/document.xml");
+        final String numbering = readZipEntry(document, "word/numbering.xml");
+
+        // Bild-Aufzählungszeichen werden nicht zusammengeführt, sondern als w:altChunk eingefügt
+        assertTrue(wordDocument.contains("<w:altChunk "));
+        assertFalse(wordDocument.contains("PICTURE BULLETS"));
+        assertFalse(numbering.contains("w:numPicBullet"));
+        assertFalse(numbering.contains("w:lvlPicBulletId"));
+
+        assertTrue(wordDocument.contains("MERGED LIST A"));
+    }
+
+    private byte[] generateWithMergedFile() {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        final OfficeDocumentFactory docFactory = OfficeDocumentFactory.newMicrosoftOfficeInstance();
+        docFactory.setProperty(OfficeProperty.ERR_ON_MISSING_VAL, Boolean.FALSE);
+
+        docFactory.openDocument(WORD_PLACEHOLDERS)
+                .generate(Arrays.asList(createMergePage(), createMergePage()),
+                        ResultFactory.toStream(output));
+
+        return output.toByteArray();
+    }
+
+    private DataPage createMergePage() {
+        final DataPage page = new DataPage();
+
+        page.addValue(new DataValue("VALUE_1", MicrosoftInsertDoc.mergeFile(MERGE_SOURCE)));
+        page.addValue(new DataValue("VALUE_2", "Value 2 Replaced"));
+        page.addValue(new DataValue("VALUE_3", "Value 3 Replaced"));
+
+        return page;
+    }
+
+    private byte[] generateWithSources(Path firstSource, Path secondSource) {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        final OfficeDocumentFactory docFactory = OfficeDocumentFactory.newMicrosoftOfficeInstance();
+        docFactory.setProperty(OfficeProperty.ERR_ON_MISSING_VAL, Boolean.FALSE);
+
+        final DataPage page = new DataPage();
+        page.addValue(new DataValue("VALUE_1", MicrosoftInsertDoc.mergeFile(firstSource)));
+        page.addValue(new DataValue("VALUE_2", MicrosoftInsertDoc.mergeFile(secondSource)));
+        page.addValue(new DataValue("VALUE_3", "Value 3 Replaced"));
+
+        docFactory.openDocument(WORD_PLACEHOLDERS)
+                .generate(Collections.singletonList(page), ResultFactory.toStream(output));
+
+        return output.toByteArray();
+    }
+
+    /**
+     * Schreibt eine minimale Quelle mit Vorlagen, Nummerierung (abstractNumId 5, numId 3) und
+     * einem Bild; optional mit Bild-Aufzählungszeichen.
+     */
+    private static Path writeSource(String fileName, String text, String color,
+            boolean pictureBullets) throws IOException
+    {
+        final String pictureBullet = pictureBullets
+                ? "<w:numPicBullet w:numPicBulletId=\"0\"><w:pict><v:shape style=\"width:9pt\">"
+                        + "<v:imagedata r:id=\"rId11\"/></v:shape></w:pict></w:numPicBullet>"
+                : "";
+        final String bulletLevel = pictureBullets ? "<w:lvlPicBulletId w:val=\"0\"/>" : "";
+
+        final String contentTypes = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+                + "<Default Extension=\"rels\" ContentType=\""
+                + "application/vnd.openxmlformats-package.relationships+xml\"/>"
+                + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+                + "<Default Extension=\"png\" ContentType=\"image/png\"/>"
+                + "<Override PartName=\"/word/document.xml\" ContentType=\""
+                + "application/vnd.openxmlformats-officedocument.wordprocessingml.document.main+xml"
+                + "\"/></Types>";
+
+        final String packageRels = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/"
+                + "relationships\"><Relationship Id=\"rId1\" Type=\"" + NS_RELATIONSHIPS
+                + "/officeDocument\" Target=\"word/document.xml\"/></Relationships>";
+
+        final String documentRels = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/"
+                + "relationships\">"
+                + "<Relationship Id=\"rId1\" Type=\"" + NS_RELATIONSHIPS + "/styles\""
+                + " Target=\"styles.xml\"/>"
+                + "<Relationship Id=\"rId2\" Type=\"" + NS_RELATIONSHIPS + "/numbering\""
+                + " Target=\"numbering.xml\"/>"
+                + "<Relationship Id=\"rId10\" Type=\"" + REL_TYPE_IMAGE + "\""
+                + " Target=\"media/image1.png\"/></Relationships>";
+
+        final String document = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<w:document xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/"
+                + "main\" xmlns:r=\"" + NS_RELATIONSHIPS + "\" xmlns:wp=\"http://schemas."
+                + "openxmlformats.org/drawingml/2006/wordprocessingDrawing\" xmlns:a=\"http://"
+                + "schemas.openxmlformats.org/drawingml/2006/main\" xmlns:pic=\"http://schemas."
+                + "openxmlformats.org/drawingml/2006/picture\"><w:body>"
+                + "<w:p><w:pPr><w:pStyle w:val=\"Normal\"/><w:numPr><w:ilvl w:val=\"0\"/>"
+                + "<w:numId w:val=\"3\"/></w:numPr></w:pPr><w:r><w:t>" + text + "</w:t></w:r>"
+                + "</w:p><w:p><w:pPr><w:pStyle w:val=\"MergedList\"/></w:pPr><w:r><w:drawing>"
+                + "<wp:inline><wp:extent cx=\"9525\" cy=\"9525\"/><wp:docPr id=\"1\""
+                + " name=\"Picture 1\"/><a:graphic><a:graphicData><pic:pic><pic:blipFill>"
+                + "<a:blip r:embed=\"rId10\"/></pic:blipFill></pic:pic></a:graphicData>"
+                + "</a:graphic></wp:inline></w:drawing></w:r></w:p>"
+                + "<w:sectPr><w:pgSz w:w=\"11906\" w:h=\"16838\"/></w:sectPr></w:body>"
+                + "</w:document>";
+
+        final String styles = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<w:styles xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/"
+                + "main\"><w:style w:type=\"paragraph\" w:styleId=\"Normal\">"
+                + "<w:name w:val=\"Normal\"/><w:rPr><w:color w:val=\"" + color + "\"/></w:rPr>"
+                + "</w:style><w:style w:type=\"paragraph\" w:styleId=\"MergedList\">"
+                + "<w:name w:val=\"Merged List\"/><w:pPr><w:numPr><w:numId w:val=\"3\"/>"
+                + "</w:numPr></w:pPr><w:rPr><w:shd w:fill=\"" + color + "\"/></w:rPr>"
+                + "</w:style></w:styles>";
+
+        final String numbering = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<w:numbering xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/"
+                + "2006/main\" xmlns:r=\"" + NS_RELATIONSHIPS + "\" xmlns:v=\"urn:schemas-"
+                + "microsoft-com:vml\">" + pictureBullet
+                + "<w:abstractNum w:abstractNumId=\"5\"><w:lvl w:ilvl=\"0\">"
+                + "<w:numFmt w:val=\"bullet\"/>" + bulletLevel + "<w:lvlText w:val=\"-\"/>"
+                + "</w:lvl></w:abstractNum>"
+                + "<w:num w:numId=\"3\"><w:abstractNumId w:val=\"5\"/></w:num></w:numbering>";
+
+        final ByteArrayOutputStream zipData = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOut = new ZipOutputStream(zipData)) {
+            writeZipEntry(zipOut, "[Content_Types].xml", utf8(contentTypes));
+            writeZipEntry(zipOut, "_rels/.rels", utf8(packageRels));
+            writeZipEntry(zipOut, "word/document.xml", utf8(document));
+            writeZipEntry(zipOut, "word/_rels/document.xml.rels", utf8(documentRels));
+            writeZipEntry(zipOut, "word/styles.xml", utf8(styles));
+            writeZipEntry(zipOut, "word/numbering.xml", utf8(numbering));
+            writeZipEntry(zipOut, "word/media/image1.png", imageData());
+        }
+
+        final Path sourceFile = TESTS_OUTPUT_PATH.resolve(fileName);
+        Files.write(sourceFile, zipData.toByteArray());
+
+        return sourceFile;
+    }
+
+    private static void writeZipEntry(ZipOutputStream zipOut, String name, byte[] data)
+            throws IOException
+    {
+        final ZipEntry entry = new ZipEntry(name);
+        entry.setTime(ZIP_ENTRY_TIME);
+
+        zipOut.putNextEntry(entry);
+        zipOut.write(data);
+        zipOut.closeEntry();
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] imageData() throws IOException {
+        final BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(1, 1, 0x336699);
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", output);
+
+        return output.toByteArray();
+    }
+
+    private static byte[] readZipEntryData(byte[] document, String entryName) throws IOException {
+        try (ZipInputStream zipIn = new ZipInputStream(new ByteArrayInputStream(document))) {
+            ZipEntry entry;
+            while (null != (entry = zipIn.getNextEntry())) {
+                if (entry.getName().equals(entryName)) {
+                    final ByteArrayOutputStream entryData = new ByteArrayOutputStream();
+                    final byte[] buffer = new byte[8192];
+
+                    for (int read = zipIn.read(buffer); read != -1; read = zipIn.read(buffer)) {
+                        entryData.write(buffer, 0, read);
+                    }
+
+                    return entryData.toByteArray();
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static String sha256Hex(byte[] data) throws Exception {
+        final StringBuilder hexDigest = new StringBuilder();
+        for (byte digestByte : MessageDigest.getInstance("SHA-256").digest(data)) {
+            hexDigest.append(String.format("%02x", digestByte));
+        }
+
+        return hexDigest.toString();
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office.result;
+
+import com.mz.solutions.office.AbstractOfficeTest;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ResultFactoryTest extends AbstractOfficeTest {
+
+    private static final long TIMEOUT_SECONDS = 30L;
+
+    @Test
+    void testToAsync_WritesRemainingData() throws Exception {
+
+        final byte[] data = randomData(64 * 1024, 1L);
+        final ByteBuffer buffer = ByteBuffer.wrap(data).asReadOnlyBuffer();
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ResultFactory.toAsync(ResultFactory.toStream(output)).writeResult(buffer)
+                .toCompletableFuture().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertArrayEquals(data, output.toByteArray());
+
+        // Der Puffer des Aufrufers bleibt unverändert
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    void testToAsync_IOExceptionCompletesExceptionally() {
+
+        final IOException writeFailed = new IOException("disk full");
+        final CompletableFuture<?> written = ResultFactory
+                .toAsync(dataToWrite -> {
+                    throw writeFailed;
+                })
+                .writeResult(ByteBuffer.allocate(16))
+                .toCompletableFuture();
+
+        final ExecutionException thrown = assertThrows(ExecutionException.class,
+                () -> written.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertEquals(writeFailed, thrown.getCause());
+    }
+
+    @Test
+    void testToAsyncFile_MultiChunkBuffer() throws Exception {
+
+        final Path outputFile = TESTS_OUTPUT_PATH.resolve("ResultFactory_AsyncFile_Output.bin");
+
+        // Deutlich größer als ein einzelner Schreibvorgang des Kanals üblicherweise ist
+        final byte[] data = randomData(24 * 1024 * 1024 + 17, 2L);
+        final ByteBuffer buffer = ByteBuffer.wrap(data).asReadOnlyBuffer();
+
+        // Bestehende, größere Datei wird ersetzt und nicht nur überschrieben
+        Files.write(outputFile, new byte[data.length + 4096]);
+
+        ResultFactory.toAsyncFile(outputFile).writeResult(buffer)
+                .toCompletableFuture().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertArrayEquals(data, Files.readAllBytes(outputFile));
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    void testToAsyncFile_OpenFailureCompletesExceptionally() {
+
+        final Path outputFile = TESTS_OUTPUT_PATH
+                .resolve("missing-directory").resolve("ResultFactory_AsyncFile_Output.bin");
+
+        final CompletableFuture<?> written = ResultFactory.toAsyncFile(outputFile)
+                .writeResult(ByteBuffer.allocate(16))
+                .toCompletableFuture();
+
+        final ExecutionException thrown = assertThrows(ExecutionException.class,
+                () -> written.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertTrue(thrown.getCause() instanceof NoSuchFileException, thrown.toString());
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static byte[] randomData(int length, long seed) {
+        final byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+
+        return data;
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office.util;
+
+import com.mz.solutions.office.AbstractOfficeTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ConcurrentUniqueFileNameGeneratorTest extends AbstractOfficeTest {
+
+    private static final String PATTERN = "Kunde_${name}.docx";
+
+    @Test
+    void testNextFileName_SameNamingAsUniqueFileNameGenerator() {
+
+        final UniqueFileNameGenerator sequential = new UniqueFileNameGenerator(PATTERN);
+        final ConcurrentUniqueFileNameGenerator concurrent =
+                new ConcurrentUniqueFileNameGenerator(PATTERN);
+
+        // Groß-/Kleinschreibung zählt gemeinsam, unzulässige Zeichen werden ersetzt
+        final String[] names = { "Schmidt", "schmidt", "SCHMIDT", "Meier", "Sch:midt", "Sch?midt" };
+
+        for (String name : names) {
+            final Map<String, String> replaceMap = Collections.singletonMap("name", name);
+
+            assertEquals(sequential.nextFileName(replaceMap), concurrent.nextFileName(replaceMap));
+        }
+    }
+
+    @Test
+    void testNextFileName_NumberingStartsAtSecondUse() {
+
+        final ConcurrentUniqueFileNameGenerator generator =
+                new ConcurrentUniqueFileNameGenerator(PATTERN);
+
+        final Map<String, String> replaceMap = Collections.singletonMap("name", "Schmidt");
+
+        assertEquals("Kunde_Schmidt.docx", generator.nextFileName(replaceMap));
+        assertEquals("Kunde_Schmidt_2.docx", generator.nextFileName(replaceMap));
+        assertEquals("Kunde_Schmidt_3.docx", generator.nextFileName(replaceMap));
+    }
+
+    @Test
+    void testNextFileName_ConcurrentCallsGetDistinctNumbers() throws Exception {
+
+        final ConcurrentUniqueFileNameGenerator generator =
+                new ConcurrentUniqueFileNameGenerator(PATTERN);
+
+        final int threadCount = 8;
+        final int namesPerThread = 250;
+
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+
+        try {
+            final List<Future<List<String>>> results = new ArrayList<>();
+            for (int thread = 0; thread < threadCount; thread++) {
+                // Abwechselnd unterschiedliche Schreibweisen desselben Namens
+                final String name = (thread & 1) == 0 ? "Schmidt" : "SCHMIDT";
+
+                results.add(executor.submit((Callable<List<String>>) () -> {
+                    final Map<String, String> replaceMap = Collections.singletonMap("name", name);
+                    final List<String> fileNames = new ArrayList<>();
+
+                    startSignal.await();
+                    for (int i = 0; i < namesPerThread; i++) {
+                        fileNames.add(generator.nextFileName(replaceMap));
+                    }
+
+                    return fileNames;
+                }));
+            }
+
+            startSignal.countDown();
+
+            final Set<String> allFileNames = new HashSet<>();
+            for (Future<List<String>> result : results) {
+                for (String fileName : result.get()) {
+                    assertTrue(allFileNames.add(fileName.toUpperCase()), fileName);
+                }
+            }
+
+            // Jede Nummer von 1 (ohne Nummerierung) bis zur Gesamtanzahl genau einmal
+            final int total = threadCount * namesPerThread;
+            assertEquals(total, allFileNames.size());
+            assertTrue(allFileNames.contains("KUNDE_SCHMIDT.DOCX"));
+
+            for (int number = 2; number <= total; number++) {
+                assertTrue(allFileNames.contains("KUNDE_SCHMIDT_" + number + ".DOCX"));
+            }
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * MZ Office Document API
+ *
+ * Moritz Riebe und Andreas Zaschka GbR
+ *
+ * Copyright (C) 2020,   Moritz Riebe     (moritz.riebe@mz-entwickler.de)
+ *                       Andreas Zaschka  (andreas.zaschka@mz-entwickler.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.mz.solutions.office.util;
+
+import com.mz.solutions.office.AbstractOfficeTest;
+import com.mz.solutions.office.util.PlaceMarkerInserter.CompiledTemplate;
+import com.mz.solutions.office.util.PlaceMarkerInserter.ReplaceStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class PlaceMarkerInserterTest extends AbstractOfficeTest {
+
+    private static final String TEMPLATE = "${anrede} ${name}, Rechnung ${nr} (${nr})";
+
+    @Test
+    void testCompile_SameResultAsStringTemplate() {
+
+        final PlaceMarkerInserter inserter = new PlaceMarkerInserter();
+        final CompiledTemplate compiled = inserter.compile(TEMPLATE);
+
+        assertEquals(4, compiled.getPlaceMarkerCount());
+        assertEquals(TEMPLATE, compiled.toString());
+
+        final String[] names = { "Schmidt", "Meier", "Müller" };
+        for (int index = 0; index < names.length; index++) {
+            inserter.useSpecificPlaceMarker(invoice(names[index], Integer.toString(index)));
+
+            assertEquals(inserter.replace(TEMPLATE), inserter.replace(compiled));
+        }
+
+        assertEquals("Herr Müller, Rechnung 2 (2)", inserter.replace(compiled));
+    }
+
+    @Test
+    void testCompile_TemplatesWithoutPlaceMarkers() {
+
+        final PlaceMarkerInserter inserter = new PlaceMarkerInserter();
+
+        final CompiledTemplate empty = inserter.compile("");
+        final CompiledTemplate text = inserter.compile("Nur Text } ohne Platzhalter");
+
+        assertEquals(0, empty.getPlaceMarkerCount());
+        assertEquals(0, text.getPlaceMarkerCount());
+
+        assertEquals("", inserter.replace(empty));
+        assertSame(inserter.replace(text), inserter.replace(text));
+        assertEquals("Nur Text } ohne Platzhalter", inserter.replace(text));
+    }
+
+    @Test
+    void testCompile_MarkersAtBeginAndEnd() {
+
+        final PlaceMarkerInserter inserter = new PlaceMarkerInserter();
+        inserter.useSpecificPlaceMarker(invoice("Schmidt", "7"));
+
+        assertEquals("Herr", inserter.replace(inserter.compile("${anrede}")));
+        assertEquals("HerrSchmidt7", inserter.replace(inserter.compile("${anrede}${name}${nr}")));
+        assertEquals("<7>", inserter.replace(inserter.compile("<${nr}>")));
+    }
+
+    @Test
+    void testCompile_ReplaceStrategies() {
+
+        final PlaceMarkerInserter inserter = new PlaceMarkerInserter();
+        inserter.useSpecificPlaceMarker(invoice("Schmidt", "7"));
+
+        final CompiledTemplate compiled = inserter.compile("${name}: ${fehlt} [${nr}]");
+
+        assertThrows(IllegalStateException.class,
+                () -> inserter.replace(compiled, ReplaceStrategy.REPLACE_ALL));
+
+        assertEquals("Schmidt: ${fehlt} [7]",
+                inserter.replace(compiled, ReplaceStrategy.IGNORE_MISSING));
+        assertEquals("Schmidt:  [7]",
+                inserter.replace(compiled, ReplaceStrategy.REMOVE_MISSING));
+    }
+
+    @Test
+    void testCompile_OwnDelimitersAndOtherInstances() {
+
+        final PlaceMarkerInserter compiler = new PlaceMarkerInserter(null, "<<", ">>");
+        final CompiledTemplate compiled = compiler.compile("<<name>> - <<fehlt>> - ${nr}");
+
+        assertEquals(2, compiled.getPlaceMarkerCount());
+
+        // Nicht gefundene Platzhalter bleiben mit den Trennzeichen der Vorlage stehen
+        final PlaceMarkerInserter other = new PlaceMarkerInserter();
+        other.useSpecificPlaceMarker(invoice("Schmidt", "7"));
+
+        assertEquals("Schmidt - <<fehlt>> - ${nr}",
+                other.replace(compiled, ReplaceStrategy.IGNORE_MISSING));
+    }
+
+    @Test
+    void testCompile_MissingEndDelimiter() {
+
+        final PlaceMarkerInserter inserter = new PlaceMarkerInserter();
+
+        assertThrows(IllegalStateException.class, () -> inserter.compile("Hallo ${name"));
+        assertThrows(NullPointerException.class, () -> inserter.compile(null));
+    }
+
+    @Test
+    void testReplace_EachPlaceMarkerResolvedOnce() {
+
+        final AtomicInteger lookups = new AtomicInteger();
+        final Map<String, String> countingMap = new HashMap<String, String>(invoice("Schmidt", "7")) {
+            @Override
+            public String get(Object key) {
+                lookups.incrementAndGet();
+                return super.get(key);
+            }
+        };
+
+        final AtomicInteger supplierCalls = new AtomicInteger();
+        final PlaceMarkerInserter inserter = new PlaceMarkerInserter(() -> {
+            supplierCalls.incrementAndGet();
+            return countingMap;
+        });
+
+        final CompiledTemplate compiled = inserter.compile(TEMPLATE);
+
+        assertEquals("Herr Schmidt, Rechnung 7 (7)", inserter.replace(compiled));
+        assertEquals(compiled.getPlaceMarkerCount(), lookups.get());
+        assertEquals(1, supplierCalls.get());
+    }
+
+    @Test
+    void testReplaceForFileName_CompiledTemplate() {
+
+        final PlaceMarkerInserter inserter = new PlaceMarkerInserter();
+        inserter.useSpecificPlaceMarker(invoice("Sch/mi:dt", "7"));
+
+        final CompiledTemplate compiled = inserter.compile("${name}_${nr}.docx");
+
+        assertEquals("Sch_mi_dt_7.docx",
+                inserter.replaceForFileName(compiled, ReplaceStrategy.REPLACE_ALL));
+        assertEquals(inserter.replaceForFileName("${name}_${nr}.docx"),
+                inserter.replaceForFileName(compiled, ReplaceStrategy.REPLACE_ALL));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static Map<String, String> invoice(String name, String number) {
+        final Map<String, String> values = new HashMap<>();
+
+        values.put("anrede", "Herr");
+        values.put("name", name);
+        values.put("nr", number);
+
+        return values;
+    }
+
+}